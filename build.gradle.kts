@@ -36,6 +36,7 @@ plugins {
 	application
 	id( "org.openjfx.javafxplugin" ) version "0.0.13"
 	id( "org.beryx.runtime" ) version "1.13.0"
+	id( "me.champeau.jmh" ) version "0.7.1"
 	eclipse
 }
 
@@ -87,12 +88,24 @@ dependencies {
 	implementation( "com.google.guava:guava:31.1-jre" ) // required for languagetool, which would otherwise use '31.1-android'
 
 	testImplementation( "junit:junit:4.13.2" )
+	testImplementation( "org.commonmark:commonmark-test-util:${commonmarkVersion}" )
 }
 
 tasks.compileJava {
 	options.release.set( javaCompatibility )
 }
 
+jmh {
+	jmhVersion.set( "1.36" )
+
+	// JSON results can be compared between versions (e.g. with https://jmh.morethan.io/)
+	resultFormat.set( "JSON" )
+	resultsFile.set( layout.buildDirectory.file( "results/jmh/results.json" ) )
+
+	// benchmarks do not use the JavaFX toolkit
+	jvmArgs.addAll( "-Djava.awt.headless=true" )
+}
+
 application {
 	mainClass.set( "org.markdownwriterfx.MarkdownWriterFXApp" )
 }
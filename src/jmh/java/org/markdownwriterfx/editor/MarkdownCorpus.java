@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.Random;
+
+/**
+ * Generates realistic markdown documents of a given size for benchmarks.
+ *
+ * Documents consist of sections with prose (with inline markup, links and images),
+ * nested lists, tables, fenced code blocks, HTML and block quotes.
+ * The same size always produces the same document.
+ *
+ * @author Karl Tauber
+ */
+class MarkdownCorpus
+{
+	private static final String[] WORDS = {
+		"the", "editor", "markdown", "preview", "document", "text", "paragraph",
+		"a", "of", "and", "is", "to", "in", "highlighting", "syntax", "file",
+		"with", "for", "large", "table", "list", "code", "block", "render",
+		"fast", "update", "change", "line", "word", "spell", "check", "image",
+	};
+
+	private static final String[] LANGUAGES = { "java", "javascript", "html", "css", "python", "" };
+
+	private final Random random;
+	private final StringBuilder buf = new StringBuilder();
+
+	/**
+	 * Returns a markdown document with (approximately) the given number of characters.
+	 */
+	static String generate(int size) {
+		return new MarkdownCorpus(size).build(size);
+	}
+
+	private MarkdownCorpus(int seed) {
+		random = new Random(seed);
+	}
+
+	private String build(int size) {
+		int section = 0;
+		while (buf.length() < size)
+			appendSection(++section);
+		buf.setLength(size);
+		return buf.toString();
+	}
+
+	private void appendSection(int section) {
+		buf.append("## Section ").append(section).append(" about *").append(word()).append("*\n\n");
+
+		for (int i = 1 + random.nextInt(3); i > 0; i--)
+			appendParagraph();
+
+		switch (section % 5) {
+			case 0: appendList(); break;
+			case 1: appendTable(); break;
+			case 2: appendCode(); break;
+			case 3: appendHtml(); break;
+			case 4: appendQuote(); break;
+		}
+	}
+
+	private void appendParagraph() {
+		int lines = 2 + random.nextInt(5);
+		for (int i = 0; i < lines; i++) {
+			appendSentence();
+			buf.append('\n');
+		}
+		buf.append('\n');
+	}
+
+	private void appendSentence() {
+		int words = 6 + random.nextInt(10);
+		for (int i = 0; i < words; i++) {
+			if (i > 0)
+				buf.append(' ');
+
+			String word = word();
+			switch (random.nextInt(20)) {
+				case 0: buf.append('*').append(word).append('*'); break;
+				case 1: buf.append("**").append(word).append("**"); break;
+				case 2: buf.append('`').append(word).append('`'); break;
+				case 3: buf.append('[').append(word).append("](https://example.com/").append(word).append(')'); break;
+				case 4: buf.append("~~").append(word).append("~~"); break;
+				case 5: buf.append("&amp;"); break;
+				default: buf.append(word); break;
+			}
+		}
+		buf.append('.');
+
+		if (random.nextInt(10) == 0)
+			buf.append(" ![").append(word()).append("](images/").append(word()).append(".png)");
+		if (random.nextInt(20) == 0)
+			buf.append(" ![remote](https://example.com/image.png)");
+	}
+
+	private void appendList() {
+		for (int i = 0; i < 3 + random.nextInt(5); i++) {
+			buf.append(random.nextBoolean() ? "- " : "- [ ] ");
+			appendSentence();
+			buf.append('\n');
+
+			for (int j = random.nextInt(3); j > 0; j--) {
+				buf.append("    ").append(j).append(". ");
+				appendSentence();
+				buf.append('\n');
+
+				if (random.nextInt(3) == 0) {
+					buf.append("        - ");
+					appendSentence();
+					buf.append('\n');
+				}
+			}
+		}
+		buf.append('\n');
+	}
+
+	private void appendTable() {
+		int columns = 3 + random.nextInt(8);
+		int rows = 5 + random.nextInt(40);
+
+		buf.append('|');
+		for (int c = 0; c < columns; c++)
+			buf.append(" Column ").append(c).append(" |");
+		buf.append("\n|");
+		for (int c = 0; c < columns; c++)
+			buf.append(c == 0 ? ":---|" : "---:|");
+		buf.append('\n');
+
+		for (int r = 0; r < rows; r++) {
+			buf.append('|');
+			for (int c = 0; c < columns; c++) {
+				buf.append(' ');
+				if (c == 1)
+					buf.append('*').append(word()).append('*');
+				else
+					buf.append(word()).append(' ').append(random.nextInt(1000));
+				buf.append(" |");
+			}
+			buf.append('\n');
+		}
+		buf.append('\n');
+	}
+
+	private void appendCode() {
+		String language = LANGUAGES[random.nextInt(LANGUAGES.length)];
+		buf.append("```").append(language).append('\n');
+		int lines = 5 + random.nextInt(30);
+		for (int i = 0; i < lines; i++) {
+			switch (i % 4) {
+				case 0: buf.append("// ").append(word()).append(' ').append(word()).append('\n'); break;
+				case 1: buf.append("int ").append(word()).append(" = ").append(random.nextInt(100)).append(";\n"); break;
+				case 2: buf.append("if (").append(word()).append(" > 0) {\n"); break;
+				case 3: buf.append("\treturn \"").append(word()).append("\";\n}\n"); break;
+			}
+		}
+		buf.append("```\n\n");
+	}
+
+	private void appendHtml() {
+		buf.append("<div class=\"note\">\n<p>").append(word()).append(' ').append(word())
+			.append(" <b>").append(word()).append("</b></p>\n</div>\n\n");
+
+		appendSentence();
+		buf.append(" Inline <span style=\"color: red\">").append(word())
+			.append("</span> and <!-- comment --> html.\n\n");
+	}
+
+	private void appendQuote() {
+		for (int i = 2 + random.nextInt(3); i > 0; i--) {
+			buf.append("> ");
+			appendSentence();
+			buf.append('\n');
+		}
+		buf.append("> - ").append(word()).append("\n\n");
+	}
+
+	private String word() {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+}
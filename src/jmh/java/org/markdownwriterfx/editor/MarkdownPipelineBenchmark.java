@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
+import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.util.MarkdownProcessors;
+import org.markdownwriterfx.util.NodeIndex;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Benchmarks the parse and highlight pipeline of the editor
+ * with generated markdown documents of different sizes.
+ *
+ * Runs headless (does not use the JavaFX toolkit).
+ *
+ * Run with: gradlew jmh
+ * Results are written to build/results/jmh/results.json
+ *
+ * @author Karl Tauber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkdownPipelineBenchmark
+{
+	@Param({"1000", "10000", "100000", "1000000", "5000000"})
+	public int size;
+
+	private Parser parser;
+	private String text;
+	private DocumentSnapshot snapshot;
+	private Node astRoot;
+	private int[][] nodeRanges;
+
+	private IncrementalParser incrementalParser;
+	private String[] editedTexts;
+	private int editIndex;
+	private int editPosition;
+
+	@Setup
+	public void setup() {
+		parser = MarkdownProcessors.getFlexmarkParser(Options.getMarkdownRenderer());
+		text = MarkdownCorpus.generate(size);
+		snapshot = new DocumentSnapshot(text, 1);
+		astRoot = parser.parse(text);
+		NodeIndex.get(astRoot);
+
+		// style ranges in the same order as added by the syntax highlighter (pre-order)
+		NodeIndex index = NodeIndex.get(astRoot);
+		ArrayList<int[]> ranges = new ArrayList<>();
+		for (Node node : index.getNodes(0, text.length())) {
+			if (node != astRoot && node.getEndOffset() > node.getStartOffset())
+				ranges.add(new int[] { node.getStartOffset(), node.getEndOffset() });
+		}
+		nodeRanges = ranges.toArray(new int[ranges.size()][]);
+
+		// typing a character in the middle of the document (and removing it again)
+		editPosition = text.lastIndexOf('\n', text.length() / 2) + 1;
+		editedTexts = new String[] {
+			text.substring(0, editPosition) + 'x' + text.substring(editPosition),
+			text,
+		};
+		incrementalParser = new IncrementalParser(parser);
+		incrementalParser.parse(text);
+	}
+
+	@Benchmark
+	public Node parse() {
+		return parser.parse(text);
+	}
+
+	@Benchmark
+	public Node parseIncremental() {
+		// alternately insert and remove a character
+		editIndex = (editIndex + 1) % 2;
+		return (editIndex == 0)
+			? incrementalParser.parse(editedTexts[0], editPosition, 0, 1)
+			: incrementalParser.parse(editedTexts[1], editPosition, 1, 0);
+	}
+
+	@Benchmark
+	public NodeIndex buildNodeIndex() {
+		return new NodeIndex(astRoot);
+	}
+
+	@Benchmark
+	public StyleRanges buildStyleRanges() {
+		StyleRanges.Builder styleRanges = new StyleRanges.Builder();
+		StyleClass[] styleClasses = StyleClass.values();
+		for (int i = 0; i < nodeRanges.length; i++) {
+			int[] range = nodeRanges[i];
+			styleRanges.add(range[0], range[1], styleClasses[i % styleClasses.length]);
+		}
+		return styleRanges.build();
+	}
+
+	@Benchmark
+	public Object buildStyleSpans() {
+		return MarkdownSyntaxHighlighter.computeStyleSpans(snapshot, astRoot);
+	}
+
+	@Benchmark
+	public Object smartFormat() {
+		return new SmartFormat(null, null).formatParagraphs(astRoot, 80, null, null);
+	}
+
+	@Benchmark
+	public Object findEmbeddedImages() {
+		return EmbeddedImage.findImages(astRoot);
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares StyleRanges.Builder (sort and sweep) with the previous implementation,
+ * which inserted each range into a sorted ArrayList and split overlapping ranges.
+ *
+ * Ranges are nested like in markdown (blocks containing inlines) and added
+ * in the order of the syntax highlighter: block first, then its inlines,
+ * then line based ranges (e.g. find hits) over the whole text.
+ *
+ * Run with: gradlew jmh
+ *
+ * @author Karl Tauber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StyleRangesBenchmark
+{
+	@Param({"1000", "10000", "100000"})
+	public int count;
+
+	private int[] begins;
+	private int[] ends;
+	private long[] styleBits;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		begins = new int[count];
+		ends = new int[count];
+		styleBits = new long[count];
+
+		int blockStart = 0;
+		int i = 0;
+		while (i < count) {
+			// block
+			int blockEnd = blockStart + 100 + random.nextInt(200);
+			add(i++, blockStart, blockEnd, 0);
+
+			// inlines in block
+			for (int offset = blockStart; i < count * 9 / 10 && offset < blockEnd - 20; offset += 10 + random.nextInt(20))
+				add(i++, offset, offset + 2 + random.nextInt(8), 1 + random.nextInt(10));
+
+			blockStart = blockEnd + 2;
+			if (i >= count * 9 / 10)
+				break;
+		}
+
+		// find hits over whole text (added last, like extra styled ranges)
+		int textLength = blockStart;
+		while (i < count) {
+			int begin = random.nextInt(textLength);
+			add(i++, begin, begin + 5, 40);
+		}
+	}
+
+	private void add(int i, int begin, int end, int bit) {
+		begins[i] = begin;
+		ends[i] = end;
+		styleBits[i] = 1L << bit;
+	}
+
+	@Benchmark
+	public StyleRanges builder() {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		for (int i = 0; i < count; i++)
+			builder.add(begins[i], ends[i], styleBits[i]);
+		return builder.build();
+	}
+
+	@Benchmark
+	public ArrayList<LegacyStyleRange> legacy() {
+		ArrayList<LegacyStyleRange> styleRanges = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			legacyAddStyledRange(styleRanges, begins[i], ends[i], styleBits[i]);
+		return styleRanges;
+	}
+
+	//---- legacy implementation ----------------------------------------------
+
+	private static void legacyAddStyledRange(ArrayList<LegacyStyleRange> styleRanges, int begin, int end, long styleBits) {
+		final int lastIndex = styleRanges.size() - 1;
+
+		if (styleRanges.isEmpty()) {
+			styleRanges.add(new LegacyStyleRange(begin, end, styleBits));
+			return;
+		}
+
+		final LegacyStyleRange lastRange = styleRanges.get(lastIndex);
+		if (begin >= lastRange.end) {
+			styleRanges.add(new LegacyStyleRange(begin, end, styleBits));
+			return;
+		}
+
+		for (int i = lastIndex; i >= 0; i--) {
+			LegacyStyleRange range = styleRanges.get(i);
+			if (end <= range.begin)
+				continue;
+
+			if (begin >= range.end) {
+				if (begin < styleRanges.get(i+1).begin) {
+					int end2 = Math.min(end, styleRanges.get(i+1).begin);
+					styleRanges.add(i + 1, new LegacyStyleRange(begin, end2, styleBits));
+				}
+				break;
+			}
+
+			if (end > range.end) {
+				int end2 = (i == lastIndex) ? end : Math.min(end, styleRanges.get(i+1).begin);
+				if (end2 > range.end)
+					styleRanges.add(i + 1, new LegacyStyleRange(range.end, end2, styleBits));
+			}
+
+			if (begin < range.end && end > range.begin) {
+				if (begin <= range.begin && end >= range.end) {
+					styleRanges.set(i, new LegacyStyleRange(range.begin, range.end, range.styleBits | styleBits));
+				} else if (begin <= range.begin && end < range.end) {
+					styleRanges.set(i, new LegacyStyleRange(range.begin, end, range.styleBits | styleBits));
+					styleRanges.add(i + 1, new LegacyStyleRange(end, range.end, range.styleBits));
+				} else if (begin > range.begin && end >= range.end) {
+					styleRanges.set(i, new LegacyStyleRange(range.begin, begin, range.styleBits));
+					styleRanges.add(i + 1, new LegacyStyleRange(begin, range.end, range.styleBits | styleBits));
+				} else if (begin > range.begin && end < range.end) {
+					styleRanges.set(i, new LegacyStyleRange(range.begin, begin, range.styleBits));
+					styleRanges.add(i + 1, new LegacyStyleRange(begin, end, range.styleBits | styleBits));
+					styleRanges.add(i + 2, new LegacyStyleRange(end, range.end, range.styleBits));
+				}
+			}
+		}
+
+		if (begin < styleRanges.get(0).begin) {
+			int end2 = Math.min(end, styleRanges.get(0).begin);
+			styleRanges.add(0, new LegacyStyleRange(begin, end2, styleBits));
+		}
+	}
+
+	static class LegacyStyleRange
+	{
+		final int begin;
+		final int end;
+		final long styleBits;
+
+		LegacyStyleRange(int begin, int end, long styleBits) {
+			this.begin = begin;
+			this.end = end;
+			this.styleBits = styleBits;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.NodeVisitor;
+import com.vladsch.flexmark.util.ast.Visitor;
+
+/**
+ * Compares finding nodes at a position using a NodeVisitor (visits whole AST)
+ * with NodeIndex.
+ *
+ * Run with: gradlew jmh
+ *
+ * @author Karl Tauber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeIndexBenchmark
+{
+	private static final String SECTION =
+		"## Heading with *emphasis*\n" +
+		"\n" +
+		"Paragraph with *emphasis*, **strong**, `code`, [link](http://example.com)\n" +
+		"and ![image](image.png) and ~~strike~~ and more text.\n" +
+		"\n" +
+		"- item 1 with **strong**\n" +
+		"- item 2 with [link](http://example.com)\n" +
+		"  - nested item\n" +
+		"\n" +
+		"> quote with *emphasis*\n" +
+		"\n";
+
+	private Node astRoot;
+	private int[] offsets;
+
+	@Setup
+	public void setup() {
+		// ~10k nodes
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			buf.append(SECTION);
+		String text = buf.toString();
+
+		astRoot = MarkdownProcessors.getFlexmarkParser(null).parse(text);
+
+		Random random = new Random(1);
+		offsets = new int[100];
+		for (int i = 0; i < offsets.length; i++)
+			offsets[i] = random.nextInt(text.length());
+	}
+
+	@Benchmark
+	public void visitor(Blackhole blackhole) {
+		for (int offset : offsets)
+			blackhole.consume(visitorNodesAt(astRoot, offset));
+	}
+
+	@Benchmark
+	public void index(Blackhole blackhole) {
+		NodeIndex index = NodeIndex.get(astRoot);
+		for (int offset : offsets)
+			blackhole.consume(index.getNodesAt(offset));
+	}
+
+	@Benchmark
+	public void buildIndex(Blackhole blackhole) {
+		blackhole.consume(new NodeIndex(astRoot));
+	}
+
+	private static List<Node> visitorNodesAt(Node root, int offset) {
+		ArrayList<Node> nodes = new ArrayList<>();
+		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
+			@Override
+			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
+				if (offset < node.getEndOffset() && offset + 1 > node.getStartOffset())
+					nodes.add(node);
+				visitChildren(node);
+			}
+		};
+		visitor.visit(root);
+		return nodes;
+	}
+}
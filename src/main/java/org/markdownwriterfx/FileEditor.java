@@ -64,7 +64,7 @@ import org.markdownwriterfx.preview.MarkdownPreviewPane.Type;
  */
 class FileEditor
 {
-	private static final long MAX_FILE_SIZE = 500_000;
+	private static final long MAX_FILE_SIZE = 20_000_000;
 	private static final long MAX_HEX_FILE_SIZE = 64 * 1024;
 
 	private final MainWindow mainWindow;
@@ -236,8 +236,9 @@ class FileEditor
 		markdownEditorPane.getUndoManager().forgetHistory();
 
 		// bind preview to editor
+		markdownPreviewPane.setUpdateScheduler(markdownEditorPane.getUpdateScheduler());
 		markdownPreviewPane.pathProperty().bind(pathProperty());
-		markdownPreviewPane.markdownTextProperty().bind(markdownEditorPane.markdownTextProperty());
+		markdownPreviewPane.markdownSnapshotProperty().bind(markdownEditorPane.markdownSnapshotProperty());
 		markdownPreviewPane.markdownASTProperty().bind(markdownEditorPane.markdownASTProperty());
 		markdownPreviewPane.editorSelectionProperty().bind(markdownEditorPane.selectionProperty());
 		markdownPreviewPane.scrollYProperty().bind(markdownEditorPane.scrollYProperty());
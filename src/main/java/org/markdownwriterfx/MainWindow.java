@@ -50,6 +50,7 @@ import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.Separator;
 import javafx.scene.control.SplitPane;
+import javafx.scene.control.TextArea;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.control.ToolBar;
@@ -76,8 +77,10 @@ import org.markdownwriterfx.options.OptionsDialog;
 import org.markdownwriterfx.preview.MarkdownPreviewPane;
 import org.markdownwriterfx.projects.ProjectManager;
 import org.markdownwriterfx.projects.ProjectPane;
+import org.markdownwriterfx.syntaxhighlighter.TokenCache;
 import org.markdownwriterfx.util.Action;
 import org.markdownwriterfx.util.ActionUtils;
+import org.markdownwriterfx.util.MarkdownCache;
 import org.markdownwriterfx.util.Utils;
 import static de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon.*;
 
@@ -128,6 +131,7 @@ class MainWindow
 		borderPane.setPrefSize(800, 800);
 		borderPane.setTop(createMenuBarAndToolBar());
 		borderPane.setCenter(splitPane);
+		borderPane.setBottom(new StatusBar(fileEditorTabPane).getNode());
 
 		scene = new Scene(borderPane);
 		scene.getStylesheets().add("org/markdownwriterfx/MarkdownWriter.css");
@@ -326,6 +330,7 @@ class MainWindow
 		Action toolsOptionsAction = new Action(Messages.get("MainWindow.toolsOptionsAction"), "Shortcut+Shift+,", null, e -> toolsOptions(false));
 
 		// Help actions
+		Action helpStatisticsAction = new Action(Messages.get("MainWindow.helpStatisticsAction"), null, null, e -> helpStatistics());
 		Action helpAboutAction = new Action(Messages.get("MainWindow.helpAboutAction"), null, null, e -> helpAbout());
 
 
@@ -401,6 +406,8 @@ class MainWindow
 				toolsOptionsAction);
 
 		Menu helpMenu = ActionUtils.createMenu(Messages.get("MainWindow.helpMenu"),
+				helpStatisticsAction,
+				null,
 				helpAboutAction);
 
 		menuBar = new MenuBar(fileMenu, editMenu, viewMenu, insertMenu, toolsMenu, helpMenu);
@@ -602,6 +609,28 @@ class MainWindow
 
 	//---- Help actions -------------------------------------------------------
 
+	private void helpStatistics() {
+		String statistics = Messages.get("MainWindow.statistics.markdownCache") + ": " + MarkdownCache.getStatistics() + "\n"
+			+ Messages.get("MainWindow.statistics.tokenCache") + ": " + TokenCache.getStatistics();
+		String addonStatistics = MarkdownEditorPane.getHighlighterAddonStatistics();
+		if (!addonStatistics.isEmpty())
+			statistics += "\n\n" + Messages.get("MainWindow.statistics.highlighterAddons") + ":\n" + addonStatistics;
+
+		TextArea textArea = new TextArea(statistics);
+		textArea.setEditable(false);
+		textArea.setWrapText(true);
+		textArea.setPrefRowCount(8);
+
+		Alert alert = new Alert(AlertType.INFORMATION);
+		alert.setTitle(Messages.get("MainWindow.statistics.title"));
+		alert.setHeaderText(null);
+		alert.getDialogPane().setContent(textArea);
+		alert.initOwner(getScene().getWindow());
+		alert.getDialogPane().setPrefWidth(600);
+
+		alert.showAndWait();
+	}
+
 	private void helpAbout() {
 		String version = null;
 		Package pkg = this.getClass().getPackage();
@@ -37,6 +37,7 @@ import javafx.stage.Stage;
 import fr.brouillard.oss.cssfx.CSSFX;
 import fr.brouillard.oss.cssfx.api.URIToPathConverter;
 import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.util.Addons;
 import org.markdownwriterfx.util.StageState;
 
 /**
@@ -62,6 +63,9 @@ public class MarkdownWriterFXApp
 		app = this;
 		Options.load(getOptions());
 
+		// load addons in background threads while the main window is created
+		Addons.preload();
+
 		// enable auto-reloading CSS files (start with -Dcssfx=true)
 		if (Boolean.getBoolean("cssfx")) {
 //			System.setProperty("cssfx.log", "true");
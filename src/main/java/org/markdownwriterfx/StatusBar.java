@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx;
+
+import javafx.beans.value.ChangeListener;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import org.markdownwriterfx.editor.DocumentTier;
+import org.markdownwriterfx.editor.MarkdownEditorPane;
+
+/**
+ * Status bar at the bottom of the main window.
+ * Shows the document tier of the active editor and allows overriding it.
+ *
+ * @author Karl Tauber
+ */
+class StatusBar
+{
+	private final HBox pane = new HBox();
+	private final MenuButton documentTierButton = new MenuButton();
+	private final ToggleGroup documentTierGroup = new ToggleGroup();
+	private final RadioMenuItem automaticItem;
+
+	private MarkdownEditorPane editor;
+	private final ChangeListener<DocumentTier> documentTierListener = (observable, oldTier, newTier) -> update();
+	private final ChangeListener<MarkdownEditorPane> editorListener = (observable, oldEditor, newEditor) -> setEditor(newEditor);
+	private FileEditor fileEditor;
+
+	StatusBar(FileEditorTabPane fileEditorTabPane) {
+		pane.getStyleClass().add("status-bar");
+		pane.setAlignment(Pos.CENTER_RIGHT);
+		pane.getChildren().add(documentTierButton);
+
+		documentTierButton.getStyleClass().add("document-tier");
+		documentTierButton.setTooltip(new Tooltip(Messages.get("StatusBar.documentTier.tooltip")));
+
+		automaticItem = createDocumentTierItem(Messages.get("StatusBar.documentTier.automatic"), null);
+		documentTierButton.getItems().addAll(automaticItem, new SeparatorMenuItem());
+		for (DocumentTier tier : DocumentTier.values())
+			documentTierButton.getItems().add(createDocumentTierItem(Messages.get("StatusBar.documentTier." + tier.name()), tier));
+
+		fileEditorTabPane.activeFileEditorProperty().addListener((observable, oldFileEditor, newFileEditor) -> {
+			setFileEditor(newFileEditor);
+		});
+		setFileEditor(fileEditorTabPane.getActiveFileEditor());
+	}
+
+	Node getNode() {
+		return pane;
+	}
+
+	private RadioMenuItem createDocumentTierItem(String text, DocumentTier tier) {
+		RadioMenuItem item = new RadioMenuItem(text);
+		item.setToggleGroup(documentTierGroup);
+		item.setUserData(tier);
+		item.setOnAction(e -> {
+			if (editor != null)
+				editor.setDocumentTierOverride(tier);
+		});
+		return item;
+	}
+
+	private void setFileEditor(FileEditor fileEditor) {
+		if (this.fileEditor != null)
+			this.fileEditor.editorProperty().removeListener(editorListener);
+
+		this.fileEditor = fileEditor;
+
+		// editor is created when tab becomes visible the first time
+		if (fileEditor != null)
+			fileEditor.editorProperty().addListener(editorListener);
+		setEditor((fileEditor != null) ? fileEditor.getEditor() : null);
+	}
+
+	private void setEditor(MarkdownEditorPane editor) {
+		if (this.editor != null) {
+			this.editor.documentTierProperty().removeListener(documentTierListener);
+			this.editor.documentTierOverrideProperty().removeListener(documentTierListener);
+		}
+
+		this.editor = editor;
+
+		if (editor != null) {
+			editor.documentTierProperty().addListener(documentTierListener);
+			editor.documentTierOverrideProperty().addListener(documentTierListener);
+		}
+		update();
+	}
+
+	private void update() {
+		documentTierButton.setVisible(editor != null);
+		if (editor == null)
+			return;
+
+		DocumentTier tier = editor.getDocumentTier();
+		DocumentTier override = editor.getDocumentTierOverride();
+		documentTierButton.setText(Messages.get("StatusBar.documentTier",
+			Messages.get("StatusBar.documentTier." + tier.name() + ".short")));
+
+		if (override == null)
+			documentTierGroup.selectToggle(automaticItem);
+		else {
+			documentTierGroup.getToggles().stream()
+				.filter(toggle -> toggle.getUserData() == override)
+				.findFirst()
+				.ifPresent(documentTierGroup::selectToggle);
+		}
+	}
+}
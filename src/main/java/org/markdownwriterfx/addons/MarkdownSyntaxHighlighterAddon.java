@@ -39,5 +39,15 @@ public interface MarkdownSyntaxHighlighterAddon
 	}
 
 	List<String> getStylesheets();
+
+	/**
+	 * Highlights the given paragraph text.
+	 *
+	 * Invoked in worker threads (not in the JavaFX application thread).
+	 * Calls for one addon instance are never concurrent, but successive calls
+	 * may be in different threads. Results are cached by paragraph text,
+	 * so the result must depend only on the given text.
+	 * Addons that are too slow are disabled.
+	 */
 	void highlight(String text, Highlighter highlighter);
 }
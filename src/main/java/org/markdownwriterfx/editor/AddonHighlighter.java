@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import org.markdownwriterfx.addons.MarkdownSyntaxHighlighterAddon;
+import org.markdownwriterfx.util.Addons;
+
+/**
+ * Runs syntax highlighter addons on paragraphs.
+ *
+ * Each addon highlights each paragraph in a worker thread. Results are cached
+ * per addon by paragraph text, so while typing usually only the edited
+ * paragraph is highlighted again.
+ *
+ * The calling thread never waits for results. Only cached results are used
+ * in this pass. Results that are not yet available are cached when available
+ * and then the given callback is invoked (to highlight again).
+ * So a slow addon can not stall typing.
+ *
+ * Each call belongs to an owner (e.g. an editor). Running tasks are cancelled
+ * only if no longer needed by the latest call of any owner, and only the
+ * callback of the latest call of an owner is invoked.
+ *
+ * Each addon runs in its own worker thread (one paragraph at a time), so addons
+ * need not be thread-safe and a hanging addon does not block other addons.
+ * Addons that exceed the time budget (a single call takes longer than the
+ * maximum call time, or the average call time exceeds a tenth of it)
+ * are disabled for the rest of the session.
+ *
+ * @author Karl Tauber
+ */
+class AddonHighlighter
+{
+	static final long DEF_MAX_CALL_MILLIS = 2000;
+	private static final int MAX_CACHE_ENTRIES = 2000;
+	private static final int MIN_CALLS_FOR_AVERAGE = 10;
+
+	private static AddonHighlighter instance;
+
+	private final List<AddonState> addons = new ArrayList<>();
+	private final Executor callbackExecutor;
+
+	// latest call per owner; guarded by itself
+	private final WeakHashMap<Object, Long> latestCalls = new WeakHashMap<>();
+	private long lastCall;
+
+	static synchronized AddonHighlighter getInstance() {
+		if (instance == null)
+			instance = new AddonHighlighter(Addons.getSyntaxHighlighterAddons(), DEF_MAX_CALL_MILLIS, Platform::runLater);
+		return instance;
+	}
+
+	/**
+	 * @param maxCallMillis time budget of a single addon call; slower addons are disabled
+	 * @param callbackExecutor executes the callbacks passed to {@link #highlight(Object, List, List, Highlighter, Runnable)}
+	 */
+	AddonHighlighter(List<MarkdownSyntaxHighlighterAddon> addons, long maxCallMillis, Executor callbackExecutor) {
+		for (MarkdownSyntaxHighlighterAddon addon : addons)
+			this.addons.add(new AddonState(addon, TimeUnit.MILLISECONDS.toNanos(maxCallMillis)));
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	boolean isEmpty() {
+		return addons.isEmpty();
+	}
+
+	/**
+	 * Highlights the given paragraphs with all addons and passes the cached results
+	 * (with offsets added) to the highlighter.
+	 *
+	 * Returns false if results of some addons are not yet available.
+	 * Then the given callback (if not null) is invoked when they are available,
+	 * unless there was a newer call of the same owner in the meantime.
+	 *
+	 * @param owner owner of the call (e.g. an editor); running tasks for
+	 *              paragraphs that are no longer needed by the owner are cancelled
+	 * @param offsets offsets of the paragraphs
+	 * @param texts texts of the paragraphs
+	 */
+	boolean highlight(Object owner, List<Integer> offsets, List<String> texts,
+		MarkdownSyntaxHighlighterAddon.Highlighter highlighter, Runnable lateResultsCallback)
+	{
+		if (addons.isEmpty())
+			return true;
+
+		long call;
+		synchronized (latestCalls) {
+			call = ++lastCall;
+			latestCalls.put(owner, call);
+		}
+
+		// use cached results and start highlighting of not cached paragraphs (in parallel)
+		ArrayList<CompletableFuture<Tokens>> lateFutures = new ArrayList<>();
+		for (AddonState state : addons) {
+			HashMap<String, Tokens> cached = new HashMap<>();
+			state.submit(owner, texts, cached, lateFutures);
+
+			for (int i = 0; i < texts.size(); i++) {
+				Tokens tokens = cached.get(texts.get(i));
+				if (tokens != null)
+					tokens.replay(offsets.get(i), highlighter);
+			}
+		}
+
+		if (lateFutures.isEmpty())
+			return true;
+
+		if (lateResultsCallback != null) {
+			// cancelled tasks are no longer needed by the latest call of the owner,
+			// which has its own callback (if necessary)
+			CompletableFuture.allOf(lateFutures.toArray(CompletableFuture[]::new))
+				.whenComplete((result, ex) -> {
+					if (ex == null && isLatestCall(owner, call))
+						callbackExecutor.execute(lateResultsCallback);
+				});
+		}
+		return false;
+	}
+
+	private boolean isLatestCall(Object owner, long call) {
+		synchronized (latestCalls) {
+			Long latestCall = latestCalls.get(owner);
+			return latestCall != null && latestCall == call;
+		}
+	}
+
+	/**
+	 * Returns statistics of all addons (e.g. for diagnostics).
+	 */
+	String getStatistics() {
+		StringBuilder buf = new StringBuilder();
+		for (AddonState state : addons) {
+			if (buf.length() > 0)
+				buf.append('\n');
+			state.appendStatistics(buf);
+		}
+		return buf.toString();
+	}
+
+	//---- class AddonState ---------------------------------------------------
+
+	/**
+	 * Addon with its result cache, running tasks and statistics.
+	 */
+	private static class AddonState
+	{
+		final MarkdownSyntaxHighlighterAddon addon;
+		private final long maxCallNanos;
+
+		// access-ordered
+		private final LinkedHashMap<String, Tokens> cache = new LinkedHashMap<>(16, 0.75f, true);
+		private final HashMap<String, CompletableFuture<Tokens>> running = new HashMap<>();
+
+		// texts needed by the latest call of each owner
+		private final WeakHashMap<Object, HashSet<String>> neededTexts = new WeakHashMap<>();
+
+		private ExecutorService executor;
+		private long callStartTime;
+		private boolean disabled;
+
+		private int hitCount;
+		private int missCount;
+		private int callCount;
+		private long totalNanos;
+		private long maxNanos;
+
+		AddonState(MarkdownSyntaxHighlighterAddon addon, long maxCallNanos) {
+			this.addon = addon;
+			this.maxCallNanos = maxCallNanos;
+		}
+
+		/**
+		 * Puts cached results of the given texts into the given map.
+		 * Starts highlighting of all not cached texts and adds their futures to the given list.
+		 * Cancels running tasks for texts that are no longer needed by any owner
+		 * (e.g. outdated paragraphs).
+		 */
+		synchronized void submit(Object owner, List<String> texts,
+			HashMap<String, Tokens> cached, List<CompletableFuture<Tokens>> futures)
+		{
+			// disable addon if current call hangs
+			if (!disabled && callStartTime != 0 && System.nanoTime() - callStartTime > maxCallNanos)
+				disable("a call takes longer than " + TimeUnit.NANOSECONDS.toMillis(maxCallNanos) + " ms");
+
+			HashSet<String> needed = new HashSet<>();
+			for (String text : texts) {
+				if (cached.containsKey(text) || needed.contains(text))
+					continue;
+
+				Tokens tokens = cache.get(text);
+				if (tokens != null) {
+					hitCount++;
+					cached.put(text, tokens);
+					continue;
+				}
+
+				missCount++;
+				if (disabled)
+					continue;
+
+				needed.add(text);
+				CompletableFuture<Tokens> future = running.get(text);
+				if (future == null) {
+					future = CompletableFuture.supplyAsync(() -> run(text), getExecutor());
+					running.put(text, future);
+				}
+				futures.add(future);
+			}
+
+			if (needed.isEmpty())
+				neededTexts.remove(owner);
+			else
+				neededTexts.put(owner, needed);
+
+			// cancel tasks that are not yet started and no longer needed by any owner
+			running.entrySet().removeIf(e -> {
+				for (HashSet<String> ownerNeeded : neededTexts.values()) {
+					if (ownerNeeded.contains(e.getKey()))
+						return false;
+				}
+				e.getValue().cancel(false);
+				return true;
+			});
+		}
+
+		private Executor getExecutor() {
+			if (executor == null) {
+				executor = Executors.newSingleThreadExecutor(runnable -> {
+					Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+					thread.setName("Markdown highlighter addon " + addon.getClass().getSimpleName());
+					thread.setDaemon(true); // allow quitting app without shutting down executor
+					return thread;
+				});
+			}
+			return executor;
+		}
+
+		private Tokens run(String text) {
+			Tokens tokens = new Tokens();
+			long startTime = System.nanoTime();
+			synchronized (this) {
+				callStartTime = startTime;
+			}
+			try {
+				addon.highlight(text, tokens::add);
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+				tokens = Tokens.EMPTY;
+			}
+			long nanos = System.nanoTime() - startTime;
+
+			synchronized (this) {
+				callStartTime = 0;
+				callCount++;
+				totalNanos += nanos;
+				maxNanos = Math.max(maxNanos, nanos);
+
+				running.remove(text);
+				for (HashSet<String> ownerNeeded : neededTexts.values())
+					ownerNeeded.remove(text);
+				cache.put(text, tokens);
+				if (cache.size() > MAX_CACHE_ENTRIES)
+					cache.remove(cache.keySet().iterator().next());
+
+				// check time budget
+				if (!disabled) {
+					if (maxNanos > maxCallNanos)
+						disable("a call took " + TimeUnit.NANOSECONDS.toMillis(maxNanos) + " ms");
+					else if (callCount >= MIN_CALLS_FOR_AVERAGE && totalNanos / callCount > maxCallNanos / 10)
+						disable("average call time is " + TimeUnit.NANOSECONDS.toMillis(totalNanos / callCount) + " ms");
+				}
+			}
+			return tokens;
+		}
+
+		/**
+		 * Disables the addon and completes all running tasks with empty results,
+		 * so that callers highlight again (without this addon).
+		 * Not yet started tasks are skipped.
+		 */
+		private void disable(String reason) {
+			disabled = true;
+			System.err.println("Markdown syntax highlighter addon " + addon.getClass().getName()
+				+ " disabled because it is too slow (" + reason + ")");
+
+			neededTexts.clear();
+			for (CompletableFuture<Tokens> future : running.values())
+				future.complete(Tokens.EMPTY);
+			running.clear();
+		}
+
+		synchronized void appendStatistics(StringBuilder buf) {
+			buf.append(addon.getClass().getName()).append(": ")
+				.append(callCount).append(" calls, ")
+				.append((callCount > 0) ? TimeUnit.NANOSECONDS.toMicros(totalNanos / callCount) : 0).append(" us avg, ")
+				.append(TimeUnit.NANOSECONDS.toMicros(maxNanos)).append(" us max, ")
+				.append(hitCount).append(" hits / ")
+				.append(missCount).append(" misses");
+			if (disabled)
+				buf.append(", disabled (too slow)");
+		}
+	}
+
+	//---- class Tokens -------------------------------------------------------
+
+	/**
+	 * Styled ranges returned by an addon for a paragraph (relative to paragraph start).
+	 */
+	private static class Tokens
+	{
+		static final Tokens EMPTY = new Tokens();
+
+		private int[] ranges = new int[8];	// begin and end
+		private String[] styles = new String[4];
+		private int size;
+
+		void add(int begin, int end, String style) {
+			if (size == styles.length) {
+				ranges = Arrays.copyOf(ranges, size * 4);
+				styles = Arrays.copyOf(styles, size * 2);
+			}
+			ranges[size * 2] = begin;
+			ranges[size * 2 + 1] = end;
+			styles[size] = style;
+			size++;
+		}
+
+		void replay(int offset, MarkdownSyntaxHighlighterAddon.Highlighter highlighter) {
+			for (int i = 0; i < size; i++)
+				highlighter.highlight(offset + ranges[i * 2], offset + ranges[i * 2 + 1], styles[i]);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the markdown text of an editor.
+ *
+ * A snapshot is created once per text change and passed to all consumers
+ * (parser, syntax highlighter, find/replace and preview),
+ * which avoids that each consumer gets its own copy of the text.
+ * The spell checker uses the AST, which is parsed from the snapshot.
+ *
+ * The line start table is built lazily on first use and is shared
+ * by all consumers. Snapshots can be used in any thread.
+ *
+ * @author Karl Tauber
+ */
+public final class DocumentSnapshot
+{
+	public static final DocumentSnapshot EMPTY = new DocumentSnapshot("", 0);
+
+	private final String text;
+	private final long version;
+	private volatile int[] lineStarts;
+
+	public DocumentSnapshot(String text, long version) {
+		this.text = text;
+		this.version = version;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public int getLength() {
+		return text.length();
+	}
+
+	/**
+	 * Returns the number of lines (or paragraphs in the text area).
+	 * An empty text or a text ending with a newline has an empty last line.
+	 */
+	public int getLineCount() {
+		return getLineStarts().length;
+	}
+
+	/**
+	 * Returns the offset of the first character of the given line.
+	 */
+	public int getLineStart(int line) {
+		return getLineStarts()[line];
+	}
+
+	/**
+	 * Returns the offset of the end of the given line (excluding the newline).
+	 */
+	public int getLineEnd(int line) {
+		int[] lineStarts = getLineStarts();
+		return (line + 1 < lineStarts.length) ? lineStarts[line + 1] - 1 : text.length();
+	}
+
+	/**
+	 * Returns the index of the line that contains the given offset.
+	 * Offsets at a newline character belong to the line that is terminated by the newline.
+	 */
+	public int getLineOfOffset(int offset) {
+		int[] lineStarts = getLineStarts();
+		int index = Arrays.binarySearch(lineStarts, offset);
+		return (index >= 0) ? index : -index - 2;
+	}
+
+	private int[] getLineStarts() {
+		// racy single-check idiom: computing the table twice is harmless
+		int[] lineStarts = this.lineStarts;
+		if (lineStarts == null)
+			this.lineStarts = lineStarts = buildLineStarts(text);
+		return lineStarts;
+	}
+
+	private static int[] buildLineStarts(String text) {
+		int count = 1;
+		for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1))
+			count++;
+
+		int[] lineStarts = new int[count];
+		int line = 1;
+		for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1))
+			lineStarts[line++] = i + 1;
+		return lineStarts;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import org.markdownwriterfx.options.Options;
+
+/**
+ * Document size tiers. The larger a document is, the more features
+ * are degraded to keep the editor responsive.
+ *
+ * @author Karl Tauber
+ */
+public enum DocumentTier
+{
+	/** All features. */
+	Normal,
+
+	/**
+	 * No embedded images; preview is rendered when typing pauses;
+	 * syntax highlighting of visible text first, then of the rest in time slices.
+	 */
+	Large,
+
+	/** Additionally, syntax highlighting and spell checking only of visible text. */
+	Huge;
+
+	public boolean isEmbedImages() {
+		return this == Normal;
+	}
+
+	public boolean isPreviewDeferred() {
+		return this != Normal;
+	}
+
+	public boolean isHighlightProgressive() {
+		return this == Large;
+	}
+
+	public boolean isViewportOnly() {
+		return this == Huge;
+	}
+
+	/**
+	 * Returns the tier for the given document length using the thresholds from options.
+	 */
+	public static DocumentTier forLength(int length) {
+		return forLength(length, Options.getLargeDocumentSize(), Options.getHugeDocumentSize());
+	}
+
+	static DocumentTier forLength(int length, int largeSize, int hugeSize) {
+		// threshold values less or equal zero use defaults (e.g. if options are not loaded)
+		if (largeSize <= 0)
+			largeSize = Options.DEF_LARGE_DOCUMENT_SIZE;
+		if (hugeSize <= 0)
+			hugeSize = Options.DEF_HUGE_DOCUMENT_SIZE;
+
+		if (length >= hugeSize)
+			return Huge;
+		if (length >= largeSize)
+			return Large;
+		return Normal;
+	}
+}
@@ -30,12 +30,13 @@ package org.markdownwriterfx.editor;
 import java.lang.ref.SoftReference;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import javafx.scene.control.IndexRange;
 import javafx.scene.image.Image;
@@ -44,12 +45,12 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Polyline;
 import org.fxmisc.richtext.model.Paragraph;
 import org.fxmisc.richtext.model.ReadOnlyStyledDocument;
+import org.markdownwriterfx.util.NodeIndex;
 import org.reactfx.util.Either;
 import com.vladsch.flexmark.ast.ImageRef;
 import com.vladsch.flexmark.ast.LinkNodeBase;
 import com.vladsch.flexmark.util.ast.Node;
-import com.vladsch.flexmark.util.ast.NodeVisitor;
-import com.vladsch.flexmark.util.ast.Visitor;
+import com.vladsch.flexmark.util.misc.Pair;
 
 /**
  * @author Karl Tauber
@@ -130,39 +131,23 @@ class EmbeddedImage
 
 		// replace first character of image markup with an EmbeddedImage object
 		HashSet<EmbeddedImage> addedImages = new HashSet<>();
-		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
-			@Override
-			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
-				if (node instanceof com.vladsch.flexmark.ast.Image ||
-					node instanceof ImageRef)
-				{
-					LinkNodeBase linkNode = (node instanceof ImageRef)
-						? ((ImageRef)node).getReferenceNode(astRoot.getDocument())
-						: (com.vladsch.flexmark.ast.Image) node;
-					if (linkNode == null)
-						return; // reference not found
-
-					String url = linkNode.getUrl().toString();
-					if (url.startsWith("http:") || url.startsWith("https:"))
-						return; // do not embed external images
-
-					int start = node.getStartOffset();
-					int end = start + 1;
-
-					EmbeddedImage embeddedImage = new EmbeddedImage(basePath,
-							url, textArea.getText(start, end));
-					addedImages.add(embeddedImage);
-
-					textArea.replace(start, end, ReadOnlyStyledDocument.fromSegment(
-							Either.right(embeddedImage),
-							Collections.<String>emptyList(),
-							Collections.<String>emptyList(),
-							textArea.getSegOps()));
-				} else
-					visitChildren(node);
-			}
-		};
-		visitor.visit(astRoot);
+		for (Pair<Node, String> image : findImages(astRoot)) {
+			Node node = image.getFirst();
+			String url = image.getSecond();
+
+			int start = node.getStartOffset();
+			int end = start + 1;
+
+			EmbeddedImage embeddedImage = new EmbeddedImage(basePath,
+					url, textArea.getText(start, end));
+			addedImages.add(embeddedImage);
+
+			textArea.replace(start, end, ReadOnlyStyledDocument.fromSegment(
+					Either.right(embeddedImage),
+					Collections.<String>emptyList(),
+					Collections.<String>emptyList(),
+					textArea.getSegOps()));
+		}
 
 		// remove obsolete EmbeddedImage objects
 		removeImageSegments(textArea, image -> !addedImages.contains(image));
@@ -172,6 +157,33 @@ class EmbeddedImage
 			textArea.selectRange(selection.getStart(), selection.getEnd());
 	}
 
+	/**
+	 * Returns all local images (and their URLs) that can be embedded.
+	 */
+	static List<Pair<Node, String>> findImages(Node astRoot) {
+		ArrayList<Pair<Node, String>> images = new ArrayList<>();
+		Node parentImage = null;
+		for (Node node : NodeIndex.get(astRoot).getNodes(com.vladsch.flexmark.ast.Image.class, ImageRef.class)) {
+			// skip images nested in other images
+			if (parentImage != null && node.getEndOffset() <= parentImage.getEndOffset())
+				continue;
+			parentImage = node;
+
+			LinkNodeBase linkNode = (node instanceof ImageRef)
+				? ((ImageRef)node).getReferenceNode(astRoot.getDocument())
+				: (com.vladsch.flexmark.ast.Image) node;
+			if (linkNode == null)
+				continue; // reference not found
+
+			String url = linkNode.getUrl().toString();
+			if (url.startsWith("http:") || url.startsWith("https:"))
+				continue; // do not embed external images
+
+			images.add(Pair.of(node, url));
+		}
+		return images;
+	}
+
 	static void removeAllImageSegments(MarkdownTextArea textArea) {
 		removeImageSegments(textArea, image -> true);
 	}
@@ -126,8 +126,8 @@ class FindReplacePane
 		return activeHitIndex >= 0;
 	}
 
-	void textChanged() {
-		findAll(false);
+	void textChanged(String text) {
+		findAll(text, findField.getText(), false);
 	}
 
 	private void findAll(boolean selectActiveHit) {
@@ -496,7 +496,7 @@ class FindReplacePane
 
 		boolean oldVisible = visible.get();
 		visible.set(true);
-		textChanged();
+		textChanged(textArea.getText());
 
 		if (findSelection) {
 			String selectedText = textArea.getSelectedText();
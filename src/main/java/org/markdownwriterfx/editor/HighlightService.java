@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import javafx.application.Platform;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.AppliedStyles;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.ExtraStyledRanges;
+import org.markdownwriterfx.util.Range;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Computes syntax highlighting styles in a background thread.
+ *
+ * Styles are computed from an immutable text snapshot and its (never modified) AST.
+ * Requests submitted while the background thread is busy are coalesced
+ * so that only the latest request is computed.
+ * Results are passed to the result handler in the FX application thread,
+ * but only if they belong to the latest request and the text of the editor
+ * has not changed since (stale results are dropped).
+ *
+ * @author Karl Tauber
+ */
+class HighlightService
+{
+	// global executor used for highlighting of all editors
+	private static ExecutorService executor;
+
+	private final Consumer<MarkdownSyntaxHighlighter.Result> resultHandler;
+	private final LongSupplier documentVersion;
+	private final Executor resultExecutor;
+
+	// accessed only in FX application thread
+	private long currentRequest;
+
+	// guarded by requestLock
+	private final Object requestLock = new Object();
+	private Request pendingRequest;
+	private boolean computeScheduled;
+
+	/**
+	 * @param documentVersion returns the version of the current text of the editor
+	 */
+	HighlightService(Consumer<MarkdownSyntaxHighlighter.Result> resultHandler, LongSupplier documentVersion) {
+		this(resultHandler, documentVersion, Platform::runLater);
+	}
+
+	HighlightService(Consumer<MarkdownSyntaxHighlighter.Result> resultHandler, LongSupplier documentVersion,
+		Executor resultExecutor)
+	{
+		this.resultHandler = resultHandler;
+		this.documentVersion = documentVersion;
+		this.resultExecutor = resultExecutor;
+	}
+
+	/**
+	 * Submits a new highlighting request.
+	 * See {@link MarkdownSyntaxHighlighter#compute(DocumentSnapshot, Node, List, Range, AppliedStyles.State, Object, Runnable)}
+	 * for parameters (this service is the addon owner).
+	 */
+	void submit(DocumentSnapshot snapshot, Node astRoot, List<ExtraStyledRanges> extraStyledRanges,
+		Range viewport, AppliedStyles.State appliedStyles, Runnable addonResultsCallback)
+	{
+		Request request = new Request(++currentRequest, snapshot, astRoot,
+			extraStyledRanges, viewport, appliedStyles, addonResultsCallback);
+
+		synchronized (requestLock) {
+			// replace not yet computed request
+			pendingRequest = request;
+
+			if (computeScheduled)
+				return;
+			computeScheduled = true;
+		}
+
+		getExecutor().execute(this::computeLoop);
+	}
+
+	/**
+	 * Cancels the pending request and drops results of running computations.
+	 */
+	void cancel() {
+		currentRequest++;
+
+		synchronized (requestLock) {
+			pendingRequest = null;
+		}
+	}
+
+	private void computeLoop() {
+		for (;;) {
+			Request request;
+			synchronized (requestLock) {
+				request = pendingRequest;
+				pendingRequest = null;
+				if (request == null) {
+					computeScheduled = false;
+					return;
+				}
+			}
+
+			MarkdownSyntaxHighlighter.Result result;
+			try {
+				result = MarkdownSyntaxHighlighter.compute(request.snapshot, request.astRoot,
+					request.extraStyledRanges, request.viewport, request.appliedStyles,
+					this, request.addonResultsCallback);
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+				continue;
+			}
+
+			resultExecutor.execute(() -> apply(request.id, result));
+		}
+	}
+
+	private void apply(long requestId, MarkdownSyntaxHighlighter.Result result) {
+		// ignore results of outdated requests or texts
+		if (requestId != currentRequest || result.snapshot.getVersion() != documentVersion.getAsLong())
+			return;
+
+		resultHandler.accept(result);
+	}
+
+	private static Executor getExecutor() {
+		synchronized (HighlightService.class) {
+			if (executor == null) {
+				executor = Executors.newSingleThreadExecutor(runnable -> {
+					Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+					thread.setName("Markdown highlighter");
+					thread.setDaemon(true); // allow quitting app without shutting down executor
+					return thread;
+				});
+			}
+			return executor;
+		}
+	}
+
+	//---- class Request ------------------------------------------------------
+
+	private static class Request
+	{
+		final long id;
+		final DocumentSnapshot snapshot;
+		final Node astRoot;
+		final List<ExtraStyledRanges> extraStyledRanges;
+		final Range viewport;
+		final AppliedStyles.State appliedStyles;
+		final Runnable addonResultsCallback;
+
+		Request(long id, DocumentSnapshot snapshot, Node astRoot, List<ExtraStyledRanges> extraStyledRanges,
+			Range viewport, AppliedStyles.State appliedStyles, Runnable addonResultsCallback)
+		{
+			this.id = id;
+			this.snapshot = snapshot;
+			this.astRoot = astRoot;
+			this.extraStyledRanges = extraStyledRanges;
+			this.viewport = viewport;
+			this.appliedStyles = appliedStyles;
+			this.addonResultsCallback = addonResultsCallback;
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import com.vladsch.flexmark.ast.FencedCodeBlock;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.Paragraph;
+import com.vladsch.flexmark.ast.ThematicBreak;
+import com.vladsch.flexmark.ext.tables.TableBlock;
+import com.vladsch.flexmark.ext.yaml.front.matter.YamlFrontMatterBlock;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.NodeRepository;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
+
+/**
+ * Incremental markdown parser.
+ *
+ * Re-parses only the top-level blocks that are affected by a text change.
+ * The re-parsed window is widened until it is surrounded by "stable" block
+ * boundaries (a closed block followed by a blank line), so that the window
+ * can be parsed independently from the rest of the document.
+ * Unchanged blocks of the previous AST are copied (with shifted offsets)
+ * into the new AST. The previous AST is never modified.
+ *
+ * Falls back to a full parse if the change can not be handled incrementally
+ * (e.g. if the document contains reference, abbreviation or footnote definitions,
+ * which affect the whole document).
+ * The result is always identical to the AST created by a full parse.
+ *
+ * @author Karl Tauber
+ */
+class IncrementalParser
+{
+	private final Parser parser;
+
+	// last parsed text and AST
+	private String text;
+	private Document document;
+	private boolean hasDefinitions;
+	private boolean lastParseIncremental;
+
+	IncrementalParser(Parser parser) {
+		this.parser = parser;
+	}
+
+	Parser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Parses the whole text.
+	 */
+	Document parse(String newText) {
+		return parseFull(newText);
+	}
+
+	/**
+	 * Parses the given text, which is the result of replacing 'removed' characters
+	 * at 'position' of the previously parsed text with 'inserted' characters.
+	 */
+	Document parse(String newText, int position, int removed, int inserted) {
+		Document newDocument = null;
+		if (document != null &&
+			!hasDefinitions &&
+			position >= 0 &&
+			position + removed <= text.length() &&
+			text.length() - removed + inserted == newText.length())
+		{
+			try {
+				newDocument = parseIncremental(newText, position, removed, inserted);
+			} catch (UnsupportedOperationException ex) {
+				// node can not be copied --> use full parse
+			}
+		}
+
+		if (newDocument == null)
+			return parseFull(newText);
+
+		text = newText;
+		document = newDocument;
+		lastParseIncremental = true;
+		return newDocument;
+	}
+
+	/**
+	 * Uses the given (fully parsed) AST of the given text as previous AST
+	 * for following incremental parses. The AST is not modified.
+	 */
+	void setDocument(String text, Document document) {
+		this.text = text;
+		this.document = document;
+		hasDefinitions = hasDefinitions(document);
+		lastParseIncremental = false;
+	}
+
+	boolean isLastParseIncremental() {
+		return lastParseIncremental;
+	}
+
+	private Document parseFull(String newText) {
+		text = newText;
+		document = parser.parse(newText);
+		hasDefinitions = hasDefinitions(document);
+		lastParseIncremental = false;
+		return document;
+	}
+
+	private Document parseIncremental(String newText, int position, int removed, int inserted) {
+		// collect top-level blocks of previous AST
+		ArrayList<Node> blocks = new ArrayList<>();
+		for (Node block = document.getFirstChild(); block != null; block = block.getNext())
+			blocks.add(block);
+		int blockCount = blocks.size();
+		if (blockCount == 0)
+			return null;
+
+		int changeEnd = position + removed;
+		int delta = inserted - removed;
+
+		// find first and last block affected by the change
+		int first = 0;
+		while (first < blockCount && blocks.get(first).getEndOffset() < position)
+			first++;
+		int last = blockCount - 1;
+		while (last > 0 && lineStart(text, blocks.get(last).getStartOffset()) > changeEnd)
+			last--;
+
+		// widen to stable block boundaries
+		// (always include the block before and after the change because changing
+		// the blank line between two blocks may merge them)
+		int startIndex = Math.min(first, blockCount) - 1;
+		while (startIndex > 0 && !isStableBoundary(text, blocks.get(startIndex - 1), blocks.get(startIndex)))
+			startIndex--;
+		int endIndex = last + 1;
+		while (endIndex < blockCount - 1 && !isStableBoundary(text, blocks.get(endIndex), blocks.get(endIndex + 1)))
+			endIndex++;
+
+		int windowStart = (startIndex > 0) ? lineStart(text, blocks.get(startIndex).getStartOffset()) : 0;
+		int oldWindowEnd = (endIndex < blockCount - 1) ? lineStart(text, blocks.get(endIndex + 1).getStartOffset()) : text.length();
+		if (windowStart > position || oldWindowEnd < changeEnd)
+			return null;
+		int windowEnd = oldWindowEnd + delta;
+
+		// parse window
+		BasedSequence newBase = BasedSequence.of(newText);
+		Document newDocument = parser.parse(newBase.subSequence(windowStart, windowEnd));
+		if (hasDefinitions(newDocument))
+			return null;
+
+		// check whether re-parsed blocks still end at a stable boundary
+		Node firstNewBlock = newDocument.getFirstChild();
+		Node lastNewBlock = newDocument.getLastChild();
+		if (windowStart > 0 && firstNewBlock instanceof YamlFrontMatterBlock)
+			return null; // front matter is only allowed at beginning of document
+		if (windowEnd < newText.length() && lastNewBlock != null &&
+			(!isClosedBlock(lastNewBlock) || lastNewBlock.getEndOffset() > blankLineStart(newText, windowEnd)))
+		  return null;
+
+		// copy unchanged blocks
+		NodeCopier copier = new NodeCopier(newBase);
+		for (int i = startIndex - 1; i >= 0; i--)
+			newDocument.prependChild(copier.copy(blocks.get(i), 0));
+		for (int i = endIndex + 1; i < blockCount; i++)
+			newDocument.appendChild(copier.copy(blocks.get(i), delta));
+
+		newDocument.setChars(newBase);
+		return newDocument;
+	}
+
+	/**
+	 * Returns whether the document contains reference, abbreviation or footnote
+	 * definitions, which may affect the parsing of the whole document.
+	 */
+	private static boolean hasDefinitions(Document document) {
+		for (Object value : document.getAll().values()) {
+			if (value instanceof NodeRepository && !((NodeRepository<?>)value).isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the given adjacent blocks are independent from each other.
+	 * This is the case if the first block can not be continued by following lines
+	 * and if there is a blank line between the two blocks.
+	 */
+	private static boolean isStableBoundary(String text, Node block, Node nextBlock) {
+		if (!isClosedBlock(block))
+			return false;
+
+		int nextLineStart = lineStart(text, nextBlock.getStartOffset());
+		return nextLineStart > 0 && block.getEndOffset() <= blankLineStart(text, nextLineStart);
+	}
+
+	private static boolean isClosedBlock(Node block) {
+		return block instanceof Paragraph ||
+			block instanceof Heading ||
+			block instanceof ThematicBreak ||
+			block instanceof TableBlock ||
+			block instanceof YamlFrontMatterBlock ||
+			(block instanceof FencedCodeBlock && !((FencedCodeBlock)block).getClosingMarker().isEmpty());
+	}
+
+	/**
+	 * Returns the start offset of the line that contains the given offset.
+	 */
+	private static int lineStart(String text, int offset) {
+		int i = offset;
+		while (i > 0 && text.charAt(i - 1) != '\n')
+			i--;
+		return i;
+	}
+
+	/**
+	 * Returns the start offset of the blank line before the given line start offset,
+	 * or -1 if the previous line is not blank.
+	 */
+	private static int blankLineStart(String text, int lineStart) {
+		if (lineStart == 0 || text.charAt(lineStart - 1) != '\n')
+			return -1;
+
+		int i = lineStart - 1;
+		while (i > 0) {
+			char ch = text.charAt(i - 1);
+			if (ch == '\n')
+				return i;
+			if (ch != ' ' && ch != '\t' && ch != '\r')
+				return -1;
+			i--;
+		}
+		return 0;
+	}
+
+	//---- class NodeCopier ---------------------------------------------------
+
+	/**
+	 * Creates deep copies of nodes and moves all their sequences to a new base sequence.
+	 */
+	private static class NodeCopier
+	{
+		private static final HashMap<Class<?>, NodeClassInfo> classInfos = new HashMap<>();
+
+		private final BasedSequence newBase;
+
+		NodeCopier(BasedSequence newBase) {
+			this.newBase = newBase;
+		}
+
+		Node copy(Node node, int delta) {
+			NodeClassInfo classInfo = getClassInfo(node.getClass());
+			try {
+				Node copy = classInfo.constructor.newInstance(classInfo.constructorArgs);
+				for (Field field : classInfo.sequenceFields)
+					field.set(copy, rebase((BasedSequence) field.get(node), delta));
+				for (Field field : classInfo.sequenceListFields) {
+					@SuppressWarnings("unchecked")
+					List<BasedSequence> sequences = (List<BasedSequence>) field.get(node);
+					ArrayList<BasedSequence> newSequences = new ArrayList<>(sequences.size());
+					for (BasedSequence sequence : sequences)
+						newSequences.add(rebase(sequence, delta));
+					field.set(copy, newSequences);
+				}
+				for (Field field : classInfo.otherFields)
+					field.set(copy, field.get(node));
+
+				for (Node child = node.getFirstChild(); child != null; child = child.getNext())
+					copy.appendChild(copy(child, delta));
+				return copy;
+			} catch (ReflectiveOperationException ex) {
+				throw new UnsupportedOperationException(ex);
+			}
+		}
+
+		private BasedSequence rebase(BasedSequence sequence, int delta) {
+			if (sequence == null || sequence.isNull())
+				return sequence;
+
+			int start = sequence.getStartOffset();
+			int end = sequence.getEndOffset();
+			if (sequence.length() != end - start)
+				throw new UnsupportedOperationException(); // not a contiguous sequence
+
+			return newBase.subSequence(start + delta, end + delta);
+		}
+
+		private static NodeClassInfo getClassInfo(Class<?> cls) {
+			synchronized (classInfos) {
+				NodeClassInfo classInfo = classInfos.get(cls);
+				if (classInfo == null) {
+					classInfo = new NodeClassInfo(cls);
+					classInfos.put(cls, classInfo);
+				}
+				if (classInfo.constructor == null)
+					throw new UnsupportedOperationException(cls.getName());
+				return classInfo;
+			}
+		}
+	}
+
+	//---- class NodeClassInfo ------------------------------------------------
+
+	private static class NodeClassInfo
+	{
+		Constructor<? extends Node> constructor;
+		Object[] constructorArgs;
+		final ArrayList<Field> sequenceFields = new ArrayList<>();
+		final ArrayList<Field> sequenceListFields = new ArrayList<>();
+		final ArrayList<Field> otherFields = new ArrayList<>();
+
+		@SuppressWarnings("unchecked")
+		NodeClassInfo(Class<?> cls) {
+			try {
+				// use constructor with fewest parameters (all fields are copied anyway)
+				for (Constructor<?> c : cls.getDeclaredConstructors()) {
+					if (constructor == null || c.getParameterCount() < constructor.getParameterCount())
+						constructor = (Constructor<? extends Node>) c;
+				}
+				Class<?>[] parameterTypes = constructor.getParameterTypes();
+				constructorArgs = new Object[parameterTypes.length];
+				for (int i = 0; i < parameterTypes.length; i++)
+					constructorArgs[i] = defaultValue(parameterTypes[i]);
+				constructor.setAccessible(true);
+				constructor.newInstance(constructorArgs);
+
+				for (Class<?> c = cls; c != Object.class; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (Modifier.isStatic(field.getModifiers()))
+							continue;
+
+						Class<?> type = field.getType();
+						if (c == Node.class && type == Node.class)
+							continue; // parent, children and siblings are set when adding to new parent
+
+						field.setAccessible(true);
+						if (type == BasedSequence.class)
+							sequenceFields.add(field);
+						else if (type == List.class && c.getSimpleName().equals("ContentNode"))
+							sequenceListFields.add(field);
+						else if (Node.class.isAssignableFrom(type) || !isImmutableType(type))
+							throw new UnsupportedOperationException(field.toString());
+						else
+							otherFields.add(field);
+					}
+				}
+			} catch (ReflectiveOperationException | RuntimeException ex) {
+				// node class can not be copied
+				constructor = null;
+			}
+		}
+
+		private static Object defaultValue(Class<?> type) {
+			if (type == boolean.class)
+				return false;
+			if (type == int.class)
+				return 0;
+			if (type == BasedSequence.class)
+				return BasedSequence.NULL;
+			if (type == List.class)
+				return new ArrayList<>();
+			if (type.isPrimitive())
+				throw new UnsupportedOperationException(type.getName());
+			return null;
+		}
+
+		private static boolean isImmutableType(Class<?> type) {
+			return type.isPrimitive() ||
+				type.isEnum() ||
+				type == String.class ||
+				type == int[].class; // Paragraph.lineIndents is never modified after parsing
+		}
+	}
+}
@@ -66,14 +66,17 @@ import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.Caret.CaretVisibility;
 import org.fxmisc.richtext.CaretNode;
 import org.fxmisc.richtext.CharacterHit;
+import org.fxmisc.richtext.model.PlainTextChange;
 import org.fxmisc.undo.UndoManager;
 import org.fxmisc.wellbehaved.event.Nodes;
 import org.markdownwriterfx.controls.BottomSlidePane;
 import org.markdownwriterfx.editor.FindReplacePane.HitsChangeListener;
 import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.ExtraStyledRanges;
-import org.markdownwriterfx.options.MarkdownExtensions;
 import org.markdownwriterfx.options.Options;
 import org.markdownwriterfx.spellchecker.SpellChecker;
+import org.markdownwriterfx.util.Addons;
+import org.markdownwriterfx.util.MarkdownProcessors;
+import org.markdownwriterfx.util.Range;
 
 /**
  * Markdown editor pane.
@@ -95,7 +98,13 @@ public class MarkdownEditorPane
 
 	private final FindReplacePane findReplacePane;
 	private final HitsChangeListener findHitsChangeListener;
-	private Parser parser;
+	private final ParseService parseService;
+	private ParseService.Change textChange;
+	private DocumentSnapshot documentSnapshot = DocumentSnapshot.EMPTY;
+	private final UpdateScheduler updateScheduler = new UpdateScheduler();
+	private final ProgressiveHighlighter progressiveHighlighter;
+	private final HighlightService highlightService;
+	private boolean imagesEmbedded;
 	private final SpellChecker spellChecker;
 	private final InvalidationListener optionsListener;
 	private String lineSeparator = getLineSeparatorOrDefault();
@@ -107,12 +116,31 @@ public class MarkdownEditorPane
 		textArea.getStyleClass().add("markdown-editor");
 		textArea.getStylesheets().add("org/markdownwriterfx/editor/MarkdownEditor.css");
 		textArea.getStylesheets().add("org/markdownwriterfx/prism.css");
-
+		textArea.getStylesheets().addAll(Addons.getSyntaxHighlighterStylesheets());
+		progressiveHighlighter = new ProgressiveHighlighter(textArea, updateScheduler);
+		highlightService = new HighlightService(this::highlightComputed, () -> documentSnapshot.getVersion());
+
+		// remember changed text range for incremental parsing
+		// (plain text changes are fired before text property changes)
+		parseService = new ParseService(this::markdownParsed);
+		textArea.plainTextChanges().subscribe(this::plainTextChanged);
 		textArea.textProperty().addListener((observable, oldText, newText) -> {
 			textChanged(newText);
 			hideContextMenu();
 		});
 
+		// document tier
+		documentTierOverride.addListener((observable, oldTier, newTier) -> updateDocumentTier());
+		documentTier.addListener((observable, oldTier, newTier) -> documentTierChanged());
+		viewport.addListener((observable, oldViewport, newViewport) -> {
+			updateScheduler.schedule(UpdateScheduler.Stage.Highlight, this::updateEditor);
+		});
+		textArea.scrollY.addListener((observable, oldValue, newValue) -> {
+			updateViewport();
+			if (progressiveHighlighter.isPending())
+				progressiveHighlighter.visibleChanged(getVisibleRange());
+		});
+
 		textArea.addEventHandler(ContextMenuEvent.CONTEXT_MENU_REQUESTED, this::showContextMenu);
 		textArea.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> hideContextMenu());
 		textArea.focusedProperty().addListener(e -> hideContextMenu());
@@ -144,6 +172,7 @@ public class MarkdownEditorPane
 		updateShowWhitespace();
 
 		// initialize properties
+		markdownSnapshot.set(DocumentSnapshot.EMPTY);
 		markdownText.set("");
 		markdownAST.set(parseMarkdown(""));
 
@@ -151,7 +180,7 @@ public class MarkdownEditorPane
 
 		// find/replace
 		findReplacePane = new FindReplacePane(textArea);
-		findHitsChangeListener = this::findHitsChanged;
+		findHitsChangeListener = this::rehighlight;
 		findReplacePane.addListener(findHitsChangeListener);
 		findReplacePane.visibleProperty().addListener((ov, oldVisible, newVisible) -> {
 			if (!newVisible)
@@ -173,9 +202,10 @@ public class MarkdownEditorPane
 				updateShowImagesEmbedded();
 			else if (e == Options.markdownRendererProperty() || e == Options.markdownExtensionsProperty()) {
 				// re-process markdown if markdown extensions option changes
-				parser = null;
+				textChange = null;
 				textChanged(textArea.getText());
-			}
+			} else if (e == Options.largeDocumentSizeProperty() || e == Options.hugeDocumentSizeProperty())
+				updateDocumentTier();
 		};
 		WeakInvalidationListener weakOptionsListener = new WeakInvalidationListener(optionsListener);
 		Options.fontFamilyProperty().addListener(weakOptionsListener);
@@ -185,6 +215,8 @@ public class MarkdownEditorPane
 		Options.showLineNoProperty().addListener(weakOptionsListener);
 		Options.showWhitespaceProperty().addListener(weakOptionsListener);
 		Options.showImagesEmbeddedProperty().addListener(weakOptionsListener);
+		Options.largeDocumentSizeProperty().addListener(weakOptionsListener);
+		Options.hugeDocumentSizeProperty().addListener(weakOptionsListener);
 
 		// workaround a problem with wrong selection after undo:
 		//   after undo the selection is 0-0, anchor is 0, but caret position is correct
@@ -229,6 +261,10 @@ public class MarkdownEditorPane
 		return smartEdit;
 	}
 
+	public UpdateScheduler getUpdateScheduler() {
+		return updateScheduler;
+	}
+
 	public void requestFocus() {
 		Platform.runLater(() -> {
 			if (textArea.getScene() != null)
@@ -265,6 +301,8 @@ public class MarkdownEditorPane
 
 	// 'markdown' property
 	public String getMarkdown() {
+		// used only when saving; the text is memoized by the text area
+		// and copied only if the line separator needs to be converted
 		String markdown = textArea.getText();
 		if (!lineSeparator.equals("\n"))
 			markdown = markdown.replace("\n", lineSeparator);
@@ -287,6 +325,26 @@ public class MarkdownEditorPane
 	}
 	public ObservableValue<String> markdownProperty() { return textArea.textProperty(); }
 
+	/**
+	 * Returns statistics of the syntax highlighter addons (e.g. for diagnostics).
+	 * Empty if there are no addons.
+	 */
+	public static String getHighlighterAddonStatistics() {
+		return AddonHighlighter.getInstance().getStatistics();
+	}
+
+	/**
+	 * Returns the snapshot of the current text of the editor.
+	 */
+	public DocumentSnapshot getDocumentSnapshot() {
+		return documentSnapshot;
+	}
+
+	// 'markdownSnapshot' property (snapshot of text parsed to markdownAST)
+	private final ReadOnlyObjectWrapper<DocumentSnapshot> markdownSnapshot = new ReadOnlyObjectWrapper<>();
+	public DocumentSnapshot getMarkdownSnapshot() { return markdownSnapshot.get(); }
+	public ReadOnlyObjectProperty<DocumentSnapshot> markdownSnapshotProperty() { return markdownSnapshot.getReadOnlyProperty(); }
+
 	// 'markdownText' property
 	private final ReadOnlyStringWrapper markdownText = new ReadOnlyStringWrapper();
 	public String getMarkdownText() { return markdownText.get(); }
@@ -300,6 +358,24 @@ public class MarkdownEditorPane
 	// 'selection' property
 	public ObservableValue<IndexRange> selectionProperty() { return textArea.selectionProperty(); }
 
+	// 'documentTier' property
+	private final ReadOnlyObjectWrapper<DocumentTier> documentTier = new ReadOnlyObjectWrapper<>(DocumentTier.Normal);
+	public DocumentTier getDocumentTier() { return documentTier.get(); }
+	public ReadOnlyObjectProperty<DocumentTier> documentTierProperty() { return documentTier.getReadOnlyProperty(); }
+
+	// 'documentTierOverride' property (null means that tier depends on document size)
+	private final ObjectProperty<DocumentTier> documentTierOverride = new SimpleObjectProperty<>();
+	public DocumentTier getDocumentTierOverride() { return documentTierOverride.get(); }
+	public void setDocumentTierOverride(DocumentTier documentTierOverride) { this.documentTierOverride.set(documentTierOverride); }
+	public ObjectProperty<DocumentTier> documentTierOverrideProperty() { return documentTierOverride; }
+
+	// 'viewport' property
+	// (range of paragraphs that are highlighted and spell checked if document tier is viewport-only;
+	//  includes some paragraphs above and below the visible paragraphs; null if not viewport-only)
+	private final ReadOnlyObjectWrapper<IndexRange> viewport = new ReadOnlyObjectWrapper<>();
+	public IndexRange getViewport() { return viewport.get(); }
+	public ReadOnlyObjectProperty<IndexRange> viewportProperty() { return viewport.getReadOnlyProperty(); }
+
 	// 'scrollY' property
 	public double getScrollY() { return textArea.scrollY.getValue(); }
 	public ObservableValue<Double> scrollYProperty() { return textArea.scrollY; }
@@ -324,35 +400,194 @@ public class MarkdownEditorPane
 	private void textChanged(String newText) {
 		if (borderPane.getBottom() != null) {
 			findReplacePane.removeListener(findHitsChangeListener);
-			findReplacePane.textChanged();
+			findReplacePane.textChanged(newText);
 			findReplacePane.addListener(findHitsChangeListener);
 		}
 
-		if (isReadOnly())
+		if (isReadOnly()) {
 			newText = "";
+			textChange = null;
+		}
 
-		Node astRoot = parseMarkdown(newText);
+		// single immutable snapshot of the text, which is passed to all consumers
+		documentSnapshot = new DocumentSnapshot(newText, documentSnapshot.getVersion() + 1);
 
-		if (Options.isShowImagesEmbedded())
-			EmbeddedImage.replaceImageSegments(textArea, astRoot, getParentPath());
+		updateScheduler.textChanged();
+		updateDocumentTier();
+
+		// highlighting requests belong to the previous text
+		highlightService.cancel();
+
+		// parse in background thread
+		parseService.submit(getParser(), documentSnapshot, textChange);
+		textChange = null;
+	}
+
+	private void markdownParsed(ParseService.Result result) {
+		updateScheduler.addCost(UpdateScheduler.Stage.Parse, result.parseNanos);
+
+		markdownSnapshot.set(result.snapshot);
+		markdownText.set(result.text);
+		markdownAST.set(result.astRoot);
+
+		// embedding images and highlighting may be delayed for large documents
+		updateScheduler.schedule(UpdateScheduler.Stage.Highlight, this::updateEditor);
+	}
+
+	private void updateEditor() {
+		// invoked again when markdown AST changes
+		if (!isMarkdownASTCurrent())
+			return;
+
+		Node astRoot = markdownAST.get();
+		if (Options.isShowImagesEmbedded() && getDocumentTier().isEmbedImages()) {
+			updateScheduler.run(UpdateScheduler.Stage.EmbedImages, () -> {
+				EmbeddedImage.replaceImageSegments(textArea, astRoot, getParentPath());
+			});
+			imagesEmbedded = true;
+		}
 
 		applyHighlighting(astRoot);
+	}
 
-		markdownText.set(newText);
-		markdownAST.set(astRoot);
+	private void updateDocumentTier() {
+		DocumentTier tier = documentTierOverride.get();
+		if (tier == null)
+			tier = DocumentTier.forLength(textArea.getLength());
+		documentTier.set(tier);
 	}
 
-	private void findHitsChanged() {
-		applyHighlighting(markdownAST.get());
+	private void documentTierChanged() {
+		DocumentTier tier = getDocumentTier();
+		updateScheduler.setWaitForPause(UpdateScheduler.Stage.Preview, tier.isPreviewDeferred());
+
+		// remove embedded images later (text must not be changed in text change listener)
+		if (!tier.isEmbedImages() && imagesEmbedded) {
+			Platform.runLater(() -> {
+				if (imagesEmbedded && !getDocumentTier().isEmbedImages()) {
+					imagesEmbedded = false;
+					EmbeddedImage.removeAllImageSegments(textArea);
+				}
+			});
+		}
+
+		updateViewport();
+
+		// highlight again (whole text if no longer viewport-only)
+		updateScheduler.schedule(UpdateScheduler.Stage.Highlight, this::updateEditor);
 	}
 
-	Node parseMarkdown(String text) {
-		if (parser == null) {
-			parser = Parser.builder()
-				.extensions(MarkdownExtensions.getFlexmarkExtensions(Options.getMarkdownRenderer()))
-				.build();
+	private static final int VIEWPORT_MARGIN = 200;
+
+	/**
+	 * Returns the text range of the visible paragraphs.
+	 */
+	public Range getVisibleRange() {
+		IndexRange paragraphs = getVisibleParagraphs();
+		int start = textArea.getAbsolutePosition(paragraphs.getStart(), 0);
+		int end = (paragraphs.getEnd() < textArea.getParagraphs().size())
+			? textArea.getAbsolutePosition(paragraphs.getEnd(), 0)
+			: textArea.getLength();
+		return new Range(start, end);
+	}
+
+	/**
+	 * Returns the range of visible paragraphs.
+	 */
+	private IndexRange getVisibleParagraphs() {
+		int first;
+		int last;
+		try {
+			first = textArea.firstVisibleParToAllParIndex();
+			last = textArea.lastVisibleParToAllParIndex();
+		} catch (RuntimeException ex) {
+			// no visible paragraphs (e.g. not yet laid out)
+			first = last = textArea.getCurrentParagraph();
+		}
+		return new IndexRange(first, last + 1);
+	}
+
+	private void updateViewport() {
+		if (!getDocumentTier().isViewportOnly()) {
+			viewport.set(null);
+			return;
 		}
-		return parser.parse(text);
+
+		int paragraphCount = textArea.getParagraphs().size();
+		IndexRange visibleParagraphs = getVisibleParagraphs();
+		int first = visibleParagraphs.getStart();
+		int last = visibleParagraphs.getEnd() - 1;
+
+		// check whether visible paragraphs are still within viewport
+		IndexRange oldViewport = viewport.get();
+		if (oldViewport != null &&
+			first >= oldViewport.getStart() && last < oldViewport.getEnd() &&
+			oldViewport.getEnd() <= paragraphCount)
+		{
+			return;
+		}
+
+		viewport.set(new IndexRange(Math.max(first - VIEWPORT_MARGIN, 0),
+			Math.min(last + 1 + VIEWPORT_MARGIN, paragraphCount)));
+	}
+
+	/**
+	 * Returns the text range of the viewport paragraphs,
+	 * or {@code null} if the whole text should be processed.
+	 */
+	public Range getViewportRange() {
+		IndexRange paragraphs = viewport.get();
+		if (paragraphs == null)
+			return null;
+
+		int paragraphCount = textArea.getParagraphs().size();
+		int startParagraph = Math.min(paragraphs.getStart(), paragraphCount - 1);
+		int endParagraph = Math.min(paragraphs.getEnd(), paragraphCount);
+		int start = textArea.getAbsolutePosition(startParagraph, 0);
+		int end = (endParagraph < paragraphCount)
+			? textArea.getAbsolutePosition(endParagraph, 0)
+			: textArea.getLength();
+		return new Range(start, end);
+	}
+
+	/**
+	 * Returns the markdown AST of the current text.
+	 * Unlike {@link #getMarkdownAST()}, which may return the AST of a previous text
+	 * while the background parser is busy, this method waits for or does pending parsing.
+	 */
+	public Node getCurrentMarkdownAST() {
+		parseService.flush();
+		return markdownAST.get();
+	}
+
+	/**
+	 * Returns whether the markdown AST ({@link #getMarkdownAST()}) matches the current text.
+	 */
+	public boolean isMarkdownASTCurrent() {
+		return parseService.isCurrent();
+	}
+
+	private void rehighlight() {
+		// if markdown AST is not current, highlighting is applied after parsing
+		if (isMarkdownASTCurrent())
+			applyHighlighting(markdownAST.get());
+	}
+
+	Node parseMarkdown(String text) {
+		return getParser().parse(text);
+	}
+
+	private Parser getParser() {
+		return MarkdownProcessors.getFlexmarkParser(Options.getMarkdownRenderer());
+	}
+
+	private void plainTextChanged(PlainTextChange change) {
+		int position = change.getPosition();
+		ParseService.Change c = new ParseService.Change(position,
+			change.getRemovalEnd() - position, change.getInsertionEnd() - position);
+		textChange = (textChange != null) ? textChange.merge(c) : c;
+
+		progressiveHighlighter.textChanged(change);
 	}
 
 	private void applyHighlighting(Node astRoot) {
@@ -362,7 +597,24 @@ public class MarkdownEditorPane
 				new ExtraStyledRanges("hit-active", Arrays.asList(findReplacePane.getActiveHit())))
 			: null;
 
-		MarkdownSyntaxHighlighter.highlight(textArea, astRoot, extraStyledRanges);
+		// compute styles in background thread
+		// (whole text, except if viewport-only; applied in highlightComputed())
+		if (!getDocumentTier().isHighlightProgressive())
+			progressiveHighlighter.cancel();
+		highlightService.submit(markdownSnapshot.get(), astRoot, extraStyledRanges, getViewportRange(),
+			MarkdownSyntaxHighlighter.getAppliedStyles(textArea), this::rehighlight);
+	}
+
+	private void highlightComputed(MarkdownSyntaxHighlighter.Result result) {
+		updateScheduler.run(UpdateScheduler.Stage.Highlight, () -> {
+			if (getDocumentTier().isHighlightProgressive() && result.viewport == null) {
+				// changes of visible text first, rest later
+				progressiveHighlighter.apply(result, getVisibleRange());
+			} else {
+				progressiveHighlighter.cancel();
+				MarkdownSyntaxHighlighter.apply(textArea, result);
+			}
+		});
 	}
 
 	private void increaseFontSize(KeyEvent e) {
@@ -408,10 +660,13 @@ public class MarkdownEditorPane
 	}
 
 	private void updateShowImagesEmbedded() {
-		if (Options.isShowImagesEmbedded())
-			EmbeddedImage.replaceImageSegments(textArea, getMarkdownAST(), getParentPath());
-		else
+		if (Options.isShowImagesEmbedded() && getDocumentTier().isEmbedImages()) {
+			EmbeddedImage.replaceImageSegments(textArea, getCurrentMarkdownAST(), getParentPath());
+			imagesEmbedded = true;
+		} else if (imagesEmbedded) {
 			EmbeddedImage.removeAllImageSegments(textArea);
+			imagesEmbedded = false;
+		}
 	}
 
 	public void undo() {
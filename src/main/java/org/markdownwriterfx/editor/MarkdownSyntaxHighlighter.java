@@ -27,13 +27,11 @@
 
 package org.markdownwriterfx.editor;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.ServiceLoader;
 import java.util.function.BiConsumer;
 import javafx.application.Platform;
 import com.vladsch.flexmark.ast.*;
@@ -53,12 +51,11 @@ import com.vladsch.flexmark.util.ast.NodeVisitor;
 import com.vladsch.flexmark.util.ast.VisitHandler;
 import com.vladsch.flexmark.util.ast.Visitor;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
-import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
-import org.fxmisc.richtext.model.TwoDimensional.Bias;
-import org.markdownwriterfx.addons.MarkdownSyntaxHighlighterAddon;
 import org.markdownwriterfx.syntaxhighlighter.SyntaxHighlighter;
-import org.markdownwriterfx.util.Addons;
+import org.markdownwriterfx.syntaxhighlighter.TokenCache;
+import org.markdownwriterfx.util.MarkdownCache;
 import org.markdownwriterfx.util.Range;
 
 /**
@@ -115,38 +112,9 @@ class MarkdownSyntaxHighlighter
 		html,
 		reference,
 		abbrdef,
-		abbr,
-
-		_c1, _c2, _c3, _c4, _c5, _c6, _c7, _c8, _c9, _c10,
-		_c11, _c12, _c13, _c14, _c15, _c16, _c17, _c18, _c19, _c20;
-
-		private static final HashMap<String, StyleClass> customMap = new HashMap<>();
-		private static int nextCustom = 1;
-		private String cssClass;
-		private String cssClass2;
-
-		static StyleClass custom(String cssClass) {
-			return custom(cssClass, null);
-		}
-
-		static StyleClass custom(String cssClass, String cssClass2) {
-			StyleClass styleClass = customMap.get(cssClass);
-			if (styleClass != null)
-				return styleClass;
-
-			styleClass = StyleClass.valueOf("_c" + nextCustom++);
-			styleClass.cssClass = cssClass;
-			styleClass.cssClass2 = cssClass2;
-			customMap.put(cssClass, styleClass);
-			return styleClass;
-		}
-
-		String cssClass() {
-			return (cssClass != null) ? cssClass : name();
-		}
+		abbr
 	}
 
-	private static final HashMap<Long, Collection<String>> styleClassesCache = new HashMap<>();
 	private static final HashMap<Class<? extends Node>, StyleClass> node2style = new HashMap<>();
 	private static final HashMap<Class<? extends Node>, StyleClass> node2lineStyle = new HashMap<>();
 
@@ -191,29 +159,223 @@ class MarkdownSyntaxHighlighter
 		node2style.put(Abbreviation.class, StyleClass.abbr);
 	}
 
-	private static final ServiceLoader<MarkdownSyntaxHighlighterAddon> addons
-		= ServiceLoader.load( MarkdownSyntaxHighlighterAddon.class, Addons.getAddonsClassLoader() );
+	private final DocumentSnapshot snapshot;
+	private StyleRanges.Builder styleRanges;
+	private StyleRanges.Builder lineStyleRanges;
+	private final ArrayList<Integer> addonParagraphOffsets = new ArrayList<>();
+	private final ArrayList<String> addonParagraphTexts = new ArrayList<>();
+	private Object addonOwner;
+	private Runnable addonResultsCallback;
+	private boolean addonsComplete;
+
+	// style classes of style bits that include extra styled ranges
+	private final HashMap<Long, Collection<String>> extraStyleClassesCache = new HashMap<>();
+
+	/**
+	 * Computes the styles of the whole text, or only of the given viewport range (if not null).
+	 * Does not access the text area and can be invoked in any thread.
+	 * The given AST must not be modified while computing.
+	 *
+	 * If highlighter addons do not yet have results, their results are not
+	 * highlighted and the given callback (if not null) is invoked when they are available.
+	 * The addon owner (e.g. the editor) identifies the latest request of the caller
+	 * (see {@link AddonHighlighter}).
+	 *
+	 * Changes of the whole text are computed against the given applied styles
+	 * (see {@link #getAppliedStyles(MarkdownTextArea)}), so that
+	 * {@link #apply(MarkdownTextArea, Result)} needs to set only the changed styles.
+	 */
+	static Result compute(DocumentSnapshot snapshot, Node astRoot, List<ExtraStyledRanges> extraStyledRanges,
+		Range viewport, AppliedStyles.State appliedStyles, Object addonOwner, Runnable addonResultsCallback)
+	{
+		MarkdownSyntaxHighlighter highlighter = new MarkdownSyntaxHighlighter(snapshot);
+		highlighter.addonOwner = addonOwner;
+		highlighter.addonResultsCallback = addonResultsCallback;
+		return highlighter.compute(astRoot, extraStyledRanges, viewport, appliedStyles);
+	}
+
+	/**
+	 * Returns the styles that are currently applied to the given text area.
+	 * Must be invoked in the FX application thread.
+	 */
+	static AppliedStyles.State getAppliedStyles(MarkdownTextArea textArea) {
+		if (textArea.appliedStyles == null)
+			textArea.appliedStyles = new AppliedStyles(textArea);
+		return textArea.appliedStyles.state;
+	}
+
+	/**
+	 * Applies computed styles to the given text area.
+	 * Must be invoked in the FX application thread.
+	 * The text of the text area must be the text of the result snapshot.
+	 */
+	static void apply(MarkdownTextArea textArea, Result result) {
+		assert Platform.isFxApplicationThread();
+		assert result.snapshot.getLength() == textArea.getLength();
+
+		result = changesAgainstAppliedStyles(textArea, result);
+		applyChanges(textArea, result.styleSpansStart, result.styleSpans, result.paragraphStyles);
+		setAppliedStyles(textArea, result);
+	}
+
+	/**
+	 * Applies computed changes of the whole text (viewport must be null) to the given text area,
+	 * like {@link #apply(MarkdownTextArea, Result)}, if the changed text is not longer
+	 * than the given maximum length. Otherwise nothing is applied and the changed range is returned,
+	 * which the caller must apply (e.g. in several parts) using
+	 * {@link #applyRange(MarkdownTextArea, Result, int, int)}.
+	 * In both cases, the styles of the result are remembered as applied.
+	 * Must be invoked in the FX application thread.
+	 *
+	 * @return the range that is not yet applied; or {@code null}
+	 */
+	static Range applyOrDefer(MarkdownTextArea textArea, Result result, int maxApplyLength) {
+		assert Platform.isFxApplicationThread();
+		assert result.snapshot.getLength() == textArea.getLength();
+		assert result.viewport == null;
+
+		result = changesAgainstAppliedStyles(textArea, result);
+
+		// range of changed text and paragraph styles
+		DocumentSnapshot snapshot = result.snapshot;
+		int start = Integer.MAX_VALUE;
+		int end = 0;
+		if (result.styleSpans != null) {
+			start = result.styleSpansStart;
+			end = result.styleSpansStart + result.styleSpans.length();
+		}
+		for (ParagraphStyle paragraphStyle : result.paragraphStyles) {
+			start = Math.min(start, snapshot.getLineStart(paragraphStyle.startLine));
+			end = Math.max(end, (paragraphStyle.endLine < snapshot.getLineCount())
+				? snapshot.getLineStart(paragraphStyle.endLine)
+				: snapshot.getLength());
+		}
+
+		Range deferred = null;
+		if (end - start <= maxApplyLength)
+			applyChanges(textArea, result.styleSpansStart, result.styleSpans, result.paragraphStyles);
+		else
+			deferred = new Range(start, end);
 
-	private final MarkdownTextArea textArea;
-	private ArrayList<StyleRange> styleRanges;
-	private ArrayList<StyleRange> lineStyleRanges;
+		setAppliedStyles(textArea, result);
+		return deferred;
+	}
 
-	static void highlight(MarkdownTextArea textArea, Node astRoot, List<ExtraStyledRanges> extraStyledRanges) {
+	/**
+	 * Applies the styles of the given range of a result (of the whole text)
+	 * to the given text area. Used to apply ranges returned by
+	 * {@link #applyOrDefer(MarkdownTextArea, Result, int)}.
+	 * The text of the text area must be the text of the result snapshot.
+	 * Must be invoked in the FX application thread.
+	 */
+	static void applyRange(MarkdownTextArea textArea, Result result, int start, int end) {
 		assert Platform.isFxApplicationThread();
+		assert result.snapshot.getLength() == textArea.getLength();
+
+		DocumentSnapshot snapshot = result.snapshot;
+		MarkdownSyntaxHighlighter highlighter = new MarkdownSyntaxHighlighter(snapshot);
+		StyleSpans<Collection<String>> styleSpans = highlighter.buildStyleSpans(
+			result.styleRanges, start, end, result.extraStyledRanges);
+
+		ArrayList<ParagraphStyle> paragraphStyles = new ArrayList<>();
+		int fromLine = snapshot.getLineOfOffset(start);
+		int toLine = Math.min(snapshot.getLineOfOffset(end) + 1, snapshot.getLineCount());
+		highlighter.forEachParagraphStyleRun(result.paragraphStyleRuns, fromLine, toLine,
+			(startLine, endLine, styleBits) -> {
+				paragraphStyles.add(new ParagraphStyle(startLine, endLine, highlighter.toStyleClasses(styleBits, null)));
+			});
+
+		applyChanges(textArea, start, styleSpans, paragraphStyles);
+	}
+
+	/**
+	 * Forgets the applied styles of the given text area, so that the next
+	 * highlighting applies the styles of the whole text.
+	 * Must be invoked in the FX application thread.
+	 */
+	static void invalidateAppliedStyles(MarkdownTextArea textArea) {
+		if (textArea.appliedStyles != null)
+			textArea.appliedStyles.state = AppliedStyles.State.UNKNOWN;
+	}
+
+	/**
+	 * If other styles were applied since computing started,
+	 * computes changes again against the currently applied styles.
+	 */
+	private static Result changesAgainstAppliedStyles(MarkdownTextArea textArea, Result result) {
+		AppliedStyles.State appliedStyles = getAppliedStyles(textArea);
+		if (result.viewport == null && result.appliedStyles != appliedStyles)
+			result = new MarkdownSyntaxHighlighter(result.snapshot).computeChanges(result, appliedStyles);
+		return result;
+	}
+
+	private static void applyChanges(MarkdownTextArea textArea, int styleSpansStart,
+		StyleSpans<Collection<String>> styleSpans, List<ParagraphStyle> paragraphStyles)
+	{
+		AppliedStyles appliedStyles = textArea.appliedStyles;
+		appliedStyles.applying = true;
+		try {
+			// apply text and paragraph styles in a single update
+			textArea.beingUpdatedProperty().suspendWhile(() -> {
+				if (styleSpans != null)
+					textArea.setStyleSpans(styleSpansStart, styleSpans);
+				for (ParagraphStyle paragraphStyle : paragraphStyles)
+					setParagraphStyle(textArea, paragraphStyle);
+			});
+		} finally {
+			appliedStyles.applying = false;
+		}
+	}
 
-		assert textArea.getText().length() == textArea.getLength();
-		new MarkdownSyntaxHighlighter(textArea).highlight(astRoot, extraStyledRanges);
+	private static void setAppliedStyles(MarkdownTextArea textArea, Result result) {
+		// remember applied styles of whole text
+		textArea.appliedStyles.state = (result.viewport == null)
+			? new AppliedStyles.State(result.styleRanges, result.paragraphStyleRuns, null)
+			: AppliedStyles.State.UNKNOWN;
+	}
+
+	/**
+	 * Computes the text style spans of the whole text, without using a text area.
+	 * Used for benchmarks.
+	 */
+	static StyleSpans<Collection<String>> computeStyleSpans(DocumentSnapshot snapshot, Node astRoot) {
+		return compute(snapshot, astRoot, null, null, AppliedStyles.State.UNKNOWN, null, null).styleSpans;
 	}
 
-	private MarkdownSyntaxHighlighter(MarkdownTextArea textArea) {
-		this.textArea = textArea;
+	private MarkdownSyntaxHighlighter(DocumentSnapshot snapshot) {
+		this.snapshot = snapshot;
 	}
 
-	private void highlight(Node astRoot, List<ExtraStyledRanges> extraStyledRanges) {
-		addonsAddStylesheets();
+	private Result compute(Node astRoot, List<ExtraStyledRanges> extraStyledRanges,
+		Range viewport, AppliedStyles.State appliedStyles)
+	{
+		HighlightStyles styles;
+		if (viewport == null) {
+			// styles of the whole text depend only on the AST --> cache them
+			styles = MarkdownCache.get(astRoot, MarkdownCache.Kind.Styles, "highlighter", () -> {
+				computeStyles(astRoot, null);
+				// do not cache styles if results of some addons are not yet available
+				return addonsComplete ? new HighlightStyles(styleRanges.build(), buildParagraphStyleRuns()) : null;
+			}, HighlightStyles::memory);
+			if (styles == null)
+				styles = new HighlightStyles(styleRanges.build(), buildParagraphStyleRuns());
+		} else {
+			computeStyles(astRoot, viewport);
+			styles = new HighlightStyles(styleRanges.build(), buildParagraphStyleRuns());
+		}
+
+		StyleRanges allStyleRanges = (extraStyledRanges != null)
+			? addExtraStyledRanges(styles.styleRanges, extraStyledRanges)
+			: styles.styleRanges;
+
+		Result result = new Result(snapshot, allStyleRanges, styles.paragraphStyleRuns,
+			extraStyledRanges, viewport, null);
+		return computeChanges(result, appliedStyles);
+	}
 
-		styleRanges = new ArrayList<>();
-		lineStyleRanges = new ArrayList<>();
+	private void computeStyles(Node astRoot, Range viewport) {
+		styleRanges = new StyleRanges.Builder();
+		lineStyleRanges = new StyleRanges.Builder();
 
 		// visit all nodes
 		NodeVisitor visitor = new NodeVisitor(
@@ -234,6 +396,13 @@ class MarkdownSyntaxHighlighter
 		{
 			@Override
 			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
+				// skip top-level blocks outside of viewport
+				if (viewport != null && node.getParent() == astRoot &&
+					(node.getEndOffset() <= viewport.start || node.getStartOffset() >= viewport.end))
+				{
+					return;
+				}
+
 				Class<? extends Node> nodeClass = node.getClass();
 
 				StyleClass style = node2style.get(nodeClass);
@@ -253,108 +422,150 @@ class MarkdownSyntaxHighlighter
 		};
 		visitor.visit(astRoot);
 
-		// add extra styled ranges
-		if (extraStyledRanges != null) {
-			long extraStyleBits = 1L << StyleClass.values().length;
-			for (ExtraStyledRanges extraStyledRange : extraStyledRanges) {
-				for (Range extraRange : extraStyledRange.ranges) {
-					addStyledRange(styleRanges, extraRange.start, extraRange.end, extraStyleBits);
-				}
-				extraStyleBits <<= 1;
+		addonsHighlightParagraphs();
+	}
+
+	private ParagraphStyleRuns buildParagraphStyleRuns() {
+		return ParagraphStyleRuns.of(lineStyleRanges.build(), snapshot.getLineCount());
+	}
+
+	private StyleRanges addExtraStyledRanges(StyleRanges styleRanges, List<ExtraStyledRanges> extraStyledRanges) {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		builder.addAll(styleRanges);
+		assert extraStyledRanges.size() <= StyleClassTable.MAX_EXTRA_LAYERS;
+		long extraStyleBits = 1L << StyleClassTable.EXTRA_SHIFT;
+		for (ExtraStyledRanges extraStyledRange : extraStyledRanges) {
+			for (Range extraRange : extraStyledRange.ranges) {
+				builder.add(extraRange.start, extraRange.end, extraStyleBits);
 			}
+			extraStyleBits <<= 1;
+		}
+		return builder.build();
+	}
 
-			// need to clear cache
-			styleClassesCache.clear();
+	/**
+	 * Computes the text style spans and paragraph styles that need to be set
+	 * to apply the given result to a text area with the given applied styles.
+	 */
+	private Result computeChanges(Result result, AppliedStyles.State appliedStyles) {
+		result = new Result(result.snapshot, result.styleRanges, result.paragraphStyleRuns,
+			result.extraStyledRanges, result.viewport, appliedStyles);
+		StyleRanges styleRanges = result.styleRanges;
+		ParagraphStyleRuns paragraphStyleRuns = result.paragraphStyleRuns;
+		List<ExtraStyledRanges> extraStyledRanges = result.extraStyledRanges;
+		Range viewport = result.viewport;
+
+		// text styles (clipped to viewport)
+		int textLength = snapshot.getLength();
+		int from = (viewport != null) ? Math.min(Math.max(viewport.start, 0), textLength) : 0;
+		int to = (viewport != null) ? Math.min(Math.max(viewport.end, from), textLength) : textLength;
+		if (viewport == null && appliedStyles.styleRanges != null) {
+			// only changed text styles
+			// (setting styles of whole text would re-layout all paragraphs)
+			Range changedRange = appliedStyles.changedRange(styleRanges);
+			if (changedRange != null) {
+				result.styleSpansStart = changedRange.start;
+				result.styleSpans = buildStyleSpans(styleRanges, changedRange.start, changedRange.end, extraStyledRanges);
+			}
+		} else {
+			result.styleSpansStart = from;
+			result.styleSpans = buildStyleSpans(styleRanges, from, to, extraStyledRanges);
 		}
 
-		// set text styles
-		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-		int textLength = textArea.getLength();
-		if (textLength > 0) {
-			int spanStart = 0;
-			for (StyleRange range : styleRanges) {
-				if (range.begin > spanStart)
-					spansBuilder.add(Collections.emptyList(), range.begin - spanStart);
-				spansBuilder.add(toStyleClasses(range.styleBits, extraStyledRanges), range.end - range.begin);
-				spanStart = range.end;
+		// paragraph styles
+		ArrayList<ParagraphStyle> paragraphStyles = result.paragraphStyles;
+		ParagraphStyleRuns.RunConsumer consumer = (startLine, endLine, styleBits) -> {
+			paragraphStyles.add(new ParagraphStyle(startLine, endLine, toStyleClasses(styleBits, null)));
+		};
+		if (viewport == null && appliedStyles.paragraphStyleRuns != null) {
+			// only changed paragraph styles
+			appliedStyles.forEachChangedParagraphStyle(snapshot, paragraphStyleRuns, consumer);
+		} else {
+			// clipped to viewport
+			int lineCount = snapshot.getLineCount();
+			int fromLine = 0;
+			int toLine = lineCount;
+			if (viewport != null) {
+				fromLine = snapshot.getLineOfOffset(from);
+				toLine = Math.min(snapshot.getLineOfOffset(to) + 1, lineCount);
 			}
-			if (spanStart < textLength)
-				spansBuilder.add(Collections.emptyList(), textLength - spanStart);
-		} else
-			spansBuilder.add(Collections.emptyList(), 0);
-		textArea.setStyleSpans(0, spansBuilder.create());
-
-		// set line styles
-		int start = 0;
-		for (StyleRange range : lineStyleRanges) {
-			if (range.begin > start)
-				setParagraphStyle(start, range.begin, Collections.emptyList());
-			setParagraphStyle(range.begin, range.end, toStyleClasses(range.styleBits, null));
-			start = range.end;
+			forEachParagraphStyleRun(paragraphStyleRuns, fromLine, toLine, consumer);
 		}
-		int lineCount = textArea.getParagraphs().size();
-		if (start < lineCount)
-			setParagraphStyle(start, lineCount, Collections.emptyList());
+		return result;
 	}
 
-	private void setParagraphStyle(int start, int end, Collection<String> ps) {
-		for (int i = start; i < end; i++) {
-			Paragraph<?,?,?> paragraph = textArea.getParagraph(i);
-			if (ps != paragraph.getParagraphStyle())
-				setParagraphStyle(paragraph, i, ps);
+	/**
+	 * Invokes the consumer for the paragraph style runs, clipped to the given lines.
+	 */
+	private void forEachParagraphStyleRun(ParagraphStyleRuns paragraphStyleRuns, int fromLine, int toLine,
+		ParagraphStyleRuns.RunConsumer consumer)
+	{
+		for (int i = paragraphStyleRuns.indexOfLine(fromLine); i < paragraphStyleRuns.size(); i++) {
+			int begin = Math.max(paragraphStyleRuns.start(i), fromLine);
+			int end = Math.min(paragraphStyleRuns.end(i), toLine);
+			if (begin >= end)
+				break;
+
+			consumer.accept(begin, end, paragraphStyleRuns.styleBits(i));
 		}
 	}
 
-	private void setParagraphStyle(Paragraph<?,?,?> paragraph, int paragraphIndex, Collection<String> paragraphStyle) {
-		if (paragraphStyleField != null) {
-			// because StyledTextArea.setParagraphStyle() is very very slow,
-			// especially if invoked many times, we (try to) go the "short way"
-			try {
-				paragraphStyleField.set(paragraph, paragraphStyle);
-				return;
-			} catch (Exception ex) {
-				// ignore
+	/**
+	 * Builds the text style spans of the given range.
+	 */
+	private StyleSpans<Collection<String>> buildStyleSpans(StyleRanges styleRanges,
+		int from, int to, List<ExtraStyledRanges> extraStyledRanges)
+	{
+		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>(styleRanges.size() * 2 + 1);
+		if (to > from) {
+			int spanStart = from;
+			for (int i = styleRanges.indexAfter(from); i < styleRanges.size(); i++) {
+				if (styleRanges.begin(i) >= to)
+					break;
+
+				int begin = Math.max(styleRanges.begin(i), from);
+				int end = Math.min(styleRanges.end(i), to);
+				if (begin >= end)
+					continue;
+
+				if (begin > spanStart)
+					spansBuilder.add(Collections.emptyList(), begin - spanStart);
+				spansBuilder.add(toStyleClasses(styleRanges.styleBits(i), extraStyledRanges), end - begin);
+				spanStart = end;
 			}
-		}
-
-		textArea.setParagraphStyle(paragraphIndex, paragraphStyle);
+			if (spanStart < to)
+				spansBuilder.add(Collections.emptyList(), to - spanStart);
+		} else
+			spansBuilder.add(Collections.emptyList(), 0);
+		return spansBuilder.create();
 	}
 
-	private static Field paragraphStyleField;
-	static {
-		try {
-			paragraphStyleField = Paragraph.class.getDeclaredField("paragraphStyle");
-			paragraphStyleField.setAccessible(true);
-		} catch (Exception e) {
-			// ignore
+	private static void setParagraphStyle(MarkdownTextArea textArea, ParagraphStyle paragraphStyle) {
+		Collection<String> ps = paragraphStyle.styleClasses;
+		for (int i = paragraphStyle.startLine; i < paragraphStyle.endLine; i++) {
+			if (!ps.equals(textArea.getParagraph(i).getParagraphStyle()))
+				textArea.setParagraphStyle(i, ps);
 		}
 	}
 
 	private Collection<String> toStyleClasses(long bits, List<ExtraStyledRanges> extraStyledRanges) {
-		if (bits == 0)
-			return Collections.emptyList();
+		long extraStyleBits = bits & StyleClassTable.EXTRA_MASK;
+		if (extraStyleBits == 0 || extraStyledRanges == null)
+			return StyleClassTable.styleClasses(bits & ~StyleClassTable.EXTRA_MASK);
 
-		Collection<String> styleClasses = styleClassesCache.get(bits);
+		// style classes of extra styled ranges differ per highlighting --> cache them per instance
+		Collection<String> styleClasses = extraStyleClassesCache.get(bits);
 		if (styleClasses != null)
 			return styleClasses;
 
-		styleClasses = new ArrayList<>(1);
-		for (StyleClass styleClass : StyleClass.values()) {
-			if ((bits & (1L << styleClass.ordinal())) != 0) {
-				styleClasses.add(styleClass.cssClass());
-				if (styleClass.cssClass2 != null)
-					styleClasses.add(styleClass.cssClass2);
-			}
-		}
-		if (extraStyledRanges != null) {
-			long extraStyleBits = 1L << StyleClass.values().length;
-			for (ExtraStyledRanges extraStyledRange : extraStyledRanges) {
-				if ((bits & extraStyleBits) != 0)
-					styleClasses.add(extraStyledRange.styleClass);
-				extraStyleBits <<= 1;
-			}
+		styleClasses = new ArrayList<>(StyleClassTable.styleClasses(bits & ~extraStyleBits));
+		long extraStyleBit = 1L << StyleClassTable.EXTRA_SHIFT;
+		for (ExtraStyledRanges extraStyledRange : extraStyledRanges) {
+			if ((bits & extraStyleBit) != 0)
+				styleClasses.add(extraStyledRange.styleClass);
+			extraStyleBit <<= 1;
 		}
-		styleClassesCache.put(bits, styleClasses);
+		extraStyleClassesCache.put(bits, styleClasses);
 		return styleClasses;
 	}
 
@@ -411,7 +622,7 @@ class MarkdownSyntaxHighlighter
 
 	private void visit(HtmlEntity node) {
 		setStyleClass(node, StyleClass.html);
-		setStyleClass(node, StyleClass.custom("entity", "token"));
+		styleRanges.add(node.getStartOffset(), node.getEndOffset(), StyleClassTable.tokenBits("entity"));
 	}
 
 	private boolean highlightSequence(BasedSequence sequence, String language) {
@@ -421,12 +632,12 @@ class MarkdownSyntaxHighlighter
 			@Override
 			public void accept(int length, String style) {
 				if (style != null)
-					addStyledRange(styleRanges, index, index + length, StyleClass.custom(style, "token"));
+					styleRanges.add(index, index + length, StyleClassTable.tokenBits(style));
 				index += length;
 			}
 		};
-		String text = sequence.baseSubSequence(sequence.getStartOffset(), sequence.getEndOffset()).toString();
-		return SyntaxHighlighter.highlight(text, language, highlighter);
+		BasedSequence text = sequence.baseSubSequence(sequence.getStartOffset(), sequence.getEndOffset());
+		return TokenCache.highlight(text, language, highlighter);
 	}
 
 	private void setStyleClass(Node node, StyleClass styleClass) {
@@ -437,141 +648,162 @@ class MarkdownSyntaxHighlighter
 		int start = sequence.getStartOffset();
 		int end = sequence.getEndOffset();
 
-		addStyledRange(styleRanges, start, end, styleClass);
+		styleRanges.add(start, end, styleClass);
 	}
 
 	private void setLineStyleClass(Node node, StyleClass styleClass) {
-		int start = textArea.offsetToPosition(node.getStartOffset(), Bias.Forward).getMajor();
-		int end = textArea.offsetToPosition(node.getEndOffset() - 1, Bias.Forward).getMajor() + 1;
+		int start = snapshot.getLineOfOffset(node.getStartOffset());
+		int end = snapshot.getLineOfOffset(node.getEndOffset() - 1) + 1;
 
-		addStyledRange(lineStyleRanges, start, end, styleClass);
+		lineStyleRanges.add(start, end, styleClass);
 	}
 
-	/**
-	 * Adds a style range to styleRanges.
-	 *
-	 * Makes sure that the ranges are sorted by begin index
-	 * and that there are no overlapping ranges.
-	 * In case the added range overlaps, existing ranges are split.
-	 *
-	 * @param begin the beginning index, inclusive
-	 * @param end   the ending index, exclusive
-	 */
-	/*private*/ static void addStyledRange(ArrayList<StyleRange> styleRanges, int begin, int end, StyleClass styleClass) {
-		long styleBits = 1L << styleClass.ordinal();
-		addStyledRange(styleRanges, begin, end, styleBits);
-	}
-
-	private static void addStyledRange(ArrayList<StyleRange> styleRanges, int begin, int end, long styleBits) {
-		final int lastIndex = styleRanges.size() - 1;
+	//---- addons -------------------------------------------------------------
 
-		// check whether list is empty
-		if (styleRanges.isEmpty()) {
-			styleRanges.add(new StyleRange(begin, end, styleBits));
-			return;
+	private void addonsHighlightNode(com.vladsch.flexmark.ast.Paragraph node) {
+		// collect paragraphs, which are highlighted in parallel after visiting all nodes
+		if (!AddonHighlighter.getInstance().isEmpty()) {
+			addonParagraphOffsets.add(node.getStartOffset());
+			addonParagraphTexts.add(node.getChars().toString());
 		}
+	}
 
-		// check whether new range is after last range
-		final StyleRange lastRange = styleRanges.get(lastIndex);
-		if (begin >= lastRange.end) {
-			styleRanges.add(new StyleRange(begin, end, styleBits));
-			return;
-		}
+	private void addonsHighlightParagraphs() {
+		addonsComplete = AddonHighlighter.getInstance().highlight(addonOwner, addonParagraphOffsets, addonParagraphTexts, (begin, end, style) -> {
+			styleRanges.add(begin, end, StyleClassTable.tokenBits(style));
+		}, addonResultsCallback);
 
-		// walk existing ranges from last to first
-		for (int i = lastIndex; i >= 0; i--) {
-			StyleRange range = styleRanges.get(i);
-			if (end <= range.begin) {
-				// new range is before existing range (no overlapping) --> nothing yet to do
-				continue;
-			}
+		addonParagraphOffsets.clear();
+		addonParagraphTexts.clear();
+	}
 
-			if (begin >= range.end) {
-				// existing range is before new range (no overlapping)
+	//---- class AppliedStyles ------------------------------------------------
 
-				if (begin < styleRanges.get(i+1).begin) {
-					// new range starts after this range (may overlap next range) --> add
-					int end2 = Math.min(end, styleRanges.get(i+1).begin);
-					styleRanges.add(i + 1, new StyleRange(begin, end2, styleBits));
-				}
+	/**
+	 * Text styles applied to the whole text of a text area
+	 * and the text changes since then.
+	 */
+	static class AppliedStyles
+	{
+		// immutable; replaced on each change (so it can be passed to other threads)
+		State state = State.UNKNOWN;
+		boolean applying;
+
+		AppliedStyles(MarkdownTextArea textArea) {
+			// rich changes include text changes and style changes
+			// (e.g. replacing a character with an embedded image)
+			textArea.richChanges().subscribe(c -> {
+				if (applying || state.styleRanges == null)
+					return;
+
+				int position = c.getPosition();
+				ParseService.Change change2 = new ParseService.Change(position,
+					c.getRemovalEnd() - position, c.getInsertionEnd() - position);
+				state = new State(state.styleRanges, state.paragraphStyleRuns,
+					(state.change != null) ? state.change.merge(change2) : change2);
+			});
+		}
 
-				break; // done
-			}
+		//---- class State ----------------------------------------------------
 
-			if (end > range.end) {
-				// new range ends after this range (may overlap next range) --> add
-				int end2 = (i == lastIndex) ? end : Math.min(end, styleRanges.get(i+1).begin);
-				if (end2 > range.end)
-					styleRanges.add(i + 1, new StyleRange(range.end, end2, styleBits));
+		static class State
+		{
+			static final State UNKNOWN = new State(null, null, null);
+
+			// styles applied to whole text; or null if unknown (e.g. only viewport highlighted)
+			final StyleRanges styleRanges;
+			final ParagraphStyleRuns paragraphStyleRuns;
+			// text changed since styles were applied
+			final ParseService.Change change;
+
+			State(StyleRanges styleRanges, ParagraphStyleRuns paragraphStyleRuns, ParseService.Change change) {
+				this.styleRanges = styleRanges;
+				this.paragraphStyleRuns = paragraphStyleRuns;
+				this.change = change;
 			}
 
-			if (begin < range.end && end > range.begin) {
-				// the new range overlaps the existing range somewhere
-
-				if (begin <= range.begin && end >= range.end) {
-					// new range completely overlaps existing range --> merge style bits
-					styleRanges.set(i, new StyleRange(range.begin, range.end, range.styleBits | styleBits));
-				} else if (begin <= range.begin && end < range.end) {
-					// new range overlaps at the begin with existing range --> split range
-					styleRanges.set(i, new StyleRange(range.begin, end, range.styleBits | styleBits));
-					styleRanges.add(i + 1, new StyleRange(end, range.end, range.styleBits));
-				} else if (begin > range.begin && end >= range.end) {
-					// new range overlaps at the end with existing range --> split range
-					styleRanges.set(i, new StyleRange(range.begin, begin, range.styleBits));
-					styleRanges.add(i + 1, new StyleRange(begin, range.end, range.styleBits | styleBits));
-				} else if (begin > range.begin && end < range.end) {
-					// new range is in existing range --> split range
-					styleRanges.set(i, new StyleRange(range.begin, begin, range.styleBits));
-					styleRanges.add(i + 1, new StyleRange(begin, end, range.styleBits | styleBits));
-					styleRanges.add(i + 2, new StyleRange(end, range.end, range.styleBits));
-				}
+			Range changedRange(StyleRanges newStyleRanges) {
+				return (change != null)
+					? StyleRanges.changedRange(styleRanges, newStyleRanges,
+						change.position, change.position + change.removed, change.position + change.inserted)
+					: StyleRanges.changedRange(styleRanges, newStyleRanges, Integer.MAX_VALUE, 0, 0);
 			}
-		}
 
-		// check whether new range starts before first range
-		if (begin < styleRanges.get(0).begin) {
-			// add new range (part) before first range
-			int end2 = Math.min(end, styleRanges.get(0).begin);
-			styleRanges.add(0, new StyleRange(begin, end2, styleBits));
+			void forEachChangedParagraphStyle(DocumentSnapshot snapshot, ParagraphStyleRuns newRuns,
+				ParagraphStyleRuns.RunConsumer consumer)
+			{
+				if (change != null) {
+					int editStartLine = snapshot.getLineOfOffset(change.position);
+					int editNewEndLine = snapshot.getLineOfOffset(change.position + change.inserted) + 1;
+					ParagraphStyleRuns.forEachChanged(paragraphStyleRuns, newRuns, editStartLine, editNewEndLine, consumer);
+				} else
+					ParagraphStyleRuns.forEachChanged(paragraphStyleRuns, newRuns, Integer.MAX_VALUE, 0, consumer);
+			}
 		}
 	}
 
-	//---- addons -------------------------------------------------------------
+	//---- class Result -------------------------------------------------------
 
-	private void addonsAddStylesheets() {
-		for (MarkdownSyntaxHighlighterAddon addon : addons) {
-			for (String stylesheet : addon.getStylesheets()) {
-				String url = Addons.getAddonsClassLoader().getResource( stylesheet ).toString();
-				if (!textArea.getStylesheets().contains(url))
-					textArea.getStylesheets().add(url);
-			}
+	/**
+	 * Computed styles, and the changes needed to apply them to a text area.
+	 */
+	static class Result
+	{
+		final DocumentSnapshot snapshot;
+		// styles including extra styled ranges
+		final StyleRanges styleRanges;
+		final ParagraphStyleRuns paragraphStyleRuns;
+		final List<ExtraStyledRanges> extraStyledRanges;
+		final Range viewport;
+		// applied styles that the changes were computed against
+		final AppliedStyles.State appliedStyles;
+
+		// changes (text style spans are null if unchanged)
+		int styleSpansStart;
+		StyleSpans<Collection<String>> styleSpans;
+		final ArrayList<ParagraphStyle> paragraphStyles = new ArrayList<>();
+
+		Result(DocumentSnapshot snapshot, StyleRanges styleRanges, ParagraphStyleRuns paragraphStyleRuns,
+			List<ExtraStyledRanges> extraStyledRanges, Range viewport, AppliedStyles.State appliedStyles)
+		{
+			this.snapshot = snapshot;
+			this.styleRanges = styleRanges;
+			this.paragraphStyleRuns = paragraphStyleRuns;
+			this.extraStyledRanges = extraStyledRanges;
+			this.viewport = viewport;
+			this.appliedStyles = appliedStyles;
 		}
 	}
 
-	private void addonsHighlightNode(com.vladsch.flexmark.ast.Paragraph node) {
-		int startOffset = node.getStartOffset();
-		addonsHighlightText(node.getChars().toString(), (begin, end, style) -> {
-			addStyledRange(styleRanges, startOffset + begin, startOffset + end, StyleClass.custom(style, "token"));
-		} );
-	}
+	//---- class ParagraphStyle -----------------------------------------------
 
-	private void addonsHighlightText(String text, MarkdownSyntaxHighlighterAddon.Highlighter highlighter) {
-		for (MarkdownSyntaxHighlighterAddon addon : addons)
-			addon.highlight(text, highlighter);
+	private static class ParagraphStyle
+	{
+		final int startLine;
+		final int endLine;
+		final Collection<String> styleClasses;
+
+		ParagraphStyle(int startLine, int endLine, Collection<String> styleClasses) {
+			this.startLine = startLine;
+			this.endLine = endLine;
+			this.styleClasses = styleClasses;
+		}
 	}
 
-	//---- class StyleRange ---------------------------------------------------
+	//---- class HighlightStyles ----------------------------------------------
 
-	/*private*/ static class StyleRange
+	private static class HighlightStyles
 	{
-		final int begin;		// inclusive
-		final int end;			// exclusive
-		final long styleBits;	// 1 << StyleClass.ordinal()
-
-		StyleRange(int begin, int end, long styleBits) {
-			this.begin = begin;
-			this.end = end;
-			this.styleBits = styleBits;
+		final StyleRanges styleRanges;
+		final ParagraphStyleRuns paragraphStyleRuns;
+
+		HighlightStyles(StyleRanges styleRanges, ParagraphStyleRuns paragraphStyleRuns) {
+			this.styleRanges = styleRanges;
+			this.paragraphStyleRuns = paragraphStyleRuns;
+		}
+
+		long memory() {
+			return styleRanges.memory() + paragraphStyleRuns.memory();
 		}
 	}
 
@@ -60,6 +60,9 @@ class MarkdownTextArea
 	final SuspendableVal<Double> scrollY;
 	private Guard scrollYguard;
 
+	// text styles applied by MarkdownSyntaxHighlighter
+	MarkdownSyntaxHighlighter.AppliedStyles appliedStyles;
+
 	public MarkdownTextArea() {
 		super(
 			/* initialParagraphStyle */ Collections.<String>emptyList(),
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.Arrays;
+
+/**
+ * Immutable paragraph (line) styles, stored as run-length encoded runs.
+ * Each run covers consecutive lines with equal style bits (1 << StyleClass.ordinal()).
+ * Adjacent runs have different style bits. The runs cover all lines;
+ * lines without style have style bits 0.
+ *
+ * A large fenced code block or table, where thousands of lines share
+ * the same style, needs only a single run.
+ *
+ * @author Karl Tauber
+ */
+class ParagraphStyleRuns
+{
+	private final int[] ends;		// exclusive end line of run
+	private final long[] styleBits;
+	private final int size;
+
+	private ParagraphStyleRuns(int[] ends, long[] styleBits, int size) {
+		this.ends = ends;
+		this.styleBits = styleBits;
+		this.size = size;
+	}
+
+	/**
+	 * Creates runs for the given line count from the given
+	 * line style ranges (begin and end are line indices).
+	 */
+	static ParagraphStyleRuns of(StyleRanges lineStyleRanges, int lineCount) {
+		int[] ends = new int[lineStyleRanges.size() * 2 + 1];
+		long[] styleBits = new long[ends.length];
+		int size = 0;
+
+		int line = 0;
+		for (int i = 0; i < lineStyleRanges.size() && line < lineCount; i++) {
+			int begin = Math.max(lineStyleRanges.begin(i), line);
+			int end = Math.min(lineStyleRanges.end(i), lineCount);
+			if (begin >= end)
+				continue;
+
+			if (begin > line)
+				size = addRun(ends, styleBits, size, begin, 0);
+			size = addRun(ends, styleBits, size, end, lineStyleRanges.styleBits(i));
+			line = end;
+		}
+		if (line < lineCount || size == 0)
+			size = addRun(ends, styleBits, size, lineCount, 0);
+
+		return new ParagraphStyleRuns(Arrays.copyOf(ends, size), Arrays.copyOf(styleBits, size), size);
+	}
+
+	private static int addRun(int[] ends, long[] styleBits, int size, int end, long bits) {
+		if (size > 0 && styleBits[size - 1] == bits) {
+			// merge with previous run
+			ends[size - 1] = end;
+			return size;
+		}
+
+		ends[size] = end;
+		styleBits[size] = bits;
+		return size + 1;
+	}
+
+	int getLineCount() {
+		return ends[size - 1];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int start(int index) {
+		return (index > 0) ? ends[index - 1] : 0;
+	}
+
+	int end(int index) {
+		return ends[index];
+	}
+
+	long styleBits(int index) {
+		return styleBits[index];
+	}
+
+	/**
+	 * Returns the index of the run that contains the given line.
+	 */
+	int indexOfLine(int line) {
+		int index = Arrays.binarySearch(ends, 0, size, line);
+		// if found, line is the (exclusive) end of a run --> next run
+		return Math.min((index >= 0) ? index + 1 : -(index + 1), size - 1);
+	}
+
+	/**
+	 * Returns the estimated memory usage.
+	 */
+	long memory() {
+		return 12L * ends.length;
+	}
+
+	/**
+	 * Invokes the consumer for all line ranges where the given new runs
+	 * differ from the given old runs (of the old text).
+	 * Adjacent changed lines with equal style bits are passed in a single invocation.
+	 *
+	 * The old text was changed by replacing the lines editStartLine to editOldEndLine
+	 * with the lines editStartLine to editNewEndLine of the new text, where
+	 * editOldEndLine is computed from the line count difference.
+	 * Edited lines are always passed because their paragraph styles are unknown.
+	 * If the text was not changed, pass {@code Integer.MAX_VALUE} as editStartLine and 0 as editNewEndLine.
+	 */
+	static void forEachChanged(ParagraphStyleRuns oldRuns, ParagraphStyleRuns newRuns,
+		int editStartLine, int editNewEndLine, RunConsumer consumer)
+	{
+		int oldLineCount = oldRuns.getLineCount();
+		int newLineCount = newRuns.getLineCount();
+		int delta = newLineCount - oldLineCount;
+
+		// make edit consistent with line counts
+		editStartLine = Math.min(editStartLine, Math.min(oldLineCount, newLineCount));
+		editNewEndLine = Math.min(Math.max(editNewEndLine, editStartLine + Math.max(delta, 0)), newLineCount);
+
+		ChangeCollector collector = new ChangeCollector(consumer);
+		for (int i = 0; i < newRuns.size; i++) {
+			int start = newRuns.start(i);
+			int end = newRuns.ends[i];
+			long bits = newRuns.styleBits[i];
+
+			// lines before edit
+			if (start < editStartLine)
+				collector.compare(oldRuns, start, Math.min(end, editStartLine), 0, bits);
+
+			// edited lines
+			int editStart = Math.max(start, editStartLine);
+			int editEnd = Math.min(end, editNewEndLine);
+			if (editStart < editEnd)
+				collector.add(editStart, editEnd, bits);
+
+			// lines after edit
+			if (end > editNewEndLine)
+				collector.compare(oldRuns, Math.max(start, editNewEndLine), end, delta, bits);
+		}
+		collector.flush();
+	}
+
+	//---- interface RunConsumer ----------------------------------------------
+
+	interface RunConsumer {
+		void accept(int startLine, int endLine, long styleBits);
+	}
+
+	//---- class ChangeCollector ----------------------------------------------
+
+	private static class ChangeCollector
+	{
+		private final RunConsumer consumer;
+		private int pendingStart;
+		private int pendingEnd = -1;
+		private long pendingBits;
+
+		ChangeCollector(RunConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Compares the new lines start to end (with the given style bits)
+		 * with the old lines (start - delta) to (end - delta) and adds differing lines.
+		 */
+		void compare(ParagraphStyleRuns oldRuns, int start, int end, int delta, long bits) {
+			for (int i = oldRuns.indexOfLine(start - delta); start < end && i < oldRuns.size; i++) {
+				int runEnd = Math.min(oldRuns.ends[i] + delta, end);
+				if (oldRuns.styleBits[i] != bits)
+					add(start, runEnd, bits);
+				start = runEnd;
+			}
+		}
+
+		void add(int start, int end, long bits) {
+			if (start == pendingEnd && bits == pendingBits) {
+				pendingEnd = end;
+				return;
+			}
+
+			flush();
+			pendingStart = start;
+			pendingEnd = end;
+			pendingBits = bits;
+		}
+
+		void flush() {
+			if (pendingEnd >= 0 && pendingStart < pendingEnd)
+				consumer.accept(pendingStart, pendingEnd, pendingBits);
+			pendingEnd = -1;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import org.markdownwriterfx.util.MarkdownCache;
+import org.markdownwriterfx.util.NodeIndex;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Parses markdown text in a background thread.
+ *
+ * Each submitted text gets a new version number.
+ * Texts submitted while the background thread is busy are coalesced
+ * so that only the latest text is parsed.
+ * Results are passed to the result handler in the FX application thread,
+ * but only if the parsed text is still the current one (stale results are dropped).
+ *
+ * @author Karl Tauber
+ */
+class ParseService
+{
+	// global executor used for parsing of all editors
+	private static ExecutorService executor;
+
+	private final Consumer<Result> resultHandler;
+	private final Executor resultExecutor;
+
+	// accessed only in FX application thread
+	private long currentVersion;
+	private long appliedVersion;
+
+	// guarded by requestLock
+	private final Object requestLock = new Object();
+	private Request pendingRequest;
+	private boolean parseScheduled;
+
+	// guarded by parserLock
+	private final Object parserLock = new Object();
+	private IncrementalParser incrementalParser;
+	private volatile Result latestResult;
+
+	ParseService(Consumer<Result> resultHandler) {
+		this(resultHandler, Platform::runLater);
+	}
+
+	ParseService(Consumer<Result> resultHandler, Executor resultExecutor) {
+		this.resultHandler = resultHandler;
+		this.resultExecutor = resultExecutor;
+	}
+
+	/**
+	 * Submits a new text for parsing.
+	 *
+	 * @param change the change since the previously submitted text,
+	 *               or {@code null} to parse the whole text
+	 * @return the version of the submitted text
+	 */
+	long submit(Parser parser, String text, Change change) {
+		return submit(parser, new DocumentSnapshot(text, currentVersion + 1), change);
+	}
+
+	/**
+	 * Submits a new text snapshot for parsing.
+	 * The version of the snapshot must be greater than the version of previously submitted snapshots.
+	 *
+	 * @param change the change since the previously submitted text,
+	 *               or {@code null} to parse the whole text
+	 * @return the version of the submitted snapshot
+	 */
+	long submit(Parser parser, DocumentSnapshot snapshot, Change change) {
+		assert snapshot.getVersion() > currentVersion;
+
+		long version = currentVersion = snapshot.getVersion();
+
+		synchronized (requestLock) {
+			// coalesce with not yet parsed text
+			if (pendingRequest != null) {
+				change = (pendingRequest.change != null && change != null && pendingRequest.parser == parser)
+					? pendingRequest.change.merge(change)
+					: null;
+			}
+			pendingRequest = new Request(parser, snapshot, change);
+
+			if (parseScheduled)
+				return version;
+			parseScheduled = true;
+		}
+
+		getExecutor().execute(this::parseLoop);
+		return version;
+	}
+
+	/**
+	 * Returns whether the last submitted text is parsed and passed to the result handler.
+	 */
+	boolean isCurrent() {
+		return appliedVersion == currentVersion;
+	}
+
+	/**
+	 * Makes sure that the last submitted text is parsed and passed to the result handler.
+	 * Parses the text in the current thread if it is not yet parsed,
+	 * or waits until the background thread finished parsing.
+	 */
+	void flush() {
+		if (isCurrent())
+			return;
+
+		synchronized (parserLock) {
+			Request request = takePendingRequest();
+			if (request != null)
+				parse(request);
+		}
+
+		Result result = latestResult;
+		if (result != null)
+			apply(result);
+	}
+
+	private void parseLoop() {
+		for (;;) {
+			Result result;
+			synchronized (parserLock) {
+				Request request = takePendingRequest();
+				if (request == null) {
+					synchronized (requestLock) {
+						// check again to avoid race with submit()
+						if (pendingRequest != null)
+							continue;
+						parseScheduled = false;
+						return;
+					}
+				}
+				result = parse(request);
+			}
+
+			resultExecutor.execute(() -> apply(result));
+		}
+	}
+
+	private Request takePendingRequest() {
+		synchronized (requestLock) {
+			Request request = pendingRequest;
+			pendingRequest = null;
+			return request;
+		}
+	}
+
+	private Result parse(Request request) {
+		long startTime = System.nanoTime();
+
+		if (incrementalParser == null || incrementalParser.getParser() != request.parser)
+			incrementalParser = new IncrementalParser(request.parser);
+
+		// use cached AST if the whole text was replaced (e.g. file loaded or reloaded)
+		boolean wholeText = (request.change == null ||
+			(request.change.position == 0 && request.change.inserted == request.text.length()));
+		Document astRoot = wholeText ? MarkdownCache.getAST(request.parser, request.text) : null;
+		if (astRoot != null)
+			incrementalParser.setDocument(request.text, astRoot);
+		else {
+			try {
+				astRoot = (request.change != null)
+					? incrementalParser.parse(request.text, request.change.position, request.change.removed, request.change.inserted)
+					: incrementalParser.parse(request.text);
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+
+				// start over with new parser state
+				incrementalParser = new IncrementalParser(request.parser);
+				astRoot = incrementalParser.parse(request.text);
+			}
+
+			// build node index in this thread (is stored in the document)
+			NodeIndex.get(astRoot);
+
+			// cache only ASTs of whole texts (not of each keystroke)
+			if (wholeText)
+				MarkdownCache.putAST(request.parser, request.text, astRoot);
+		}
+
+		Result result = new Result(request.snapshot, astRoot, System.nanoTime() - startTime);
+		latestResult = result;
+		return result;
+	}
+
+	private void apply(Result result) {
+		// ignore stale or already applied results
+		if (result.version != currentVersion || result.version == appliedVersion)
+			return;
+
+		appliedVersion = result.version;
+		resultHandler.accept(result);
+	}
+
+	private static Executor getExecutor() {
+		synchronized (ParseService.class) {
+			if (executor == null) {
+				executor = Executors.newSingleThreadExecutor(runnable -> {
+					Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+					thread.setName("Markdown parser");
+					thread.setDaemon(true); // allow quitting app without shutting down executor
+					return thread;
+				});
+			}
+			return executor;
+		}
+	}
+
+	//---- class Change -------------------------------------------------------
+
+	/**
+	 * A text change: 'removed' characters at 'position' were replaced with 'inserted' characters.
+	 */
+	static class Change
+	{
+		final int position;
+		final int removed;
+		final int inserted;
+
+		Change(int position, int removed, int inserted) {
+			this.position = position;
+			this.removed = removed;
+			this.inserted = inserted;
+		}
+
+		/**
+		 * Returns a change that combines this change and the given following change.
+		 */
+		Change merge(Change next) {
+			int end = Math.max(position + inserted, next.position + next.removed);
+			int start = Math.min(position, next.position);
+			int oldEnd = end - (inserted - removed);
+			int newEnd = end + (next.inserted - next.removed);
+			return new Change(start, oldEnd - start, newEnd - start);
+		}
+	}
+
+	//---- class Request ------------------------------------------------------
+
+	private static class Request
+	{
+		final Parser parser;
+		final DocumentSnapshot snapshot;
+		final String text;
+		final Change change;
+
+		Request(Parser parser, DocumentSnapshot snapshot, Change change) {
+			this.parser = parser;
+			this.snapshot = snapshot;
+			this.text = snapshot.getText();
+			this.change = change;
+		}
+	}
+
+	//---- class Result -------------------------------------------------------
+
+	/**
+	 * Immutable parse result: the parsed text snapshot, its AST, its version
+	 * and the parse duration in nanoseconds.
+	 */
+	static class Result
+	{
+		final DocumentSnapshot snapshot;
+		final String text;
+		final Node astRoot;
+		final long version;
+		final long parseNanos;
+
+		Result(DocumentSnapshot snapshot, Node astRoot, long parseNanos) {
+			this.snapshot = snapshot;
+			this.text = snapshot.getText();
+			this.astRoot = astRoot;
+			this.version = snapshot.getVersion();
+			this.parseNanos = parseNanos;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.ArrayList;
+import java.util.List;
+import javafx.application.Platform;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.markdownwriterfx.util.Range;
+
+/**
+ * Applies highlighting results of large documents progressively.
+ *
+ * Styles are computed for the whole text in a background thread (see HighlightService)
+ * and only changed styles are applied. Small changes (e.g. when typing) are applied
+ * immediately. Large changes (e.g. when opening a document) are split into chunks
+ * (of whole lines). Chunks that contain the visible text are applied immediately.
+ * The other chunks are applied later in time slices, which are limited to the
+ * frame budget and run in the FX application thread using Platform.runLater().
+ * Scrolling into a not yet highlighted area applies it immediately.
+ *
+ * Text changes shift pending chunks. They are applied using the next result
+ * (styles of the previous result no longer match the text).
+ *
+ * @author Karl Tauber
+ */
+class ProgressiveHighlighter
+{
+	static final int CHUNK_SIZE = 10_000;
+
+	private final MarkdownTextArea textArea;
+	private final UpdateScheduler updateScheduler;
+
+	// latest result; or null if text changed since then
+	private MarkdownSyntaxHighlighter.Result result;
+	// not yet applied ranges (of current text)
+	private final ArrayList<Range> pendingChunks = new ArrayList<>();
+	private boolean sliceScheduled;
+
+	ProgressiveHighlighter(MarkdownTextArea textArea, UpdateScheduler updateScheduler) {
+		this.textArea = textArea;
+		this.updateScheduler = updateScheduler;
+	}
+
+	/**
+	 * Applies the given result of the whole text.
+	 * Applies changes of the visible text immediately and the rest later.
+	 */
+	void apply(MarkdownSyntaxHighlighter.Result result, Range visible) {
+		this.result = result;
+
+		Range deferred = MarkdownSyntaxHighlighter.applyOrDefer(textArea, result, CHUNK_SIZE);
+		if (deferred != null)
+			pendingChunks.add(deferred);
+		if (!pendingChunks.isEmpty()) {
+			// normalize pending chunks (may overlap or be shifted by text changes)
+			pendingChunks.sort((r1, r2) -> Integer.compare(r1.start, r2.start));
+			List<Range> merged = merge(pendingChunks);
+			pendingChunks.clear();
+			for (Range range : merged)
+				pendingChunks.addAll(split(result.snapshot, range, CHUNK_SIZE));
+		}
+
+		visibleChanged(visible);
+		scheduleSlice();
+	}
+
+	/**
+	 * Applies not yet applied chunks of the given visible text range.
+	 */
+	void visibleChanged(Range visible) {
+		if (pendingChunks.isEmpty() || result == null || visible == null)
+			return;
+
+		int count = promote(pendingChunks, visible);
+		for (int i = 0; i < count; i++)
+			applyChunk(pendingChunks.remove(0));
+	}
+
+	/**
+	 * Shifts pending chunks. Pending chunks are applied when the next result is available.
+	 */
+	void textChanged(PlainTextChange change) {
+		result = null;
+		if (!pendingChunks.isEmpty())
+			shift(pendingChunks, change.getPosition(), change.getRemovalEnd(), change.getInsertionEnd());
+	}
+
+	/**
+	 * Cancels applying of pending chunks.
+	 * Because the text area does not have the styles of pending chunks,
+	 * the next highlighting applies the styles of the whole text.
+	 */
+	void cancel() {
+		if (!pendingChunks.isEmpty())
+			MarkdownSyntaxHighlighter.invalidateAppliedStyles(textArea);
+
+		pendingChunks.clear();
+		result = null;
+	}
+
+	boolean isPending() {
+		return !pendingChunks.isEmpty();
+	}
+
+	private void scheduleSlice() {
+		if (sliceScheduled || pendingChunks.isEmpty())
+			return;
+
+		sliceScheduled = true;
+		Platform.runLater(this::runSlice);
+	}
+
+	private void runSlice() {
+		sliceScheduled = false;
+		if (result == null)
+			return; // continued when next result is applied
+		if (pendingChunks.isEmpty())
+			return;
+
+		// apply at least one chunk per slice; more if within frame budget
+		// (slices are part of the highlighting cost)
+		updateScheduler.run(UpdateScheduler.Stage.Highlight, () -> {
+			long deadline = System.nanoTime() + updateScheduler.getFrameBudget() * 1_000_000L;
+			do {
+				applyChunk(pendingChunks.remove(0));
+			} while (!pendingChunks.isEmpty() && System.nanoTime() < deadline);
+		});
+
+		// give other events (e.g. key typed) a chance to run
+		scheduleSlice();
+	}
+
+	private void applyChunk(Range chunk) {
+		MarkdownSyntaxHighlighter.applyRange(textArea, result, chunk.start, chunk.end);
+	}
+
+	/**
+	 * Splits the text into chunks of whole lines, which have at least the given size
+	 * (except the last chunk).
+	 */
+	static List<Range> split(DocumentSnapshot snapshot, int chunkSize) {
+		return split(snapshot, new Range(0, snapshot.getLength()), chunkSize);
+	}
+
+	/**
+	 * Splits the given range of the text into chunks of whole lines, which have
+	 * at least the given size (except the last chunk).
+	 * The first chunk starts at the start of the range.
+	 */
+	static List<Range> split(DocumentSnapshot snapshot, Range range, int chunkSize) {
+		ArrayList<Range> chunks = new ArrayList<>();
+		int length = Math.min(range.end, snapshot.getLength());
+		int start = range.start;
+		while (start < length) {
+			int end = start + chunkSize;
+			if (end < length) {
+				// extend to start of next line
+				int line = snapshot.getLineOfOffset(end);
+				end = (line + 1 < snapshot.getLineCount()) ? Math.min(snapshot.getLineStart(line + 1), length) : length;
+			} else
+				end = length;
+
+			chunks.add(new Range(start, end));
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Merges overlapping or adjacent ranges of the given sorted list.
+	 */
+	static List<Range> merge(List<Range> ranges) {
+		ArrayList<Range> merged = new ArrayList<>();
+		for (Range range : ranges) {
+			Range last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && range.start <= last.end)
+				merged.set(merged.size() - 1, new Range(last.start, Math.max(last.end, range.end)));
+			else
+				merged.add(range);
+		}
+		return merged;
+	}
+
+	/**
+	 * Shifts the given ranges for a text change, which replaced the range
+	 * position to removalEnd of the old text with the range position to insertionEnd.
+	 * Ranges that intersect the change are extended to include the inserted text.
+	 */
+	static void shift(List<Range> ranges, int position, int removalEnd, int insertionEnd) {
+		int delta = insertionEnd - removalEnd;
+		for (int i = 0; i < ranges.size(); i++) {
+			Range range = ranges.get(i);
+			if (range.end < position)
+				continue;
+
+			int start = (range.start > removalEnd) ? range.start + delta : Math.min(range.start, position);
+			int end = (range.end >= removalEnd) ? range.end + delta : insertionEnd;
+			ranges.set(i, new Range(start, Math.max(end, start)));
+		}
+	}
+
+	/**
+	 * Moves the chunks that intersect the given range to the front of the given list
+	 * (keeping their order) and returns their count.
+	 */
+	static int promote(List<Range> chunks, Range range) {
+		int count = 0;
+		for (int i = 0; i < chunks.size(); i++) {
+			Range chunk = chunks.get(i);
+			if (chunk.start < range.end && chunk.end > range.start) {
+				if (i > count) {
+					chunks.remove(i);
+					chunks.add(count, chunk);
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+}
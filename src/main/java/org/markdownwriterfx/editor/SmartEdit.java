@@ -36,7 +36,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javafx.application.Platform;
@@ -51,6 +50,7 @@ import org.fxmisc.wellbehaved.event.Nodes;
 import org.markdownwriterfx.dialogs.ImageDialog;
 import org.markdownwriterfx.dialogs.LinkDialog;
 import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.util.NodeIndex;
 import org.markdownwriterfx.util.Utils;
 import com.vladsch.flexmark.ast.AutoLink;
 import com.vladsch.flexmark.ast.BlockQuote;
@@ -72,8 +72,6 @@ import com.vladsch.flexmark.ast.StrongEmphasis;
 import com.vladsch.flexmark.ext.gfm.strikethrough.Strikethrough;
 import com.vladsch.flexmark.util.ast.DelimitedNode;
 import com.vladsch.flexmark.util.ast.Node;
-import com.vladsch.flexmark.util.ast.NodeVisitor;
-import com.vladsch.flexmark.util.ast.Visitor;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 
 /**
@@ -133,6 +131,10 @@ public class SmartEdit
 		Platform.runLater(() -> {
 			updateStatePropertiesRunLaterPending = false;
 
+			// invoked again when markdown AST changes
+			if (!editor.isMarkdownASTCurrent())
+				return;
+
 			List<Node> nodesAtSelection = findNodesAtSelection((s, e, n) -> true, true, false);
 
 			boolean bold = false;
@@ -983,37 +985,12 @@ public class SmartEdit
 	 * Find all nodes that are within the given range and match a predicate.
 	 */
 	private <T> List<T> findNodes(int start, int end, FindNodePredicate predicate, boolean allowNested, boolean deepest) {
-		Node markdownAST = editor.getMarkdownAST();
+		Node markdownAST = editor.getCurrentMarkdownAST();
 		if (markdownAST == null)
 			return Collections.emptyList();
 
-		ArrayList<T> nodes = new ArrayList<>();
-		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
-			@SuppressWarnings("unchecked")
-			@Override
-			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
-				if (isInNode(start, end, node) && predicate.test(start, end, node)) {
-					if (deepest) {
-						int oldNodesSize = nodes.size();
-						visitChildren(node);
-
-						// add only if no other child was added
-						if (nodes.size() == oldNodesSize)
-							nodes.add((T) node);
-						return;
-					}
-
-					nodes.add((T) node);
-
-					if (!allowNested)
-						return; // do not visit children
-				}
-
-				visitChildren(node);
-			}
-		};
-		visitor.visit(markdownAST);
-		return nodes;
+		return NodeIndex.get(markdownAST).findNodes(start, end,
+			node -> predicate.test(start, end, node), allowNested, deepest);
 	}
 
 	private interface FindNodePredicate {
@@ -32,7 +32,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ServiceLoader;
 import java.util.function.BiConsumer;
 import javafx.scene.control.IndexRange;
 import javafx.scene.input.KeyEvent;
@@ -63,8 +62,6 @@ import static org.markdownwriterfx.addons.SmartFormatAddon.*;
  */
 class SmartFormat
 {
-	private static final ServiceLoader<SmartFormatAddon> addons
-		= ServiceLoader.load( SmartFormatAddon.class, Addons.getAddonsClassLoader() );
 
 	private final MarkdownEditorPane editor;
 	private final MarkdownTextArea textArea;
@@ -79,7 +76,7 @@ class SmartFormat
 	}
 
 	void format(boolean formatSelectionOnly, String oldMarkdown) {
-		Node markdownAST = editor.getMarkdownAST();
+		Node markdownAST = editor.getCurrentMarkdownAST();
 		if (markdownAST == null)
 			return;
 
@@ -176,14 +173,14 @@ class SmartFormat
 		String text = buf.toString();
 
 		// let addons protect text
-		for (SmartFormatAddon addon : addons)
+		for (SmartFormatAddon addon : Addons.getSmartFormatAddons())
 			text = addon.protect(text);
 
 		// format the paragraph text
 		text = formatText(text, wrapLength, indent, firstindent.length());
 
 		// let addons unprotect text
-		for (SmartFormatAddon hook : addons)
+		for (SmartFormatAddon hook : Addons.getSmartFormatAddons())
 			text = hook.unprotect(text);
 
 		return text;
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
+
+/**
+ * Interning table for style classes, shared by all editors and threads.
+ *
+ * Style bits (a {@code long}) consist of three parts:
+ * <ul>
+ * <li>bits 0 to TOKEN_SHIFT-1: one bit per {@link StyleClass} (1 << StyleClass.ordinal())
+ * <li>TOKEN_BITS bits: id of an interned set of token classes (e.g. "tag" and "attr-name"),
+ *     which get the additional style class "token"; 0 means no tokens
+ * <li>bits EXTRA_SHIFT to 63: one bit per extra layer (e.g. find hits),
+ *     whose style classes are resolved by the caller
+ * </ul>
+ *
+ * The number of token classes is not limited by the number of bits.
+ * Overlapping token sets are combined with {@link #unionTokenSets(int, int)}.
+ *
+ * Lookups are lock-free and do not allocate if the looked up
+ * value is already interned (which is the case in the steady state).
+ * Only adding new values is synchronized.
+ *
+ * @author Karl Tauber
+ */
+class StyleClassTable
+{
+	static final int TOKEN_SHIFT = StyleClass.values().length;
+	static final int TOKEN_BITS = 20;
+	static final long TOKEN_MASK = ((1L << TOKEN_BITS) - 1) << TOKEN_SHIFT;
+	static final int EXTRA_SHIFT = TOKEN_SHIFT + TOKEN_BITS;
+	static final int MAX_EXTRA_LAYERS = Long.SIZE - EXTRA_SHIFT;
+	static final long EXTRA_MASK = -1L << EXTRA_SHIFT;
+
+	private static final String TOKEN = "token";
+
+	// style bits of single token classes
+	private static final ConcurrentHashMap<String, Long> tokenBits = new ConcurrentHashMap<>();
+
+	// token classes of token sets (index is token set id); sorted
+	private static volatile String[][] tokenSets = { new String[0] };
+	// guarded by StyleClassTable.class
+	private static final HashMap<List<String>, Integer> tokenSetIds = new HashMap<>();
+
+	// key is (smaller id << 32 | larger id); value is union token set id
+	private static volatile LongTable tokenSetUnions = new LongTable(16);
+	// key is style bits (without extra layers); value is collection of style classes
+	private static volatile LongTable styleClasses = new LongTable(64);
+
+	/**
+	 * Returns the style bits of the given token class (e.g. "tag").
+	 */
+	static long tokenBits(String tokenClass) {
+		Long bits = tokenBits.get(tokenClass);
+		if (bits != null)
+			return bits;
+
+		bits = (long) internTokenSet(new String[] { tokenClass }) << TOKEN_SHIFT;
+		Long bits2 = tokenBits.putIfAbsent(tokenClass, bits);
+		return (bits2 != null) ? bits2 : bits;
+	}
+
+	/**
+	 * Returns the token set id of the given style bits.
+	 */
+	static int tokenSet(long bits) {
+		return (int) ((bits & TOKEN_MASK) >>> TOKEN_SHIFT);
+	}
+
+	/**
+	 * Returns the id of the token set that contains the token classes of both given sets.
+	 */
+	static int unionTokenSets(int set1, int set2) {
+		if (set1 == set2 || set2 == 0)
+			return set1;
+		if (set1 == 0)
+			return set2;
+
+		long key = ((long) Math.min(set1, set2) << 32) | Math.max(set1, set2);
+		Object union = tokenSetUnions.get(key);
+		if (union != null)
+			return (Integer) union;
+
+		synchronized (StyleClassTable.class) {
+			union = tokenSetUnions.get(key);
+			if (union != null)
+				return (Integer) union;
+
+			String[][] tokenSets = StyleClassTable.tokenSets;
+			TreeSet<String> tokenClasses = new TreeSet<>(Arrays.asList(tokenSets[set1]));
+			tokenClasses.addAll(Arrays.asList(tokenSets[set2]));
+			int id = internTokenSet(tokenClasses.toArray(new String[tokenClasses.size()]));
+
+			tokenSetUnions = tokenSetUnions.with(key, id);
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the style classes of the given style bits (without extra layers).
+	 * The returned collection must not be modified.
+	 */
+	@SuppressWarnings("unchecked")
+	static Collection<String> styleClasses(long bits) {
+		assert (bits & EXTRA_MASK) == 0;
+
+		if (bits == 0)
+			return Collections.emptyList();
+
+		Object classes = styleClasses.get(bits);
+		if (classes != null)
+			return (Collection<String>) classes;
+
+		synchronized (StyleClassTable.class) {
+			classes = styleClasses.get(bits);
+			if (classes != null)
+				return (Collection<String>) classes;
+
+			ArrayList<String> newClasses = new ArrayList<>(2);
+			for (StyleClass styleClass : StyleClass.values()) {
+				if ((bits & (1L << styleClass.ordinal())) != 0)
+					newClasses.add(styleClass.name());
+			}
+			int tokenSet = tokenSet(bits);
+			if (tokenSet != 0) {
+				newClasses.addAll(Arrays.asList(tokenSets[tokenSet]));
+				newClasses.add(TOKEN);
+			}
+
+			Collection<String> unmodifiableClasses = Collections.unmodifiableList(newClasses);
+			styleClasses = styleClasses.with(bits, unmodifiableClasses);
+			return unmodifiableClasses;
+		}
+	}
+
+	/**
+	 * Returns the number of interned token sets (for tests).
+	 */
+	static int tokenSetCount() {
+		return tokenSets.length;
+	}
+
+	private static synchronized int internTokenSet(String[] tokenClasses) {
+		List<String> key = Arrays.asList(tokenClasses);
+		Integer id = tokenSetIds.get(key);
+		if (id != null)
+			return id;
+
+		String[][] oldTokenSets = tokenSets;
+		if (oldTokenSets.length > (TOKEN_MASK >>> TOKEN_SHIFT))
+			throw new IllegalStateException("Too many token classes");
+
+		String[][] newTokenSets = Arrays.copyOf(oldTokenSets, oldTokenSets.length + 1);
+		newTokenSets[oldTokenSets.length] = tokenClasses;
+		tokenSets = newTokenSets;
+		tokenSetIds.put(key, oldTokenSets.length);
+		return oldTokenSets.length;
+	}
+
+	//---- class LongTable ----------------------------------------------------
+
+	/**
+	 * Immutable open addressing hash table with {@code long} keys.
+	 * Adding a key creates a new table (copy-on-write), which allows lock-free lookups.
+	 */
+	private static class LongTable
+	{
+		private final long[] keys;
+		private final Object[] values;
+		private final int size;
+
+		LongTable(int capacity) {
+			this(new long[capacity], new Object[capacity], 0);
+		}
+
+		private LongTable(long[] keys, Object[] values, int size) {
+			this.keys = keys;
+			this.values = values;
+			this.size = size;
+		}
+
+		Object get(long key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key)
+					return values[i];
+			}
+			return null;
+		}
+
+		LongTable with(long key, Object value) {
+			// keep load factor below 0.5
+			int capacity = keys.length;
+			if ((size + 1) * 2 > capacity)
+				capacity *= 2;
+
+			LongTable table = new LongTable(new long[capacity], new Object[capacity], size + 1);
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] != null)
+					table.put(keys[i], values[i]);
+			}
+			table.put(key, value);
+			return table;
+		}
+
+		private void put(long key, Object value) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (values[i] != null && keys[i] != key)
+				i = (i + 1) & mask;
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.util.Arrays;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
+import org.markdownwriterfx.util.Range;
+
+/**
+ * Immutable list of non-overlapping style ranges, sorted by begin index.
+ * Each range has style bits (see {@link StyleClassTable}).
+ *
+ * Stored in primitive arrays (no object per range).
+ * Built with {@link Builder}.
+ *
+ * @author Karl Tauber
+ */
+class StyleRanges
+{
+	static final StyleRanges EMPTY = new StyleRanges(new int[0], new int[0], new long[0], 0);
+
+	private final int[] begins;		// inclusive
+	private final int[] ends;		// exclusive
+	private final long[] styleBits;
+	private final int size;
+
+	private StyleRanges(int[] begins, int[] ends, long[] styleBits, int size) {
+		this.begins = begins;
+		this.ends = ends;
+		this.styleBits = styleBits;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int begin(int index) {
+		return begins[index];
+	}
+
+	int end(int index) {
+		return ends[index];
+	}
+
+	long styleBits(int index) {
+		return styleBits[index];
+	}
+
+	/**
+	 * Returns the index of the first range that ends after the given offset,
+	 * or size() if there is no such range.
+	 */
+	int indexAfter(int offset) {
+		int index = Arrays.binarySearch(ends, 0, size, offset);
+		return (index >= 0) ? index + 1 : -(index + 1);
+	}
+
+	/**
+	 * Returns the range of the new text where the given old style ranges
+	 * (of the old text) and the new style ranges differ, or {@code null} if they are equal.
+	 *
+	 * The old text was changed by replacing the range editStart to editOldEnd
+	 * with the range editStart to editNewEnd of the new text.
+	 * The returned range always includes the edited range because inserted text
+	 * does not have the styles of the old style ranges.
+	 * If the text was not changed, pass {@code Integer.MAX_VALUE} as editStart and 0 as edit ends.
+	 */
+	static Range changedRange(StyleRanges oldRanges, StyleRanges newRanges,
+		int editStart, int editOldEnd, int editNewEnd)
+	{
+		int delta = editNewEnd - editOldEnd;
+		int oldSize = oldRanges.size;
+		int newSize = newRanges.size;
+
+		// skip equal ranges before edit
+		int prefix = 0;
+		while (prefix < oldSize && prefix < newSize &&
+			newRanges.ends[prefix] <= editStart &&
+			oldRanges.begins[prefix] == newRanges.begins[prefix] &&
+			oldRanges.ends[prefix] == newRanges.ends[prefix] &&
+			oldRanges.styleBits[prefix] == newRanges.styleBits[prefix])
+		{
+			prefix++;
+		}
+
+		// skip equal (shifted) ranges after edit
+		int oldLast = oldSize - 1;
+		int newLast = newSize - 1;
+		while (oldLast >= prefix && newLast >= prefix &&
+			newRanges.begins[newLast] >= editNewEnd &&
+			oldRanges.begins[oldLast] + delta == newRanges.begins[newLast] &&
+			oldRanges.ends[oldLast] + delta == newRanges.ends[newLast] &&
+			oldRanges.styleBits[oldLast] == newRanges.styleBits[newLast])
+		{
+			oldLast--;
+			newLast--;
+		}
+
+		// changed range starts at first different range (or edit)
+		int start = editStart;
+		if (prefix < oldSize)
+			start = Math.min(start, oldRanges.begins[prefix]);
+		if (prefix < newSize)
+			start = Math.min(start, newRanges.begins[prefix]);
+
+		// changed range ends at last different range (or edit)
+		int end = editNewEnd;
+		if (oldLast >= prefix)
+			end = Math.max(end, oldRanges.ends[oldLast] + delta);
+		if (newLast >= prefix)
+			end = Math.max(end, newRanges.ends[newLast]);
+
+		return (start < end) ? new Range(start, end) : null;
+	}
+
+	/**
+	 * Returns the estimated memory usage.
+	 */
+	long memory() {
+		return 16L * begins.length;
+	}
+
+	//---- class Builder ------------------------------------------------------
+
+	/**
+	 * Composes (possibly overlapping) style ranges into non-overlapping ranges.
+	 *
+	 * Ranges are collected as begin/end events into primitive arrays,
+	 * which are sorted once in {@link #build()} and then swept from left to right.
+	 * Overlapping ranges are split at each begin/end index and the style bits
+	 * of the parts are combined (token sets are united). Adjacent ranges are not merged.
+	 * Adding a range is O(1); building is O(n log n).
+	 */
+	static class Builder
+	{
+		private int[] begins = new int[64];
+		private int[] ends = new int[64];
+		private long[] styleBits = new long[64];
+		private int size;
+
+		/**
+		 * Adds a style range. Empty ranges are ignored.
+		 *
+		 * @param begin the beginning index, inclusive
+		 * @param end   the ending index, exclusive
+		 */
+		void add(int begin, int end, StyleClass styleClass) {
+			add(begin, end, 1L << styleClass.ordinal());
+		}
+
+		/**
+		 * Adds a style range. Empty ranges are ignored.
+		 *
+		 * @param begin the beginning index, inclusive
+		 * @param end   the ending index, exclusive
+		 */
+		void add(int begin, int end, long styleBits) {
+			if (begin >= end || styleBits == 0)
+				return;
+
+			if (size == begins.length) {
+				int newLength = size * 2;
+				begins = Arrays.copyOf(begins, newLength);
+				ends = Arrays.copyOf(ends, newLength);
+				this.styleBits = Arrays.copyOf(this.styleBits, newLength);
+			}
+
+			begins[size] = begin;
+			ends[size] = end;
+			this.styleBits[size] = styleBits;
+			size++;
+		}
+
+		/**
+		 * Adds all ranges of the given style ranges.
+		 */
+		void addAll(StyleRanges ranges) {
+			for (int i = 0; i < ranges.size; i++)
+				add(ranges.begins[i], ranges.ends[i], ranges.styleBits[i]);
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		StyleRanges build() {
+			if (size == 0)
+				return EMPTY;
+
+			// events: index in upper 32 bits; range number and begin/end flag in lower 32 bits
+			// (begin and end events at the same index are processed together,
+			// so their order does not matter)
+			long[] events = new long[size * 2];
+			for (int i = 0; i < size; i++) {
+				events[i * 2] = ((long) begins[i] << 32) | (i << 1);
+				events[i * 2 + 1] = ((long) ends[i] << 32) | (i << 1) | 1;
+			}
+			Arrays.sort(events);
+
+			// sweep
+			int[] bitCounts = new int[64];
+			long activeBits = 0;
+			// token sets of active ranges (usually none or one)
+			int[] activeTokenSets = new int[8];
+			int activeTokenSetCount = 0;
+			int activeTokenSet = 0;
+			int[] newBegins = new int[events.length];
+			int[] newEnds = new int[events.length];
+			long[] newStyleBits = new long[events.length];
+			int newSize = 0;
+
+			int e = 0;
+			int prevIndex = (int) (events[0] >>> 32);
+			while (e < events.length) {
+				int index = (int) (events[e] >>> 32);
+
+				// emit range from previous event index to this event index
+				long rangeBits = activeBits | ((long) activeTokenSet << StyleClassTable.TOKEN_SHIFT);
+				if (rangeBits != 0 && index > prevIndex) {
+					newBegins[newSize] = prevIndex;
+					newEnds[newSize] = index;
+					newStyleBits[newSize] = rangeBits;
+					newSize++;
+				}
+
+				// process all events at this index
+				boolean tokenSetsChanged = false;
+				for (; e < events.length && (int) (events[e] >>> 32) == index; e++) {
+					int range = (int) events[e] >>> 1;
+					boolean isEnd = (events[e] & 1) != 0;
+
+					int tokenSet = StyleClassTable.tokenSet(styleBits[range]);
+					if (tokenSet != 0) {
+						if (isEnd) {
+							for (int i = activeTokenSetCount - 1; i >= 0; i--) {
+								if (activeTokenSets[i] == tokenSet) {
+									activeTokenSets[i] = activeTokenSets[--activeTokenSetCount];
+									break;
+								}
+							}
+						} else {
+							if (activeTokenSetCount == activeTokenSets.length)
+								activeTokenSets = Arrays.copyOf(activeTokenSets, activeTokenSetCount * 2);
+							activeTokenSets[activeTokenSetCount++] = tokenSet;
+						}
+						tokenSetsChanged = true;
+					}
+
+					for (long bits = styleBits[range] & ~StyleClassTable.TOKEN_MASK; bits != 0; bits &= bits - 1) {
+						int bit = Long.numberOfTrailingZeros(bits);
+						if (isEnd) {
+							if (--bitCounts[bit] == 0)
+								activeBits &= ~(1L << bit);
+						} else {
+							if (bitCounts[bit]++ == 0)
+								activeBits |= 1L << bit;
+						}
+					}
+				}
+				if (tokenSetsChanged) {
+					activeTokenSet = 0;
+					for (int i = 0; i < activeTokenSetCount; i++)
+						activeTokenSet = StyleClassTable.unionTokenSets(activeTokenSet, activeTokenSets[i]);
+				}
+				prevIndex = index;
+			}
+
+			return new StyleRanges(Arrays.copyOf(newBegins, newSize), Arrays.copyOf(newEnds, newSize),
+				Arrays.copyOf(newStyleBits, newSize), newSize);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.function.LongSupplier;
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.SimpleIntegerProperty;
+import org.markdownwriterfx.options.Options;
+import org.reactfx.util.FxTimer;
+import org.reactfx.util.Timer;
+
+/**
+ * Schedules the update stages (highlighting, preview, spell checking, etc)
+ * of a single markdown document after text changes.
+ *
+ * Measures the recent cost of each stage and adjusts the debounce delay of each stage
+ * so that the UI thread work per keystroke stays within the frame budget.
+ * For small documents all delays are zero. For large documents, the more expensive
+ * UI thread stages become, the less often they run while typing.
+ *
+ * All methods must be invoked on the JavaFX application thread.
+ *
+ * @author Karl Tauber
+ */
+public class UpdateScheduler
+{
+	public enum Stage {
+		/** Parsing markdown (runs in background thread; only measured, see ParseService). */
+		Parse(false, 0, false),
+		/** Syntax highlighting in editor (styles are computed in background thread;
+		 *  only applying styles is measured, see MarkdownEditorPane.highlightComputed()). */
+		Highlight(true, 0, false),
+		/** Embedding images in editor. */
+		EmbedImages(true, 0, true),
+		/** Rendering preview. */
+		Preview(true, 0, true),
+		/** Spell checking (runs in background thread). */
+		SpellCheck(false, 500, false);
+
+		final boolean uiThread;
+		final long minDelay;
+		/** whether scheduled runnables are measured (see schedule()) */
+		final boolean measureScheduled;
+
+		Stage(boolean uiThread, long minDelay, boolean measureScheduled) {
+			this.uiThread = uiThread;
+			this.minDelay = minDelay;
+			this.measureScheduled = measureScheduled;
+		}
+	}
+
+	/** weight of the latest measurement in the moving averages */
+	private static final double SMOOTHING = 0.3;
+	private static final long MAX_UI_DELAY = 1000;
+	private static final long MAX_BACKGROUND_DELAY = 5000;
+	private static final long MIN_TYPING_INTERVAL = 30;
+	private static final long MAX_TYPING_INTERVAL = 500;
+	private static final long DEF_TYPING_INTERVAL = 150;
+	private static final long PAUSE_DELAY = 750;
+
+	private final LongSupplier clock;
+	private final EnumMap<Stage, StageInfo> stages = new EnumMap<>(Stage.class);
+
+	private double typingInterval = DEF_TYPING_INTERVAL;
+	private long lastTextChangeTime = -1;
+	private long nestedNanos;
+
+	public UpdateScheduler() {
+		this(() -> System.nanoTime() / 1_000_000);
+		frameBudget.bind(Options.frameBudgetProperty());
+	}
+
+	UpdateScheduler(LongSupplier clock) {
+		this.clock = clock;
+		for (Stage stage : Stage.values())
+			stages.put(stage, new StageInfo(stage));
+	}
+
+	// 'frameBudget' property (in milliseconds)
+	private final IntegerProperty frameBudget = new SimpleIntegerProperty(Options.DEF_FRAME_BUDGET);
+	public int getFrameBudget() { return (frameBudget.get() > 0) ? frameBudget.get() : Options.DEF_FRAME_BUDGET; }
+	public IntegerProperty frameBudgetProperty() { return frameBudget; }
+
+	/**
+	 * Returns the measured recent cost (in milliseconds) of the given stage.
+	 */
+	public ReadOnlyDoubleProperty costProperty(Stage stage) {
+		return stages.get(stage).cost.getReadOnlyProperty();
+	}
+
+	/**
+	 * Returns the current debounce delay (in milliseconds) of the given stage.
+	 */
+	public ReadOnlyLongProperty delayProperty(Stage stage) {
+		return stages.get(stage).delay.getReadOnlyProperty();
+	}
+
+	/**
+	 * Invoke on each text change (keystroke) to measure typing speed.
+	 */
+	public void textChanged() {
+		long now = clock.getAsLong();
+		if (lastTextChangeTime >= 0) {
+			long interval = now - lastTextChangeTime;
+
+			// ignore pauses
+			if (interval <= MAX_TYPING_INTERVAL) {
+				interval = Math.max(interval, MIN_TYPING_INTERVAL);
+				typingInterval += (interval - typingInterval) * SMOOTHING;
+				updateDelays();
+			}
+		}
+		lastTextChangeTime = now;
+	}
+
+	/**
+	 * Schedules the given runnable to run after the debounce delay of the given stage.
+	 * If the stage is already scheduled, its delay starts again (trailing debounce),
+	 * but the runnable is invoked at latest after twice the delay so that
+	 * the stage is also updated while typing continuously.
+	 * Runs of UI thread stages are measured and change the delay,
+	 * except for stages that measure their actual work using {@link #run(Stage, Runnable)}
+	 * (e.g. highlighting, where the scheduled runnable only submits to a background thread).
+	 */
+	public void schedule(Stage stage, Runnable runnable) {
+		stages.get(stage).schedule(runnable);
+	}
+
+	/**
+	 * If enabled, the given stage runs only when typing pauses.
+	 */
+	public void setWaitForPause(Stage stage, boolean waitForPause) {
+		StageInfo info = stages.get(stage);
+		info.waitForPause = waitForPause;
+		info.delay.set(computeDelay(stage));
+	}
+
+	/**
+	 * Cancels a scheduled runnable of the given stage.
+	 */
+	public void cancel(Stage stage) {
+		stages.get(stage).cancel();
+	}
+
+	/**
+	 * Runs the given runnable immediately and measures its cost.
+	 * May be nested.
+	 */
+	public void run(Stage stage, Runnable runnable) {
+		// time of nested runs is not included in cost of this run
+		long outerNestedNanos = nestedNanos;
+		nestedNanos = 0;
+
+		long startTime = System.nanoTime();
+		try {
+			runnable.run();
+		} finally {
+			long nanos = System.nanoTime() - startTime;
+			addCost(stage, nanos - nestedNanos);
+			nestedNanos = outerNestedNanos + nanos;
+		}
+	}
+
+	/**
+	 * Adds a cost measurement (in nanoseconds) of the given stage,
+	 * e.g. of a stage that runs in a background thread.
+	 */
+	public void addCost(Stage stage, long nanos) {
+		StageInfo info = stages.get(stage);
+		double millis = nanos / 1_000_000.;
+		info.cost.set(info.measured ? info.cost.get() + (millis - info.cost.get()) * SMOOTHING : millis);
+		info.measured = true;
+		updateDelays();
+	}
+
+	private void updateDelays() {
+		for (StageInfo info : stages.values())
+			info.delay.set(computeDelay(info.stage));
+	}
+
+	/**
+	 * Computes the debounce delay of the given stage.
+	 *
+	 * UI thread stages: If the total cost of all UI thread stages is within the frame budget,
+	 * there is no delay. Otherwise the delay is chosen so that the stages run only
+	 * every n-th keystroke, where the UI thread work per keystroke is again within the budget:
+	 * {@code delay = totalCost * typingInterval / frameBudget}.
+	 *
+	 * Background stages: delay is at least the stage cost so that a new run does not
+	 * start before the previous run is likely finished.
+	 */
+	long computeDelay(Stage stage) {
+		if (stages.get(stage).waitForPause)
+			return Math.max(computeDelay0(stage), PAUSE_DELAY);
+		return computeDelay0(stage);
+	}
+
+	private long computeDelay0(Stage stage) {
+		if (stage.uiThread) {
+			double totalCost = 0;
+			for (StageInfo info : stages.values()) {
+				if (info.stage.uiThread)
+					totalCost += info.cost.get();
+			}
+
+			int budget = getFrameBudget();
+			if (totalCost <= budget)
+				return stage.minDelay;
+
+			long delay = Math.round(totalCost * typingInterval / budget);
+			return Math.min(Math.max(delay, stage.minDelay), MAX_UI_DELAY);
+		} else {
+			long delay = Math.round(stages.get(stage).cost.get());
+			return Math.min(Math.max(delay, stage.minDelay), Math.max(MAX_BACKGROUND_DELAY, stage.minDelay));
+		}
+	}
+
+	double getTypingInterval() {
+		return typingInterval;
+	}
+
+	//---- class StageInfo ----------------------------------------------------
+
+	private class StageInfo
+	{
+		final Stage stage;
+		final ReadOnlyDoubleWrapper cost = new ReadOnlyDoubleWrapper();
+		final ReadOnlyLongWrapper delay;
+		boolean measured;
+		boolean waitForPause;
+
+		Runnable pendingRunnable;
+		long pendingSince;
+		Timer timer;
+		boolean runLaterPending;
+
+		StageInfo(Stage stage) {
+			this.stage = stage;
+			delay = new ReadOnlyLongWrapper(stage.minDelay);
+		}
+
+		void schedule(Runnable runnable) {
+			long now = clock.getAsLong();
+			if (pendingRunnable == null)
+				pendingSince = now;
+			pendingRunnable = runnable;
+
+			if (timer != null) {
+				timer.stop();
+				timer = null;
+			}
+
+			long delay = this.delay.get();
+			if (delay > 0) {
+				// run at latest after twice the delay (if not waiting for pause)
+				long remaining = waitForPause
+					? delay
+					: Math.max(Math.min(delay, pendingSince + (2 * delay) - now), 0);
+				timer = FxTimer.runLater(Duration.ofMillis(remaining), this::runPending);
+			} else if (!runLaterPending) {
+				// avoid too many (and useless) runLater() invocations
+				runLaterPending = true;
+				Platform.runLater(() -> {
+					runLaterPending = false;
+					if (timer == null)
+						runPending();
+				});
+			}
+		}
+
+		void cancel() {
+			pendingRunnable = null;
+			if (timer != null) {
+				timer.stop();
+				timer = null;
+			}
+		}
+
+		private void runPending() {
+			timer = null;
+
+			Runnable runnable = pendingRunnable;
+			pendingRunnable = null;
+			if (runnable == null)
+				return;
+
+			// background stages measure their cost when finished (see addCost())
+			// and some UI thread stages measure only parts of their work (see run())
+			if (stage.measureScheduled)
+				run(stage, runnable);
+			else
+				runnable.run();
+		}
+	}
+}
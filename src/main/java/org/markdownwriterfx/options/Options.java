@@ -67,6 +67,10 @@ public class Options
 	public enum RendererType { CommonMark, FlexMark }
 	public static final int DEF_WRAP_LINE_LENGTH = 80;
 	public static final int MIN_WRAP_LINE_LENGTH = 10;
+	public static final int DEF_FRAME_BUDGET = 8;
+	public static final int MIN_FRAME_BUDGET = 1;
+	public static final int DEF_LARGE_DOCUMENT_SIZE = 200_000;
+	public static final int DEF_HUGE_DOCUMENT_SIZE = 1_000_000;
 
 	private static Preferences globalOptions;
 	private static Preferences options;
@@ -106,6 +110,11 @@ public class Options
 		// addons settings are always global
 		addonsPath.init(globalOptions, "addonsPath", null);
 
+		// performance settings are always global
+		frameBudget.init(globalOptions, "frameBudget", DEF_FRAME_BUDGET);
+		largeDocumentSize.init(globalOptions, "largeDocumentSize", DEF_LARGE_DOCUMENT_SIZE);
+		hugeDocumentSize.init(globalOptions, "hugeDocumentSize", DEF_HUGE_DOCUMENT_SIZE);
+
 		// listen to active project
 		ProjectManager.activeProjectProperty().addListener((observer, oldProject, newProject) -> {
 			set(getProjectOptions(newProject));
@@ -146,6 +155,10 @@ public class Options
 		additionalCSS.setPreferences(options);
 
 		addonsPath.setPreferences(globalOptions);
+
+		frameBudget.setPreferences(globalOptions);
+		largeDocumentSize.setPreferences(globalOptions);
+		hugeDocumentSize.setPreferences(globalOptions);
 	}
 
 	private static Preferences getProjectOptions(File project) {
@@ -342,4 +355,25 @@ public class Options
 	public static String getAddonsPath() { return addonsPath.get(); }
 	public static void setAddonsPath(String addonsPath) { Options.addonsPath.set(addonsPath); }
 	public static StringProperty addonsPathProperty() { return addonsPath; }
+
+	// 'frameBudget' property
+	// (maximum UI thread work in milliseconds per keystroke)
+	private static final PrefsIntegerProperty frameBudget = new PrefsIntegerProperty();
+	public static int getFrameBudget() { return frameBudget.get(); }
+	public static void setFrameBudget(int frameBudget) { Options.frameBudget.set(Math.max(frameBudget, MIN_FRAME_BUDGET)); }
+	public static IntegerProperty frameBudgetProperty() { return frameBudget; }
+
+	// 'largeDocumentSize' property
+	// (documents with at least this number of characters do not embed images and defer preview)
+	private static final PrefsIntegerProperty largeDocumentSize = new PrefsIntegerProperty();
+	public static int getLargeDocumentSize() { return largeDocumentSize.get(); }
+	public static void setLargeDocumentSize(int largeDocumentSize) { Options.largeDocumentSize.set(largeDocumentSize); }
+	public static IntegerProperty largeDocumentSizeProperty() { return largeDocumentSize; }
+
+	// 'hugeDocumentSize' property
+	// (documents with at least this number of characters highlight and spell check only visible text)
+	private static final PrefsIntegerProperty hugeDocumentSize = new PrefsIntegerProperty();
+	public static int getHugeDocumentSize() { return hugeDocumentSize.get(); }
+	public static void setHugeDocumentSize(int hugeDocumentSize) { Options.hugeDocumentSize.set(hugeDocumentSize); }
+	public static IntegerProperty hugeDocumentSizeProperty() { return hugeDocumentSize; }
 }
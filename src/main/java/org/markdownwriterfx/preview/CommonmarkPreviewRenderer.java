@@ -31,7 +31,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.ServiceLoader;
 import org.commonmark.node.AbstractVisitor;
 import org.commonmark.node.Code;
 import org.commonmark.node.FencedCodeBlock;
@@ -45,16 +44,15 @@ import org.commonmark.node.Node;
 import org.commonmark.node.SourceSpan;
 import org.commonmark.node.Text;
 import org.commonmark.node.Visitor;
-import org.commonmark.parser.IncludeSourceSpans;
-import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.AttributeProvider;
 import org.commonmark.renderer.html.AttributeProviderContext;
 import org.commonmark.renderer.html.AttributeProviderFactory;
 import org.commonmark.renderer.html.HtmlRenderer;
 import org.markdownwriterfx.addons.PreviewRendererAddon;
-import org.markdownwriterfx.options.MarkdownExtensions;
 import org.markdownwriterfx.util.Addons;
 import org.markdownwriterfx.util.CommonmarkSourcePositions;
+import org.markdownwriterfx.util.MarkdownCache;
+import org.markdownwriterfx.util.MarkdownProcessors;
 import org.markdownwriterfx.util.Range;
 
 /**
@@ -65,8 +63,9 @@ import org.markdownwriterfx.util.Range;
 class CommonmarkPreviewRenderer
 	implements MarkdownPreviewPane.Renderer
 {
-	private static final ServiceLoader<PreviewRendererAddon> addons
-		= ServiceLoader.load( PreviewRendererAddon.class, Addons.getAddonsClassLoader() );
+
+	// source positions of the AST that is currently rendered (used by MyAttributeProvider)
+	private static final ThreadLocal<CommonmarkSourcePositions> renderSourcePositions = new ThreadLocal<>();
 
 	private String markdownText;
 	private com.vladsch.flexmark.util.ast.Node flexAstRoot;
@@ -145,11 +144,7 @@ class CommonmarkPreviewRenderer
 	}
 
 	private Node parseMarkdown(String text) {
-		Parser parser = Parser.builder()
-				.extensions(MarkdownExtensions.getCommonmarkExtensions())
-				.includeSourceSpans(IncludeSourceSpans.BLOCKS_AND_INLINES)
-				.build();
-		return parser.parse(text);
+		return MarkdownProcessors.getCommonmarkParser().parse(text);
 	}
 
 	private Node toAstRoot() {
@@ -165,11 +160,28 @@ class CommonmarkPreviewRenderer
 	}
 
 	private String toHtml(boolean source) {
+		if (!Addons.hasPreviewRendererAddons()) {
+			// no addons --> HTML depends only on the AST from editor --> cache it
+			return MarkdownCache.getHtml(flexAstRoot, source ? "commonmark-source" : "commonmark-preview",
+				() -> renderHtml(source));
+		}
+		return renderHtml(source);
+	}
+
+	private String renderHtml(boolean source) {
+		if (!Addons.hasPreviewRendererAddons() && MarkdownProcessors.canRenderCommonmarkWithFlexmark()) {
+			// no addons and only compatible extensions --> render AST from editor
+			// (avoids parsing markdown text again with commonmark-java)
+			com.vladsch.flexmark.html.HtmlRenderer renderer = MarkdownProcessors.getFlexmarkCommonmarkHtmlRenderer(
+				source ? null : FlexmarkPreviewRenderer.MyAttributeProvider.Factory.INSTANCE);
+			return renderer.render(flexAstRoot);
+		}
+
 		Node astRoot;
-		if (addons.iterator().hasNext()) {
+		if (Addons.hasPreviewRendererAddons()) {
 			String text = markdownText;
 
-			for (PreviewRendererAddon addon : addons)
+			for (PreviewRendererAddon addon : Addons.getPreviewRendererAddons())
 				text = addon.preParse(text, path);
 
 			astRoot = parseMarkdown(text);
@@ -181,13 +193,20 @@ class CommonmarkPreviewRenderer
 		if (astRoot == null)
 			return "";
 
-		HtmlRenderer.Builder builder = HtmlRenderer.builder()
-				.extensions(MarkdownExtensions.getCommonmarkExtensions());
-		if (!source)
-			builder.attributeProviderFactory(new MyAttributeProvider());
-		String html = builder.build().render(astRoot);
+		HtmlRenderer renderer = MarkdownProcessors.getCommonmarkHtmlRenderer(
+			source ? null : MyAttributeProvider.INSTANCE);
+		String html;
+		if (!source) {
+			renderSourcePositions.set(toSourcePositions());
+			try {
+				html = renderer.render(astRoot);
+			} finally {
+				renderSourcePositions.remove();
+			}
+		} else
+			html = renderer.render(astRoot);
 
-		for (PreviewRendererAddon addon : addons)
+		for (PreviewRendererAddon addon : Addons.getPreviewRendererAddons())
 			html = addon.postRender(html, path);
 
 		return html;
@@ -278,9 +297,11 @@ class CommonmarkPreviewRenderer
 
 	//---- class MyAttributeProvider ------------------------------------------
 
-	private class MyAttributeProvider
+	private static class MyAttributeProvider
 		implements AttributeProviderFactory, AttributeProvider
 	{
+		static final MyAttributeProvider INSTANCE = new MyAttributeProvider();
+
 		@Override
 		public AttributeProvider create(AttributeProviderContext context) {
 			return this;
@@ -288,7 +309,7 @@ class CommonmarkPreviewRenderer
 
 		@Override
 		public void setAttributes(Node node, String tagName, Map<String, String> attributes) {
-			Range range = toSourcePositions().get(node);
+			Range range = renderSourcePositions.get().get(node);
 			if (range != null)
 				attributes.put("data-pos", range.start + ":" + range.end);
 		}
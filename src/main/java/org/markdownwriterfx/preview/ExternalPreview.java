@@ -27,9 +27,6 @@
 
 package org.markdownwriterfx.preview;
 
-import java.util.Iterator;
-import java.util.ServiceLoader;
-
 import javafx.scene.control.IndexRange;
 import javafx.scene.control.Label;
 
@@ -47,23 +44,16 @@ import org.markdownwriterfx.util.Addons;
 class ExternalPreview
 	implements MarkdownPreviewPane.Preview
 {
-	private static final boolean hasExternalPreview =
-		ServiceLoader.load( PreviewViewAddon.class, Addons.getAddonsClassLoader() ).iterator().hasNext();
-
-	private PreviewViewAddon previewView;
+	private final PreviewViewAddon previewView;
 
 	ExternalPreview() {
-		// Not using a static field for service loader here because each instance of this class
-		// requires a new instance of PreviewViewAddon.
-		// This allows PreviewViewAddon implementations to store information in fields.
-		ServiceLoader<PreviewViewAddon> addons = ServiceLoader.load( PreviewViewAddon.class, Addons.getAddonsClassLoader() );
-		Iterator<PreviewViewAddon> it = addons.iterator();
-		if (it.hasNext())
-			previewView = it.next();
+		// each instance of this class requires a new instance of PreviewViewAddon
+		// this allows PreviewViewAddon implementations to store information in fields
+		previewView = Addons.createPreviewViewAddon();
 	}
 
 	static boolean hasExternalPreview() {
-		return hasExternalPreview;
+		return Addons.hasPreviewViewAddon();
 	}
 
 	@Override
@@ -29,13 +29,12 @@ package org.markdownwriterfx.preview;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.ServiceLoader;
-import java.util.function.BiConsumer;
 import org.markdownwriterfx.addons.PreviewRendererAddon;
-import org.markdownwriterfx.options.MarkdownExtensions;
 import org.markdownwriterfx.util.Addons;
+import org.markdownwriterfx.util.MarkdownCache;
+import org.markdownwriterfx.util.MarkdownProcessors;
+import org.markdownwriterfx.util.NodeIndex;
 import org.markdownwriterfx.util.Range;
 import com.vladsch.flexmark.ast.Heading;
 import com.vladsch.flexmark.html.AttributeProvider;
@@ -43,10 +42,7 @@ import com.vladsch.flexmark.html.HtmlRenderer;
 import com.vladsch.flexmark.html.IndependentAttributeProviderFactory;
 import com.vladsch.flexmark.html.renderer.AttributablePart;
 import com.vladsch.flexmark.html.renderer.LinkResolverContext;
-import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.ast.Node;
-import com.vladsch.flexmark.util.ast.NodeVisitor;
-import com.vladsch.flexmark.util.ast.Visitor;
 import com.vladsch.flexmark.util.html.MutableAttributes;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 
@@ -58,8 +54,6 @@ import com.vladsch.flexmark.util.sequence.BasedSequence;
 class FlexmarkPreviewRenderer
 	implements MarkdownPreviewPane.Renderer
 {
-	private static final ServiceLoader<PreviewRendererAddon> addons
-		= ServiceLoader.load( PreviewRendererAddon.class, Addons.getAddonsClassLoader() );
 
 	private String markdownText;
 	private Node astRoot;
@@ -116,22 +110,18 @@ class FlexmarkPreviewRenderer
 		if (astRoot == null)
 			return sequences;
 
-		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
-			@Override
-			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
-				BasedSequence chars = node.getChars();
-				if (isInSequence(startOffset, endOffset, chars))
-					sequences.add(new Range(chars.getStartOffset(), chars.getEndOffset()));
-
-				for (BasedSequence segment : node.getSegments()) {
-					if (isInSequence(startOffset, endOffset, segment))
-						sequences.add(new Range(segment.getStartOffset(), segment.getEndOffset()));
-				}
+		// segments of a node are within the node chars,
+		// so only nodes that intersect with the range need to be checked
+		for (Node node : NodeIndex.get(astRoot).getNodes(startOffset, endOffset)) {
+			BasedSequence chars = node.getChars();
+			if (isInSequence(startOffset, endOffset, chars))
+				sequences.add(new Range(chars.getStartOffset(), chars.getEndOffset()));
 
-				visitChildren(node);
+			for (BasedSequence segment : node.getSegments()) {
+				if (isInSequence(startOffset, endOffset, segment))
+					sequences.add(new Range(segment.getStartOffset(), segment.getEndOffset()));
 			}
-		};
-		visitor.visit(astRoot);
+		}
 		return sequences;
 	}
 
@@ -142,14 +132,11 @@ class FlexmarkPreviewRenderer
 	}
 
 	private Node parseMarkdown(String text) {
-		Parser parser = Parser.builder()
-				.extensions(MarkdownExtensions.getFlexmarkExtensions())
-				.build();
-		return parser.parse(text);
+		return MarkdownProcessors.getFlexmarkParser(null).parse(text);
 	}
 
 	private Node toAstRoot() {
-		if (!addons.iterator().hasNext())
+		if (!Addons.hasPreviewRendererAddons())
 			return astRoot; // no addons --> use AST from editor
 
 		if (astRoot2 == null)
@@ -158,11 +145,20 @@ class FlexmarkPreviewRenderer
 	}
 
 	private String toHtml(boolean source) {
+		if (!Addons.hasPreviewRendererAddons()) {
+			// no addons --> HTML depends only on the AST from editor --> cache it
+			return MarkdownCache.getHtml(astRoot, source ? "flexmark-source" : "flexmark-preview",
+				() -> renderHtml(source));
+		}
+		return renderHtml(source);
+	}
+
+	private String renderHtml(boolean source) {
 		Node astRoot;
-		if (addons.iterator().hasNext()) {
+		if (Addons.hasPreviewRendererAddons()) {
 			String text = markdownText;
 
-			for (PreviewRendererAddon addon : addons)
+			for (PreviewRendererAddon addon : Addons.getPreviewRendererAddons())
 				text = addon.preParse(text, path);
 
 			astRoot = parseMarkdown(text);
@@ -174,13 +170,11 @@ class FlexmarkPreviewRenderer
 		if (astRoot == null)
 			return "";
 
-		HtmlRenderer.Builder builder = HtmlRenderer.builder()
-				.extensions(MarkdownExtensions.getFlexmarkExtensions());
-		if (!source)
-			builder.attributeProviderFactory(new MyAttributeProvider.Factory());
-		String html = builder.build().render(astRoot);
+		HtmlRenderer renderer = MarkdownProcessors.getFlexmarkHtmlRenderer(
+			source ? null : MyAttributeProvider.Factory.INSTANCE);
+		String html = renderer.render(astRoot);
 
-		for (PreviewRendererAddon addon : addons)
+		for (PreviewRendererAddon addon : Addons.getPreviewRendererAddons())
 			html = addon.postRender(html, path);
 
 		return html;
@@ -218,12 +212,14 @@ class FlexmarkPreviewRenderer
 
 	//---- class MyAttributeProvider ------------------------------------------
 
-	private static class MyAttributeProvider
+	static class MyAttributeProvider
 		implements AttributeProvider
 	{
-		private static class Factory
+		static class Factory
 			extends IndependentAttributeProviderFactory
 		{
+			static final Factory INSTANCE = new Factory();
+
 			@Override
 			public AttributeProvider apply(LinkResolverContext context) {
 				return new MyAttributeProvider();
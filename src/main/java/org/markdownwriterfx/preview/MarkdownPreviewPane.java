@@ -34,10 +34,11 @@ import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.WeakChangeListener;
 import javafx.scene.control.IndexRange;
 import javafx.scene.layout.BorderPane;
+import org.markdownwriterfx.editor.DocumentSnapshot;
+import org.markdownwriterfx.editor.UpdateScheduler;
 import org.markdownwriterfx.options.Options;
 import org.markdownwriterfx.options.Options.RendererType;
 import org.markdownwriterfx.util.Range;
@@ -62,6 +63,7 @@ public class MarkdownPreviewPane
 	private RendererType activeRendererType;
 	private Renderer activeRenderer;
 	private Preview activePreview;
+	private UpdateScheduler updateScheduler;
 
 	interface Renderer {
 		void update(String markdownText, Node astRoot, Path path);
@@ -90,14 +92,14 @@ public class MarkdownPreviewPane
 
 		previewContext = new PreviewContext() {
 			@Override public Renderer getRenderer() { return activeRenderer; }
-			@Override public String getMarkdownText() { return markdownText.get(); }
+			@Override public String getMarkdownText() { return MarkdownPreviewPane.this.getMarkdownText(); }
 			@Override public Node getMarkdownAST() { return markdownAST.get(); }
 			@Override public Path getPath() { return path.get(); }
 			@Override public IndexRange getEditorSelection() { return editorSelection.get(); }
 		};
 
 		path.addListener((observable, oldValue, newValue) -> update() );
-		markdownText.addListener((observable, oldValue, newValue) -> update() );
+		markdownSnapshot.addListener((observable, oldValue, newValue) -> update() );
 		markdownAST.addListener((observable, oldValue, newValue) -> update() );
 		scrollY.addListener((observable, oldValue, newValue) -> scrollY());
 		editorSelection.addListener((observable, oldValue, newValue) -> editorSelectionChanged());
@@ -114,6 +116,14 @@ public class MarkdownPreviewPane
 		return pane;
 	}
 
+	/**
+	 * Sets the scheduler used for preview updates.
+	 * If set, preview updates are delayed for large documents while typing.
+	 */
+	public void setUpdateScheduler(UpdateScheduler updateScheduler) {
+		this.updateScheduler = updateScheduler;
+	}
+
 	public void setRendererType(RendererType rendererType) {
 		if (rendererType == null)
 			rendererType = RendererType.CommonMark;
@@ -153,6 +163,11 @@ public class MarkdownPreviewPane
 		if (activePreview == null)
 			return;
 
+		if (updateScheduler != null) {
+			updateScheduler.schedule(UpdateScheduler.Stage.Preview, this::updateNow);
+			return;
+		}
+
 		// avoid too many (and useless) runLater() invocations
 		if (updateRunLaterPending)
 			return;
@@ -160,12 +175,18 @@ public class MarkdownPreviewPane
 
 		Platform.runLater(() -> {
 			updateRunLaterPending = false;
-
-			activeRenderer.update(markdownText.get(), markdownAST.get(), path.get());
-			activePreview.update(previewContext, activeRenderer);
+			updateNow();
 		});
 	}
 
+	private void updateNow() {
+		if (activePreview == null)
+			return;
+
+		activeRenderer.update(getMarkdownText(), markdownAST.get(), path.get());
+		activePreview.update(previewContext, activeRenderer);
+	}
+
 	private boolean scrollYrunLaterPending;
 	private void scrollY() {
 		if (activePreview == null)
@@ -207,9 +228,14 @@ public class MarkdownPreviewPane
 	private final ObjectProperty<Path> path = new SimpleObjectProperty<>();
 	public ObjectProperty<Path> pathProperty() { return path; }
 
-	// 'markdownText' property
-	private final SimpleStringProperty markdownText = new SimpleStringProperty();
-	public SimpleStringProperty markdownTextProperty() { return markdownText; }
+	// 'markdownSnapshot' property (snapshot of the text parsed to markdownAST)
+	private final ObjectProperty<DocumentSnapshot> markdownSnapshot = new SimpleObjectProperty<>();
+	public ObjectProperty<DocumentSnapshot> markdownSnapshotProperty() { return markdownSnapshot; }
+
+	private String getMarkdownText() {
+		DocumentSnapshot snapshot = markdownSnapshot.get();
+		return (snapshot != null) ? snapshot.getText() : null;
+	}
 
 	// 'markdownAST' property
 	private final ObjectProperty<Node> markdownAST = new SimpleObjectProperty<>();
@@ -28,15 +28,18 @@
 package org.markdownwriterfx.spellchecker;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.function.Supplier;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.IntegerProperty;
@@ -49,28 +52,65 @@ import org.languagetool.markup.AnnotatedText;
 import org.languagetool.rules.Rule;
 import org.languagetool.rules.RuleMatch;
 import org.languagetool.rules.spelling.SpellingCheckRule;
+import org.markdownwriterfx.addons.SpellCheckerAddon;
 import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.util.Addons;
 
 /**
  * Global language tool used for all editors (because initialization
  * of JLanguageTool is slow and there can be only one active editor).
  *
+ * JLanguageTool is not thread-safe. To check blocks in parallel,
+ * a bounded pool of JLanguageTool instances is used, which share
+ * one result cache, the ignored words and the disabled rules.
+ * Changes of ignored words or disabled rules increment the configuration
+ * version and are applied to a pooled instance when it is borrowed next time.
+ *
+ * Rule matches of checked blocks are also stored in a persistent cache,
+ * keyed by a hash of the configuration, so that unchanged blocks
+ * do not need to be checked again after restarting the application.
+ *
  * @author Karl Tauber
  */
 class GlobalLanguageTool
 {
-	// global JLanguageTool used in executor
-	private JLanguageTool languageTool;
+	static final int MAX_POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+	// all fields are guarded by 'this'
 
-	// global ResultCache used by global JLanguageTool
+	// language of pooled JLanguageTools; or null if not initialized
+	private Language language;
+
+	// global ResultCache used by all pooled JLanguageTools
 	private ResultCacheEx cache;
 
 	// global user dictionary
 	private UserDictionary userDictionary;
 
+	// pool of JLanguageTools
+	private final ArrayDeque<PooledLanguageTool> idleLanguageTools = new ArrayDeque<>();
+	private int languageToolCount;
+	private int poolGeneration;
+
+	// configuration applied to all pooled JLanguageTools
+	private int configVersion;
+	private Set<String> disabledRuleIds = Collections.emptySet();
+	private final ArrayList<String> ignoreWords = new ArrayList<>();
+
+	// hash of configuration (used as key in persistent cache)
+	private long configHash;
+	private int configHashVersion = -1;
+
+	// all rules of pooled JLanguageTools (key is full rule ID); or null if not yet known
+	private Map<String, Rule> rules;
+
 	// global ignored words (keeps ignored words when switching spell checking off and on)
 	private static final Set<String> wordsToBeIgnored = new HashSet<>();
 
+	// global persistent cache of rule matches of blocks
+	private static final PersistentSpellCache persistentCache = new PersistentSpellCache(
+		PersistentSpellCache.getDefaultDirectory(), PersistentSpellCache.DEFAULT_MAX_FILE_SIZE);
+
 	GlobalLanguageTool() {
 		Options.spellCheckerProperty().addListener((observer, oldValue, newValue) -> {
 			if (!newValue)
@@ -87,30 +127,28 @@ class GlobalLanguageTool
 		Options.userDictionaryProperty().addListener(optionsListener);
 
 		Options.disabledRulesProperty().addListener((observer, oldDisabledRules, newDisabledRules) -> {
-			if (!isInitialized())
-				return;
-
-			// remove old disabled rules
-			for (String ruleId : Options.ruleIdDescs2ids(oldDisabledRules))
-				languageTool.enableRule(ruleId);
+			synchronized (this) {
+				if (!isInitialized())
+					return;
 
-			// add new disabled rules
-			languageTool.disableRules(Options.ruleIdDescs2ids(newDisabledRules));
+				// applied to pooled language tools when borrowed
+				disabledRuleIds = new HashSet<>(Options.ruleIdDescs2ids(newDisabledRules));
+				configVersion++;
+			}
 
 			requestCheck();
 		});
 	}
 
-	boolean isInitialized() {
-		return languageTool != null;
+	synchronized boolean isInitialized() {
+		return language != null;
 	}
 
-	void initialize() {
-		if (languageTool != null)
+	synchronized void initialize() {
+		if (language != null)
 			return;
 
 		// get language
-		Language language;
 		try {
 			String langCode = Options.getLanguage();
 			language = (langCode != null)
@@ -123,30 +161,30 @@ class GlobalLanguageTool
 		// create cache
 		cache = new ResultCacheEx(10000, 1, TimeUnit.DAYS);
 
-		// create language tool
-		languageTool = new JLanguageTool(language, null, cache);
-
-		// disable rules
-		languageTool.disableRules(Options.ruleIdDescs2ids(Options.getDisabledRules()));
-		if (!Options.isGrammarChecker()) {
-			for (Rule rule : languageTool.getAllRules()) {
-				if (!rule.isDictionaryBasedSpellingRule())
-					languageTool.disableRule(rule.getId());
-			}
-		}
+		// disabled rules
+		disabledRuleIds = new HashSet<>(Options.ruleIdDescs2ids(Options.getDisabledRules()));
 
 		// get user dictionary
 		userDictionary = new UserDictionary();
 
 		// ignore words
-		addIgnoreTokens(userDictionary.getWords());
-		addIgnoreTokens(Arrays.asList(wordsToBeIgnored.toArray(new String[wordsToBeIgnored.size()])));
+		ignoreWords.clear();
+		ignoreWords.addAll(userDictionary.getWords());
+		ignoreWords.addAll(wordsToBeIgnored);
+		configVersion++;
 	}
 
-	private void uninitialize() {
-		languageTool = null;
+	private synchronized void uninitialize() {
+		language = null;
 		cache = null;
 		userDictionary = null;
+		rules = null;
+
+		// drop pooled language tools (borrowed ones are dropped when released)
+		idleLanguageTools.clear();
+		languageToolCount = 0;
+		poolGeneration++;
+		notifyAll();
 	}
 
 	// 'checkRequestID' property
@@ -170,15 +208,191 @@ class GlobalLanguageTool
 	}
 	private Runnable requestCheckRunnable;
 
-	List<RuleMatch> check(AnnotatedText text)
+	/**
+	 * Checks the given block text using a pooled JLanguageTool,
+	 * or returns the rule matches from the persistent cache.
+	 * Can be invoked in several threads at the same time.
+	 *
+	 * @throws IllegalStateException if not initialized (e.g. user turned spell checking off)
+	 */
+	List<RuleMatch> check(String blockText, Supplier<AnnotatedText> annotatedText)
 		throws IllegalStateException, IOException
 	{
-		// languageTool may be set to null in another thread --> get it only once
-		JLanguageTool languageTool = this.languageTool;
-		if (languageTool == null)
+		long configHash;
+		int configVersion;
+		synchronized (this) {
+			if (language == null)
+				throw new IllegalStateException();
+			configHash = getConfigHash();
+			configVersion = this.configVersion;
+		}
+
+		// rules are resolved lazily, so that cached blocks without matches
+		// do not create a language tool
+		List<RuleMatch> ruleMatches = persistentCache.get(configHash, blockText, ruleId -> getRules().get(ruleId));
+		if (ruleMatches != null)
+			return ruleMatches;
+
+		PooledLanguageTool languageTool = borrow();
+		try {
+			ruleMatches = languageTool.languageTool.check(annotatedText.get());
+		} finally {
+			release(languageTool);
+		}
+
+		// remember rule matches only if the configuration did not change while checking
+		synchronized (this) {
+			if (configVersion == this.configVersion && language != null)
+				persistentCache.put(configHash, blockText, ruleMatches);
+		}
+		return ruleMatches;
+	}
+
+	/**
+	 * Writes new rule matches to the persistent cache file.
+	 * Must be invoked in the spell checking thread while no blocks are checked
+	 * (serializing may compute lazy suggestions using pooled JLanguageTools).
+	 */
+	void flushPersistentCache() {
+		persistentCache.flush();
+	}
+
+	/**
+	 * Returns a hash of the configuration that affects rule matches:
+	 * language, rules, ignored words (including user dictionary) and addons.
+	 * Word and rule hashes are combined order-independent.
+	 */
+	private long getConfigHash() {
+		if (configHashVersion == configVersion)
+			return configHash;
+
+		long hash = PersistentSpellCache.hash(0, JLanguageTool.VERSION);
+		hash = PersistentSpellCache.hash(hash, language.getShortCodeWithCountryAndVariant());
+		hash = PersistentSpellCache.hash(hash, Boolean.toString(Options.isGrammarChecker()));
+		for (SpellCheckerAddon addon : Addons.getSpellCheckerAddons())
+			hash = PersistentSpellCache.hash(hash, addon.getClass().getName());
+
+		long disabledRulesHash = 0;
+		for (String ruleId : disabledRuleIds)
+			disabledRulesHash += PersistentSpellCache.hash(0, ruleId);
+		long ignoreWordsHash = 0;
+		for (String word : new HashSet<>(ignoreWords))
+			ignoreWordsHash += PersistentSpellCache.hash(0, word);
+
+		configHash = hash * 31 + disabledRulesHash * 17 + ignoreWordsHash;
+		configHashVersion = configVersion;
+		return configHash;
+	}
+
+	/**
+	 * Returns all rules of the pooled JLanguageTools (including disabled ones),
+	 * which are used to restore rule matches from the persistent cache.
+	 */
+	private Map<String, Rule> getRules() {
+		synchronized (this) {
+			if (rules != null)
+				return rules;
+		}
+
+		PooledLanguageTool languageTool = borrow();
+		try {
+			HashMap<String, Rule> newRules = new HashMap<>();
+			for (Rule rule : languageTool.languageTool.getAllRules())
+				newRules.putIfAbsent(rule.getFullId(), rule);
+
+			synchronized (this) {
+				if (languageTool.poolGeneration == poolGeneration)
+					rules = newRules;
+			}
+			return newRules;
+		} finally {
+			release(languageTool);
+		}
+	}
+
+	/**
+	 * Returns a JLanguageTool from the pool, which is configured with the current
+	 * configuration. Creates a new one if there is no idle one and the pool is
+	 * not full, otherwise waits until one is released.
+	 */
+	private PooledLanguageTool borrow() {
+		PooledLanguageTool languageTool;
+		Language language;
+		int generation;
+		synchronized (this) {
+			for (;;) {
+				if (this.language == null)
+					throw new IllegalStateException();
+
+				languageTool = idleLanguageTools.pollFirst();
+				if (languageTool != null || languageToolCount < MAX_POOL_SIZE)
+					break;
+
+				try {
+					wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(ex);
+				}
+			}
+
+			if (languageTool == null)
+				languageToolCount++;
+			language = this.language;
+			generation = poolGeneration;
+		}
+
+		// create new language tool (slow) outside of lock
+		if (languageTool == null) {
+			try {
+				languageTool = new PooledLanguageTool(new JLanguageTool(language, null, getCache()), generation);
+			} catch (RuntimeException ex) {
+				synchronized (this) {
+					if (generation == poolGeneration)
+						languageToolCount--;
+					notifyAll();
+				}
+				throw ex;
+			}
+		}
+
+		configure(languageTool);
+		return languageTool;
+	}
+
+	private synchronized void release(PooledLanguageTool languageTool) {
+		// drop language tools of previous (uninitialized) pools
+		if (languageTool.poolGeneration == poolGeneration)
+			idleLanguageTools.addFirst(languageTool);
+		notifyAll();
+	}
+
+	private synchronized ResultCacheEx getCache() {
+		if (cache == null)
 			throw new IllegalStateException();
+		return cache;
+	}
+
+	/**
+	 * Applies changes of the configuration to the given (borrowed) language tool.
+	 */
+	private void configure(PooledLanguageTool languageTool) {
+		Set<String> disabledRuleIds;
+		List<String> newIgnoreWords;
+		int configVersion;
+		synchronized (this) {
+			if (languageTool.configVersion == this.configVersion)
+				return;
 
-		return languageTool.check(text);
+			disabledRuleIds = this.disabledRuleIds;
+			newIgnoreWords = new ArrayList<>(ignoreWords.subList(
+				Math.min(languageTool.ignoreWordCount, ignoreWords.size()), ignoreWords.size()));
+			configVersion = this.configVersion;
+			languageTool.ignoreWordCount = ignoreWords.size();
+		}
+
+		languageTool.configure(disabledRuleIds, newIgnoreWords);
+		languageTool.configVersion = configVersion;
 	}
 
 	void addToUserDictionary(String word) {
@@ -192,22 +406,15 @@ class GlobalLanguageTool
 	}
 
 	private void addIgnoreWord(String word) {
-		cache.invalidate(word);
-		addIgnoreTokens(Collections.singletonList(word));
-		requestCheck();
-	}
+		synchronized (this) {
+			if (cache != null)
+				cache.invalidate(word);
 
-	private void addIgnoreTokens(List<String> words) {
-		forEachSpellingCheckRule(rule -> {
-			rule.addIgnoreTokens(words);
-		});
-	}
-
-	private void forEachSpellingCheckRule(Consumer<SpellingCheckRule> action) {
-		for (Rule rule : languageTool.getAllActiveRules()) {
-			if (rule instanceof SpellingCheckRule)
-				action.accept((SpellingCheckRule) rule);
+			// applied to pooled language tools when borrowed
+			ignoreWords.add(word);
+			configVersion++;
 		}
+		requestCheck();
 	}
 
 	void disableRule(Rule rule) {
@@ -221,4 +428,53 @@ class GlobalLanguageTool
 			Options.setDisabledRules(disabledRules.toArray(new String[disabledRules.size()]));
 		}
 	}
+
+	//---- class PooledLanguageTool -------------------------------------------
+
+	/**
+	 * A JLanguageTool of the pool and its applied configuration.
+	 * Used by only one thread at a time.
+	 */
+	private static class PooledLanguageTool
+	{
+		final JLanguageTool languageTool;
+		final int poolGeneration;
+
+		int configVersion = -1;
+		int ignoreWordCount;
+		private Set<String> disabledRuleIds = Collections.emptySet();
+
+		PooledLanguageTool(JLanguageTool languageTool, int poolGeneration) {
+			this.languageTool = languageTool;
+			this.poolGeneration = poolGeneration;
+
+			if (!Options.isGrammarChecker()) {
+				for (Rule rule : languageTool.getAllRules()) {
+					if (!rule.isDictionaryBasedSpellingRule())
+						languageTool.disableRule(rule.getId());
+				}
+			}
+		}
+
+		void configure(Set<String> newDisabledRuleIds, List<String> newIgnoreWords) {
+			if (newDisabledRuleIds != disabledRuleIds) {
+				// enable no longer disabled rules
+				for (String ruleId : disabledRuleIds) {
+					if (!newDisabledRuleIds.contains(ruleId))
+						languageTool.enableRule(ruleId);
+				}
+
+				// disable new disabled rules
+				languageTool.disableRules(new ArrayList<>(newDisabledRuleIds));
+				disabledRuleIds = newDisabledRuleIds;
+			}
+
+			if (!newIgnoreWords.isEmpty()) {
+				for (Rule rule : languageTool.getAllActiveRules()) {
+					if (rule instanceof SpellingCheckRule)
+						((SpellingCheckRule) rule).addIgnoreTokens(newIgnoreWords);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.markdownwriterfx.spellchecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.languagetool.rules.Rule;
+import org.languagetool.rules.RuleMatch;
+
+/**
+ * A persistent cache of spell checking results (rule matches of blocks),
+ * which is stored in a file in the user cache directory and survives restarts.
+ *
+ * Entries are keyed by a hash of the spell checker configuration
+ * (language, rules, user dictionary, etc.) and the block text.
+ * The file is memory-mapped and loaded lazily on first access.
+ * New entries are appended to the file when flushed.
+ * If the file becomes larger than the maximum size, only the most recently
+ * used entries are written to a new generation file (spellcheck-cache-<n>.bin).
+ * The mapped file is never replaced or truncated because this is not possible
+ * on Windows; older generation files are deleted when no longer used.
+ *
+ * File format: header (magic, version) followed by records:
+ * int length, long key hash, long config hash, string block text,
+ * int match count, matches (string rule id, int from, int to,
+ * string message, string short message, int suggestion count, strings).
+ * Strings are stored as int byte count followed by UTF-8 bytes.
+ *
+ * @author Karl Tauber
+ */
+class PersistentSpellCache
+{
+	static final int DEFAULT_MAX_FILE_SIZE = 8 * 1024 * 1024;
+
+	private static final int MAGIC = 0x4d574653; // "MWFS"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+
+	// limit number of stored suggestions (quick fix menu shows up to 20)
+	private static final int MAX_SUGGESTIONS = 20;
+
+	// limit number of entries kept in memory if writing the file fails
+	private static final int MAX_PENDING = 10000;
+
+	private static final String FILE_PREFIX = "spellcheck-cache-";
+	private static final String FILE_SUFFIX = ".bin";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	// temporary files of other instances are deleted only if older than this
+	// (left over after a crash; otherwise the other instance may still write it)
+	private static final long STALE_TEMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final File directory;
+	private final int maxFileSize;
+
+	// all fields are guarded by 'this'
+
+	private boolean loaded;
+	private boolean writeFailed;
+	private int generation = -1;
+	private File file;
+	private ByteBuffer buffer;
+	private int indexedSize;
+	private boolean unknownFormat;
+	private final HashMap<Long, Integer> index = new HashMap<>();
+	private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+	private final HashSet<Long> usedKeys = new HashSet<>();
+
+	PersistentSpellCache(File directory, int maxFileSize) {
+		this.directory = directory;
+		this.maxFileSize = maxFileSize;
+	}
+
+	static File getDefaultDirectory() {
+		String os = System.getProperty("os.name").toLowerCase();
+		String userHome = System.getProperty("user.home");
+		File cacheDir;
+		if (os.startsWith("windows") && System.getenv("LOCALAPPDATA") != null)
+			cacheDir = new File(System.getenv("LOCALAPPDATA"), "MarkdownWriterFX");
+		else if (os.startsWith("mac"))
+			cacheDir = new File(userHome, "Library/Caches/MarkdownWriterFX");
+		else {
+			String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+			cacheDir = new File((xdgCacheHome != null && !xdgCacheHome.isEmpty())
+				? new File(xdgCacheHome) : new File(userHome, ".cache"), "markdownwriterfx");
+		}
+		return cacheDir;
+	}
+
+	private File generationFile(int generation) {
+		return new File(directory, FILE_PREFIX + generation + FILE_SUFFIX);
+	}
+
+	/**
+	 * Returns the newest generation of existing files, or -1 if there is no file.
+	 */
+	private int latestGeneration() {
+		int latest = -1;
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				int generation = parseGeneration(name);
+				if (generation > latest)
+					latest = generation;
+			}
+		}
+		return latest;
+	}
+
+	private static int parseGeneration(String name) {
+		if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX))
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Deletes files of older generations (and temporary files).
+	 * Fails silently for files that are still mapped (e.g. on Windows).
+	 */
+	private void deleteOldGenerations() {
+		long staleTime = System.currentTimeMillis() - STALE_TEMP_FILE_MILLIS;
+		File[] files = directory.listFiles((dir, name) -> {
+			int generation = parseGeneration(name);
+			if (generation >= 0)
+				return generation < this.generation;
+			return name.startsWith(FILE_PREFIX) && name.endsWith(TEMP_FILE_SUFFIX) &&
+				new File(dir, name).lastModified() < staleTime;
+		});
+		if (files == null)
+			return;
+
+		for (File f : files) {
+			try {
+				Files.deleteIfExists(f.toPath());
+			} catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached rule matches of the given block text,
+	 * or null if not cached (or if a rule is no longer available).
+	 */
+	synchronized List<RuleMatch> get(long configHash, String blockText, Function<String, Rule> ruleResolver) {
+		long key = keyHash(configHash, blockText);
+
+		Entry entry = pending.get(key);
+		if (entry != null)
+			return (entry.configHash == configHash && entry.blockText.equals(blockText)) ? entry.ruleMatches : null;
+
+		load();
+		Integer offset = index.get(key);
+		if (offset == null)
+			return null;
+
+		List<RuleMatch> ruleMatches;
+		try {
+			ruleMatches = readRecord(offset, configHash, blockText, ruleResolver);
+		} catch (RuntimeException ex) {
+			// corrupt record
+			ruleMatches = null;
+		}
+		if (ruleMatches != null)
+			usedKeys.add(key);
+		return ruleMatches;
+	}
+
+	/**
+	 * Adds the given rule matches to the cache.
+	 * They are written to the file when flush() is invoked.
+	 */
+	synchronized void put(long configHash, String blockText, List<RuleMatch> ruleMatches) {
+		long key = keyHash(configHash, blockText);
+		pending.put(key, new Entry(configHash, blockText, ruleMatches));
+		usedKeys.add(key);
+	}
+
+	/**
+	 * Writes added entries to the file.
+	 * Should be invoked in the thread that checks spelling
+	 * (may compute lazy suggestions of rule matches).
+	 */
+	synchronized void flush() {
+		if (pending.isEmpty())
+			return;
+
+		load();
+
+		// serialize new entries
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			DataOutputStream dout = new DataOutputStream(out);
+			for (Map.Entry<Long, Entry> e : pending.entrySet())
+				writeRecord(dout, e.getKey(), e.getValue());
+		} catch (IOException ex) {
+			// never thrown when writing to ByteArrayOutputStream
+			throw new IllegalStateException(ex);
+		}
+		byte[] newRecords = out.toByteArray();
+
+		try {
+			if (unknownFormat || indexedSize + newRecords.length > maxFileSize)
+				compact(newRecords);
+			else
+				append(newRecords);
+
+			pending.clear();
+			writeFailed = false;
+		} catch (IOException ex) {
+			// keep entries and try again on next flush; report only first failure
+			if (!writeFailed)
+				ex.printStackTrace();
+			writeFailed = true;
+
+			for (Iterator<Long> it = pending.keySet().iterator(); pending.size() > MAX_PENDING; ) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	private void append(byte[] newRecords) throws IOException {
+		Files.createDirectories(directory.toPath());
+		if (file == null) {
+			generation = 0;
+			file = generationFile(generation);
+		}
+
+		// append (in one write) so that concurrently running applications do not
+		// overwrite each other's records; file is never truncated in place
+		// because it may be mapped by other applications
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+		{
+			ByteBuffer data = ByteBuffer.allocate((channel.size() == 0 ? HEADER_SIZE : 0) + newRecords.length);
+			if (channel.size() == 0)
+				data.putInt(MAGIC).putInt(VERSION);
+			data.put(newRecords).flip();
+			while (data.hasRemaining())
+				channel.write(data);
+		}
+
+		map();
+	}
+
+	/**
+	 * Rewrites the file and keeps only the most recently used and written records.
+	 */
+	private void compact(byte[] newRecords) throws IOException {
+		// collect existing records that are not replaced by new ones;
+		// records used in this session are considered newer than unused ones
+		ArrayList<Integer> unusedOffsets = new ArrayList<>();
+		ArrayList<Integer> usedOffsets = new ArrayList<>();
+		for (Map.Entry<Long, Integer> e : index.entrySet()) {
+			if (pending.containsKey(e.getKey()))
+				continue;
+			(usedKeys.contains(e.getKey()) ? usedOffsets : unusedOffsets).add(e.getValue());
+		}
+		Collections.sort(unusedOffsets);
+		Collections.sort(usedOffsets);
+
+		ArrayList<ByteBuffer> records = new ArrayList<>();
+		for (int offset : unusedOffsets)
+			records.add(recordSlice(buffer, offset));
+		for (int offset : usedOffsets)
+			records.add(recordSlice(buffer, offset));
+		ByteBuffer newBuffer = ByteBuffer.wrap(newRecords);
+		for (int offset = 0; offset < newRecords.length; offset += 4 + newBuffer.getInt(offset))
+			records.add(recordSlice(newBuffer, offset));
+
+		// keep newest records that fit into 3/4 of maximum size
+		// (to avoid rewriting the file too often)
+		int budget = maxFileSize / 4 * 3 - HEADER_SIZE;
+		int first = records.size();
+		while (first > 0 && records.get(first - 1).remaining() <= budget) {
+			first--;
+			budget -= records.get(first).remaining();
+		}
+
+		// write to temporary file and rename it to new generation file
+		// (never replaces an existing file, which may be mapped)
+		Files.createDirectories(directory.toPath());
+		int newGeneration = Math.max(latestGeneration(), generation) + 1;
+		File newFile = generationFile(newGeneration);
+		Path tempFile = Files.createTempFile(directory.toPath(), FILE_PREFIX, TEMP_FILE_SUFFIX);
+		try {
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+				channel.write(header);
+				for (ByteBuffer record : records.subList(first, records.size())) {
+					while (record.hasRemaining())
+						channel.write(record);
+				}
+			}
+			try {
+				Files.move(tempFile, newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tempFile, newFile.toPath());
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+
+		// switch to new generation
+		generation = newGeneration;
+		file = newFile;
+		buffer = null;
+		indexedSize = 0;
+		unknownFormat = false;
+		index.clear();
+		map();
+
+		deleteOldGenerations();
+	}
+
+	private static ByteBuffer recordSlice(ByteBuffer buffer, int offset) {
+		return buffer.duplicate().limit(offset + 4 + buffer.getInt(offset)).position(offset);
+	}
+
+	/**
+	 * Maps the newest generation file into memory on first access.
+	 */
+	private void load() {
+		if (loaded)
+			return;
+
+		loaded = true;
+		generation = latestGeneration();
+		if (generation < 0)
+			return;
+
+		file = generationFile(generation);
+		try {
+			map();
+		} catch (IOException ex) {
+			// ignore; start with empty cache
+		}
+		deleteOldGenerations();
+	}
+
+	/**
+	 * Maps the file into memory and indexes records that are not yet indexed.
+	 * Only the record headers are read; records are decoded on access.
+	 */
+	private void map() throws IOException {
+		if (file == null || !file.isFile())
+			return;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = Math.min(channel.size(), Integer.MAX_VALUE);
+			if (size < HEADER_SIZE)
+				return;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		if (indexedSize == 0) {
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				// unknown format (or older version); replaced on next flush
+				indexedSize = buffer.capacity();
+				unknownFormat = true;
+				return;
+			}
+			indexedSize = HEADER_SIZE;
+		}
+
+		// index records; stop at incomplete record
+		int size = buffer.capacity();
+		int offset = indexedSize;
+		while (offset + 12 <= size) {
+			int length = buffer.getInt(offset);
+			if (length < 8 || length > size - offset - 4)
+				break;
+
+			index.put(buffer.getLong(offset + 4), offset);
+			offset += 4 + length;
+		}
+		indexedSize = offset;
+	}
+
+	private List<RuleMatch> readRecord(int offset, long configHash, String blockText,
+		Function<String, Rule> ruleResolver)
+	{
+		ByteBuffer b = recordSlice(buffer, offset);
+		b.getInt(); // length
+		b.getLong(); // key hash
+		if (b.getLong() != configHash || !blockText.equals(readString(b)))
+			return null;
+
+		int matchCount = b.getInt();
+		List<RuleMatch> ruleMatches = new ArrayList<>(matchCount);
+		for (int i = 0; i < matchCount; i++) {
+			Rule rule = ruleResolver.apply(readString(b));
+			if (rule == null)
+				return null;
+
+			int fromPos = b.getInt();
+			int toPos = b.getInt();
+			String message = readString(b);
+			String shortMessage = readString(b);
+			int suggestionCount = b.getInt();
+			List<String> suggestions = new ArrayList<>(suggestionCount);
+			for (int j = 0; j < suggestionCount; j++)
+				suggestions.add(readString(b));
+
+			RuleMatch ruleMatch = new RuleMatch(rule, null, fromPos, toPos, message, shortMessage);
+			ruleMatch.setSuggestedReplacements(suggestions);
+			ruleMatches.add(ruleMatch);
+		}
+		return Collections.unmodifiableList(ruleMatches);
+	}
+
+	private static void writeRecord(DataOutputStream out, long key, Entry entry) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream dout = new DataOutputStream(bout);
+		dout.writeLong(key);
+		dout.writeLong(entry.configHash);
+		writeString(dout, entry.blockText);
+		dout.writeInt(entry.ruleMatches.size());
+		for (RuleMatch ruleMatch : entry.ruleMatches) {
+			writeString(dout, ruleMatch.getRule().getFullId());
+			dout.writeInt(ruleMatch.getFromPos());
+			dout.writeInt(ruleMatch.getToPos());
+			writeString(dout, ruleMatch.getMessage());
+			writeString(dout, ruleMatch.getShortMessage());
+
+			List<String> suggestions = ruleMatch.getSuggestedReplacements();
+			int suggestionCount = Math.min(suggestions.size(), MAX_SUGGESTIONS);
+			dout.writeInt(suggestionCount);
+			for (int i = 0; i < suggestionCount; i++)
+				writeString(dout, suggestions.get(i));
+		}
+
+		out.writeInt(bout.size());
+		bout.writeTo(out);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = (s != null ? s : "").getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer b) {
+		byte[] bytes = new byte[b.getInt()];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns a 64-bit hash (FNV-1a) of the given string, starting with the given hash.
+	 */
+	static long hash(long hash, CharSequence s) {
+		if (hash == 0)
+			hash = 0xcbf29ce484222325L;
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static long keyHash(long configHash, String blockText) {
+		return hash(configHash, blockText);
+	}
+
+	//---- class Entry --------------------------------------------------------
+
+	private static class Entry
+	{
+		final long configHash;
+		final String blockText;
+		final List<RuleMatch> ruleMatches;
+
+		Entry(long configHash, String blockText, List<RuleMatch> ruleMatches) {
+			this.configHash = configHash;
+			this.blockText = blockText;
+			this.ruleMatches = ruleMatches;
+		}
+	}
+}
@@ -27,45 +27,74 @@
 
 package org.markdownwriterfx.spellchecker;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.languagetool.ResultCache;
 import com.google.common.cache.Cache;
+import com.google.common.cache.ForwardingCache;
 
 /**
- * A ResultCache that supports invalidation (empty cache).
+ * A ResultCache that supports invalidation of sentences that contain a word.
+ *
+ * The matches and sentence caches of ResultCache are wrapped to maintain
+ * an inverted index (word token to cache keys) while entries are inserted,
+ * so that invalidating a word touches only the sentences that contain it.
  *
  * @author Karl Tauber
  */
 class ResultCacheEx
 	extends ResultCache
 {
+	private final IndexedCache<?, ?> matchesCache;
+	private final IndexedCache<?, ?> sentenceCache;
+
 	ResultCacheEx(long maxSize, int expireAfter, TimeUnit timeUnit) {
 		super(maxSize, expireAfter, timeUnit);
+
+		matchesCache = wrapCache("matchesCache", getMatchesCache());
+		sentenceCache = wrapCache("sentenceCache", getSentenceCache());
 	}
 
-	void invalidateAll() {
-		getMatchesCache().invalidateAll();
-		getSentenceCache().invalidateAll();
+	/**
+	 * Replaces the given (private) cache field of ResultCache with an indexed cache.
+	 * Returns null if this is not possible (e.g. changed LanguageTool implementation).
+	 */
+	private <K, V> IndexedCache<K, V> wrapCache(String fieldName, Cache<K, V> cache) {
+		try {
+			Field field = ResultCache.class.getDeclaredField(fieldName);
+			field.setAccessible(true);
+			if (field.get(this) != cache)
+				return null;
+
+			IndexedCache<K, V> indexedCache = new IndexedCache<>(cache);
+			field.set(this, indexedCache);
+			return indexedCache;
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return null;
+		}
 	}
 
 	void invalidate(String word) {
-		invalidate(getMatchesCache(), word);
-		invalidate(getSentenceCache(), word);
+		invalidate(matchesCache, getMatchesCache(), word);
+		invalidate(sentenceCache, getSentenceCache(), word);
 	}
 
-	private static <T> void invalidate(Cache<T, ?> cache, String word) {
-		List<T> matchesKeys = findWordInKeys(cache, word);
-		if (matchesKeys != null)
-			cache.invalidateAll(matchesKeys);
+	private static <T> void invalidate(IndexedCache<?, ?> indexedCache, Cache<T, ?> cache, String word) {
+		if (indexedCache != null)
+			indexedCache.invalidateWord(word);
 		else
-			cache.invalidateAll();
+			cache.invalidateAll(findWordInKeys(cache.asMap().keySet(), word));
 	}
 
-	private static <T> List<T> findWordInKeys(Cache<T, ?> cache, String word) {
+	private static <T> List<T> findWordInKeys(Iterable<T> keys, String word) {
 		List<T> result = new ArrayList<>();
-		for (T key : cache.asMap().keySet()) {
+		for (T key : keys) {
 			// assume that InputSentence.toString() and SimpleInputSentence.toString()
 			// return the text of the sentence
 			String text = key.toString();
@@ -74,4 +103,123 @@ class ResultCacheEx
 		}
 		return result;
 	}
+
+	/**
+	 * Splits the given text into tokens (runs of letters or digits).
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		int length = text.length();
+		int start = -1;
+		for (int i = 0; i < length; i++) {
+			if (Character.isLetterOrDigit(text.charAt(i))) {
+				if (start < 0)
+					start = i;
+			} else if (start >= 0) {
+				tokens.add(text.substring(start, i));
+				start = -1;
+			}
+		}
+		if (start >= 0)
+			tokens.add(text.substring(start));
+		return tokens;
+	}
+
+	//---- class IndexedCache -------------------------------------------------
+
+	/**
+	 * A cache that maintains an inverted index from tokens of the sentence text
+	 * (key.toString()) to the cache keys.
+	 *
+	 * Keys evicted by the wrapped cache are removed from the index
+	 * when the index becomes much larger than the cache.
+	 */
+	static class IndexedCache<K, V>
+		extends ForwardingCache.SimpleForwardingCache<K, V>
+	{
+		// all fields are guarded by 'this'
+		private final HashMap<String, Set<K>> tokenToKeys = new HashMap<>();
+		private final HashSet<K> indexedKeys = new HashSet<>();
+
+		IndexedCache(Cache<K, V> cache) {
+			super(cache);
+		}
+
+		@Override
+		public void put(K key, V value) {
+			super.put(key, value);
+			index(key);
+		}
+
+		@Override
+		public void putAll(Map<? extends K, ? extends V> m) {
+			super.putAll(m);
+			for (K key : m.keySet())
+				index(key);
+		}
+
+		private void index(K key) {
+			// tokenize outside of lock
+			List<String> tokens = tokenize(key.toString());
+
+			synchronized (this) {
+				if (!indexedKeys.add(key))
+					return;
+
+				for (String token : tokens)
+					tokenToKeys.computeIfAbsent(token, t -> new HashSet<>()).add(key);
+
+				// remove evicted keys from index
+				if (indexedKeys.size() > 2 * size() + 1000)
+					rebuildIndex();
+			}
+		}
+
+		private void rebuildIndex() {
+			tokenToKeys.clear();
+			indexedKeys.clear();
+			for (K key : asMap().keySet()) {
+				indexedKeys.add(key);
+				for (String token : tokenize(key.toString()))
+					tokenToKeys.computeIfAbsent(token, t -> new HashSet<>()).add(key);
+			}
+		}
+
+		/**
+		 * Invalidates all entries whose sentence text contains the given word.
+		 */
+		void invalidateWord(String word) {
+			List<String> wordTokens = tokenize(word);
+
+			List<K> keys;
+			synchronized (this) {
+				if (wordTokens.isEmpty()) {
+					// word without letters or digits (unusual); check all keys
+					keys = findWordInKeys(indexedKeys, word);
+				} else {
+					// use keys of least frequent token as candidates
+					Set<K> candidates = null;
+					for (String token : wordTokens) {
+						Set<K> tokenKeys = tokenToKeys.get(token);
+						if (tokenKeys == null)
+							return; // no sentence contains the word
+						if (candidates == null || tokenKeys.size() < candidates.size())
+							candidates = tokenKeys;
+					}
+					keys = findWordInKeys(candidates, word);
+				}
+
+				for (K key : keys) {
+					indexedKeys.remove(key);
+					for (String token : tokenize(key.toString())) {
+						Set<K> tokenKeys = tokenToKeys.get(token);
+						if (tokenKeys != null && tokenKeys.remove(key) && tokenKeys.isEmpty())
+							tokenToKeys.remove(token);
+					}
+				}
+			}
+
+			invalidateAll(keys);
+		}
+	}
 }
@@ -39,10 +39,12 @@ import org.languagetool.rules.RuleMatch;
 class SpellBlockProblems
 	extends SpellRange
 {
+	final List<RuleMatch> ruleMatches;
 	final List<SpellProblem> problems;
 
 	SpellBlockProblems(int fromPos, int toPos, List<RuleMatch> ruleMatches) {
 		super(fromPos, toPos);
+		this.ruleMatches = ruleMatches;
 
 		problems = new ArrayList<>(ruleMatches.size());
 		for (RuleMatch ruleMatch : ruleMatches)
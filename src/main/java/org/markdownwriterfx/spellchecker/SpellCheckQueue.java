@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.markdownwriterfx.spellchecker;
+
+import org.markdownwriterfx.util.Range;
+
+/**
+ * Determines the order in which blocks are spell checked.
+ * Blocks in the visible text range are checked first (in document order),
+ * then the other blocks ordered by their distance to the visible range.
+ * The visible range may change (e.g. when scrolling) while checking,
+ * which re-prioritizes the not yet checked blocks.
+ *
+ * Used by several threads at the same time.
+ *
+ * @author Karl Tauber
+ */
+class SpellCheckQueue
+{
+	// text ranges of blocks (in document order)
+	private final int[] blockStarts;
+	private final int[] blockEnds;
+
+	// all fields are guarded by 'this'
+
+	private final boolean[] taken;
+	private final boolean[] completed;
+	private int takenCount;
+
+	// visible text range and the blocks in it
+	private Range visible;
+	private int visibleStart;
+	private int visibleEnd;
+	private int visibleRemaining;
+
+	// next blocks to take inside, below and above visible blocks
+	private int nextVisible;
+	private int nextBelow;
+	private int nextAbove;
+
+	SpellCheckQueue(int[] blockStarts, int[] blockEnds, Range visible) {
+		this.blockStarts = blockStarts;
+		this.blockEnds = blockEnds;
+		taken = new boolean[blockStarts.length];
+		completed = new boolean[blockStarts.length];
+
+		visibleChanged(visible);
+	}
+
+	/**
+	 * Returns the index of the next block to check, or -1 if all blocks are taken.
+	 */
+	synchronized int next() {
+		if (takenCount >= taken.length)
+			return -1;
+
+		int index = -1;
+
+		// visible blocks first
+		while (nextVisible < visibleEnd && taken[nextVisible])
+			nextVisible++;
+		if (nextVisible < visibleEnd)
+			index = nextVisible;
+		else {
+			// then nearest block below or above visible blocks
+			while (nextBelow < taken.length && taken[nextBelow])
+				nextBelow++;
+			while (nextAbove >= 0 && taken[nextAbove])
+				nextAbove--;
+
+			if (nextBelow < taken.length && nextAbove >= 0) {
+				int distanceBelow = blockStarts[nextBelow] - visible.end;
+				int distanceAbove = visible.start - blockEnds[nextAbove];
+				index = (distanceBelow <= distanceAbove) ? nextBelow : nextAbove;
+			} else if (nextBelow < taken.length)
+				index = nextBelow;
+			else if (nextAbove >= 0)
+				index = nextAbove;
+		}
+
+		if (index >= 0) {
+			taken[index] = true;
+			takenCount++;
+		}
+		return index;
+	}
+
+	/**
+	 * Marks the given block as checked.
+	 *
+	 * @return true if all visible blocks are checked now
+	 */
+	synchronized boolean completed(int index) {
+		if (completed[index])
+			return false;
+
+		completed[index] = true;
+		if (index >= visibleStart && index < visibleEnd) {
+			visibleRemaining--;
+			return visibleRemaining == 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Re-prioritizes not yet taken blocks for the given visible text range.
+	 */
+	synchronized void visibleChanged(Range visible) {
+		if (visible == null)
+			visible = new Range(0, 0);
+		this.visible = visible;
+
+		// find blocks in visible range
+		visibleStart = firstBlockEndingAfter(visible.start);
+		visibleEnd = visibleStart;
+		while (visibleEnd < blockStarts.length && blockStarts[visibleEnd] < visible.end)
+			visibleEnd++;
+
+		visibleRemaining = 0;
+		for (int i = visibleStart; i < visibleEnd; i++) {
+			if (!completed[i])
+				visibleRemaining++;
+		}
+
+		nextVisible = visibleStart;
+		nextBelow = visibleEnd;
+		nextAbove = visibleStart - 1;
+	}
+
+	private int firstBlockEndingAfter(int offset) {
+		int low = 0;
+		int high = blockEnds.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (blockEnds[mid] <= offset)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -38,11 +38,20 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -73,10 +82,11 @@ import org.markdownwriterfx.addons.SpellCheckerAddon;
 import org.markdownwriterfx.addons.SpellCheckerAddon.Range;
 import org.markdownwriterfx.editor.MarkdownEditorPane;
 import org.markdownwriterfx.editor.ParagraphOverlayGraphicFactory;
+import org.markdownwriterfx.editor.UpdateScheduler.Stage;
 import org.markdownwriterfx.options.Options;
 import org.markdownwriterfx.util.Addons;
+import org.markdownwriterfx.util.NodeIndex;
 import org.markdownwriterfx.util.Utils;
-import org.reactfx.EventStream;
 import org.reactfx.Subscription;
 import org.reactfx.util.FxTimer;
 import org.reactfx.util.Timer;
@@ -87,7 +97,6 @@ import com.vladsch.flexmark.ast.Heading;
 import com.vladsch.flexmark.ast.Paragraph;
 import com.vladsch.flexmark.ast.SoftLineBreak;
 import com.vladsch.flexmark.ast.Text;
-import com.vladsch.flexmark.util.ast.Block;
 import com.vladsch.flexmark.util.ast.Node;
 import com.vladsch.flexmark.util.ast.NodeVisitor;
 import com.vladsch.flexmark.util.ast.Visitor;
@@ -108,17 +117,29 @@ public class SpellChecker
 
 	private List<SpellBlockProblems> spellProblems;
 
+	// order of blocks of the currently running check; or null
+	private volatile SpellCheckQueue checkQueue;
+
+	// maximum number of remembered checked blocks of previous runs
+	private static final int MAX_CHECKED_BLOCKS = 5000;
+
+	// rule matches of checked blocks (key is block text); maps are replaced, not modified
+	private final AtomicReference<Map<String, List<RuleMatch>>> checkedBlocks
+		= new AtomicReference<>(Collections.emptyMap());
+
 	private Subscription textChangesSubscribtion;
+	private Task<?> textChangesCheckTask;
 	private SpellCheckerOverlayFactory spellCheckerOverlayFactory;
 
 	// global executor used for all spell checking
 	private static ExecutorService executor;
 
+	// global executor used to check blocks in parallel (in addition to executor thread)
+	private static ExecutorService blockExecutor;
+
 	// global language tool used in executor for all spell checking
 	private static final GlobalLanguageTool languageTool = new GlobalLanguageTool();
 
-	private static final ServiceLoader<SpellCheckerAddon> addons
-		= ServiceLoader.load( SpellCheckerAddon.class, Addons.getAddonsClassLoader() );
 
 	public SpellChecker(MarkdownEditorPane editor, GenericStyledArea<?, ?, ?> textArea,
 		ParagraphOverlayGraphicFactory overlayGraphicFactory)
@@ -137,6 +158,19 @@ public class SpellChecker
 			checkIfNecessary();
 		};
 
+		// check visible text again when scrolling huge documents
+		editor.viewportProperty().addListener((observer, oldViewport, newViewport) -> {
+			if (textChangesSubscribtion != null)
+				scheduleCheck();
+		});
+
+		// check visible blocks first when scrolling while checking
+		editor.scrollYProperty().addListener((observer, oldScrollY, newScrollY) -> {
+			SpellCheckQueue checkQueue = this.checkQueue;
+			if (checkQueue != null)
+				checkQueue.visibleChanged(editor.getVisibleRange());
+		});
+
 		// listen to editor visibility changes
 		editor.visibleProperty().addListener((observer, oldVisible, newVisible) -> {
 			if (newVisible)
@@ -158,6 +192,9 @@ public class SpellChecker
 			return;
 
 		if (checkRequestID != languageTool.getCheckRequestID() || spellProblems == null) {
+			// language tool changed (e.g. rules or dictionary) --> check all blocks
+			if (checkRequestID != languageTool.getCheckRequestID())
+				checkedBlocks.set(new HashMap<>());
 			checkRequestID = languageTool.getCheckRequestID();
 
 			checkAsync(true);
@@ -174,15 +211,21 @@ public class SpellChecker
 					return thread;
 				});
 			}
+			if (blockExecutor == null && GlobalLanguageTool.MAX_POOL_SIZE > 1) {
+				blockExecutor = Executors.newFixedThreadPool(GlobalLanguageTool.MAX_POOL_SIZE - 1, runnable -> {
+					Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+					thread.setName("Spell checker");
+					thread.setDaemon(true); // allow quitting app without shutting down executor
+					return thread;
+				});
+			}
 
 			// listen to text changes and invoke spell checker after a delay
-			EventStream<PlainTextChange> textChanges = textArea.plainTextChanges();
-			textChangesSubscribtion = textChanges
-				.hook(this::updateSpellRangeOffsets)
-				.successionEnds(Duration.ofMillis(500))
-				.supplyTask(() -> checkAsync(false))
-				.awaitLatest(textChanges)
-				.subscribe(this::checkFinished);
+			// (the delay depends on the spell checking cost of the document)
+			textChangesSubscribtion = textArea.plainTextChanges().subscribe(change -> {
+				updateSpellRangeOffsets(change);
+				scheduleCheck();
+			});
 
 			spellCheckerOverlayFactory = new SpellCheckerOverlayFactory(() -> spellProblems);
 			overlayGraphicFactory.addOverlayFactory(spellCheckerOverlayFactory);
@@ -190,30 +233,63 @@ public class SpellChecker
 		} else if (!spellChecker && spellCheckerOverlayFactory != null) {
 			textChangesSubscribtion.unsubscribe();
 			textChangesSubscribtion = null;
+			editor.getUpdateScheduler().cancel(Stage.SpellCheck);
+			textChangesCheckTask = null;
 
 			overlayGraphicFactory.removeOverlayFactory(spellCheckerOverlayFactory);
 			spellCheckerOverlayFactory = null;
 
 			spellProblems = null;
+			checkedBlocks.set(new HashMap<>());
 
 			if (executor != null) {
 				executor.shutdown();
 				executor = null;
 			}
+			if (blockExecutor != null) {
+				blockExecutor.shutdown();
+				blockExecutor = null;
+			}
 		}
 	}
 
+	private void scheduleCheck() {
+		// cancel outdated check
+		if (textChangesCheckTask != null) {
+			textChangesCheckTask.cancel();
+			textChangesCheckTask = null;
+		}
+
+		editor.getUpdateScheduler().schedule(Stage.SpellCheck, () -> {
+			textChangesCheckTask = checkAsync(true);
+		});
+	}
+
 	private Task<List<SpellBlockProblems>> checkAsync(boolean invokeFinished) {
-		Node astRoot = editor.getMarkdownAST();
+		Node astRoot = editor.getCurrentMarkdownAST();
+		org.markdownwriterfx.util.Range viewport = editor.getViewportRange();
+		org.markdownwriterfx.util.Range visible = editor.getVisibleRange();
 		boolean updatePeriodically = (spellProblems == null || spellProblems.isEmpty());
 
 		Task<List<SpellBlockProblems>> task = new Task<>() {
+			private long checkNanos;
+
 			@Override
 			protected List<SpellBlockProblems> call() throws Exception {
-				return check(this, astRoot, updatePeriodically);
+				long startTime = System.nanoTime();
+				List<SpellBlockProblems> result = check(this, astRoot, viewport, visible, updatePeriodically);
+				checkNanos = System.nanoTime() - startTime;
+
+				// write new rule matches to persistent cache in a separate task
+				// (does not delay delivering the result)
+				if (result != null)
+					flushPersistentCacheLater();
+				return result;
 			}
 			@Override
 			protected void succeeded() {
+				editor.getUpdateScheduler().addCost(Stage.SpellCheck, checkNanos);
+
 				if (invokeFinished)
 					checkFinished(Try.success(getValue()));
 			}
@@ -231,12 +307,24 @@ public class SpellChecker
 		return task;
 	}
 
+	private static void flushPersistentCacheLater() {
+		ExecutorService executor = SpellChecker.executor;
+		if (executor == null)
+			return;
+
+		try {
+			executor.execute(languageTool::flushPersistentCache);
+		} catch (RejectedExecutionException ex) {
+			// executor shut down (user turned spell checking off)
+		}
+	}
+
 	private void checkFinished(Try<List<SpellBlockProblems>> result) {
 		if (overlayGraphicFactory == null)
 			return; // ignore result; user turned spell checking off
 
 		if (result.isSuccess()) {
-			List<SpellBlockProblems> newSpellProblems = result.get();
+			List<SpellBlockProblems> newSpellProblems = keepUnchangedProblems(result.get());
 			if (!Utils.safeEquals(newSpellProblems, spellProblems)) {
 				spellProblems = newSpellProblems;
 				overlayGraphicFactory.update();
@@ -249,20 +337,43 @@ public class SpellChecker
 		}
 	}
 
-	private List<SpellBlockProblems> check(Task<?> task, Node astRoot, boolean updatePeriodically) throws IOException {
-		// find nodes that should be checked
-		ArrayList<Node> nodesToCheck = new ArrayList<>();
-		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
-			@Override
-			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
-				if (node instanceof Paragraph || node instanceof Heading)
-					nodesToCheck.add(node);
+	/**
+	 * Replaces new block problems with existing ones if they are equal
+	 * (same range and same rule matches of an unchanged block).
+	 * Existing block problems are kept up-to-date with text changes
+	 * (see updateSpellRangeOffsets()).
+	 */
+	private List<SpellBlockProblems> keepUnchangedProblems(List<SpellBlockProblems> newSpellProblems) {
+		if (newSpellProblems == null || spellProblems == null || spellProblems.isEmpty())
+			return newSpellProblems;
+
+		HashMap<Integer, SpellBlockProblems> oldProblemsMap = new HashMap<>();
+		for (SpellBlockProblems oldProblems : spellProblems) {
+			if (oldProblems.isValid())
+				oldProblemsMap.put(oldProblems.getFromPos(), oldProblems);
+		}
 
-				if (node instanceof Block)
-					visitChildren(node);
-			}
-		};
-		visitor.visit(astRoot);
+		ArrayList<SpellBlockProblems> result = new ArrayList<>(newSpellProblems.size());
+		for (SpellBlockProblems newProblems : newSpellProblems) {
+			SpellBlockProblems oldProblems = oldProblemsMap.get(newProblems.getFromPos());
+			result.add((oldProblems != null &&
+						oldProblems.getToPos() == newProblems.getToPos() &&
+						oldProblems.ruleMatches == newProblems.ruleMatches)
+				? oldProblems
+				: newProblems);
+		}
+		return result;
+	}
+
+	private List<SpellBlockProblems> check(Task<?> task, Node astRoot, org.markdownwriterfx.util.Range viewport,
+		org.markdownwriterfx.util.Range visible, boolean updatePeriodically)
+		throws IOException
+	{
+		// find nodes that should be checked (only in viewport for huge documents)
+		List<Node> nodesToCheck = (viewport != null)
+			? NodeIndex.get(astRoot).findNodes(viewport.start, viewport.end,
+				node -> node instanceof Paragraph || node instanceof Heading, true, false)
+			: NodeIndex.get(astRoot).getNodes(Paragraph.class, Heading.class);
 
 		if (nodesToCheck.isEmpty())
 			return Collections.emptyList();
@@ -271,7 +382,12 @@ public class SpellChecker
 		languageTool.initialize();
 
 //		long startTime = System.currentTimeMillis();
-		ArrayList<SpellBlockProblems> spellProblems = new ArrayList<>();
+		// problems of checked nodes (index is node index; null if not yet checked or no problems)
+		SpellBlockProblems[] nodeProblems = new SpellBlockProblems[nodesToCheck.size()];
+
+		// rule matches of blocks checked in previous runs and in this run
+		Map<String, List<RuleMatch>> oldCheckedBlocks = checkedBlocks.get();
+		ConcurrentHashMap<String, List<RuleMatch>> newCheckedBlocks = new ConcurrentHashMap<>();
 
 		// start timer to update overlays periodically during a lengthy check (on initial run)
 		// using FxTimer instead of Timeline because FxTimer makes sure
@@ -280,38 +396,58 @@ public class SpellChecker
 		// see http://tomasmikula.github.io/blog/2014/06/04/timers-in-javafx-and-reactfx.html
 		Timer timer = updatePeriodically
 			? FxTimer.runPeriodically(Duration.ofMillis(350), () -> {
-				ArrayList<SpellBlockProblems> spellProblems2;
-				synchronized (spellProblems) {
-					spellProblems2 = new ArrayList<>(spellProblems);
-				}
-				checkFinished(Try.success(spellProblems2));
+				checkFinished(Try.success(collectProblems(nodeProblems)));
 			}) : null;
 
-		// check spelling of nodes
+		// check spelling of nodes in parallel
+		// (each worker takes the next unchecked node, visible nodes first;
+		//  results are stored in document order)
+		int[] nodeStarts = new int[nodesToCheck.size()];
+		int[] nodeEnds = new int[nodesToCheck.size()];
+		for (int i = 0; i < nodeStarts.length; i++) {
+			Node node = nodesToCheck.get(i);
+			nodeStarts[i] = node.getStartOffset();
+			nodeEnds[i] = node.getEndOffset();
+		}
+		SpellCheckQueue queue = new SpellCheckQueue(nodeStarts, nodeEnds, visible);
+		checkQueue = queue;
+		Callable<Boolean> worker = () -> checkNodes(task, nodesToCheck, nodeProblems, queue,
+			oldCheckedBlocks, newCheckedBlocks, updatePeriodically);
+
 		try {
-			for (Node node : nodesToCheck) {
-				if (!editor.isVisible()) {
-					task.cancel(false);
-					return null;
-				}
+			// start additional workers
+			ExecutorService blockExecutor = SpellChecker.blockExecutor;
+			int workerCount = (blockExecutor != null) ? Math.min(GlobalLanguageTool.MAX_POOL_SIZE, nodeProblems.length) : 1;
+			ArrayList<Future<Boolean>> futures = new ArrayList<>(workerCount - 1);
+			try {
+				for (int i = 1; i < workerCount; i++)
+					futures.add(blockExecutor.submit(worker));
+			} catch (RejectedExecutionException ex) {
+				// executor shut down (user turned spell checking off); check in this thread only
+			}
 
-				AnnotatedText annotatedText = annotatedNodeText(node);
-				List<RuleMatch> ruleMatches;
-				try {
-					ruleMatches = languageTool.check(annotatedText);
-				} catch (IllegalStateException ex) {
-					task.cancel(false);
-					return null; // user turned spell checking off
-				}
+			// this thread is also a worker
+			boolean completed = checkNodes(task, nodesToCheck, nodeProblems, queue,
+				oldCheckedBlocks, newCheckedBlocks, updatePeriodically);
+			for (Future<Boolean> future : futures) {
+				if (!getWorkerResult(future))
+					completed = false;
+			}
 
-				if (!ruleMatches.isEmpty()) {
-					SpellBlockProblems problem = new SpellBlockProblems(node.getStartOffset(), node.getEndOffset(), ruleMatches);
-					synchronized (spellProblems) {
-						spellProblems.add(problem);
-					}
-				}
+			// remember checked blocks (only current blocks if completed);
+			// but not if the language tool changed while checking
+			if (!completed || viewport != null)
+				checkedBlocks.compareAndSet(oldCheckedBlocks, mergeCheckedBlocks(oldCheckedBlocks, newCheckedBlocks));
+			else
+				checkedBlocks.compareAndSet(oldCheckedBlocks, newCheckedBlocks);
+
+			if (!completed) {
+				task.cancel(false);
+				return null;
 			}
 		} finally {
+			if (checkQueue == queue)
+				checkQueue = null;
 			if (timer != null)
 				timer.stop();
 		}
@@ -319,6 +455,113 @@ public class SpellChecker
 //		long endTime = System.currentTimeMillis();
 //		System.out.printf("%,20d millis\n", endTime - startTime);
 
+		return collectProblems(nodeProblems);
+	}
+
+	/**
+	 * Merges blocks of previous runs with blocks of an incomplete or viewport-only run.
+	 * Blocks of the new run are kept; the oldest blocks of previous runs are dropped
+	 * if there are more than MAX_CHECKED_BLOCKS blocks (edited versions of blocks
+	 * accumulate while typing in viewport-only mode).
+	 */
+	private static Map<String, List<RuleMatch>> mergeCheckedBlocks(Map<String, List<RuleMatch>> oldCheckedBlocks,
+		Map<String, List<RuleMatch>> newCheckedBlocks)
+	{
+		// insertion order is age order (blocks of the new run are the youngest)
+		LinkedHashMap<String, List<RuleMatch>> mergedCheckedBlocks = new LinkedHashMap<>();
+		for (Map.Entry<String, List<RuleMatch>> e : oldCheckedBlocks.entrySet()) {
+			if (!newCheckedBlocks.containsKey(e.getKey()))
+				mergedCheckedBlocks.put(e.getKey(), e.getValue());
+		}
+		mergedCheckedBlocks.putAll(newCheckedBlocks);
+
+		int removeCount = mergedCheckedBlocks.size() - Math.max(MAX_CHECKED_BLOCKS, newCheckedBlocks.size());
+		for (Iterator<String> it = mergedCheckedBlocks.keySet().iterator(); removeCount > 0; removeCount--) {
+			it.next();
+			it.remove();
+		}
+		return mergedCheckedBlocks;
+	}
+
+	/**
+	 * Checks the next unchecked nodes until all nodes are checked.
+	 * Invoked in several threads at the same time.
+	 *
+	 * Visible nodes are checked first. If there are no problems shown yet
+	 * (initial check), the problems are shown as soon as the visible nodes are checked.
+	 *
+	 * Rule matches depend only on the block text, so blocks with unchanged text
+	 * (found in oldCheckedBlocks) are not checked again.
+	 *
+	 * @return false if cancelled
+	 */
+	private boolean checkNodes(Task<?> task, List<Node> nodesToCheck, SpellBlockProblems[] nodeProblems,
+		SpellCheckQueue queue, Map<String, List<RuleMatch>> oldCheckedBlocks,
+		Map<String, List<RuleMatch>> newCheckedBlocks, boolean updateWhenVisibleChecked)
+		throws IOException
+	{
+		for (int i = queue.next(); i >= 0; i = queue.next()) {
+			if (task.isCancelled() || !editor.isVisible())
+				return false;
+
+			Node node = nodesToCheck.get(i);
+			String blockText = node.getChars().toString();
+			List<RuleMatch> ruleMatches = oldCheckedBlocks.get(blockText);
+			if (ruleMatches == null) {
+				try {
+					ruleMatches = languageTool.check(blockText, () -> annotatedNodeText(node));
+				} catch (IllegalStateException ex) {
+					return false; // user turned spell checking off
+				}
+			}
+			newCheckedBlocks.put(blockText, ruleMatches);
+
+			if (!ruleMatches.isEmpty()) {
+				SpellBlockProblems problem = new SpellBlockProblems(node.getStartOffset(), node.getEndOffset(), ruleMatches);
+				synchronized (nodeProblems) {
+					nodeProblems[i] = problem;
+				}
+			}
+
+			if (queue.completed(i) && updateWhenVisibleChecked) {
+				Platform.runLater(() -> {
+					if (!task.isDone())
+						checkFinished(Try.success(collectProblems(nodeProblems)));
+				});
+			}
+		}
+		return true;
+	}
+
+	private static boolean getWorkerResult(Future<Boolean> future)
+		throws IOException
+	{
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Returns the problems of the checked nodes in document order.
+	 */
+	private static ArrayList<SpellBlockProblems> collectProblems(SpellBlockProblems[] nodeProblems) {
+		ArrayList<SpellBlockProblems> spellProblems = new ArrayList<>();
+		synchronized (nodeProblems) {
+			for (SpellBlockProblems problems : nodeProblems) {
+				if (problems != null)
+					spellProblems.add(problems);
+			}
+		}
 		return spellProblems;
 	}
 
@@ -346,7 +589,7 @@ public class SpellChecker
 					builder.addMarkup(getMarkupFiller(start - prevTextEnd));
 
 				Range[] ranges = null;
-				for (SpellCheckerAddon addon : addons) {
+				for (SpellCheckerAddon addon : Addons.getSpellCheckerAddons()) {
 					ranges = addon.getAnnotatedRanges(text);
 					if (ranges != null)
 						break;
@@ -377,13 +620,14 @@ public class SpellChecker
 		return builder.build();
 	}
 
+	// initialized once (used in several threads)
 	private static final ArrayList<String> markupFiller = new ArrayList<>();
-	private String getMarkupFiller(int length) {
-		if (markupFiller.isEmpty()) {
-			for (int i = 1; i <= 16; i++)
-				markupFiller.add(StringUtils.repeat('#', i));
-		}
+	static {
+		for (int i = 1; i <= 16; i++)
+			markupFiller.add(StringUtils.repeat('#', i));
+	}
 
+	private String getMarkupFiller(int length) {
 		if (length <= markupFiller.size())
 			return markupFiller.get(length - 1);
 		return StringUtils.repeat('#', length);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Base class for lexers. Contains token styles (prism.js token names)
+ * and scanning methods.
+ *
+ * All scanning methods return the index after the scanned characters.
+ *
+ * @author Karl Tauber
+ */
+abstract class AbstractLexer
+	implements Lexer
+{
+	static final String ATRULE = "atrule";
+	static final String ATTR_NAME = "attr-name";
+	static final String ATTR_VALUE = "attr-value";
+	static final String BOOLEAN = "boolean";
+	static final String COMMENT = "comment";
+	static final String ENTITY = "entity";
+	static final String KEYWORD = "keyword";
+	static final String NUMBER = "number";
+	static final String PROPERTY = "property";
+	static final String PUNCTUATION = "punctuation";
+	static final String SELECTOR = "selector";
+	static final String STRING = "string";
+	static final String TAG = "tag";
+	static final String VARIABLE = "variable";
+
+	static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\f' || ch == '\r';
+	}
+
+	static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	static boolean isLetter(char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' ||
+			(ch >= 128 && Character.isLetter(ch));
+	}
+
+	static boolean isLetterOrDigit(char ch) {
+		return isLetter(ch) || isDigit(ch);
+	}
+
+	static int skipWhitespace(CharSequence text, int pos, int end) {
+		while (pos < end && isWhitespace(text.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	static int skipLetterOrDigits(CharSequence text, int pos, int end) {
+		while (pos < end && isLetterOrDigit(text.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	/**
+	 * Scans a number (including hex numbers, exponents and suffixes; e.g. 1.5e-3f).
+	 */
+	static int skipNumber(CharSequence text, int pos, int end) {
+		boolean hex = pos + 1 < end && text.charAt(pos) == '0' &&
+			(text.charAt(pos + 1) == 'x' || text.charAt(pos + 1) == 'X');
+		char prev = 0;
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			if (!isLetterOrDigit(ch) && ch != '.' &&
+				!((ch == '+' || ch == '-') && (prev == 'e' || prev == 'E') && !hex))
+			{
+				break;
+			}
+			prev = ch;
+			pos++;
+		}
+		return pos;
+	}
+
+	static boolean startsWith(CharSequence text, int pos, int end, String str) {
+		int length = str.length();
+		if (pos + length > end)
+			return false;
+
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(pos + i) != str.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the given string; or -1.
+	 */
+	static int indexOf(CharSequence text, int pos, int end, String str) {
+		for (int i = pos; i < end; i++) {
+			if (startsWith(text, i, end, str))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans to the closing quote (after the opening quote).
+	 * Returns the index after the closing quote; or -1 if not closed.
+	 */
+	static int findStringEnd(CharSequence text, int pos, int end, char quote, boolean escapes) {
+		while (pos < end) {
+			char ch = text.charAt(pos++);
+			if (ch == quote)
+				return pos;
+			if (ch == '\\' && escapes)
+				pos++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans to the closing delimiter (after the opening delimiter).
+	 * Returns the index after the closing delimiter; or -1 if not closed.
+	 */
+	static int findStringEnd(CharSequence text, int pos, int end, String delimiter, boolean escapes) {
+		while (pos < end) {
+			if (startsWith(text, pos, end, delimiter))
+				return pos + delimiter.length();
+			if (text.charAt(pos) == '\\' && escapes)
+				pos++;
+			pos++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether the next non-whitespace character is the given character.
+	 */
+	static boolean isFollowedBy(CharSequence text, int pos, int end, char ch) {
+		pos = skipWhitespace(text, pos, end);
+		return pos < end && text.charAt(pos) == ch;
+	}
+}
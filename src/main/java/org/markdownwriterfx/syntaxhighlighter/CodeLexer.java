@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Table-driven lexer for programming languages (e.g. Java, JavaScript, Python, SQL or shell).
+ *
+ * The language is defined by keyword tables, comment and string delimiters
+ * and a character table for identifiers and punctuation.
+ *
+ * @author Karl Tauber
+ */
+class CodeLexer
+	extends AbstractLexer
+{
+	private static final int STATE_BLOCK_COMMENT = 1;
+	private static final int STATE_STRING = 2;	// + index of multi-line string delimiter
+
+	// character types
+	private static final byte IDENT_START = 1;
+	private static final byte IDENT_PART = 2;
+	private static final byte PUNCTUATION_CHAR = 4;
+
+	private final byte[] charTypes = new byte[128];
+	private Keywords keywords = Keywords.EMPTY;
+	private Keywords literals = Keywords.EMPTY;
+	private String lineComment;
+	private boolean lineCommentAtWordStart;
+	private String blockCommentStart;
+	private String blockCommentEnd;
+	private String quotes = "";
+	private String[] multiLineStrings = {};
+	private boolean escapes = true;
+	private char variablePrefix;
+
+	CodeLexer() {
+		for (char ch = 'a'; ch <= 'z'; ch++)
+			charTypes[ch] = IDENT_START | IDENT_PART;
+		for (char ch = 'A'; ch <= 'Z'; ch++)
+			charTypes[ch] = IDENT_START | IDENT_PART;
+		for (char ch = '0'; ch <= '9'; ch++)
+			charTypes[ch] = IDENT_PART;
+		charTypes['_'] = IDENT_START | IDENT_PART;
+		for (char ch : "{}[]();,.".toCharArray())
+			charTypes[ch] = PUNCTUATION_CHAR;
+	}
+
+	/**
+	 * Additional characters allowed in identifiers (e.g. '$' in JavaScript).
+	 */
+	CodeLexer identifierChars(String chars) {
+		for (char ch : chars.toCharArray())
+			charTypes[ch] = IDENT_START | IDENT_PART;
+		return this;
+	}
+
+	CodeLexer keywords(boolean ignoreCase, String... keywords) {
+		this.keywords = new Keywords(ignoreCase, keywords);
+		return this;
+	}
+
+	/**
+	 * Literal keywords (e.g. true, false or null).
+	 */
+	CodeLexer literals(String... literals) {
+		this.literals = new Keywords(false, literals);
+		return this;
+	}
+
+	/**
+	 * @param atWordStart if true, line comments start only at the beginning
+	 *                    of a line or after whitespace (e.g. '#' in shell)
+	 */
+	CodeLexer lineComment(String lineComment, boolean atWordStart) {
+		this.lineComment = lineComment;
+		this.lineCommentAtWordStart = atWordStart;
+		return this;
+	}
+
+	CodeLexer blockComment(String start, String end) {
+		this.blockCommentStart = start;
+		this.blockCommentEnd = end;
+		return this;
+	}
+
+	/**
+	 * Single-line string quotes (e.g. "\"'").
+	 */
+	CodeLexer quotes(String quotes) {
+		this.quotes = quotes;
+		return this;
+	}
+
+	/**
+	 * Delimiters of strings that may span multiple lines (e.g. "\"\"\"").
+	 * Longer delimiters must be specified before shorter ones with the same prefix.
+	 */
+	CodeLexer multiLineStrings(String... delimiters) {
+		this.multiLineStrings = delimiters;
+		return this;
+	}
+
+	/**
+	 * Whether backslash escapes characters in strings. Default is true.
+	 */
+	CodeLexer escapes(boolean escapes) {
+		this.escapes = escapes;
+		return this;
+	}
+
+	/**
+	 * Prefix of variables (e.g. '$' in shell).
+	 */
+	CodeLexer variablePrefix(char variablePrefix) {
+		this.variablePrefix = variablePrefix;
+		return this;
+	}
+
+	@Override
+	public int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer) {
+		int pos = start;
+
+		// continue multi-line comment or string
+		if (state != INITIAL_STATE) {
+			int tokenEnd = (state == STATE_BLOCK_COMMENT)
+				? findBlockCommentEnd(text, pos, end)
+				: findStringEnd(text, pos, end, multiLineStrings[state - STATE_STRING], escapes);
+			if (tokenEnd < 0) {
+				consumer.accept(end - pos, (state == STATE_BLOCK_COMMENT) ? COMMENT : STRING);
+				return state;
+			}
+			consumer.accept(tokenEnd - pos, (state == STATE_BLOCK_COMMENT) ? COMMENT : STRING);
+			pos = tokenEnd;
+		}
+
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			int tokenEnd = pos + 1;
+			String style = null;
+			int delimiterIndex;
+
+			if (isWhitespace(ch))
+				tokenEnd = skipWhitespace(text, pos, end);
+			else if (lineComment != null && startsWith(text, pos, end, lineComment) &&
+				(!lineCommentAtWordStart || pos == start || isWhitespace(text.charAt(pos - 1))))
+			{
+				tokenEnd = end;
+				style = COMMENT;
+			} else if (blockCommentStart != null && startsWith(text, pos, end, blockCommentStart)) {
+				tokenEnd = findBlockCommentEnd(text, pos + blockCommentStart.length(), end);
+				if (tokenEnd < 0) {
+					consumer.accept(end - pos, COMMENT);
+					return STATE_BLOCK_COMMENT;
+				}
+				style = COMMENT;
+			} else if ((delimiterIndex = multiLineStringAt(text, pos, end)) >= 0) {
+				String delimiter = multiLineStrings[delimiterIndex];
+				tokenEnd = findStringEnd(text, pos + delimiter.length(), end, delimiter, escapes);
+				if (tokenEnd < 0) {
+					consumer.accept(end - pos, STRING);
+					return STATE_STRING + delimiterIndex;
+				}
+				style = STRING;
+			} else if (quotes.indexOf(ch) >= 0) {
+				tokenEnd = findStringEnd(text, pos + 1, end, ch, escapes);
+				if (tokenEnd < 0)
+					tokenEnd = end;
+				style = STRING;
+			} else if (isDigit(ch) || (ch == '.' && pos + 1 < end && isDigit(text.charAt(pos + 1)))) {
+				tokenEnd = skipNumber(text, pos, end);
+				style = NUMBER;
+			} else if (isIdentifierStart(ch)) {
+				tokenEnd = skipIdentifier(text, pos + 1, end);
+				if (keywords.contains(text, pos, tokenEnd))
+					style = KEYWORD;
+				else if (literals.contains(text, pos, tokenEnd))
+					style = BOOLEAN;
+			} else if (ch == variablePrefix && variablePrefix != 0) {
+				tokenEnd = skipVariable(text, pos + 1, end);
+				if (tokenEnd > pos + 1)
+					style = VARIABLE;
+			} else if (ch < 128 && (charTypes[ch] & PUNCTUATION_CHAR) != 0)
+				style = PUNCTUATION;
+
+			consumer.accept(tokenEnd - pos, style);
+			pos = tokenEnd;
+		}
+		return INITIAL_STATE;
+	}
+
+	private boolean isIdentifierStart(char ch) {
+		return (ch < 128) ? (charTypes[ch] & IDENT_START) != 0 : Character.isLetter(ch);
+	}
+
+	private boolean isIdentifierPart(char ch) {
+		return (ch < 128) ? (charTypes[ch] & IDENT_PART) != 0 : Character.isLetterOrDigit(ch);
+	}
+
+	private int skipIdentifier(CharSequence text, int pos, int end) {
+		while (pos < end && isIdentifierPart(text.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	private int skipVariable(CharSequence text, int pos, int end) {
+		if (pos >= end)
+			return pos;
+
+		char ch = text.charAt(pos);
+		if (ch == '{') {
+			// ${name}
+			int close = indexOf(text, pos, end, "}");
+			return (close >= 0) ? close + 1 : pos;
+		}
+		if (isIdentifierStart(ch))
+			return skipIdentifier(text, pos + 1, end);
+		if (isDigit(ch) || "?#@*!$-".indexOf(ch) >= 0)
+			return pos + 1;
+		return pos;
+	}
+
+	private int findBlockCommentEnd(CharSequence text, int pos, int end) {
+		int index = indexOf(text, pos, end, blockCommentEnd);
+		return (index >= 0) ? index + blockCommentEnd.length() : -1;
+	}
+
+	private int multiLineStringAt(CharSequence text, int pos, int end) {
+		for (int i = 0; i < multiLineStrings.length; i++) {
+			if (startsWith(text, pos, end, multiLineStrings[i]))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Lexer for CSS.
+ *
+ * The state contains the brace nesting depth and whether inside a comment.
+ *
+ * @author Karl Tauber
+ */
+class CssLexer
+	extends AbstractLexer
+{
+	private static final int STATE_COMMENT = 1;
+	private static final int DEPTH_SHIFT = 1;
+
+	@Override
+	public int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer) {
+		int depth = state >>> DEPTH_SHIFT;
+		int pos = start;
+
+		// continue comment
+		if ((state & STATE_COMMENT) != 0) {
+			int commentEnd = indexOf(text, pos, end, "*/");
+			if (commentEnd < 0) {
+				consumer.accept(end - pos, COMMENT);
+				return state;
+			}
+			consumer.accept(commentEnd + 2 - pos, COMMENT);
+			pos = commentEnd + 2;
+		}
+
+		boolean expectProperty = true;
+		boolean inAtRule = false;
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			int tokenEnd = pos + 1;
+			String style = null;
+
+			if (isWhitespace(ch))
+				tokenEnd = skipWhitespace(text, pos, end);
+			else if (startsWith(text, pos, end, "/*")) {
+				int commentEnd = indexOf(text, pos + 2, end, "*/");
+				if (commentEnd < 0) {
+					consumer.accept(end - pos, COMMENT);
+					return (depth << DEPTH_SHIFT) | STATE_COMMENT;
+				}
+				tokenEnd = commentEnd + 2;
+				style = COMMENT;
+			} else if (ch == '"' || ch == '\'') {
+				tokenEnd = findStringEnd(text, pos + 1, end, ch, true);
+				if (tokenEnd < 0)
+					tokenEnd = end;
+				style = STRING;
+			} else if (ch == '@') {
+				tokenEnd = skipName(text, pos + 1, end);
+				style = ATRULE;
+				inAtRule = true;
+			} else if (ch == '{' || ch == '}' || ch == ';') {
+				if (ch == '{')
+					depth++;
+				else if (ch == '}')
+					depth = Math.max(depth - 1, 0);
+				style = PUNCTUATION;
+				expectProperty = true;
+				inAtRule = false;
+			} else if (!inAtRule && (depth == 0 || (expectProperty && isSelector(text, pos, end)))) {
+				tokenEnd = findSelectorEnd(text, pos, end);
+				style = SELECTOR;
+			} else if (expectProperty && !inAtRule && isNameChar(ch)) {
+				tokenEnd = skipName(text, pos, end);
+				if (isFollowedBy(text, tokenEnd, end, ':'))
+					style = PROPERTY;
+				expectProperty = false;
+			} else if (isDigit(ch) || ((ch == '.' || ch == '-') && pos + 1 < end && isDigit(text.charAt(pos + 1)))) {
+				tokenEnd = skipNumber(text, pos + 1, end);
+				if (tokenEnd < end && text.charAt(tokenEnd) == '%')
+					tokenEnd++;
+				style = NUMBER;
+			} else if (ch == '#') {
+				// hex color
+				tokenEnd = skipLetterOrDigits(text, pos + 1, end);
+				style = NUMBER;
+			} else if (ch == '!' && startsWith(text, pos + 1, end, "important")) {
+				tokenEnd = pos + 10;
+				style = KEYWORD;
+			} else if (isNameChar(ch))
+				tokenEnd = skipName(text, pos, end);
+			else if ("():,".indexOf(ch) >= 0) {
+				style = PUNCTUATION;
+				if (ch == ':')
+					expectProperty = false;
+			}
+
+			consumer.accept(tokenEnd - pos, style);
+			pos = tokenEnd;
+		}
+		return depth << DEPTH_SHIFT;
+	}
+
+	private static boolean isNameChar(char ch) {
+		return isLetterOrDigit(ch) || ch == '-';
+	}
+
+	private static int skipName(CharSequence text, int pos, int end) {
+		while (pos < end && isNameChar(text.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	/**
+	 * Returns whether a '{' follows before ';' or '}' (e.g. a nested rule inside @media).
+	 */
+	private static boolean isSelector(CharSequence text, int pos, int end) {
+		for (int i = pos; i < end; i++) {
+			char ch = text.charAt(i);
+			if (ch == '{')
+				return true;
+			if (ch == ';' || ch == '}')
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the end of a selector (excluding trailing whitespace).
+	 */
+	private static int findSelectorEnd(CharSequence text, int pos, int end) {
+		int selectorEnd = pos;
+		for (int i = pos; i < end; i++) {
+			char ch = text.charAt(i);
+			if (ch == '{' || ch == '}' || startsWith(text, i, end, "/*"))
+				break;
+			if (!isWhitespace(ch))
+				selectorEnd = i + 1;
+		}
+		return selectorEnd;
+	}
+}
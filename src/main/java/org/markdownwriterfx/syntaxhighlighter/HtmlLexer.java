@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Lexer for HTML and XML.
+ *
+ * Highlights tags, attributes, entities and comments.
+ * Tags and comments may span multiple lines.
+ *
+ * @author Karl Tauber
+ */
+class HtmlLexer
+	extends AbstractLexer
+{
+	private static final int STATE_TAG = 1;
+	private static final int STATE_COMMENT = 2;
+	private static final int STATE_DOUBLE_QUOTED_VALUE = 3;
+	private static final int STATE_SINGLE_QUOTED_VALUE = 4;
+
+	@Override
+	public int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer) {
+		int pos = start;
+		boolean afterEquals = false;
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			int tokenEnd = pos + 1;
+			String style = null;
+
+			switch (state) {
+				case STATE_COMMENT:
+					int commentEnd = indexOf(text, pos, end, "-->");
+					if (commentEnd >= 0) {
+						tokenEnd = commentEnd + 3;
+						state = INITIAL_STATE;
+					} else
+						tokenEnd = end;
+					style = COMMENT;
+					break;
+
+				case STATE_DOUBLE_QUOTED_VALUE:
+				case STATE_SINGLE_QUOTED_VALUE:
+					tokenEnd = findStringEnd(text, pos, end, (state == STATE_DOUBLE_QUOTED_VALUE) ? '"' : '\'', false);
+					if (tokenEnd >= 0)
+						state = STATE_TAG;
+					else
+						tokenEnd = end;
+					style = ATTR_VALUE;
+					break;
+
+				case STATE_TAG:
+					if (isWhitespace(ch))
+						tokenEnd = skipWhitespace(text, pos, end);
+					else if (ch == '>' || ((ch == '/' || ch == '?') && pos + 1 < end && text.charAt(pos + 1) == '>')) {
+						tokenEnd = (ch == '>') ? pos + 1 : pos + 2;
+						style = PUNCTUATION;
+						state = INITIAL_STATE;
+					} else if (ch == '=') {
+						style = PUNCTUATION;
+						afterEquals = true;
+						break;
+					} else if (ch == '"' || ch == '\'') {
+						state = (ch == '"') ? STATE_DOUBLE_QUOTED_VALUE : STATE_SINGLE_QUOTED_VALUE;
+						tokenEnd = findStringEnd(text, pos + 1, end, ch, false);
+						if (tokenEnd >= 0)
+							state = STATE_TAG;
+						else
+							tokenEnd = end;
+						style = ATTR_VALUE;
+					} else if (ch == '<') {
+						// tag not closed
+						tokenEnd = pos;
+						state = INITIAL_STATE;
+					} else {
+						tokenEnd = skipAttribute(text, pos, end);
+						if (tokenEnd == pos)
+							tokenEnd = pos + 1;
+						style = afterEquals ? ATTR_VALUE : ATTR_NAME;
+					}
+					afterEquals = false;
+					break;
+
+				default: // INITIAL_STATE
+					if (ch == '<') {
+						if (startsWith(text, pos, end, "<!--")) {
+							tokenEnd = pos + 4;
+							style = COMMENT;
+							state = STATE_COMMENT;
+							break;
+						}
+
+						int nameStart = pos + 1;
+						if (nameStart < end && "/!?".indexOf(text.charAt(nameStart)) >= 0)
+							nameStart++;
+						int nameEnd = skipName(text, nameStart, end);
+						if (nameEnd > nameStart && isLetter(text.charAt(nameStart))) {
+							consumer.accept(nameStart - pos, PUNCTUATION);
+							pos = nameStart;
+							tokenEnd = nameEnd;
+							style = TAG;
+							state = STATE_TAG;
+						}
+					} else if (ch == '&') {
+						tokenEnd = skipEntity(text, pos + 1, end);
+						if (tokenEnd > pos + 1)
+							style = ENTITY;
+						else
+							tokenEnd = pos + 1;
+					} else {
+						// plain text
+						while (tokenEnd < end && text.charAt(tokenEnd) != '<' && text.charAt(tokenEnd) != '&')
+							tokenEnd++;
+					}
+					break;
+			}
+
+			if (tokenEnd > pos) {
+				consumer.accept(tokenEnd - pos, style);
+				pos = tokenEnd;
+			}
+		}
+		return state;
+	}
+
+	private static int skipName(CharSequence text, int pos, int end) {
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			if (!isLetterOrDigit(ch) && ch != ':' && ch != '-' && ch != '.')
+				break;
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int skipAttribute(CharSequence text, int pos, int end) {
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			if (isWhitespace(ch) || ch == '=' || ch == '>' || ch == '/' || ch == '"' || ch == '\'' || ch == '<')
+				break;
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Scans an entity (e.g. "&amp;" or "&#123;") after '&'.
+	 * Returns the index after ';'; or pos if not an entity.
+	 */
+	private static int skipEntity(CharSequence text, int pos, int end) {
+		int i = pos;
+		if (i < end && text.charAt(i) == '#')
+			i++;
+		int nameEnd = skipLetterOrDigits(text, i, Math.min(end, i + 8));
+		return (nameEnd > i && nameEnd < end && text.charAt(nameEnd) == ';') ? nameEnd + 1 : pos;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Lexer for JSON.
+ *
+ * @author Karl Tauber
+ */
+class JsonLexer
+	extends AbstractLexer
+{
+	private static final Keywords LITERALS = new Keywords(false, "true", "false", "null");
+
+	@Override
+	public int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer) {
+		int pos = start;
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			int tokenEnd = pos + 1;
+			String style = null;
+
+			if (isWhitespace(ch))
+				tokenEnd = skipWhitespace(text, pos, end);
+			else if (ch == '"') {
+				tokenEnd = findStringEnd(text, pos + 1, end, '"', true);
+				if (tokenEnd < 0)
+					tokenEnd = end;
+				style = isFollowedBy(text, tokenEnd, end, ':') ? PROPERTY : STRING;
+			} else if (isDigit(ch) || ch == '-') {
+				tokenEnd = skipNumber(text, pos + 1, end);
+				style = NUMBER;
+			} else if (isLetter(ch)) {
+				tokenEnd = skipLetterOrDigits(text, pos + 1, end);
+				if (LITERALS.contains(text, pos, tokenEnd))
+					style = BOOLEAN;
+			} else if ("{}[]:,".indexOf(ch) >= 0)
+				style = PUNCTUATION;
+
+			consumer.accept(tokenEnd - pos, style);
+			pos = tokenEnd;
+		}
+		return INITIAL_STATE;
+	}
+}
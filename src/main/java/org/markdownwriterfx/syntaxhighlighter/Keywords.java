@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Immutable set of keywords that can be looked up with a range of a char sequence,
+ * without creating a string.
+ *
+ * Uses an open addressing hash table.
+ *
+ * @author Karl Tauber
+ */
+class Keywords
+{
+	static final Keywords EMPTY = new Keywords(false);
+
+	private final boolean ignoreCase;
+	private final String[] table;
+	private final int mask;
+
+	/**
+	 * @param ignoreCase if true, keywords must be in lower case
+	 */
+	Keywords(boolean ignoreCase, String... keywords) {
+		this.ignoreCase = ignoreCase;
+
+		int size = Integer.highestOneBit(Math.max(keywords.length, 1) * 4);
+		table = new String[size];
+		mask = size - 1;
+
+		for (String keyword : keywords) {
+			int index = hash(keyword, 0, keyword.length()) & mask;
+			while (table[index] != null)
+				index = (index + 1) & mask;
+			table[index] = keyword;
+		}
+	}
+
+	boolean contains(CharSequence text, int start, int end) {
+		int index = hash(text, start, end) & mask;
+		for (String keyword; (keyword = table[index]) != null; index = (index + 1) & mask) {
+			if (equals(keyword, text, start, end))
+				return true;
+		}
+		return false;
+	}
+
+	private int hash(CharSequence text, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++)
+			h = 31 * h + toLowerCase(text.charAt(i));
+		return h ^ (h >>> 16);
+	}
+
+	private boolean equals(String keyword, CharSequence text, int start, int end) {
+		int length = keyword.length();
+		if (length != end - start)
+			return false;
+
+		for (int i = 0; i < length; i++) {
+			if (keyword.charAt(i) != toLowerCase(text.charAt(start + i)))
+				return false;
+		}
+		return true;
+	}
+
+	private char toLowerCase(char ch) {
+		return (ignoreCase && ch >= 'A' && ch <= 'Z') ? (char) (ch + ('a' - 'A')) : ch;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import java.util.Arrays;
+
+/**
+ * Immutable tokens of a text, tokenized line by line with a {@link Lexer}.
+ *
+ * For each line, the lexer state at the beginning of the line and
+ * the index of its first token are stored. This allows re-lexing
+ * a changed text starting at the first changed line (see {@link #lex(Lexer, String, LexedText)}).
+ *
+ * Token lengths are relative, so the tokens can be replayed at any text offset.
+ *
+ * @author Karl Tauber
+ */
+class LexedText
+{
+	final Lexer lexer;
+	final String text;
+
+	private final int lineCount;
+	private final int[] lineStarts;			// [lineCount + 1]
+	private final int[] lineStates;			// state at beginning of line; [lineCount] is end state
+	private final int[] lineFirstTokens;	// [lineCount] is token count
+
+	private int[] tokenLengths = new int[16];
+	private String[] tokenStyles = new String[16];
+	private int tokenCount;
+	private int currentLineFirstToken;
+
+	// number of lines passed to lexer (for tests)
+	int lexedLineCount;
+
+	private LexedText(Lexer lexer, String text) {
+		this.lexer = lexer;
+		this.text = text;
+
+		int count = 1;
+		for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1))
+			count++;
+		lineCount = count;
+
+		lineStarts = new int[count + 1];
+		for (int i = text.indexOf('\n'), line = 1; i >= 0; i = text.indexOf('\n', i + 1))
+			lineStarts[line++] = i + 1;
+		lineStarts[count] = text.length();
+
+		lineStates = new int[count + 1];
+		lineFirstTokens = new int[count + 1];
+	}
+
+	/**
+	 * Tokenizes the given text.
+	 *
+	 * If a previous lexed text is given, its tokens are re-used
+	 * for unchanged lines before the first changed line, and for unchanged lines
+	 * after the last changed line if the lexer state at the beginning
+	 * of the line is the same as in the previous text.
+	 */
+	static LexedText lex(Lexer lexer, String text, LexedText previous) {
+		LexedText lexed = new LexedText(lexer, text);
+		int lineCount = lexed.lineCount;
+
+		int firstLine = 0;
+		int suffixLines = 0;
+		int state = Lexer.INITIAL_STATE;
+		if (previous != null && previous.lexer == lexer) {
+			// equal lines before first changed line
+			int maxLines = Math.min(lineCount, previous.lineCount);
+			while (firstLine < maxLines && lexed.lineEquals(firstLine, previous, firstLine))
+				firstLine++;
+
+			// equal lines after last changed line
+			while (suffixLines < maxLines - firstLine &&
+				lexed.lineEquals(lineCount - 1 - suffixLines, previous, previous.lineCount - 1 - suffixLines))
+			{
+				suffixLines++;
+			}
+
+			lexed.copyLines(previous, 0, firstLine, 0);
+			state = previous.lineStates[firstLine];
+		} else
+			previous = null;
+
+		SyntaxHighlighter.HighlightConsumer consumer = lexed::add;
+		for (int line = firstLine; line < lineCount; line++) {
+			// stop lexing if state and remaining lines are equal to previous text
+			if (line >= lineCount - suffixLines) {
+				int previousLine = line - lineCount + previous.lineCount;
+				if (state == previous.lineStates[previousLine]) {
+					lexed.copyLines(previous, previousLine, previous.lineCount, line);
+					return lexed;
+				}
+			}
+
+			lexed.lineStates[line] = state;
+			lexed.lineFirstTokens[line] = lexed.tokenCount;
+			lexed.currentLineFirstToken = lexed.tokenCount;
+
+			int start = lexed.lineStarts[line];
+			int end = lexed.lineStarts[line + 1];
+			int contentEnd = end;
+			if (contentEnd > start && text.charAt(contentEnd - 1) == '\n')
+				contentEnd--;
+			if (contentEnd > start && text.charAt(contentEnd - 1) == '\r')
+				contentEnd--;
+
+			state = lexer.lexLine(text, start, contentEnd, state, consumer);
+			lexed.add(end - contentEnd, null);
+			lexed.lexedLineCount++;
+		}
+
+		lexed.lineStates[lineCount] = state;
+		lexed.lineFirstTokens[lineCount] = lexed.tokenCount;
+		return lexed;
+	}
+
+	private boolean lineEquals(int line, LexedText other, int otherLine) {
+		int start = lineStarts[line];
+		int length = lineStarts[line + 1] - start;
+		int otherStart = other.lineStarts[otherLine];
+		return length == other.lineStarts[otherLine + 1] - otherStart &&
+			text.regionMatches(start, other.text, otherStart, length);
+	}
+
+	/**
+	 * Copies tokens and line states of the lines fromLine to toLine
+	 * of the other lexed text to this lexed text, starting at the given line.
+	 * If toLine is the line count of the other lexed text, the end state is also copied.
+	 */
+	private void copyLines(LexedText other, int fromLine, int toLine, int line) {
+		int fromToken = other.lineFirstTokens[fromLine];
+		int count = other.lineFirstTokens[toLine] - fromToken;
+		ensureTokenCapacity(tokenCount + count);
+		System.arraycopy(other.tokenLengths, fromToken, tokenLengths, tokenCount, count);
+		System.arraycopy(other.tokenStyles, fromToken, tokenStyles, tokenCount, count);
+
+		int lineDelta = line - fromLine;
+		int tokenDelta = tokenCount - fromToken;
+		int lastLine = (toLine == other.lineCount) ? toLine : toLine - 1;
+		for (int i = fromLine; i <= lastLine; i++) {
+			lineStates[i + lineDelta] = other.lineStates[i];
+			lineFirstTokens[i + lineDelta] = other.lineFirstTokens[i] + tokenDelta;
+		}
+		tokenCount += count;
+	}
+
+	private void add(int length, String style) {
+		if (length == 0)
+			return;
+
+		// merge with previous token of same line, if style is equal
+		if (tokenCount > currentLineFirstToken && tokenStyles[tokenCount - 1] == style) {
+			tokenLengths[tokenCount - 1] += length;
+			return;
+		}
+
+		ensureTokenCapacity(tokenCount + 1);
+		tokenLengths[tokenCount] = length;
+		tokenStyles[tokenCount] = style;
+		tokenCount++;
+	}
+
+	private void ensureTokenCapacity(int capacity) {
+		if (capacity > tokenLengths.length) {
+			int newLength = Math.max(capacity, tokenLengths.length * 2);
+			tokenLengths = Arrays.copyOf(tokenLengths, newLength);
+			tokenStyles = Arrays.copyOf(tokenStyles, newLength);
+		}
+	}
+
+	int getLineCount() {
+		return lineCount;
+	}
+
+	void replay(SyntaxHighlighter.HighlightConsumer consumer) {
+		for (int i = 0; i < tokenCount; i++)
+			consumer.accept(tokenLengths[i], tokenStyles[i]);
+	}
+}
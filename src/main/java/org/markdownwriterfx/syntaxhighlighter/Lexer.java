@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * A single-pass, line-based tokenizer.
+ *
+ * Lexers are state machines that tokenize one line at a time.
+ * The state at the end of a line (e.g. inside a multi-line comment) is returned
+ * and passed to the next line. So tokenizing can be resumed at any line
+ * from the saved state of that line (see {@link LexedText}).
+ *
+ * Lexers must not allocate objects while tokenizing.
+ *
+ * @author Karl Tauber
+ */
+interface Lexer
+{
+	int INITIAL_STATE = 0;
+
+	/**
+	 * Tokenizes a single line and passes the tokens to the consumer.
+	 * The tokens must cover the whole line.
+	 *
+	 * @param text the text
+	 * @param start the start index of the line
+	 * @param end the end index of the line (excluding line separator)
+	 * @param state the state at the beginning of the line
+	 * @return the state at the end of the line
+	 */
+	int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer);
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Registry of lexers, keyed by language names as used in
+ * the info string of fenced code blocks (e.g. "java" or "js").
+ *
+ * @author Karl Tauber
+ */
+class Lexers
+{
+	private static final HashMap<String, Lexer> lexers = new HashMap<>();
+
+	static {
+		register(new HtmlLexer(), "html", "xml", "mathml", "svg", "xhtml");
+
+		register(new CodeLexer()
+			.keywords(false,
+				"abstract", "assert", "break", "case", "catch", "class", "const", "continue",
+				"default", "do", "else", "enum", "extends", "final", "finally", "for", "goto",
+				"if", "implements", "import", "instanceof", "interface", "native", "new",
+				"package", "private", "protected", "public", "return", "static", "strictfp",
+				"super", "switch", "synchronized", "this", "throw", "throws", "transient",
+				"try", "volatile", "while", "var", "record", "yield", "sealed", "permits",
+				"boolean", "byte", "char", "double", "float", "int", "long", "short", "void")
+			.literals("true", "false", "null")
+			.lineComment("//", false)
+			.blockComment("/*", "*/")
+			.quotes("\"'")
+			.multiLineStrings("\"\"\""),
+			"java");
+
+		register(new CodeLexer()
+			.identifierChars("$")
+			.keywords(false,
+				"async", "await", "break", "case", "catch", "class", "const", "continue",
+				"debugger", "default", "delete", "do", "else", "export", "extends", "finally",
+				"for", "from", "function", "get", "if", "import", "in", "instanceof", "let",
+				"new", "of", "return", "set", "static", "super", "switch", "this", "throw",
+				"try", "typeof", "var", "void", "while", "with", "yield",
+				// TypeScript
+				"abstract", "any", "as", "boolean", "declare", "enum", "implements", "interface",
+				"keyof", "namespace", "never", "number", "private", "protected", "public",
+				"readonly", "string", "type", "unknown")
+			.literals("true", "false", "null", "undefined", "NaN", "Infinity")
+			.lineComment("//", false)
+			.blockComment("/*", "*/")
+			.quotes("\"'")
+			.multiLineStrings("`"),
+			"javascript", "js", "jsx", "typescript", "ts", "tsx");
+
+		register(new JsonLexer(), "json", "json5", "jsonc");
+		register(new YamlLexer(), "yaml", "yml");
+
+		register(new CodeLexer()
+			.identifierChars("-")
+			.keywords(false,
+				"if", "then", "else", "elif", "fi", "for", "while", "until", "do", "done",
+				"case", "esac", "in", "function", "select", "return", "break", "continue",
+				"local", "export", "readonly", "declare", "unset", "shift", "exit", "source")
+			.lineComment("#", true)
+			.multiLineStrings("\"", "'")
+			.variablePrefix('$'),
+			"shell", "sh", "bash", "zsh", "console");
+
+		register(new CodeLexer()
+			.keywords(false,
+				"and", "as", "assert", "async", "await", "break", "class", "continue", "def",
+				"del", "elif", "else", "except", "finally", "for", "from", "global", "if",
+				"import", "in", "is", "lambda", "nonlocal", "not", "or", "pass", "raise",
+				"return", "try", "while", "with", "yield", "match", "case")
+			.literals("True", "False", "None")
+			.lineComment("#", false)
+			.quotes("\"'")
+			.multiLineStrings("\"\"\"", "'''"),
+			"python", "py");
+
+		register(new CodeLexer()
+			.keywords(true,
+				"add", "all", "alter", "and", "as", "asc", "between", "by", "case", "check",
+				"column", "constraint", "create", "cross", "database", "default", "delete",
+				"desc", "distinct", "drop", "else", "end", "exists", "foreign", "from", "full",
+				"group", "having", "in", "index", "inner", "insert", "into", "is", "join", "key",
+				"left", "like", "limit", "not", "offset", "on", "or", "order", "outer", "primary",
+				"references", "right", "select", "set", "table", "then", "union", "unique",
+				"update", "values", "view", "when", "where", "with")
+			.literals("true", "false", "null", "TRUE", "FALSE", "NULL")
+			.lineComment("--", false)
+			.blockComment("/*", "*/")
+			.quotes("\"`")
+			.multiLineStrings("'")
+			.escapes(false),
+			"sql", "mysql", "pgsql", "plsql");
+
+		register(new CssLexer(), "css");
+	}
+
+	private static void register(Lexer lexer, String... languages) {
+		for (String language : languages)
+			lexers.put(language, lexer);
+	}
+
+	/**
+	 * Returns the lexer for the given language (or fenced code block info string);
+	 * or {@code null}.
+	 */
+	static Lexer get(String language) {
+		Lexer lexer = lexers.get(language);
+		if (lexer != null || language.isEmpty())
+			return lexer;
+
+		// use first word of info string (e.g. "java {.numberLines}") in lower case
+		int end = 0;
+		while (end < language.length() && !Character.isWhitespace(language.charAt(end)) && language.charAt(end) != '{')
+			end++;
+		return lexers.get(language.substring(0, end).toLowerCase(Locale.ENGLISH));
+	}
+}
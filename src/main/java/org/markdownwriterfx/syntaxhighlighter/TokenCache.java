@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process-wide LRU cache of syntax highlighting tokens.
+ *
+ * Tokens are keyed by language and text (e.g. the content of a fenced code block)
+ * and are stored relative to the beginning of the text. So they can be re-used
+ * for the same text at another location (e.g. after editing text above a code block),
+ * and only edited code blocks are tokenized again.
+ *
+ * Recently tokenized texts are also used to re-lex changed texts
+ * starting at the first changed line (see {@link LexedText}).
+ *
+ * The cache is bounded by the number of entries and the total number of characters.
+ *
+ * @author Karl Tauber
+ */
+public class TokenCache
+{
+	public static final int DEF_MAX_ENTRIES = 1000;
+	public static final long DEF_MAX_CHARS = 2 * 1024 * 1024;
+
+	private static final int MAX_RECENT = 8;
+
+	// access-ordered
+	private static final LinkedHashMap<Key, LexedText> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// recently tokenized texts (most recent first)
+	private static final ArrayDeque<LexedText> recent = new ArrayDeque<>();
+	private static int maxEntries = DEF_MAX_ENTRIES;
+	private static long maxChars = DEF_MAX_CHARS;
+	private static long chars;
+
+	private static int hitCount;
+	private static int missCount;
+
+	/**
+	 * Same as {@link SyntaxHighlighter#highlight(String, String, SyntaxHighlighter.HighlightConsumer)},
+	 * but uses cached tokens if available.
+	 * The text is converted to a string only if not in cache.
+	 */
+	public static boolean highlight(CharSequence text, String language, SyntaxHighlighter.HighlightConsumer consumer) {
+		Lexer lexer = Lexers.get(language);
+		if (lexer == null)
+			return false;
+
+		Key key = new Key(language, text);
+		LexedText lexed;
+		synchronized (TokenCache.class) {
+			lexed = entries.get(key);
+			if (lexed != null)
+				hitCount++;
+			else
+				missCount++;
+		}
+
+		if (lexed == null) {
+			// tokenize outside of lock
+			String str = text.toString();
+			lexed = LexedText.lex(lexer, str, findPrevious(lexer, str));
+
+			put(new Key(language, str), lexed);
+		}
+
+		lexed.replay(consumer);
+		return true;
+	}
+
+	private static synchronized void put(Key key, LexedText lexed) {
+		int length = key.text.length();
+		if (length > maxChars)
+			return;
+
+		recent.remove(lexed);
+		recent.addFirst(lexed);
+		if (recent.size() > MAX_RECENT)
+			recent.removeLast();
+
+		if (entries.putIfAbsent(key, lexed) != null)
+			return;
+
+		chars += length;
+		trim();
+	}
+
+	/**
+	 * Finds a recently tokenized text (e.g. the text of a code block before the last edit)
+	 * that has the most equal characters at the beginning and end with the given text.
+	 * Returns {@code null} if none has at least half of the characters in common.
+	 */
+	private static synchronized LexedText findPrevious(Lexer lexer, String text) {
+		LexedText best = null;
+		int bestEqualChars = text.length() / 2;
+		for (LexedText lexed : recent) {
+			if (lexed.lexer != lexer)
+				continue;
+
+			String previousText = lexed.text;
+			int maxLength = Math.min(text.length(), previousText.length());
+			int prefix = 0;
+			while (prefix < maxLength && text.charAt(prefix) == previousText.charAt(prefix))
+				prefix++;
+			int suffix = 0;
+			while (suffix < maxLength - prefix &&
+				text.charAt(text.length() - 1 - suffix) == previousText.charAt(previousText.length() - 1 - suffix))
+			{
+				suffix++;
+			}
+
+			if (prefix + suffix > bestEqualChars) {
+				best = lexed;
+				bestEqualChars = prefix + suffix;
+			}
+		}
+		return best;
+	}
+
+	private static void trim() {
+		Iterator<Key> it = entries.keySet().iterator();
+		while ((entries.size() > maxEntries || chars > maxChars) && it.hasNext()) {
+			Key key = it.next();
+			it.remove();
+			chars -= key.text.length();
+		}
+	}
+
+	public static synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	public static synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the total number of characters of all cached entries.
+	 */
+	public static synchronized long getChars() {
+		return chars;
+	}
+
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	public static synchronized void setMaxEntries(int maxEntries) {
+		TokenCache.maxEntries = maxEntries;
+		trim();
+	}
+
+	public static synchronized void setMaxChars(long maxChars) {
+		TokenCache.maxChars = maxChars;
+		trim();
+	}
+
+	public static synchronized void clear() {
+		entries.clear();
+		recent.clear();
+		chars = 0;
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	public static synchronized String getStatistics() {
+		int count = hitCount + missCount;
+		return entries.size() + " entries, " + (chars / 1024) + " K chars, "
+			+ hitCount + " hits / " + missCount + " misses"
+			+ ((count > 0) ? " (" + (hitCount * 100 / count) + "% hit rate)" : "");
+	}
+
+	//---- class Key ----------------------------------------------------------
+
+	private static class Key
+	{
+		private final String language;
+		private final CharSequence text;
+		private final int hash;
+
+		Key(String language, CharSequence text) {
+			this.language = language;
+			this.text = text;
+
+			// compute hash code same as String.hashCode(),
+			// but without converting text to string
+			int h = language.hashCode();
+			int length = text.length();
+			for (int i = 0; i < length; i++)
+				h = 31 * h + text.charAt(i);
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			Key key = (Key) obj;
+			return hash == key.hash &&
+				language.equals(key.language) &&
+				CharSequence.compare(text, key.text) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+/**
+ * Lexer for YAML.
+ *
+ * Highlights keys, quoted strings, numbers, literals, anchors/aliases, tags,
+ * comments and block scalars ('|' or '>'), which may span multiple lines.
+ *
+ * @author Karl Tauber
+ */
+class YamlLexer
+	extends AbstractLexer
+{
+	// state is 1 + indention of the key of a block scalar
+	private static final int STATE_BLOCK_SCALAR = 1;
+
+	private static final Keywords LITERALS = new Keywords(true,
+		"true", "false", "yes", "no", "on", "off", "null", "~");
+
+	@Override
+	public int lexLine(CharSequence text, int start, int end, int state, SyntaxHighlighter.HighlightConsumer consumer) {
+		int indent = skipWhitespace(text, start, end) - start;
+
+		// block scalar continues on lines that are empty or indented more than its key
+		if (state >= STATE_BLOCK_SCALAR) {
+			if (start + indent == end) {
+				consumer.accept(end - start, null);
+				return state;
+			}
+			if (indent > state - STATE_BLOCK_SCALAR) {
+				consumer.accept(end - start, STRING);
+				return state;
+			}
+		}
+
+		int pos = start;
+
+		// document markers
+		if (startsWith(text, pos, end, "---") || startsWith(text, pos, end, "...")) {
+			consumer.accept(3, PUNCTUATION);
+			pos += 3;
+		}
+
+		// indention and sequence markers ("- ")
+		for (;;) {
+			int next = skipWhitespace(text, pos, end);
+			if (next > pos) {
+				consumer.accept(next - pos, null);
+				pos = next;
+			}
+			if (pos < end && text.charAt(pos) == '-' && (pos + 1 == end || isWhitespace(text.charAt(pos + 1)))) {
+				consumer.accept(1, PUNCTUATION);
+				pos++;
+			} else
+				break;
+		}
+
+		// key
+		int keyEnd = findKeyEnd(text, pos, end);
+		if (keyEnd > pos) {
+			consumer.accept(keyEnd - pos, PROPERTY);
+			consumer.accept(1, PUNCTUATION);
+			pos = keyEnd + 1;
+		}
+
+		// value
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			int tokenEnd = pos + 1;
+			String style = null;
+
+			if (isWhitespace(ch))
+				tokenEnd = skipWhitespace(text, pos, end);
+			else if (ch == '#' && (pos == start || isWhitespace(text.charAt(pos - 1)))) {
+				tokenEnd = end;
+				style = COMMENT;
+			} else if (ch == '"' || ch == '\'') {
+				tokenEnd = findStringEnd(text, pos + 1, end, ch, ch == '"');
+				if (tokenEnd < 0)
+					tokenEnd = end;
+				style = STRING;
+			} else if ((ch == '|' || ch == '>') && isBlockScalarIndicator(text, pos + 1, end)) {
+				consumer.accept(end - pos, PUNCTUATION);
+				return STATE_BLOCK_SCALAR + indent;
+			} else if (ch == '&' || ch == '*') {
+				tokenEnd = skipScalar(text, pos + 1, end);
+				style = VARIABLE;
+			} else if (ch == '!') {
+				tokenEnd = skipScalar(text, pos + 1, end);
+				style = KEYWORD;
+			} else if ("{}[],:".indexOf(ch) >= 0)
+				style = PUNCTUATION;
+			else {
+				tokenEnd = skipScalar(text, pos, end);
+				if (isNumber(text, pos, tokenEnd))
+					style = NUMBER;
+				else if (LITERALS.contains(text, pos, tokenEnd))
+					style = BOOLEAN;
+			}
+
+			consumer.accept(tokenEnd - pos, style);
+			pos = tokenEnd;
+		}
+		return INITIAL_STATE;
+	}
+
+	/**
+	 * Returns the index of the ':' that ends a key; or -1.
+	 */
+	private static int findKeyEnd(CharSequence text, int pos, int end) {
+		if (pos >= end)
+			return -1;
+
+		char ch = text.charAt(pos);
+		if (ch == '"' || ch == '\'') {
+			int stringEnd = findStringEnd(text, pos + 1, end, ch, ch == '"');
+			return (stringEnd >= 0 && stringEnd < end && text.charAt(stringEnd) == ':') ? stringEnd : -1;
+		}
+		if (ch == '#' || ch == '{' || ch == '[' || ch == '&' || ch == '*' || ch == '!' || ch == '|' || ch == '>')
+			return -1;
+
+		for (int i = pos; i < end; i++) {
+			ch = text.charAt(i);
+			if (ch == ':' && (i + 1 == end || isWhitespace(text.charAt(i + 1))))
+				return i;
+			if (ch == '#' && isWhitespace(text.charAt(i - 1)))
+				return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether the rest of the line after '|' or '>' contains only
+	 * chomping/indentation indicators, whitespace and comments.
+	 */
+	private static boolean isBlockScalarIndicator(CharSequence text, int pos, int end) {
+		while (pos < end) {
+			char ch = text.charAt(pos++);
+			if (ch == '#')
+				return true;
+			if (ch != '+' && ch != '-' && !isDigit(ch) && !isWhitespace(ch))
+				return false;
+		}
+		return true;
+	}
+
+	private static int skipScalar(CharSequence text, int pos, int end) {
+		while (pos < end) {
+			char ch = text.charAt(pos);
+			if (isWhitespace(ch) || ch == ',' || ch == ']' || ch == '}')
+				break;
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isNumber(CharSequence text, int pos, int end) {
+		if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+'))
+			pos++;
+		return pos < end && isDigit(text.charAt(pos)) && skipNumber(text, pos, end) == end;
+	}
+}
@@ -32,17 +32,134 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import org.markdownwriterfx.addons.MarkdownSyntaxHighlighterAddon;
+import org.markdownwriterfx.addons.PreviewRendererAddon;
+import org.markdownwriterfx.addons.PreviewViewAddon;
+import org.markdownwriterfx.addons.SmartFormatAddon;
+import org.markdownwriterfx.addons.SpellCheckerAddon;
 import org.markdownwriterfx.options.Options;
 
 /**
+ * Registry of addons.
+ *
+ * All addon types are loaded once (see {@link #preload()}) and kept in
+ * immutable lists, together with precomputed capabilities
+ * (e.g. whether preview renderer addons exist or the resolved URLs of stylesheets).
+ * So lookups are cheap and can be used in hot paths.
+ *
  * @author Karl Tauber
  */
 public class Addons
 {
 	private static ClassLoader addonsClassLoader;
 
-	public static ClassLoader getAddonsClassLoader() {
+	private static volatile Registry registry;
+	private static CompletableFuture<Registry> loading;
+
+	/**
+	 * Starts loading all addons in background threads (in parallel).
+	 */
+	public static void preload() {
+		getLoading();
+	}
+
+	public static List<MarkdownSyntaxHighlighterAddon> getSyntaxHighlighterAddons() {
+		return getRegistry().syntaxHighlighterAddons;
+	}
+
+	/**
+	 * Returns the resolved URLs of the stylesheets of all syntax highlighter addons.
+	 */
+	public static List<String> getSyntaxHighlighterStylesheets() {
+		return getRegistry().syntaxHighlighterStylesheets;
+	}
+
+	public static List<PreviewRendererAddon> getPreviewRendererAddons() {
+		return getRegistry().previewRendererAddons;
+	}
+
+	public static boolean hasPreviewRendererAddons() {
+		return !getRegistry().previewRendererAddons.isEmpty();
+	}
+
+	public static List<SmartFormatAddon> getSmartFormatAddons() {
+		return getRegistry().smartFormatAddons;
+	}
+
+	public static List<SpellCheckerAddon> getSpellCheckerAddons() {
+		return getRegistry().spellCheckerAddons;
+	}
+
+	public static boolean hasSpellCheckerAddons() {
+		return !getRegistry().spellCheckerAddons.isEmpty();
+	}
+
+	public static boolean hasPreviewViewAddon() {
+		return getRegistry().previewViewAddonProvider != null;
+	}
+
+	/**
+	 * Creates a new instance of the first preview view addon; or {@code null}.
+	 * Each invocation returns a new instance, which allows
+	 * PreviewViewAddon implementations to store information in fields.
+	 */
+	public static PreviewViewAddon createPreviewViewAddon() {
+		ServiceLoader.Provider<PreviewViewAddon> provider = getRegistry().previewViewAddonProvider;
+		return (provider != null) ? provider.get() : null;
+	}
+
+	private static Registry getRegistry() {
+		Registry registry = Addons.registry;
+		if( registry == null )
+			registry = Addons.registry = getLoading().join();
+		return registry;
+	}
+
+	private static synchronized CompletableFuture<Registry> getLoading() {
+		if( loading == null ) {
+			ClassLoader cl = getAddonsClassLoader();
+			ForkJoinPool pool = ForkJoinPool.commonPool();
+			CompletableFuture<List<MarkdownSyntaxHighlighterAddon>> syntaxHighlighterAddons =
+				CompletableFuture.supplyAsync( () -> load( MarkdownSyntaxHighlighterAddon.class, cl ), pool );
+			CompletableFuture<List<PreviewRendererAddon>> previewRendererAddons =
+				CompletableFuture.supplyAsync( () -> load( PreviewRendererAddon.class, cl ), pool );
+			CompletableFuture<List<SmartFormatAddon>> smartFormatAddons =
+				CompletableFuture.supplyAsync( () -> load( SmartFormatAddon.class, cl ), pool );
+			CompletableFuture<List<SpellCheckerAddon>> spellCheckerAddons =
+				CompletableFuture.supplyAsync( () -> load( SpellCheckerAddon.class, cl ), pool );
+			CompletableFuture<ServiceLoader.Provider<PreviewViewAddon>> previewViewAddonProvider =
+				CompletableFuture.supplyAsync( () -> ServiceLoader.load( PreviewViewAddon.class, cl ).stream().findFirst().orElse( null ), pool );
+
+			loading = CompletableFuture.allOf( syntaxHighlighterAddons, previewRendererAddons,
+					smartFormatAddons, spellCheckerAddons, previewViewAddonProvider )
+				.thenApply( v -> new Registry( cl,
+					syntaxHighlighterAddons.join(), previewRendererAddons.join(),
+					smartFormatAddons.join(), spellCheckerAddons.join(), previewViewAddonProvider.join() ) );
+		}
+		return loading;
+	}
+
+	private static <T> List<T> load( Class<T> service, ClassLoader cl ) {
+		ArrayList<T> list = new ArrayList<>();
+		for( T addon : ServiceLoader.load( service, cl ) )
+			list.add( addon );
+		return toImmutableList( list );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static <T> List<T> toImmutableList( List<T> list ) {
+		return list.isEmpty()
+			? Collections.emptyList()
+			: Collections.unmodifiableList( Arrays.asList( (T[]) list.toArray() ) );
+	}
+
+	public static synchronized ClassLoader getAddonsClassLoader() {
 		if( addonsClassLoader != null )
 			return addonsClassLoader;
 
@@ -85,4 +202,44 @@ public class Addons
 			ex.printStackTrace();
 		}
 	}
+
+	//---- class Registry -----------------------------------------------------
+
+	/**
+	 * Immutable snapshot of all loaded addons.
+	 */
+	private static class Registry
+	{
+		final List<MarkdownSyntaxHighlighterAddon> syntaxHighlighterAddons;
+		final List<String> syntaxHighlighterStylesheets;
+		final List<PreviewRendererAddon> previewRendererAddons;
+		final List<SmartFormatAddon> smartFormatAddons;
+		final List<SpellCheckerAddon> spellCheckerAddons;
+		final ServiceLoader.Provider<PreviewViewAddon> previewViewAddonProvider;
+
+		Registry( ClassLoader cl,
+			List<MarkdownSyntaxHighlighterAddon> syntaxHighlighterAddons,
+			List<PreviewRendererAddon> previewRendererAddons,
+			List<SmartFormatAddon> smartFormatAddons,
+			List<SpellCheckerAddon> spellCheckerAddons,
+			ServiceLoader.Provider<PreviewViewAddon> previewViewAddonProvider )
+		{
+			this.syntaxHighlighterAddons = syntaxHighlighterAddons;
+			this.previewRendererAddons = previewRendererAddons;
+			this.smartFormatAddons = smartFormatAddons;
+			this.spellCheckerAddons = spellCheckerAddons;
+			this.previewViewAddonProvider = previewViewAddonProvider;
+
+			// resolve stylesheet URLs
+			ArrayList<String> stylesheets = new ArrayList<>();
+			for( MarkdownSyntaxHighlighterAddon addon : syntaxHighlighterAddons ) {
+				for( String stylesheet : addon.getStylesheets() ) {
+					URL url = cl.getResource( stylesheet );
+					if( url != null && !stylesheets.contains( url.toString() ) )
+						stylesheets.add( url.toString() );
+				}
+			}
+			this.syntaxHighlighterStylesheets = toImmutableList( stylesheets );
+		}
+	}
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.NullableDataKey;
+
+/**
+ * Process-wide LRU cache of parsed markdown ASTs and of data computed from them
+ * (e.g. syntax highlighting styles and rendered HTML).
+ *
+ * ASTs are keyed by markdown text and parser. Because parsers are shared
+ * (see {@link MarkdownProcessors}), the parser identifies renderer type and markdown extensions.
+ * So identical content (e.g. a reloaded file or the same file opened twice)
+ * is parsed, highlighted and rendered only once.
+ *
+ * Data computed from a cached AST is stored in the cache entry of the AST,
+ * which is referenced from the AST document. Data computed from ASTs that are
+ * not in the cache (e.g. incrementally parsed ASTs while typing) is not cached.
+ *
+ * The cache is bounded by the (estimated) memory usage of its entries.
+ *
+ * @author Karl Tauber
+ */
+public class MarkdownCache
+{
+	public enum Kind { AST, Styles, Html }
+
+	public static final long DEF_MAX_MEMORY = 64 * 1024 * 1024;
+
+	// estimated memory usage of a single AST node
+	private static final int NODE_SIZE = 150;
+
+	private static final NullableDataKey<Entry> CACHE_ENTRY = new NullableDataKey<>("CACHE_ENTRY");
+
+	// access-ordered
+	private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static long maxMemory = DEF_MAX_MEMORY;
+	private static long memory;
+
+	private static final EnumMap<Kind, int[]> statistics = new EnumMap<>(Kind.class);
+
+	static {
+		for (Kind kind : Kind.values())
+			statistics.put(kind, new int[2]);
+	}
+
+	/**
+	 * Returns the cached AST for the given markdown text and parser; or {@code null}.
+	 */
+	public static synchronized Document getAST(Object parser, String text) {
+		Entry entry = entries.get(new Key(parser, text));
+		count(Kind.AST, entry != null);
+		return (entry != null) ? entry.astRoot : null;
+	}
+
+	/**
+	 * Adds the fully parsed AST of the given markdown text to the cache.
+	 */
+	public static synchronized void putAST(Object parser, String text, Document astRoot) {
+		Key key = new Key(parser, text);
+		if (entries.containsKey(key) || CACHE_ENTRY.get(astRoot) != null)
+			return;
+
+		Entry entry = new Entry(astRoot);
+		entry.memory = (2L * key.text.length()) + ((long) NodeIndex.get(astRoot).size() * NODE_SIZE);
+		astRoot.set(CACHE_ENTRY, entry);
+
+		entries.put(key, entry);
+		memory += entry.memory;
+		trim();
+	}
+
+	/**
+	 * Returns the cached HTML for the given AST, or renders and caches it.
+	 *
+	 * @param key identifies the renderer and its options (the HTML must not depend on anything else)
+	 */
+	public static String getHtml(Node astRoot, String key, Supplier<String> renderer) {
+		return get(astRoot, Kind.Html, key, renderer, html -> 2L * html.length());
+	}
+
+	/**
+	 * Returns the cached value for the given AST, or computes and caches it.
+	 * If the AST is not in the cache, the value is computed, but not cached.
+	 *
+	 * @param key identifies the value (the value must not depend on anything else than the AST)
+	 * @param sizeOf returns the estimated memory usage of the value
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Node astRoot, Kind kind, String key, Supplier<T> compute, ToLongFunction<? super T> sizeOf) {
+		Entry entry = getEntry(astRoot);
+		if (entry == null)
+			return compute.get();
+
+		synchronized (MarkdownCache.class) {
+			Object value = entry.values.get(key);
+			count(kind, value != null);
+			if (value != null)
+				return (T) value;
+		}
+
+		// compute outside of lock
+		T value = compute.get();
+
+		synchronized (MarkdownCache.class) {
+			if (value != null && entry.values.putIfAbsent(key, value) == null) {
+				long size = sizeOf.applyAsLong(value);
+				entry.memory += size;
+				if (!entry.evicted) {
+					memory += size;
+					trim();
+				}
+			}
+		}
+		return value;
+	}
+
+	private static Entry getEntry(Node astRoot) {
+		Document document = (astRoot instanceof Document) ? (Document) astRoot : null;
+		return (document != null && document.contains(CACHE_ENTRY)) ? CACHE_ENTRY.get(document) : null;
+	}
+
+	private static void trim() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (memory > maxMemory && it.hasNext()) {
+			Entry entry = it.next();
+			it.remove();
+			entry.evicted = true;
+			memory -= entry.memory;
+		}
+	}
+
+	private static void count(Kind kind, boolean hit) {
+		statistics.get(kind)[hit ? 0 : 1]++;
+	}
+
+	public static synchronized int getHitCount(Kind kind) {
+		return statistics.get(kind)[0];
+	}
+
+	public static synchronized int getMissCount(Kind kind) {
+		return statistics.get(kind)[1];
+	}
+
+	/**
+	 * Returns the estimated memory usage of all cached entries.
+	 */
+	public static synchronized long getMemory() {
+		return memory;
+	}
+
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	public static synchronized void setMaxMemory(long maxMemory) {
+		MarkdownCache.maxMemory = maxMemory;
+		trim();
+	}
+
+	public static synchronized void clear() {
+		for (Entry entry : entries.values())
+			entry.evicted = true;
+		entries.clear();
+		memory = 0;
+
+		for (int[] counts : statistics.values())
+			Arrays.fill(counts, 0);
+	}
+
+	public static synchronized String getStatistics() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(entries.size()).append(" entries, ")
+			.append(memory / 1024).append(" KB");
+		for (Map.Entry<Kind, int[]> e : statistics.entrySet()) {
+			buf.append(", ").append(e.getKey()).append(": ")
+				.append(e.getValue()[0]).append(" hits / ")
+				.append(e.getValue()[1]).append(" misses");
+		}
+		return buf.toString();
+	}
+
+	//---- class Key ----------------------------------------------------------
+
+	private static class Key
+	{
+		private final Object parser;
+		private final String text;
+
+		Key(Object parser, String text) {
+			this.parser = parser;
+			this.text = text;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			Key key = (Key) obj;
+			return parser == key.parser && text.equals(key.text);
+		}
+
+		@Override
+		public int hashCode() {
+			// String caches its hash code
+			return (31 * System.identityHashCode(parser)) + text.hashCode();
+		}
+	}
+
+	//---- class Entry --------------------------------------------------------
+
+	private static class Entry
+	{
+		final Document astRoot;
+		final HashMap<String, Object> values = new HashMap<>();
+		long memory;
+		boolean evicted;
+
+		Entry(Document astRoot) {
+			this.astRoot = astRoot;
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.commonmark.parser.IncludeSourceSpans;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import org.markdownwriterfx.options.MarkdownExtensions;
+import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.options.Options.RendererType;
+
+/**
+ * Process-wide registry of markdown parsers and HTML renderers.
+ *
+ * Each combination of processor kind, renderer type, markdown extensions
+ * and attribute provider factory is built only once and shared by all editors
+ * and previews. Parsers and renderers are thread-safe, so they can be also
+ * used in background threads.
+ *
+ * The registry is cleared when the markdown extensions or renderer options change.
+ *
+ * @author Karl Tauber
+ */
+public class MarkdownProcessors
+{
+	/**
+	 * commonmark-java extensions where the flexmark-java counterparts produce the same HTML.
+	 * Verified by TestCommonmarkConformance.
+	 */
+	private static final Set<String> FLEXMARK_COMPATIBLE_COMMONMARK_EXTENSIONS
+		= Set.of("gfm-strikethrough", "gfm-tables", "yaml-front-matter");
+
+	/**
+	 * Whether flexmark-java renders all examples of the CommonMark spec to the same
+	 * HTML as commonmark-java. This is currently not the case (e.g. whitespace in
+	 * code spans, link destinations in {@code <...>} or multi-line link reference
+	 * definitions; see TestCommonmarkConformance.KNOWN_DIFFERENCES), so the
+	 * CommonMark preview still parses the markdown text with commonmark-java.
+	 */
+	static final boolean FLEXMARK_CONFORMS_TO_COMMONMARK = false;
+
+	private static final HashMap<Key, Object> processors = new HashMap<>();
+	private static int buildCount;
+	private static int reuseCount;
+
+	static {
+		Options.markdownExtensionsProperty().addListener(e -> clear());
+		Options.markdownRendererProperty().addListener(e -> clear());
+	}
+
+	/**
+	 * Returns a flexmark-java parser that uses all markdown extensions
+	 * that are available for the given renderer type.
+	 * If the renderer type is {@code null}, all enabled markdown extensions are used.
+	 */
+	public static com.vladsch.flexmark.parser.Parser getFlexmarkParser(RendererType rendererType) {
+		return get("flexmark-parser", rendererType, null, () -> {
+			return com.vladsch.flexmark.parser.Parser.builder(flexmarkOptions(rendererType))
+				.extensions(MarkdownExtensions.getFlexmarkExtensions(rendererType))
+				.build();
+		});
+	}
+
+	/**
+	 * Returns a flexmark-java HTML renderer that uses all enabled markdown extensions
+	 * and the given (optional) attribute provider factory.
+	 * The factory should be a singleton because it is used as part of the registry key.
+	 */
+	public static com.vladsch.flexmark.html.HtmlRenderer getFlexmarkHtmlRenderer(
+		com.vladsch.flexmark.html.AttributeProviderFactory attributeProviderFactory)
+	{
+		return get("flexmark-html", null, attributeProviderFactory, () -> {
+			com.vladsch.flexmark.html.HtmlRenderer.Builder builder = com.vladsch.flexmark.html.HtmlRenderer.builder()
+				.extensions(MarkdownExtensions.getFlexmarkExtensions());
+			if (attributeProviderFactory != null)
+				builder.attributeProviderFactory(attributeProviderFactory);
+			return builder.build();
+		});
+	}
+
+	/**
+	 * Returns a flexmark-java HTML renderer that renders the AST created by
+	 * {@code getFlexmarkParser(RendererType.CommonMark)} to the same HTML as
+	 * commonmark-java would do (except some edge cases).
+	 * Use only if {@link #canRenderCommonmarkWithFlexmark()} returns {@code true}.
+	 */
+	public static com.vladsch.flexmark.html.HtmlRenderer getFlexmarkCommonmarkHtmlRenderer(
+		com.vladsch.flexmark.html.AttributeProviderFactory attributeProviderFactory)
+	{
+		return get("flexmark-commonmark-html", RendererType.CommonMark, attributeProviderFactory, () -> {
+			com.vladsch.flexmark.html.HtmlRenderer.Builder builder = com.vladsch.flexmark.html.HtmlRenderer
+				.builder(flexmarkOptions(RendererType.CommonMark))
+				.extensions(MarkdownExtensions.getFlexmarkExtensions(RendererType.CommonMark));
+			if (attributeProviderFactory != null)
+				builder.attributeProviderFactory(attributeProviderFactory);
+			return builder.build();
+		});
+	}
+
+	/**
+	 * Returns whether the HTML of the commonmark-java renderer can be created
+	 * from the flexmark-java AST (of the editor), which avoids parsing the markdown
+	 * text a second time with commonmark-java.
+	 * This is the case if flexmark-java conforms to the CommonMark spec
+	 * and only extensions are enabled, where flexmark-java and commonmark-java
+	 * produce the same HTML.
+	 */
+	public static boolean canRenderCommonmarkWithFlexmark() {
+		return FLEXMARK_CONFORMS_TO_COMMONMARK && hasFlexmarkCompatibleCommonmarkExtensions();
+	}
+
+	/**
+	 * Returns whether only extensions are enabled, where flexmark-java
+	 * and commonmark-java produce the same HTML.
+	 */
+	static boolean hasFlexmarkCompatibleCommonmarkExtensions() {
+		for (String extension : Options.getMarkdownExtensions()) {
+			if (MarkdownExtensions.isAvailable(RendererType.CommonMark, extension) &&
+				!FLEXMARK_COMPATIBLE_COMMONMARK_EXTENSIONS.contains(extension))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a commonmark-java parser that uses all enabled markdown extensions
+	 * and includes source spans.
+	 */
+	public static org.commonmark.parser.Parser getCommonmarkParser() {
+		return get("commonmark-parser", null, null, () -> {
+			return org.commonmark.parser.Parser.builder()
+				.extensions(MarkdownExtensions.getCommonmarkExtensions())
+				.includeSourceSpans(IncludeSourceSpans.BLOCKS_AND_INLINES)
+				.build();
+		});
+	}
+
+	/**
+	 * Returns a commonmark-java HTML renderer that uses all enabled markdown extensions
+	 * and the given (optional) attribute provider factory.
+	 * The factory should be a singleton because it is used as part of the registry key.
+	 */
+	public static org.commonmark.renderer.html.HtmlRenderer getCommonmarkHtmlRenderer(
+		org.commonmark.renderer.html.AttributeProviderFactory attributeProviderFactory)
+	{
+		return get("commonmark-html", null, attributeProviderFactory, () -> {
+			org.commonmark.renderer.html.HtmlRenderer.Builder builder = org.commonmark.renderer.html.HtmlRenderer.builder()
+				.extensions(MarkdownExtensions.getCommonmarkExtensions());
+			if (attributeProviderFactory != null)
+				builder.attributeProviderFactory(attributeProviderFactory);
+			return builder.build();
+		});
+	}
+
+	private static DataHolder flexmarkOptions(RendererType rendererType) {
+		MutableDataSet options = new MutableDataSet();
+		if (rendererType == RendererType.CommonMark) {
+			// parse tables the same way as commonmark-java (GitHub Flavored Markdown)
+			options.set(TablesExtension.COLUMN_SPANS, false)
+				.set(TablesExtension.APPEND_MISSING_COLUMNS, true)
+				.set(TablesExtension.DISCARD_EXTRA_COLUMNS, true)
+				.set(TablesExtension.HEADER_SEPARATOR_COLUMN_MATCH, true)
+				.set(TablesExtension.WITH_CAPTION, false);
+		}
+		return options.toImmutable();
+	}
+
+	/**
+	 * Returns how often a parser or renderer was built.
+	 */
+	public static synchronized int getBuildCount() {
+		return buildCount;
+	}
+
+	/**
+	 * Returns how often an already built parser or renderer was reused.
+	 */
+	public static synchronized int getReuseCount() {
+		return reuseCount;
+	}
+
+	public static synchronized void clear() {
+		processors.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static synchronized <T> T get(String kind, RendererType rendererType,
+		Object attributeProviderFactory, Supplier<T> builder)
+	{
+		Key key = new Key(kind, rendererType, Options.getMarkdownExtensions(), attributeProviderFactory);
+		T processor = (T) processors.get(key);
+		if (processor != null) {
+			reuseCount++;
+			return processor;
+		}
+
+		processor = builder.get();
+		processors.put(key, processor);
+		buildCount++;
+		return processor;
+	}
+
+	//---- class Key ----------------------------------------------------------
+
+	private static class Key
+	{
+		private final String kind;
+		private final RendererType rendererType;
+		private final String[] extensions;
+		private final Object attributeProviderFactory;
+
+		Key(String kind, RendererType rendererType, String[] extensions, Object attributeProviderFactory) {
+			this.kind = kind;
+			this.rendererType = rendererType;
+			this.extensions = extensions;
+			this.attributeProviderFactory = attributeProviderFactory;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			Key key = (Key) obj;
+			return kind.equals(key.kind) &&
+				rendererType == key.rendererType &&
+				Arrays.equals(extensions, key.extensions) &&
+				attributeProviderFactory == key.attributeProviderFactory;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, rendererType, Arrays.hashCode(extensions),
+				System.identityHashCode(attributeProviderFactory));
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.NullableDataKey;
+
+/**
+ * Immutable offset index of a flexmark-java AST.
+ *
+ * Allows finding nodes at a text position or within a text range
+ * without visiting the whole AST.
+ *
+ * All nodes are stored in document order (pre-order) in arrays.
+ * For each node, the smallest start offset and the largest end offset of its
+ * subtree are stored, which allows skipping subtrees that are not in a range.
+ * The children of each node are searched using binary search
+ * on the prefix maximum of their subtree end offsets.
+ *
+ * Nodes "in range" use the same semantic as the editor:
+ * a node is in range [start, end) if {@code start < node.endOffset && end > node.startOffset}.
+ * If {@code start == end}, the range is treated as [start, start + 1).
+ *
+ * @author Karl Tauber
+ */
+public class NodeIndex
+{
+	private static final NullableDataKey<NodeIndex> NODE_INDEX = new NullableDataKey<>("NODE_INDEX");
+
+	private final Node[] nodes;
+	private final int[] starts;
+	private final int[] ends;
+	private final int[] subtreeStarts;
+	private final int[] subtreeEnds;
+
+	// children of node i are children[childrenStart[i]] ... children[childrenStart[i + 1] - 1]
+	private final int[] childrenStart;
+	private final int[] children;
+	private final int[] childrenPrefixMaxEnd;
+	private final int[] childrenSuffixMinStart;
+
+	// node indices for node classes (lazy)
+	private final HashMap<Class<?>, TypeIndex> typeIndices = new HashMap<>();
+
+	/**
+	 * Returns the index for the given AST.
+	 * If the root node is a document, the index is created only once
+	 * and stored in the document.
+	 */
+	public static NodeIndex get(Node root) {
+		if (!(root instanceof Document))
+			return new NodeIndex(root);
+
+		Document document = (Document) root;
+		synchronized (document) {
+			NodeIndex index = document.contains(NODE_INDEX) ? NODE_INDEX.get(document) : null;
+			if (index == null) {
+				index = new NodeIndex(root);
+				document.set(NODE_INDEX, index);
+			}
+			return index;
+		}
+	}
+
+	public NodeIndex(Node root) {
+		// collect nodes in document order
+		ArrayList<Node> nodeList = new ArrayList<>();
+		ArrayList<Integer> parentList = new ArrayList<>();
+		collect(root, -1, nodeList, parentList);
+
+		int count = nodeList.size();
+		nodes = nodeList.toArray(new Node[count]);
+		starts = new int[count];
+		ends = new int[count];
+		subtreeStarts = new int[count];
+		subtreeEnds = new int[count];
+		int[] parents = new int[count];
+		for (int i = 0; i < count; i++) {
+			starts[i] = subtreeStarts[i] = nodes[i].getStartOffset();
+			ends[i] = subtreeEnds[i] = nodes[i].getEndOffset();
+			parents[i] = parentList.get(i);
+		}
+
+		// compute subtree ranges (children have higher indices than their parent)
+		for (int i = count - 1; i > 0; i--) {
+			int parent = parents[i];
+			subtreeStarts[parent] = Math.min(subtreeStarts[parent], subtreeStarts[i]);
+			subtreeEnds[parent] = Math.max(subtreeEnds[parent], subtreeEnds[i]);
+		}
+
+		// build children arrays
+		childrenStart = new int[count + 1];
+		for (int i = 1; i < count; i++)
+			childrenStart[parents[i] + 1]++;
+		for (int i = 0; i < count; i++)
+			childrenStart[i + 1] += childrenStart[i];
+		children = new int[Math.max(count - 1, 0)];
+		int[] fill = Arrays.copyOf(childrenStart, count);
+		for (int i = 1; i < count; i++)
+			children[fill[parents[i]]++] = i;
+
+		childrenPrefixMaxEnd = new int[children.length];
+		childrenSuffixMinStart = new int[children.length];
+		for (int p = 0; p < count; p++) {
+			int from = childrenStart[p];
+			int to = childrenStart[p + 1];
+			int max = Integer.MIN_VALUE;
+			for (int slot = from; slot < to; slot++)
+				childrenPrefixMaxEnd[slot] = max = Math.max(max, subtreeEnds[children[slot]]);
+			int min = Integer.MAX_VALUE;
+			for (int slot = to - 1; slot >= from; slot--)
+				childrenSuffixMinStart[slot] = min = Math.min(min, subtreeStarts[children[slot]]);
+		}
+	}
+
+	private static void collect(Node root, int rootParent, ArrayList<Node> nodeList, ArrayList<Integer> parentList) {
+		// iterative pre-order traversal to avoid deep recursion
+		ArrayList<Node> stack = new ArrayList<>();
+		ArrayList<Integer> parentStack = new ArrayList<>();
+		stack.add(root);
+		parentStack.add(rootParent);
+		while (!stack.isEmpty()) {
+			Node node = stack.remove(stack.size() - 1);
+			int parent = parentStack.remove(parentStack.size() - 1);
+
+			int index = nodeList.size();
+			nodeList.add(node);
+			parentList.add(parent);
+
+			// push children in reverse order
+			for (Node child = node.getLastChild(); child != null; child = child.getPrevious()) {
+				stack.add(child);
+				parentStack.add(index);
+			}
+		}
+	}
+
+	public Node getRoot() {
+		return nodes[0];
+	}
+
+	/**
+	 * Returns the number of nodes in the index.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns all nodes that contain the given offset, outermost node first.
+	 */
+	public List<Node> getNodesAt(int offset) {
+		return findNodes(offset, offset, null, true, false);
+	}
+
+	/**
+	 * Returns all nodes that are in the given range, in document order.
+	 */
+	public List<Node> getNodes(int start, int end) {
+		return findNodes(start, end, null, true, false);
+	}
+
+	/**
+	 * Find all nodes that are in the given range and match a predicate.
+	 * Returns the same nodes, in the same order, as a NodeVisitor that visits
+	 * the whole AST.
+	 *
+	 * @param predicate the predicate, or {@code null} to match all nodes
+	 * @param allowNested if {@code true}, children of matching nodes are also searched
+	 * @param deepest if {@code true}, only the deepest matching nodes are returned
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> findNodes(int start, int end, Predicate<Node> predicate, boolean allowNested, boolean deepest) {
+		ArrayList<T> result = new ArrayList<>();
+		new Finder(start, (end == start) ? end + 1 : end, predicate, allowNested, deepest, (ArrayList<Node>) result)
+			.process(0);
+		return result;
+	}
+
+	/**
+	 * Returns all nodes that are instances of the given class, in document order.
+	 */
+	public <T> List<T> getNodes(Class<T> type) {
+		return getNodes(type, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns all nodes that are instances of the given class and are in the
+	 * given range, in document order.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getNodes(Class<T> type, int start, int end) {
+		TypeIndex typeIndex = getTypeIndex(type);
+		if (end == start)
+			end++;
+
+		ArrayList<T> result = new ArrayList<>();
+		int[] indices = typeIndex.indices;
+		for (int i = lowerBound(typeIndex.prefixMaxEnd, 0, indices.length, start);
+			 i < indices.length && typeIndex.suffixMinStart[i] < end;
+			 i++)
+		{
+			int index = indices[i];
+			if (starts[index] < end && ends[index] > start)
+				result.add((T) nodes[index]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all nodes that are instances of one of the given classes, in document order.
+	 */
+	public List<Node> getNodes(Class<?>... types) {
+		int[] merged = new int[0];
+		for (Class<?> type : types) {
+			int[] indices = getTypeIndex(type).indices;
+			int[] newMerged = Arrays.copyOf(merged, merged.length + indices.length);
+			System.arraycopy(indices, 0, newMerged, merged.length, indices.length);
+			merged = newMerged;
+		}
+		Arrays.sort(merged);
+
+		ArrayList<Node> result = new ArrayList<>(merged.length);
+		int prev = -1;
+		for (int index : merged) {
+			if (index != prev)
+				result.add(nodes[index]);
+			prev = index;
+		}
+		return result;
+	}
+
+	private TypeIndex getTypeIndex(Class<?> type) {
+		synchronized (typeIndices) {
+			TypeIndex typeIndex = typeIndices.get(type);
+			if (typeIndex == null) {
+				typeIndex = new TypeIndex(type);
+				typeIndices.put(type, typeIndex);
+			}
+			return typeIndex;
+		}
+	}
+
+	/**
+	 * Returns the first index in [from, to) where values[index] > key.
+	 * The values must be sorted.
+	 */
+	private static int lowerBound(int[] values, int from, int to, int key) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] > key)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		return low;
+	}
+
+	//---- class Finder -------------------------------------------------------
+
+	private class Finder
+	{
+		private final int start;
+		private final int end;
+		private final Predicate<Node> predicate;
+		private final boolean allowNested;
+		private final boolean deepest;
+		private final ArrayList<Node> result;
+
+		Finder(int start, int end, Predicate<Node> predicate, boolean allowNested, boolean deepest, ArrayList<Node> result) {
+			this.start = start;
+			this.end = end;
+			this.predicate = predicate;
+			this.allowNested = allowNested;
+			this.deepest = deepest;
+			this.result = result;
+		}
+
+		void process(int index) {
+			if (starts[index] < end && ends[index] > start &&
+				(predicate == null || predicate.test(nodes[index])))
+			{
+				if (deepest) {
+					int oldSize = result.size();
+					processChildren(index);
+
+					// add only if no other child was added
+					if (result.size() == oldSize)
+						result.add(nodes[index]);
+					return;
+				}
+
+				result.add(nodes[index]);
+
+				if (!allowNested)
+					return; // do not process children
+			}
+
+			processChildren(index);
+		}
+
+		private void processChildren(int index) {
+			int to = childrenStart[index + 1];
+			for (int slot = lowerBound(childrenPrefixMaxEnd, childrenStart[index], to, start);
+				 slot < to && childrenSuffixMinStart[slot] < end;
+				 slot++)
+			{
+				int child = children[slot];
+				if (subtreeStarts[child] < end && subtreeEnds[child] > start)
+					process(child);
+			}
+		}
+	}
+
+	//---- class TypeIndex ----------------------------------------------------
+
+	private class TypeIndex
+	{
+		final int[] indices;
+		final int[] prefixMaxEnd;
+		final int[] suffixMinStart;
+
+		TypeIndex(Class<?> type) {
+			int count = 0;
+			int[] indices = new int[16];
+			Map<Class<?>, Boolean> isInstance = new HashMap<>();
+			for (int i = 0; i < nodes.length; i++) {
+				if (isInstance.computeIfAbsent(nodes[i].getClass(), type::isAssignableFrom)) {
+					if (count == indices.length)
+						indices = Arrays.copyOf(indices, count * 2);
+					indices[count++] = i;
+				}
+			}
+			this.indices = Arrays.copyOf(indices, count);
+
+			prefixMaxEnd = new int[count];
+			suffixMinStart = new int[count];
+			int max = Integer.MIN_VALUE;
+			for (int i = 0; i < count; i++)
+				prefixMaxEnd[i] = max = Math.max(max, ends[this.indices[i]]);
+			int min = Integer.MAX_VALUE;
+			for (int i = count - 1; i >= 0; i--)
+				suffixMinStart[i] = min = Math.min(min, starts[this.indices[i]]);
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.markdownwriterfx.addons.MarkdownSyntaxHighlighterAddon;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestAddonHighlighter
+{
+	private static final Object OWNER = new Object();
+
+	@Test
+	public void cache() throws InterruptedException {
+		TestAddon addon = new TestAddon(0);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(addon), 5000, Runnable::run);
+
+		List<Integer> offsets = Arrays.asList(0, 10, 20);
+		List<String> texts = Arrays.asList("a x", "b", "x c x");
+		assertEquals("2-3:x 20-21:x 24-25:x ", highlightComplete(highlighter, offsets, texts));
+		assertEquals(3, addon.callCount.get());
+
+		// edit second paragraph and move third paragraph
+		offsets = Arrays.asList(0, 10, 30);
+		texts = Arrays.asList("a x", "bx", "x c x");
+		assertEquals("2-3:x 11-12:x 30-31:x 34-35:x ", highlightComplete(highlighter, offsets, texts));
+		assertEquals(4, addon.callCount.get());
+
+		assertTrue(highlighter.getStatistics(), highlighter.getStatistics().contains("4 calls"));
+		assertTrue(highlighter.getStatistics(), highlighter.getStatistics().contains("8 hits / 4 misses"));
+	}
+
+	@Test
+	public void lateResults() throws InterruptedException {
+		TestAddon fastAddon = new TestAddon(0);
+		TestAddon slowAddon = new TestAddon(500);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(fastAddon, slowAddon), 5000, Runnable::run);
+
+		List<Integer> offsets = Collections.singletonList(0);
+		List<String> texts = Collections.singletonList("x");
+
+		// caller does not wait for results
+		CountDownLatch callback = new CountDownLatch(1);
+		long startTime = System.nanoTime();
+		assertFalse(highlighter.highlight(OWNER, offsets, texts, (begin, end, style) -> {}, callback::countDown));
+		assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(400));
+
+		// callback is invoked when results are available; then they are cached
+		assertTrue(callback.await(5, TimeUnit.SECONDS));
+		assertEquals("0-1:x 0-1:x ", highlight(highlighter, OWNER, offsets, texts, null));
+		assertEquals(1, slowAddon.callCount.get());
+	}
+
+	@Test
+	public void latestCallback() throws InterruptedException {
+		TestAddon addon = new TestAddon(100);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(addon), 5000, Runnable::run);
+
+		List<Integer> offsets = Collections.singletonList(0);
+		AtomicInteger callback1 = new AtomicInteger();
+		CountDownLatch callback2 = new CountDownLatch(1);
+		CountDownLatch otherCallback = new CountDownLatch(1);
+
+		// newer call of same owner replaces callback
+		assertFalse(highlighter.highlight(OWNER, offsets, Collections.singletonList("a x"),
+			(begin, end, style) -> {}, callback1::incrementAndGet));
+		assertFalse(highlighter.highlight(OWNER, offsets, Collections.singletonList("b x"),
+			(begin, end, style) -> {}, callback2::countDown));
+
+		// calls of other owners do not affect each other
+		assertFalse(highlighter.highlight(new Object(), offsets, Collections.singletonList("c x"),
+			(begin, end, style) -> {}, otherCallback::countDown));
+
+		assertTrue(callback2.await(5, TimeUnit.SECONDS));
+		assertTrue(otherCallback.await(5, TimeUnit.SECONDS));
+		Thread.sleep(300);
+		assertEquals(0, callback1.get());
+	}
+
+	@Test
+	public void serializedCalls() throws InterruptedException {
+		TestAddon addon = new TestAddon(20);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(addon), 5000, Runnable::run);
+
+		List<Integer> offsets = Arrays.asList(0, 10, 20, 30, 40, 50);
+		List<String> texts = Arrays.asList("a", "b", "c", "d", "e", "f");
+		assertEquals("", highlightComplete(highlighter, offsets, texts));
+		assertEquals(6, addon.callCount.get());
+		assertEquals(1, addon.maxConcurrentCalls.get());
+	}
+
+	@Test
+	public void disableHangingAddon() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		TestAddon hangingAddon = new TestAddon(0) {
+			@Override
+			public void highlight(String text, Highlighter highlighter) {
+				super.highlight(text, highlighter);
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					// ignore
+				}
+			}
+		};
+		TestAddon fastAddon = new TestAddon(0);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(hangingAddon, fastAddon), 100, Runnable::run);
+
+		List<Integer> offsets = Collections.singletonList(0);
+		List<String> texts = Collections.singletonList("x");
+		try {
+			// hanging call exceeds budget --> addon is disabled on next call
+			assertFalse(highlighter.highlight(OWNER, offsets, texts, (begin, end, style) -> {}, null));
+			Thread.sleep(200);
+			highlighter.highlight(OWNER, offsets, Collections.singletonList("y"), (begin, end, style) -> {}, null);
+			assertTrue(highlighter.getStatistics(), highlighter.getStatistics().contains("disabled (too slow)"));
+
+			// disabled addon is skipped
+			assertEquals("0-1:x ", highlightComplete(highlighter, offsets, texts));
+			assertEquals(1, hangingAddon.callCount.get());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void disableSlowAddon() throws InterruptedException {
+		TestAddon slowAddon = new TestAddon(150);
+		AddonHighlighter highlighter = new AddonHighlighter(Arrays.asList(slowAddon), 100, Runnable::run);
+
+		// call exceeds budget --> addon is disabled (but its result is used)
+		List<Integer> offsets = Collections.singletonList(0);
+		assertEquals("0-1:x ", highlightComplete(highlighter, offsets, Collections.singletonList("x")));
+		assertTrue(highlighter.getStatistics(), highlighter.getStatistics().contains("disabled (too slow)"));
+
+		// disabled addon is skipped
+		assertEquals("", highlight(highlighter, OWNER, offsets, Collections.singletonList("y"), null));
+		assertEquals(1, slowAddon.callCount.get());
+	}
+
+	/**
+	 * Highlights and, if results are not yet available, waits for the callback
+	 * and highlights again.
+	 */
+	private static String highlightComplete(AddonHighlighter highlighter, List<Integer> offsets, List<String> texts)
+		throws InterruptedException
+	{
+		CountDownLatch callback = new CountDownLatch(1);
+		if (!highlighter.highlight(OWNER, offsets, texts, (begin, end, style) -> {}, callback::countDown))
+			assertTrue(callback.await(5, TimeUnit.SECONDS));
+		return highlight(highlighter, OWNER, offsets, texts, null);
+	}
+
+	private static String highlight(AddonHighlighter highlighter, Object owner,
+		List<Integer> offsets, List<String> texts, Runnable callback)
+	{
+		StringBuilder buf = new StringBuilder();
+		assertTrue(highlighter.highlight(owner, offsets, texts, (begin, end, style) -> {
+			buf.append(begin).append('-').append(end).append(':').append(style).append(' ');
+		}, callback));
+		return buf.toString();
+	}
+
+	//---- class TestAddon ----------------------------------------------------
+
+	/**
+	 * Highlights all 'x' characters.
+	 */
+	private static class TestAddon
+		implements MarkdownSyntaxHighlighterAddon
+	{
+		final AtomicInteger callCount = new AtomicInteger();
+		final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+		private final AtomicInteger concurrentCalls = new AtomicInteger();
+		private final long delayMillis;
+
+		TestAddon(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public List<String> getStylesheets() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void highlight(String text, Highlighter highlighter) {
+			callCount.incrementAndGet();
+			maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+			if (delayMillis > 0) {
+				try {
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException ex) {
+					// ignore
+				}
+			}
+			concurrentCalls.decrementAndGet();
+
+			for (int i = text.indexOf('x'); i >= 0; i = text.indexOf('x', i + 1))
+				highlighter.highlight(i, i + 1, "x");
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestDocumentSnapshot
+{
+	@Test
+	public void lines() {
+		DocumentSnapshot snapshot = new DocumentSnapshot("abc\n\nde\n", 1);
+		assertEquals(4, snapshot.getLineCount());
+		assertEquals(0, snapshot.getLineStart(0));
+		assertEquals(4, snapshot.getLineStart(1));
+		assertEquals(5, snapshot.getLineStart(2));
+		assertEquals(8, snapshot.getLineStart(3));
+		assertEquals(3, snapshot.getLineEnd(0));
+		assertEquals(4, snapshot.getLineEnd(1));
+		assertEquals(7, snapshot.getLineEnd(2));
+		assertEquals(8, snapshot.getLineEnd(3));
+
+		int[] expectedLines = { 0, 0, 0, 0, 1, 2, 2, 2, 3 };
+		for (int offset = 0; offset <= snapshot.getLength(); offset++)
+			assertEquals("offset " + offset, expectedLines[offset], snapshot.getLineOfOffset(offset));
+	}
+
+	@Test
+	public void empty() {
+		assertEquals(1, DocumentSnapshot.EMPTY.getLineCount());
+		assertEquals(0, DocumentSnapshot.EMPTY.getLineOfOffset(0));
+		assertEquals(0, DocumentSnapshot.EMPTY.getLineEnd(0));
+
+		DocumentSnapshot snapshot = new DocumentSnapshot("no newline", 1);
+		assertEquals(1, snapshot.getLineCount());
+		assertEquals(10, snapshot.getLineEnd(0));
+		assertEquals(0, snapshot.getLineOfOffset(10));
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import static org.markdownwriterfx.editor.DocumentTier.*;
+import org.junit.Test;
+import org.markdownwriterfx.options.Options;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestDocumentTier
+{
+	@Test
+	public void forLength() {
+		assertEquals(Normal, DocumentTier.forLength(0, 100, 1000));
+		assertEquals(Normal, DocumentTier.forLength(99, 100, 1000));
+		assertEquals(Large, DocumentTier.forLength(100, 100, 1000));
+		assertEquals(Large, DocumentTier.forLength(999, 100, 1000));
+		assertEquals(Huge, DocumentTier.forLength(1000, 100, 1000));
+
+		// defaults
+		assertEquals(Normal, DocumentTier.forLength(Options.DEF_LARGE_DOCUMENT_SIZE - 1, 0, 0));
+		assertEquals(Large, DocumentTier.forLength(Options.DEF_LARGE_DOCUMENT_SIZE, 0, 0));
+		assertEquals(Huge, DocumentTier.forLength(Options.DEF_HUGE_DOCUMENT_SIZE, 0, 0));
+	}
+
+	@Test
+	public void features() {
+		assertTrue(Normal.isEmbedImages());
+		assertFalse(Normal.isPreviewDeferred());
+		assertFalse(Normal.isViewportOnly());
+
+		assertFalse(Large.isEmbedImages());
+		assertTrue(Large.isPreviewDeferred());
+		assertFalse(Large.isViewportOnly());
+
+		assertFalse(Huge.isEmbedImages());
+		assertTrue(Huge.isPreviewDeferred());
+		assertTrue(Huge.isViewportOnly());
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.AppliedStyles;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestHighlightService
+{
+	private final Parser parser = Parser.builder().build();
+	private final LinkedBlockingQueue<Runnable> resultRunnables = new LinkedBlockingQueue<>();
+	private final ArrayList<MarkdownSyntaxHighlighter.Result> results = new ArrayList<>();
+	private long documentVersion;
+	private final HighlightService highlightService = new HighlightService(results::add,
+		() -> documentVersion, resultRunnables::add);
+
+	@Test
+	public void onlyLatestRequestApplied() throws InterruptedException {
+		DocumentSnapshot snapshot = null;
+		for (int i = 0; i < 20; i++) {
+			snapshot = new DocumentSnapshot("# heading " + i + "\n\n**bold** text\n", ++documentVersion);
+			submit(snapshot);
+		}
+
+		// invoke result handlers (in "FX thread") until a result is applied
+		while (results.isEmpty()) {
+			Runnable runnable = resultRunnables.poll(10, TimeUnit.SECONDS);
+			assertNotNull(runnable);
+			runnable.run();
+		}
+
+		assertEquals(1, results.size());
+		assertSame(snapshot, results.get(0).snapshot);
+	}
+
+	@Test
+	public void staleTextDropped() throws InterruptedException {
+		DocumentSnapshot snapshot = new DocumentSnapshot("*em*\n", ++documentVersion);
+		submit(snapshot);
+
+		// text changed while computing
+		documentVersion++;
+
+		Runnable runnable = resultRunnables.poll(10, TimeUnit.SECONDS);
+		assertNotNull(runnable);
+		runnable.run();
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public void cancel() throws InterruptedException {
+		submit(new DocumentSnapshot("`code`\n", ++documentVersion));
+		highlightService.cancel();
+
+		Runnable runnable;
+		while ((runnable = resultRunnables.poll(1, TimeUnit.SECONDS)) != null)
+			runnable.run();
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public void changesComputedAgainstAppliedStyles() {
+		DocumentSnapshot snapshot = new DocumentSnapshot("# heading\n\n```\ncode\n```\n", 1);
+		Node astRoot = parser.parse(snapshot.getText());
+
+		// nothing applied --> styles of whole text
+		MarkdownSyntaxHighlighter.Result result = MarkdownSyntaxHighlighter.compute(snapshot, astRoot,
+			null, null, AppliedStyles.State.UNKNOWN, null, null);
+		assertEquals(0, result.styleSpansStart);
+		assertEquals(snapshot.getLength(), result.styleSpans.length());
+		assertFalse(result.paragraphStyles.isEmpty());
+
+		// same styles applied --> no changes
+		AppliedStyles.State applied = new AppliedStyles.State(result.styleRanges, result.paragraphStyleRuns, null);
+		MarkdownSyntaxHighlighter.Result result2 = MarkdownSyntaxHighlighter.compute(snapshot, astRoot,
+			null, null, applied, null, null);
+		assertNull(result2.styleSpans);
+		assertTrue(result2.paragraphStyles.isEmpty());
+		assertSame(applied, result2.appliedStyles);
+	}
+
+	private void submit(DocumentSnapshot snapshot) {
+		highlightService.submit(snapshot, parser.parse(snapshot.getText()), null, null,
+			AppliedStyles.State.UNKNOWN, null);
+	}
+}
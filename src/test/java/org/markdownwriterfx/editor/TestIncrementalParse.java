@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Compares ASTs created by IncrementalParser with ASTs created by a full parse.
+ *
+ * @author Karl Tauber
+ */
+public class TestIncrementalParse
+{
+	private static final String TEXT =
+		"---\n" +
+		"title: test\n" +
+		"---\n" +
+		"\n" +
+		"# Heading 1\n" +
+		"\n" +
+		"Paragraph with *emphasis*, **strong**, `code`\n" +
+		"and a [link](http://example.com) and ~~strike~~.\n" +
+		"\n" +
+		"Setext heading\n" +
+		"==============\n" +
+		"\n" +
+		"- item 1\n" +
+		"- item 2\n" +
+		"  - nested [ ] item\n" +
+		"- [x] task\n" +
+		"\n" +
+		"1. ordered\n" +
+		"2. ordered\n" +
+		"\n" +
+		"> quote\n" +
+		"> more quote\n" +
+		"\n" +
+		"```java\n" +
+		"int i = 0;\n" +
+		"\n" +
+		"i++;\n" +
+		"```\n" +
+		"\n" +
+		"    indented code\n" +
+		"\n" +
+		"| a | b |\n" +
+		"|---|---|\n" +
+		"| 1 | 2 |\n" +
+		"\n" +
+		"<div>\n" +
+		"html\n" +
+		"</div>\n" +
+		"\n" +
+		"---\n" +
+		"\n" +
+		"Term\n" +
+		": definition\n" +
+		"\n" +
+		"Text with [[wiki link]] and http://www.example.com autolink.\n" +
+		"\n" +
+		"## Heading 2 ##\n" +
+		"\n" +
+		"Last paragraph\n";
+
+	private static final String[] SNIPPETS = {
+		"\n", "\n\n", "x", "abc ", "- ", "1. ", "```", "> ", "#", "# ", "===", "---",
+		"<div>", "</div>", "|", "| x |", "    ", "  ", "*", "`", "[x]: /url", "[^1]: note",
+		"*[HTML]: Hyper Text", ": ", "~~", "[", "]", "(",
+	};
+
+	@Test
+	public void randomEdits() {
+		for (long seed = 0; seed < 10; seed++)
+			randomEdits(seed, 200);
+	}
+
+	@Test
+	public void incremental() {
+		Parser parser = createParser();
+		IncrementalParser incrementalParser = new IncrementalParser(parser);
+		incrementalParser.parse(TEXT);
+
+		// typing in last paragraph
+		int pos = TEXT.indexOf("Last paragraph") + 4;
+		String text = TEXT.substring(0, pos) + "x" + TEXT.substring(pos);
+		assertEqualsAST(parser, text, incrementalParser.parse(text, pos, 0, 1));
+		assertTrue(incrementalParser.isLastParseIncremental());
+
+		// typing in first paragraph
+		pos = text.indexOf("emphasis");
+		text = text.substring(0, pos) + "y" + text.substring(pos);
+		assertEqualsAST(parser, text, incrementalParser.parse(text, pos, 0, 1));
+		assertTrue(incrementalParser.isLastParseIncremental());
+
+		// adding a reference definition requires full parse
+		pos = text.length();
+		text = text + "\n[link]: http://example.com\n";
+		assertEqualsAST(parser, text, incrementalParser.parse(text, pos, 0, text.length() - pos));
+		assertFalse(incrementalParser.isLastParseIncremental());
+	}
+
+	private void randomEdits(long seed, int count) {
+		Random random = new Random(seed);
+		Parser parser = createParser();
+		IncrementalParser incrementalParser = new IncrementalParser(parser);
+
+		String text = TEXT;
+		incrementalParser.parse(text);
+
+		int incrementalCount = 0;
+		for (int i = 0; i < count; i++) {
+			int pos = random.nextInt(text.length() + 1);
+			int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(10), text.length() - pos) : 0;
+			String inserted = (removed > 0 && random.nextBoolean()) ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+
+			String oldText = text;
+			text = text.substring(0, pos) + inserted + text.substring(pos + removed);
+
+			Node document = incrementalParser.parse(text, pos, removed, inserted.length());
+			if (incrementalParser.isLastParseIncremental())
+				incrementalCount++;
+
+			String message = "seed " + seed + ", edit " + i + ": replace " + removed
+				+ " at " + pos + " with '" + inserted + "'\n--- old text\n" + oldText;
+			assertEquals(message, dump(parser.parse(text)), dump(document));
+
+			// start over if text becomes too large or full of definitions
+			if (text.length() > 3 * TEXT.length() || (i % 50) == 49) {
+				text = TEXT;
+				incrementalParser.parse(text);
+			}
+		}
+		assertTrue("seed " + seed + ": " + incrementalCount, incrementalCount > count / 4);
+	}
+
+	private static Parser createParser() {
+		return Parser.builder()
+			.extensions(Arrays.asList(
+				com.vladsch.flexmark.ext.abbreviation.AbbreviationExtension.create(),
+				com.vladsch.flexmark.ext.aside.AsideExtension.create(),
+				com.vladsch.flexmark.ext.autolink.AutolinkExtension.create(),
+				com.vladsch.flexmark.ext.definition.DefinitionExtension.create(),
+				com.vladsch.flexmark.ext.footnotes.FootnoteExtension.create(),
+				com.vladsch.flexmark.ext.gfm.strikethrough.StrikethroughExtension.create(),
+				com.vladsch.flexmark.ext.gfm.tasklist.TaskListExtension.create(),
+				com.vladsch.flexmark.ext.tables.TablesExtension.create(),
+				com.vladsch.flexmark.ext.toc.TocExtension.create(),
+				com.vladsch.flexmark.ext.wikilink.WikiLinkExtension.create(),
+				com.vladsch.flexmark.ext.yaml.front.matter.YamlFrontMatterExtension.create()))
+			.build();
+	}
+
+	private static void assertEqualsAST(Parser parser, String text, Node document) {
+		assertEquals(dump(parser.parse(text)), dump(document));
+	}
+
+	private static String dump(Node document) {
+		StringBuilder buf = new StringBuilder();
+		dump(buf, "", document);
+		return buf.toString();
+	}
+
+	private static void dump(StringBuilder buf, String indent, Node node) {
+		buf.append(indent);
+		node.astString(buf, true);
+		buf.append('\n');
+		for (Node child = node.getFirstChild(); child != null; child = child.getNext())
+			dump(buf, indent + "  ", child);
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestParagraphStyleRuns
+{
+	private static final long PRE = 1L << StyleClass.pre.ordinal();
+	private static final long TABLE = 1L << StyleClass.table.ordinal();
+
+	@Test
+	public void of() {
+		assertRuns(runs(10), 10, 0);
+		assertRuns(runs(10, 0, 10, PRE), 10, PRE);
+		assertRuns(runs(10, 2, 5, PRE), 2, 0, 5, PRE, 10, 0);
+		assertRuns(runs(10, 0, 5, PRE, 5, 8, PRE), 8, PRE, 10, 0);
+		assertRuns(runs(10, 0, 5, PRE, 5, 8, TABLE), 5, PRE, 8, TABLE, 10, 0);
+		assertRuns(runs(10, 5, 20, TABLE), 5, 0, 10, TABLE);
+		assertRuns(runs(0), 0, 0);
+
+		// large fenced code block needs only a single run
+		assertRuns(runs(100_000, 1, 99_999, PRE), 1, 0, 99_999, PRE, 100_000, 0);
+	}
+
+	@Test
+	public void indexOfLine() {
+		ParagraphStyleRuns runs = runs(10, 2, 5, PRE);
+		int[] expected = { 0, 0, 1, 1, 1, 2, 2, 2, 2, 2 };
+		for (int line = 0; line < expected.length; line++)
+			assertEquals("line " + line, expected[line], runs.indexOfLine(line));
+	}
+
+	@Test
+	public void forEachChanged() {
+		ParagraphStyleRuns oldRuns = runs(10, 2, 5, PRE);
+
+		// equal
+		assertChanged(oldRuns, runs(10, 2, 5, PRE), Integer.MAX_VALUE, 0);
+
+		// style changed
+		assertChanged(oldRuns, runs(10, 2, 7, PRE), Integer.MAX_VALUE, 0, 5, 7, PRE);
+		assertChanged(oldRuns, runs(10, 2, 5, TABLE), Integer.MAX_VALUE, 0, 2, 5, TABLE);
+		assertChanged(oldRuns, runs(10), Integer.MAX_VALUE, 0, 2, 5, 0);
+
+		// line inserted in code block
+		assertChanged(oldRuns, runs(11, 2, 6, PRE), 3, 4, 3, 4, PRE);
+
+		// line inserted before code block
+		assertChanged(oldRuns, runs(11, 3, 6, PRE), 1, 2, 1, 2, 0);
+
+		// line removed before code block
+		assertChanged(oldRuns, runs(9, 1, 4, PRE), 1, 2, 1, 2, PRE);
+
+		// code block closed (remaining lines become code)
+		assertChanged(oldRuns, runs(10, 2, 10, PRE), 4, 5, 4, 10, PRE);
+	}
+
+	@Test
+	public void forEachChangedRandom() {
+		// apply changed lines to styles per line and compare with new styles
+		Random random = new Random(1);
+		for (int round = 0; round < 1000; round++) {
+			int oldLineCount = 1 + random.nextInt(50);
+			long[] oldBits = randomBits(random, oldLineCount);
+
+			int editStart = random.nextInt(oldLineCount);
+			int removed = random.nextInt(Math.min(5, oldLineCount - editStart) + 1);
+			int inserted = random.nextInt(5);
+			int newLineCount = oldLineCount - removed + inserted;
+			if (newLineCount == 0)
+				continue;
+
+			// new styles are (mostly) the shifted old styles with some random changes
+			long[] newBits = new long[newLineCount];
+			System.arraycopy(oldBits, 0, newBits, 0, editStart);
+			System.arraycopy(oldBits, editStart + removed, newBits, editStart + inserted, oldLineCount - editStart - removed);
+			for (int i = random.nextInt(3); i > 0; i--) {
+				int begin = random.nextInt(newLineCount);
+				Arrays.fill(newBits, begin, begin + random.nextInt(newLineCount - begin + 1), random.nextBoolean() ? PRE : 0);
+			}
+
+			// styles of text area after edit (styles of edited lines are unknown)
+			long[] actual = new long[newLineCount];
+			System.arraycopy(oldBits, 0, actual, 0, editStart);
+			Arrays.fill(actual, editStart, editStart + inserted, -1);
+			System.arraycopy(oldBits, editStart + removed, actual, editStart + inserted, oldLineCount - editStart - removed);
+
+			// apply changed lines (a line that contains an edit is always edited)
+			long[] expected = newBits;
+			int editNewEnd = Math.min(editStart + Math.max(inserted, 1), newLineCount);
+			ParagraphStyleRuns.forEachChanged(toRuns(oldBits), toRuns(newBits), editStart, editNewEnd,
+				(startLine, endLine, styleBits) -> {
+					for (int line = startLine; line < endLine; line++) {
+						// only changed lines are passed
+						if (line < editStart || line >= editNewEnd)
+							assertNotEquals(expected[line], actual[line]);
+						actual[line] = styleBits;
+					}
+				});
+
+			assertArrayEquals("round " + round, expected, actual);
+		}
+	}
+
+	private static long[] randomBits(Random random, int lineCount) {
+		long[] bits = new long[lineCount];
+		for (int i = random.nextInt(5); i >= 0; i--) {
+			int begin = random.nextInt(lineCount);
+			Arrays.fill(bits, begin, begin + random.nextInt(Math.min(20, lineCount - begin) + 1),
+				random.nextBoolean() ? PRE : TABLE);
+		}
+		return bits;
+	}
+
+	private static ParagraphStyleRuns toRuns(long[] bits) {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		for (int i = 0; i < bits.length; i++)
+			builder.add(i, i + 1, bits[i]);
+		return ParagraphStyleRuns.of(builder.build(), bits.length);
+	}
+
+	/**
+	 * Creates runs from line count and triples of begin, end and style bits.
+	 */
+	private static ParagraphStyleRuns runs(int lineCount, long... ranges) {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		for (int i = 0; i < ranges.length; i += 3)
+			builder.add((int) ranges[i], (int) ranges[i + 1], ranges[i + 2]);
+		return ParagraphStyleRuns.of(builder.build(), lineCount);
+	}
+
+	/**
+	 * Asserts runs given as pairs of end line and style bits.
+	 */
+	private static void assertRuns(ParagraphStyleRuns runs, long... expected) {
+		assertEquals(expected.length / 2, runs.size());
+		for (int i = 0; i < runs.size(); i++) {
+			assertEquals("end", expected[i * 2], runs.end(i));
+			assertEquals("styleBits", expected[i * 2 + 1], runs.styleBits(i));
+		}
+	}
+
+	/**
+	 * Asserts changed lines given as triples of start line, end line and style bits.
+	 */
+	private static void assertChanged(ParagraphStyleRuns oldRuns, ParagraphStyleRuns newRuns,
+		int editStartLine, int editNewEndLine, long... expected)
+	{
+		StringBuilder actual = new StringBuilder();
+		ParagraphStyleRuns.forEachChanged(oldRuns, newRuns, editStartLine, editNewEndLine,
+			(startLine, endLine, styleBits) -> {
+				actual.append(startLine).append('-').append(endLine).append(':').append(styleBits).append(' ');
+			});
+
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < expected.length; i += 3)
+			buf.append(expected[i]).append('-').append(expected[i + 1]).append(':').append(expected[i + 2]).append(' ');
+		assertEquals(buf.toString(), actual.toString());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.vladsch.flexmark.parser.Parser;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestParseService
+{
+	private final Parser parser = Parser.builder().build();
+	private final LinkedBlockingQueue<Runnable> resultRunnables = new LinkedBlockingQueue<>();
+	private final ArrayList<ParseService.Result> results = new ArrayList<>();
+	private final ParseService parseService = new ParseService(results::add, resultRunnables::add);
+
+	@Test
+	public void staleResultsDropped() throws InterruptedException {
+		String text = "";
+		long version = 0;
+		for (int i = 0; i < 100; i++) {
+			text += "word" + i + (i % 10 == 9 ? "\n\n" : " ");
+			version = parseService.submit(parser, text, null);
+		}
+		assertFalse(parseService.isCurrent());
+
+		// invoke result handlers (in "FX thread") until last text is applied
+		while (!parseService.isCurrent()) {
+			Runnable runnable = resultRunnables.poll(10, TimeUnit.SECONDS);
+			assertNotNull(runnable);
+			runnable.run();
+		}
+
+		// only results for current text are applied
+		assertEquals(1, results.size());
+		assertEquals(version, results.get(0).version);
+		assertEquals(text, results.get(0).text);
+		assertEquals(text, results.get(0).astRoot.getChars().toString());
+	}
+
+	@Test
+	public void flush() {
+		String text = "# heading\n\nparagraph\n";
+		parseService.submit(parser, text, null);
+
+		int pos = text.indexOf("paragraph");
+		text = text.substring(0, pos) + "new " + text.substring(pos);
+		long version = parseService.submit(parser, text, new ParseService.Change(pos, 0, 4));
+
+		parseService.flush();
+		assertTrue(parseService.isCurrent());
+		assertEquals(version, results.get(results.size() - 1).version);
+		assertEquals(text, results.get(results.size() - 1).astRoot.getChars().toString());
+
+		// results delivered later are ignored
+		for (Runnable runnable : resultRunnables)
+			runnable.run();
+		assertEquals(1, results.size());
+	}
+
+	@Test
+	public void mergeChanges() {
+		// "abc" --> "aXbc" --> "aXc"
+		ParseService.Change change = new ParseService.Change(1, 0, 1)
+			.merge(new ParseService.Change(2, 1, 0));
+		assertEquals(1, change.position);
+		assertEquals(1, change.removed);
+		assertEquals(1, change.inserted);
+
+		// "abcdef" --> "abYYf" --> "ZbYYf"
+		change = new ParseService.Change(2, 3, 2)
+			.merge(new ParseService.Change(0, 1, 1));
+		assertEquals(0, change.position);
+		assertEquals(5, change.removed);
+		assertEquals(4, change.inserted);
+	}
+}
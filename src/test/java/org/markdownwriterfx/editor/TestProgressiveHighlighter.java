@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.markdownwriterfx.util.Range;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestProgressiveHighlighter
+{
+	@Test
+	public void split() {
+		// 10 lines with 10 characters (including newline)
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 10; i++)
+			buf.append("123456789\n");
+		DocumentSnapshot snapshot = new DocumentSnapshot(buf.toString(), 1);
+
+		assertRanges(ProgressiveHighlighter.split(snapshot, 25), 0, 30, 30, 60, 60, 90, 90, 100);
+		assertRanges(ProgressiveHighlighter.split(snapshot, 30), 0, 40, 40, 80, 80, 100);
+		assertRanges(ProgressiveHighlighter.split(snapshot, 100), 0, 100);
+		assertRanges(ProgressiveHighlighter.split(snapshot, 1000), 0, 100);
+		assertRanges(ProgressiveHighlighter.split(DocumentSnapshot.EMPTY, 10));
+
+		// last line without newline
+		snapshot = new DocumentSnapshot("123456789\n123456789", 1);
+		assertRanges(ProgressiveHighlighter.split(snapshot, 12), 0, 19);
+		assertRanges(ProgressiveHighlighter.split(snapshot, 5), 0, 10, 10, 19);
+	}
+
+	@Test
+	public void splitRange() {
+		// 10 lines with 10 characters (including newline)
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 10; i++)
+			buf.append("123456789\n");
+		DocumentSnapshot snapshot = new DocumentSnapshot(buf.toString(), 1);
+
+		assertRanges(ProgressiveHighlighter.split(snapshot, new Range(15, 75), 25), 15, 50, 50, 75);
+		assertRanges(ProgressiveHighlighter.split(snapshot, new Range(15, 75), 100), 15, 75);
+		assertRanges(ProgressiveHighlighter.split(snapshot, new Range(95, 200), 10), 95, 100);
+		assertRanges(ProgressiveHighlighter.split(snapshot, new Range(50, 50), 10));
+	}
+
+	@Test
+	public void merge() {
+		List<Range> ranges = new ArrayList<>();
+		ranges.add(new Range(0, 10));
+		ranges.add(new Range(5, 20));
+		ranges.add(new Range(20, 30));
+		ranges.add(new Range(40, 50));
+		ranges.add(new Range(42, 45));
+		assertRanges(ProgressiveHighlighter.merge(ranges), 0, 30, 40, 50);
+		assertRanges(ProgressiveHighlighter.merge(new ArrayList<>()));
+	}
+
+	@Test
+	public void shift() {
+		List<Range> ranges = new ArrayList<>();
+		ranges.add(new Range(0, 10));
+		ranges.add(new Range(20, 30));
+		ranges.add(new Range(40, 50));
+
+		// insert 5 characters at 25
+		ProgressiveHighlighter.shift(ranges, 25, 25, 30);
+		assertRanges(ranges, 0, 10, 20, 35, 45, 55);
+
+		// remove 15 characters at 5 (5-20)
+		ProgressiveHighlighter.shift(ranges, 5, 20, 5);
+		assertRanges(ranges, 0, 5, 5, 20, 30, 40);
+
+		// replace 10 characters at 12 (12-22) with 2 characters
+		ProgressiveHighlighter.shift(ranges, 12, 22, 14);
+		assertRanges(ranges, 0, 5, 5, 14, 22, 32);
+	}
+
+	@Test
+	public void promote() {
+		List<Range> chunks = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			chunks.add(new Range(i * 10, (i + 1) * 10));
+
+		assertEquals(2, ProgressiveHighlighter.promote(chunks, new Range(25, 35)));
+		assertRanges(chunks, 20, 30, 30, 40, 0, 10, 10, 20, 40, 50);
+
+		assertEquals(1, ProgressiveHighlighter.promote(chunks, new Range(40, 41)));
+		assertRanges(chunks, 40, 50, 20, 30, 30, 40, 0, 10, 10, 20);
+
+		assertEquals(0, ProgressiveHighlighter.promote(chunks, new Range(50, 60)));
+		assertRanges(chunks, 40, 50, 20, 30, 30, 40, 0, 10, 10, 20);
+	}
+
+	private static void assertRanges(List<Range> actual, int... expected) {
+		assertEquals(actual.toString(), expected.length / 2, actual.size());
+		for (int i = 0; i < actual.size(); i++) {
+			assertEquals("start", expected[i * 2], actual.get(i).start);
+			assertEquals("end", expected[i * 2 + 1], actual.get(i).end);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestStyleClassTable
+{
+	@Test
+	public void tokenBits() {
+		long tag = StyleClassTable.tokenBits("tag");
+		assertEquals(tag, StyleClassTable.tokenBits("tag"));
+		assertEquals(0, tag & ~StyleClassTable.TOKEN_MASK);
+		assertEquals(Arrays.asList("tag", "token"), StyleClassTable.styleClasses(tag));
+
+		long h1 = 1L << StyleClass.h1.ordinal();
+		assertEquals(Arrays.asList("h1", "tag", "token"), StyleClassTable.styleClasses(h1 | tag));
+		assertSame(StyleClassTable.styleClasses(h1 | tag), StyleClassTable.styleClasses(h1 | tag));
+	}
+
+	@Test
+	public void manyTokenClasses() {
+		// more than the former limit of 20 custom classes
+		HashSet<Long> bits = new HashSet<>();
+		for (int i = 0; i < 100; i++)
+			bits.add(StyleClassTable.tokenBits("many" + i));
+		assertEquals(100, bits.size());
+		assertEquals(Arrays.asList("many99", "token"), StyleClassTable.styleClasses(StyleClassTable.tokenBits("many99")));
+	}
+
+	@Test
+	public void unionTokenSets() {
+		int tag = StyleClassTable.tokenSet(StyleClassTable.tokenBits("tag"));
+		int attrName = StyleClassTable.tokenSet(StyleClassTable.tokenBits("attr-name"));
+		int union = StyleClassTable.unionTokenSets(tag, attrName);
+		assertEquals(union, StyleClassTable.unionTokenSets(attrName, tag));
+		assertEquals(union, StyleClassTable.unionTokenSets(union, tag));
+		assertEquals(tag, StyleClassTable.unionTokenSets(tag, 0));
+		assertEquals(Arrays.asList("attr-name", "tag", "token"),
+			StyleClassTable.styleClasses((long) union << StyleClassTable.TOKEN_SHIFT));
+	}
+
+	@Test
+	public void overlappingTokens() {
+		long tag = StyleClassTable.tokenBits("tag");
+		long punctuation = StyleClassTable.tokenBits("punctuation");
+
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		builder.add(0, 10, StyleClass.html);
+		builder.add(0, 6, tag);
+		builder.add(4, 8, punctuation);
+		StyleRanges styleRanges = builder.build();
+
+		assertEquals(4, styleRanges.size());
+		assertEquals(Arrays.asList("html", "tag", "token"), StyleClassTable.styleClasses(styleRanges.styleBits(0)));
+		assertEquals(Arrays.asList("html", "punctuation", "tag", "token"), StyleClassTable.styleClasses(styleRanges.styleBits(1)));
+		assertEquals(Arrays.asList("html", "punctuation", "token"), StyleClassTable.styleClasses(styleRanges.styleBits(2)));
+		assertEquals(Arrays.asList("html"), StyleClassTable.styleClasses(styleRanges.styleBits(3)));
+		assertEquals(8, styleRanges.begin(3));
+	}
+}
@@ -28,31 +28,29 @@
 package org.markdownwriterfx.editor;
 
 import static org.junit.Assert.*;
-import static org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.addStyledRange;
 
-import java.util.ArrayList;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
 import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleClass;
-import org.markdownwriterfx.editor.MarkdownSyntaxHighlighter.StyleRange;
 
 /**
  * @author Karl Tauber
  */
 public class TestStyleRanges
 {
-	private ArrayList<StyleRange> styleRanges;
+	private StyleRanges.Builder styleRanges;
 
 	@Before
 	public void initialize() {
-		styleRanges = new ArrayList<>();
+		styleRanges = new StyleRanges.Builder();
 	}
 
 	@Test
 	public void single() {
 		// 012345678901234567890123456789
 		// 11111
-		addStyledRange(styleRanges, 0, 5, StyleClass.h1);
+		styleRanges.add(0, 5, StyleClass.h1);
 		assertStyleRanges(new R(0, 5, StyleClass.h1));
 	}
 
@@ -60,7 +58,7 @@ public class TestStyleRanges
 	public void single2() {
 		// 012345678901234567890123456789
 		//           1111111111
-		addStyledRange(styleRanges, 10, 15, StyleClass.h1);
+		styleRanges.add(10, 15, StyleClass.h1);
 		assertStyleRanges(new R(10, 15, StyleClass.h1));
 	}
 
@@ -69,8 +67,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		// 11111
 		//           22222
-		addStyledRange(styleRanges, 0, 5, StyleClass.h1);
-		addStyledRange(styleRanges, 10, 15, StyleClass.h2);
+		styleRanges.add(0, 5, StyleClass.h1);
+		styleRanges.add(10, 15, StyleClass.h2);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h1),
 				new R(10, 15, StyleClass.h2));
@@ -82,9 +80,9 @@ public class TestStyleRanges
 		// 11111
 		//           22222
 		//                3333333333
-		addStyledRange(styleRanges, 0, 5, StyleClass.h1);
-		addStyledRange(styleRanges, 10, 15, StyleClass.h2);
-		addStyledRange(styleRanges, 15, 25, StyleClass.h3);
+		styleRanges.add(0, 5, StyleClass.h1);
+		styleRanges.add(10, 15, StyleClass.h2);
+		styleRanges.add(15, 25, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h1),
 				new R(10, 15, StyleClass.h2),
@@ -96,8 +94,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//                2222222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 25, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(15, 25, StyleClass.h2);
 		assertStyleRanges(
 				new R(10, 15, StyleClass.h1),
 				new R(15, 20, StyleClass.h1, StyleClass.h2),
@@ -109,8 +107,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//      2222222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 5, 15, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(5, 15, StyleClass.h2);
 		assertStyleRanges(
 				new R(5, 10, StyleClass.h2),
 				new R(10, 15, StyleClass.h1, StyleClass.h2),
@@ -122,8 +120,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//      22222222222222222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 5, 25, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(5, 25, StyleClass.h2);
 		assertStyleRanges(
 				new R(5, 10, StyleClass.h2),
 				new R(10, 20, StyleClass.h1, StyleClass.h2),
@@ -135,8 +133,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//              22222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 13, 18, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(13, 18, StyleClass.h2);
 		assertStyleRanges(
 				new R(10, 13, StyleClass.h1),
 				new R(13, 18, StyleClass.h1, StyleClass.h2),
@@ -148,8 +146,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//           22222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 10, 18, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(10, 18, StyleClass.h2);
 		assertStyleRanges(
 				new R(10, 18, StyleClass.h1, StyleClass.h2),
 				new R(18, 20, StyleClass.h1));
@@ -160,8 +158,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//              2222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 13, 20, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(13, 20, StyleClass.h2);
 		assertStyleRanges(
 				new R(10, 13, StyleClass.h1),
 				new R(13, 20, StyleClass.h1, StyleClass.h2));
@@ -172,8 +170,8 @@ public class TestStyleRanges
 		// 012345678901234567890123456789
 		//           1111111111
 		//           2222222222
-		addStyledRange(styleRanges, 10, 20, StyleClass.h1);
-		addStyledRange(styleRanges, 10, 20, StyleClass.h2);
+		styleRanges.add(10, 20, StyleClass.h1);
+		styleRanges.add(10, 20, StyleClass.h2);
 		assertStyleRanges(
 				new R(10, 20, StyleClass.h1, StyleClass.h2));
 	}
@@ -184,9 +182,9 @@ public class TestStyleRanges
 		//      11111
 		//           222222
 		//         33333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 10, 15, StyleClass.h2);
-		addStyledRange(styleRanges, 8, 13, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(10, 15, StyleClass.h2);
+		styleRanges.add(8, 13, StyleClass.h3);
 		assertStyleRanges(
 				new R(5, 8, StyleClass.h1),
 				new R(8, 10, StyleClass.h1, StyleClass.h3),
@@ -200,9 +198,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		//             33333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 12, 17, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(12, 17, StyleClass.h3);
 		assertStyleRanges(
 				new R(5, 10, StyleClass.h1),
 				new R(12, 15, StyleClass.h3),
@@ -216,9 +214,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		//         3333333333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 8, 18, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(8, 18, StyleClass.h3);
 		assertStyleRanges(
 				new R(5, 8, StyleClass.h1),
 				new R(8, 10, StyleClass.h1, StyleClass.h3),
@@ -233,9 +231,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		//   333333333333333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 2, 17, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(2, 17, StyleClass.h3);
 		assertStyleRanges(
 				new R(2, 5, StyleClass.h3),
 				new R(5, 10, StyleClass.h1, StyleClass.h3),
@@ -250,9 +248,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		//           333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 10, 13, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(10, 13, StyleClass.h3);
 		assertStyleRanges(
 				new R(5, 10, StyleClass.h1),
 				new R(10, 13, StyleClass.h3),
@@ -265,9 +263,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		//           33333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 10, 15, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(10, 15, StyleClass.h3);
 		assertStyleRanges(
 				new R(5, 10, StyleClass.h1),
 				new R(10, 15, StyleClass.h3),
@@ -280,9 +278,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		// 333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 0, 3, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(0, 3, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 3, StyleClass.h3),
 				new R(5, 10, StyleClass.h1),
@@ -295,9 +293,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		// 33333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 0, 5, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(0, 5, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h3),
 				new R(5, 10, StyleClass.h1),
@@ -310,9 +308,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		// 3333333333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 0, 10, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(0, 10, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h3),
 				new R(5, 10, StyleClass.h1, StyleClass.h3),
@@ -325,9 +323,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		// 3333333333333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 0, 13, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(0, 13, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h3),
 				new R(5, 10, StyleClass.h1, StyleClass.h3),
@@ -341,9 +339,9 @@ public class TestStyleRanges
 		//      11111
 		//                22222
 		// 333333333333333
-		addStyledRange(styleRanges, 5, 10, StyleClass.h1);
-		addStyledRange(styleRanges, 15, 20, StyleClass.h2);
-		addStyledRange(styleRanges, 0, 15, StyleClass.h3);
+		styleRanges.add(5, 10, StyleClass.h1);
+		styleRanges.add(15, 20, StyleClass.h2);
+		styleRanges.add(0, 15, StyleClass.h3);
 		assertStyleRanges(
 				new R(0, 5, StyleClass.h3),
 				new R(5, 10, StyleClass.h1, StyleClass.h3),
@@ -351,21 +349,182 @@ public class TestStyleRanges
 				new R(15, 20, StyleClass.h2));
 	}
 
+	@Test
+	public void random() {
+		// compare with style bits computed per character
+		Random random = new Random(1);
+		for (int round = 0; round < 200; round++) {
+			initialize();
+
+			int length = 100;
+			long[] bitsAt = new long[length];
+			boolean[] boundaries = new boolean[length + 1];
+			for (int i = random.nextInt(30); i >= 0; i--) {
+				int begin = random.nextInt(length);
+				int end = begin + random.nextInt(length - begin + 1);
+				StyleClass styleClass = StyleClass.values()[random.nextInt(5)];
+				styleRanges.add(begin, end, styleClass);
+
+				if (begin == end)
+					continue;
+				for (int j = begin; j < end; j++)
+					bitsAt[j] |= 1L << styleClass.ordinal();
+				boundaries[begin] = boundaries[end] = true;
+			}
+
+			StyleRanges actual = styleRanges.build();
+			int index = 0;
+			int begin = 0;
+			for (int j = 1; j <= length; j++) {
+				if (!boundaries[j] && j < length)
+					continue;
+				if (bitsAt[begin] != 0) {
+					assertTrue(index < actual.size());
+					assertEquals("begin", begin, actual.begin(index));
+					assertEquals("end", j, actual.end(index));
+					assertEquals("styleBits", bitsAt[begin], actual.styleBits(index));
+					index++;
+				}
+				begin = j;
+			}
+			assertEquals(index, actual.size());
+		}
+	}
+
+	@Test
+	public void changedRange() {
+		// 012345678901234567890123456789
+		// 11111     22222     33333
+		StyleRanges oldRanges = build(0, 5, StyleClass.h1, 10, 15, StyleClass.h2, 20, 25, StyleClass.h3);
+
+		// no edit, equal styles
+		assertNull(StyleRanges.changedRange(oldRanges, oldRanges, Integer.MAX_VALUE, 0, 0));
+
+		// no edit, changed middle range
+		StyleRanges newRanges = build(0, 5, StyleClass.h1, 10, 15, StyleClass.h4, 20, 25, StyleClass.h3);
+		assertRange(10, 15, StyleRanges.changedRange(oldRanges, newRanges, Integer.MAX_VALUE, 0, 0));
+
+		// insert 2 characters at 12 (in middle range)
+		newRanges = build(0, 5, StyleClass.h1, 10, 17, StyleClass.h2, 22, 27, StyleClass.h3);
+		assertRange(10, 17, StyleRanges.changedRange(oldRanges, newRanges, 12, 12, 14));
+
+		// insert 2 characters at 7 (between ranges) --> only inserted text
+		newRanges = build(0, 5, StyleClass.h1, 12, 17, StyleClass.h2, 22, 27, StyleClass.h3);
+		assertRange(7, 9, StyleRanges.changedRange(oldRanges, newRanges, 7, 7, 9));
+
+		// replace 1 character at 12 with equal styles --> range that contains edit
+		assertRange(10, 15, StyleRanges.changedRange(oldRanges, oldRanges, 12, 13, 13));
+
+		// delete 2 characters at 7 (between ranges) --> nothing
+		newRanges = build(0, 5, StyleClass.h1, 8, 13, StyleClass.h2, 18, 23, StyleClass.h3);
+		assertNull(StyleRanges.changedRange(oldRanges, newRanges, 7, 9, 7));
+
+		// delete text of first range --> nothing
+		newRanges = build(5, 10, StyleClass.h2, 15, 20, StyleClass.h3);
+		assertNull(StyleRanges.changedRange(oldRanges, newRanges, 0, 5, 0));
+
+		// delete 2 characters at 3 (in first range), which changes style of following text
+		newRanges = build(0, 3, StyleClass.h1, 3, 13, StyleClass.h4, 18, 23, StyleClass.h3);
+		assertRange(0, 13, StyleRanges.changedRange(oldRanges, newRanges, 3, 5, 3));
+	}
+
+	@Test
+	public void changedRangeRandom() {
+		// apply changed range to styles per character and compare with new styles
+		Random random = new Random(1);
+		for (int round = 0; round < 500; round++) {
+			int oldLength = 50 + random.nextInt(50);
+			StyleRanges oldRanges = randomRanges(random, oldLength);
+
+			int editStart = random.nextInt(oldLength);
+			int removed = random.nextInt(Math.min(5, oldLength - editStart) + 1);
+			int inserted = random.nextInt(5);
+			int newLength = oldLength - removed + inserted;
+
+			// new ranges are (mostly) the shifted old ranges with some random changes
+			StyleRanges.Builder builder = new StyleRanges.Builder();
+			for (int i = 0; i < oldRanges.size(); i++) {
+				int begin = shift(oldRanges.begin(i), editStart, removed, inserted);
+				int end = shift(oldRanges.end(i), editStart, removed, inserted);
+				if (random.nextInt(10) > 0)
+					builder.add(begin, end, oldRanges.styleBits(i));
+			}
+			if (random.nextBoolean()) {
+				int begin = random.nextInt(newLength);
+				builder.add(begin, begin + random.nextInt(newLength - begin + 1), StyleClass.h6);
+			}
+			StyleRanges newRanges = builder.build();
+
+			// styles of text area after edit (inserted text has no styles)
+			long[] actual = new long[newLength];
+			long[] oldBits = toBits(oldRanges, oldLength);
+			System.arraycopy(oldBits, 0, actual, 0, editStart);
+			System.arraycopy(oldBits, editStart + removed, actual, editStart + inserted, oldLength - editStart - removed);
+
+			// apply changed range
+			org.markdownwriterfx.util.Range changedRange = StyleRanges.changedRange(oldRanges, newRanges,
+				editStart, editStart + removed, editStart + inserted);
+			long[] expected = toBits(newRanges, newLength);
+			if (changedRange != null)
+				System.arraycopy(expected, changedRange.start, actual, changedRange.start, changedRange.end - changedRange.start);
+
+			assertArrayEquals("round " + round, expected, actual);
+		}
+	}
+
+	private static StyleRanges randomRanges(Random random, int length) {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		for (int i = random.nextInt(10); i >= 0; i--) {
+			int begin = random.nextInt(length);
+			builder.add(begin, begin + random.nextInt(Math.min(20, length - begin) + 1),
+				StyleClass.values()[random.nextInt(5)]);
+		}
+		return builder.build();
+	}
+
+	private static int shift(int offset, int editStart, int removed, int inserted) {
+		if (offset <= editStart)
+			return offset;
+		if (offset >= editStart + removed)
+			return offset - removed + inserted;
+		return editStart;
+	}
+
+	private static long[] toBits(StyleRanges ranges, int length) {
+		long[] bits = new long[length];
+		for (int i = 0; i < ranges.size(); i++) {
+			for (int j = ranges.begin(i); j < ranges.end(i); j++)
+				bits[j] |= ranges.styleBits(i);
+		}
+		return bits;
+	}
+
+	private static StyleRanges build(Object... ranges) {
+		StyleRanges.Builder builder = new StyleRanges.Builder();
+		for (int i = 0; i < ranges.length; i += 3)
+			builder.add((Integer) ranges[i], (Integer) ranges[i + 1], (StyleClass) ranges[i + 2]);
+		return builder.build();
+	}
+
+	private static void assertRange(int start, int end, org.markdownwriterfx.util.Range actual) {
+		assertNotNull(actual);
+		assertEquals("start", start, actual.start);
+		assertEquals("end", end, actual.end);
+	}
+
 	private void assertStyleRanges(R... expected) {
+		StyleRanges actual = styleRanges.build();
 		try {
-			assertEquals(expected.length, styleRanges.size());
+			assertEquals(expected.length, actual.size());
 			for (int i = 0; i < expected.length; i++) {
-				StyleRange actual = styleRanges.get(i);
-				assertEquals("begin", expected[i].begin, actual.begin);
-				assertEquals("end", expected[i].end, actual.end);
-				assertEquals("styleBits", expected[i].styleBits, actual.styleBits);
+				assertEquals("begin", expected[i].begin, actual.begin(i));
+				assertEquals("end", expected[i].end, actual.end(i));
+				assertEquals("styleBits", expected[i].styleBits, actual.styleBits(i));
 			}
 		} catch (AssertionError ex) {
 			System.err.println("---- actual ----");
-			for (int i = 0; i < styleRanges.size(); i++) {
-				StyleRange actual = styleRanges.get(i);
-				System.err.printf("%d: %2d-%2d   0x%x\n", i, actual.begin, actual.end, actual.styleBits);
-			}
+			for (int i = 0; i < actual.size(); i++)
+				System.err.printf("%d: %2d-%2d   0x%x\n", i, actual.begin(i), actual.end(i), actual.styleBits(i));
 			throw ex;
 		}
 	}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.editor;
+
+import static org.junit.Assert.*;
+import static org.markdownwriterfx.editor.UpdateScheduler.Stage.*;
+import org.junit.Test;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestUpdateScheduler
+{
+	private long time;
+
+	private UpdateScheduler createScheduler() {
+		UpdateScheduler scheduler = new UpdateScheduler(() -> time);
+		scheduler.frameBudgetProperty().set(8);
+		return scheduler;
+	}
+
+	private void typeKeys(UpdateScheduler scheduler, int count, long interval) {
+		for (int i = 0; i < count; i++) {
+			time += interval;
+			scheduler.textChanged();
+		}
+	}
+
+	@Test
+	public void cheapDocument() {
+		UpdateScheduler scheduler = createScheduler();
+		scheduler.addCost(Highlight, ms(2));
+		scheduler.addCost(Preview, ms(3));
+		scheduler.addCost(Parse, ms(50));
+		typeKeys(scheduler, 20, 100);
+
+		// within budget --> no delay
+		assertEquals(0, scheduler.computeDelay(Highlight));
+		assertEquals(0, scheduler.computeDelay(Preview));
+		assertEquals(0, scheduler.delayProperty(Highlight).get());
+
+		// background stage
+		assertEquals(50, scheduler.computeDelay(Parse));
+		assertEquals(500, scheduler.computeDelay(SpellCheck));
+	}
+
+	@Test
+	public void expensiveDocument() {
+		UpdateScheduler scheduler = createScheduler();
+		scheduler.addCost(Highlight, ms(10));
+		scheduler.addCost(EmbedImages, ms(2));
+		scheduler.addCost(Preview, ms(20));
+		typeKeys(scheduler, 50, 100);
+
+		// 32ms work per 100ms keystroke interval with 8ms budget --> run every 4th keystroke
+		assertEquals(100, scheduler.getTypingInterval(), 0.5);
+		assertEquals(400, scheduler.computeDelay(Highlight), 2);
+		assertEquals(400, scheduler.computeDelay(Preview), 2);
+		assertEquals(scheduler.computeDelay(Preview), scheduler.delayProperty(Preview).get());
+
+		// larger budget --> shorter delay
+		scheduler.frameBudgetProperty().set(16);
+		assertEquals(200, scheduler.computeDelay(Highlight), 2);
+
+		// limited delay
+		scheduler.addCost(Preview, ms(10_000));
+		assertEquals(1000, scheduler.computeDelay(Preview));
+
+		// expensive spell checking
+		scheduler.addCost(SpellCheck, ms(2000));
+		assertEquals(2000, scheduler.computeDelay(SpellCheck));
+		scheduler.addCost(SpellCheck, ms(100_000));
+		assertEquals(5000, scheduler.computeDelay(SpellCheck));
+	}
+
+	@Test
+	public void waitForPause() {
+		UpdateScheduler scheduler = createScheduler();
+		scheduler.addCost(Preview, ms(2));
+		assertEquals(0, scheduler.computeDelay(Preview));
+
+		scheduler.setWaitForPause(Preview, true);
+		assertEquals(750, scheduler.computeDelay(Preview));
+		assertEquals(750, scheduler.delayProperty(Preview).get());
+		assertEquals(0, scheduler.computeDelay(Highlight));
+
+		scheduler.setWaitForPause(Preview, false);
+		assertEquals(0, scheduler.delayProperty(Preview).get());
+	}
+
+	@Test
+	public void typingInterval() {
+		UpdateScheduler scheduler = createScheduler();
+
+		// pauses are ignored
+		typeKeys(scheduler, 10, 2000);
+		assertEquals(150, scheduler.getTypingInterval(), 0.1);
+
+		typeKeys(scheduler, 50, 50);
+		assertEquals(50, scheduler.getTypingInterval(), 0.5);
+
+		// very fast typing (or auto-repeat) is limited
+		typeKeys(scheduler, 50, 1);
+		assertEquals(30, scheduler.getTypingInterval(), 0.5);
+	}
+
+	@Test
+	public void movingAverage() {
+		UpdateScheduler scheduler = createScheduler();
+		scheduler.addCost(Highlight, ms(10));
+		assertEquals(10, scheduler.costProperty(Highlight).get(), 0.001);
+
+		// a single outlier does not change cost much
+		scheduler.addCost(Highlight, ms(100));
+		assertTrue(scheduler.costProperty(Highlight).get() < 50);
+
+		for (int i = 0; i < 30; i++)
+			scheduler.addCost(Highlight, ms(100));
+		assertEquals(100, scheduler.costProperty(Highlight).get(), 0.1);
+	}
+
+	@Test
+	public void nestedRun() {
+		UpdateScheduler scheduler = createScheduler();
+		scheduler.run(Highlight, () -> {
+			scheduler.run(EmbedImages, () -> sleep(50));
+		});
+
+		assertTrue(scheduler.costProperty(EmbedImages).get() >= 50);
+		assertTrue(scheduler.costProperty(Highlight).get() < 20);
+	}
+
+	private static long ms(long millis) {
+		return millis * 1_000_000;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.markdownwriterfx.spellchecker;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.languagetool.AnalyzedSentence;
+import org.languagetool.rules.RuleMatch;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestPersistentSpellCache
+{
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final TestRule rule = new TestRule();
+
+	@Test
+	public void restoredFromFile() throws IOException {
+		File dir = new File(folder.getRoot(), "cache");
+		PersistentSpellCache cache = new PersistentSpellCache(dir, 100_000);
+		cache.put(1, "Ths is a test.", Arrays.asList(match(0, 3, "Possible spelling mistake", "this", "the")));
+		cache.put(1, "No problems here.", Collections.emptyList());
+		cache.flush();
+		assertTrue(new File(dir, "spellcheck-cache-0.bin").isFile());
+
+		PersistentSpellCache cache2 = new PersistentSpellCache(dir, 100_000);
+		List<RuleMatch> ruleMatches = cache2.get(1, "Ths is a test.", this::resolveRule);
+		assertNotNull(ruleMatches);
+		assertEquals(1, ruleMatches.size());
+		RuleMatch ruleMatch = ruleMatches.get(0);
+		assertSame(rule, ruleMatch.getRule());
+		assertEquals(0, ruleMatch.getFromPos());
+		assertEquals(3, ruleMatch.getToPos());
+		assertEquals("Possible spelling mistake", ruleMatch.getMessage());
+		assertEquals(Arrays.asList("this", "the"), ruleMatch.getSuggestedReplacements());
+
+		// rules are resolved only if there are matches
+		assertEquals(Collections.emptyList(), cache2.get(1, "No problems here.", ruleId -> {
+			throw new AssertionError();
+		}));
+	}
+
+	@Test
+	public void differentConfiguration() {
+		File dir = folder.getRoot();
+		PersistentSpellCache cache = new PersistentSpellCache(dir, 100_000);
+		cache.put(1, "Ths is a test.", Arrays.asList(match(0, 3, "Possible spelling mistake")));
+		cache.flush();
+
+		PersistentSpellCache cache2 = new PersistentSpellCache(dir, 100_000);
+		assertNull(cache2.get(2, "Ths is a test.", this::resolveRule));
+		assertNull(cache2.get(1, "Ths is a test!", this::resolveRule));
+
+		// rule no longer available
+		assertNull(cache2.get(1, "Ths is a test.", ruleId -> null));
+	}
+
+	@Test
+	public void sizeBounded() {
+		File dir = folder.getRoot();
+		int maxFileSize = 4000;
+		PersistentSpellCache cache = new PersistentSpellCache(dir, maxFileSize);
+		for (int i = 0; i < 200; i++) {
+			cache.put(1, "Block number " + i + " with some text.", Arrays.asList(match(0, 5, "Message " + i)));
+			cache.flush();
+
+			// older generations are deleted
+			File[] files = dir.listFiles();
+			assertEquals(1, files.length);
+			assertTrue(files[0].length() <= maxFileSize);
+		}
+		assertFalse(new File(dir, "spellcheck-cache-0.bin").exists());
+
+		// newest blocks are kept, oldest are evicted
+		PersistentSpellCache cache2 = new PersistentSpellCache(dir, maxFileSize);
+		assertNotNull(cache2.get(1, "Block number 199 with some text.", this::resolveRule));
+		assertNull(cache2.get(1, "Block number 0 with some text.", this::resolveRule));
+	}
+
+	@Test
+	public void tempFiles() throws IOException {
+		File dir = folder.getRoot();
+		File staleTempFile = new File(dir, "spellcheck-cache-123.tmp");
+		File otherTempFile = new File(dir, "spellcheck-cache-456.tmp");
+		Files.write(staleTempFile.toPath(), new byte[10]);
+		Files.write(otherTempFile.toPath(), new byte[10]);
+		assertTrue(staleTempFile.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+
+		// compact
+		PersistentSpellCache cache = new PersistentSpellCache(dir, 4000);
+		for (int i = 0; i < 100; i++) {
+			cache.put(1, "Block number " + i + " with some text.", Arrays.asList(match(0, 5, "Message " + i)));
+			cache.flush();
+		}
+		assertFalse(new File(dir, "spellcheck-cache-0.bin").exists());
+
+		// temporary files left over after a crash are deleted,
+		// but not those that another instance may still write
+		assertFalse(staleTempFile.exists());
+		assertTrue(otherTempFile.exists());
+	}
+
+	@Test
+	public void corruptFile() throws IOException {
+		File dir = folder.getRoot();
+		File file = new File(dir, "spellcheck-cache-0.bin");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13 });
+
+		PersistentSpellCache cache = new PersistentSpellCache(dir, 100_000);
+		assertNull(cache.get(1, "Ths is a test.", this::resolveRule));
+		cache.put(1, "Ths is a test.", Arrays.asList(match(0, 3, "Possible spelling mistake")));
+		cache.flush();
+
+		// file with unknown format is replaced by new generation
+		assertFalse(file.exists());
+		PersistentSpellCache cache2 = new PersistentSpellCache(dir, 100_000);
+		assertNotNull(cache2.get(1, "Ths is a test.", this::resolveRule));
+	}
+
+	@Test
+	public void writeFailed() throws IOException {
+		// directory can not be created because a file with same name exists
+		File dir = folder.newFile("cache");
+		PersistentSpellCache cache = new PersistentSpellCache(dir, 100_000);
+		cache.put(1, "Ths is a test.", Arrays.asList(match(0, 3, "Possible spelling mistake")));
+		cache.flush();
+
+		// entry is kept in memory and written when possible
+		assertNotNull(cache.get(1, "Ths is a test.", this::resolveRule));
+		assertTrue(dir.delete());
+		cache.flush();
+		assertTrue(new File(dir, "spellcheck-cache-0.bin").isFile());
+	}
+
+	private RuleMatch match(int fromPos, int toPos, String message, String... suggestions) {
+		RuleMatch ruleMatch = new RuleMatch(rule, null, fromPos, toPos, message, null);
+		ruleMatch.setSuggestedReplacements(Arrays.asList(suggestions));
+		return ruleMatch;
+	}
+
+	private org.languagetool.rules.Rule resolveRule(String ruleId) {
+		return ruleId.equals(rule.getFullId()) ? rule : null;
+	}
+
+	//---- class TestRule -----------------------------------------------------
+
+	private static class TestRule
+		extends org.languagetool.rules.Rule
+	{
+		@Override
+		public String getId() {
+			return "TEST_RULE";
+		}
+
+		@Override
+		public String getDescription() {
+			return "Test rule";
+		}
+
+		@Override
+		public RuleMatch[] match(AnalyzedSentence sentence) {
+			return new RuleMatch[0];
+		}
+	}
+}
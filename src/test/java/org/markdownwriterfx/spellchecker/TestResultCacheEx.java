@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.markdownwriterfx.spellchecker;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.markdownwriterfx.spellchecker.ResultCacheEx.IndexedCache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestResultCacheEx
+{
+	@Test
+	public void cachesWrapped() {
+		ResultCacheEx cache = new ResultCacheEx(100, 1, TimeUnit.DAYS);
+		assertTrue(cache.getMatchesCache() instanceof IndexedCache);
+		assertTrue(cache.getSentenceCache() instanceof IndexedCache);
+	}
+
+	@Test
+	public void tokenize() {
+		assertEquals(Arrays.asList("This", "isn", "t", "a", "foo", "bar", "42"),
+			ResultCacheEx.tokenize("This isn't a foo-bar (42)."));
+		assertEquals(Collections.emptyList(), ResultCacheEx.tokenize(" -- "));
+	}
+
+	@Test
+	public void invalidateWord() {
+		IndexedCache<String, String> cache = new IndexedCache<>(CacheBuilder.newBuilder().build());
+		cache.put("The mwfx editor.", "1");
+		cache.put("Another sentence.", "2");
+		cache.put("Using mwfx-addons here.", "3");
+		cache.put("Not concatenated mwfxeditor.", "4");
+
+		cache.invalidateWord("mwfx");
+		assertNull(cache.getIfPresent("The mwfx editor."));
+		assertNull(cache.getIfPresent("Using mwfx-addons here."));
+		assertEquals("2", cache.getIfPresent("Another sentence."));
+		assertEquals("4", cache.getIfPresent("Not concatenated mwfxeditor."));
+
+		cache.invalidateWord("mwfx-addons");
+		cache.invalidateWord("unknown");
+		assertEquals(2, cache.size());
+
+		// words with several tokens
+		cache.put("Some foo-bar text.", "5");
+		cache.put("Some foo and bar text.", "6");
+		cache.invalidateWord("foo-bar");
+		assertNull(cache.getIfPresent("Some foo-bar text."));
+		assertEquals("6", cache.getIfPresent("Some foo and bar text."));
+
+		// re-inserted sentence is indexed again
+		cache.put("The mwfx editor.", "7");
+		cache.invalidateWord("mwfx");
+		assertNull(cache.getIfPresent("The mwfx editor."));
+	}
+
+	@Test
+	public void evictedKeysRemovedFromIndex() {
+		IndexedCache<String, String> cache = new IndexedCache<>(CacheBuilder.newBuilder().maximumSize(10).build());
+		for (int i = 0; i < 5000; i++)
+			cache.put("Sentence " + i + " with word" + (i % 7) + ".", "x");
+
+		cache.invalidateWord("word3");
+		for (String key : cache.asMap().keySet())
+			assertFalse(key.contains("word3"));
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.markdownwriterfx.spellchecker;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.markdownwriterfx.util.Range;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestSpellCheckQueue
+{
+	// 10 blocks: 0-10, 20-30, 40-50, ..., 180-190
+	private static final int[] STARTS = { 0, 20, 40, 60, 80, 100, 120, 140, 160, 180 };
+	private static final int[] ENDS = { 10, 30, 50, 70, 90, 110, 130, 150, 170, 190 };
+
+	@Test
+	public void documentOrderIfTopVisible() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(0, 35));
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), takeAll(queue));
+	}
+
+	@Test
+	public void visibleFirstThenNearest() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(95, 135));
+		assertEquals(Arrays.asList(5, 6, 7, 4, 8, 3, 9, 2, 1, 0), takeAll(queue));
+	}
+
+	@Test
+	public void bottomVisible() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(165, 190));
+		assertEquals(Arrays.asList(8, 9, 7, 6, 5, 4, 3, 2, 1, 0), takeAll(queue));
+	}
+
+	@Test
+	public void visibleChanged() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(0, 35));
+		assertEquals(0, queue.next());
+		assertEquals(1, queue.next());
+
+		// scrolled to bottom
+		queue.visibleChanged(new Range(160, 190));
+		assertEquals(Arrays.asList(8, 9, 7, 6, 5, 4, 3, 2), takeAll(queue));
+		assertEquals(-1, queue.next());
+	}
+
+	@Test
+	public void visibleCompleted() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(60, 95));
+		int first = queue.next();
+		int second = queue.next();
+		int third = queue.next();
+		assertEquals(Arrays.asList(3, 4, 5), Arrays.asList(first, second, third));
+
+		// completed in different order
+		assertFalse(queue.completed(second));
+		assertFalse(queue.completed(third));
+		assertTrue(queue.completed(first));
+		assertFalse(queue.completed(first));
+
+		// new visible blocks, one already completed
+		queue.visibleChanged(new Range(40, 70));
+		assertEquals(2, queue.next());
+		assertTrue(queue.completed(2));
+	}
+
+	@Test
+	public void noVisibleBlocks() {
+		SpellCheckQueue queue = new SpellCheckQueue(STARTS, ENDS, new Range(72, 78));
+		assertEquals(Arrays.asList(4, 3, 5, 2, 6, 1, 7, 0, 8, 9), takeAll(queue));
+		for (int i = 0; i < STARTS.length; i++)
+			assertFalse(queue.completed(i));
+	}
+
+	private static List<Integer> takeAll(SpellCheckQueue queue) {
+		ArrayList<Integer> result = new ArrayList<>();
+		for (int i = queue.next(); i >= 0; i = queue.next())
+			result.add(i);
+		return result;
+	}
+}
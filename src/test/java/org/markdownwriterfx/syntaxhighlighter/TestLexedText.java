@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestLexedText
+{
+	@Test
+	public void relexChangedLine() {
+		Lexer lexer = Lexers.get("java");
+		String text = javaCode(2000);
+		LexedText previous = LexedText.lex(lexer, text, null);
+		// 2000 lines and an empty last line
+		assertEquals(2001, previous.lexedLineCount);
+
+		// change a line in the middle
+		int index = text.indexOf("int x1000 ");
+		String newText = text.substring(0, index) + "long" + text.substring(index + 3);
+		LexedText lexed = LexedText.lex(lexer, newText, previous);
+		assertEquals(1, lexed.lexedLineCount);
+		assertTokensEqual(lexer, newText, lexed);
+
+		// insert a line
+		int lineStart = index - 1;
+		newText = text.substring(0, lineStart) + "\tint y = 1;\n" + text.substring(lineStart);
+		lexed = LexedText.lex(lexer, newText, previous);
+		assertEquals(1, lexed.lexedLineCount);
+		assertTokensEqual(lexer, newText, lexed);
+
+		// open a comment (changes state of all following lines)
+		newText = text.substring(0, index) + "/*" + text.substring(index);
+		lexed = LexedText.lex(lexer, newText, previous);
+		assertEquals(1001, lexed.lexedLineCount);
+		assertTokensEqual(lexer, newText, lexed);
+	}
+
+	@Test
+	public void relexRandom() {
+		Random random = new Random(1);
+		String[] snippets = { "a", " ", "\n", "/*", "*/", "\"", "\"\"\"", "//", "int", "1", "\r\n" };
+		for (String language : new String[] { "java", "python", "html", "css", "yaml", "sh" }) {
+			Lexer lexer = Lexers.get(language);
+			String text = javaCode(20);
+			LexedText lexed = LexedText.lex(lexer, text, null);
+			for (int round = 0; round < 300; round++) {
+				// random edit
+				int start = random.nextInt(text.length() + 1);
+				int end = Math.min(start + random.nextInt(4), text.length());
+				text = text.substring(0, start) + snippets[random.nextInt(snippets.length)] + text.substring(end);
+
+				lexed = LexedText.lex(lexer, text, lexed);
+				assertTokensEqual(lexer, text, lexed);
+			}
+		}
+	}
+
+	private static String javaCode(int lineCount) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < lineCount; i++)
+			buf.append("\tint x").append(i).append(" = ").append(i).append("; // comment\n");
+		return buf.toString();
+	}
+
+	private static void assertTokensEqual(Lexer lexer, String text, LexedText lexed) {
+		assertEquals(tokens(LexedText.lex(lexer, text, null)), tokens(lexed));
+	}
+
+	private static String tokens(LexedText lexed) {
+		StringBuilder buf = new StringBuilder();
+		lexed.replay((length, style) -> buf.append(length).append(':').append(style).append(' '));
+		return buf.toString();
+	}
+}
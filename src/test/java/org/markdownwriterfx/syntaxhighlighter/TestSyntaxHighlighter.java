@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestSyntaxHighlighter
+{
+	@Test
+	public void java() {
+		assertTokens("java",
+			"public class A { // c\n  String s = \"a\\\"b\"; int x = 0x1F + 1.5e-3f; /* x\n y */ return null; }",
+			"[keyword:public] [keyword:class] [punctuation:{] [comment:// c] [string:\"a\\\"b\"] [punctuation:;] [keyword:int] "
+			+ "[number:0x1F] [number:1.5e-3f] [punctuation:;] [comment:/* x] [comment: y */] [keyword:return] [boolean:null] "
+			+ "[punctuation:;] [punctuation:}] ");
+		assertTokens("java", "s = \"\"\"\n  text\n  \"\"\";",
+			"[string:\"\"\"] [string:  text] [string:  \"\"\"] [punctuation:;] ");
+	}
+
+	@Test
+	public void javaScript() {
+		assertTokens("js", "const a = `x\ny` + 'q' ?? undefined;",
+			"[keyword:const] [string:`x] [string:y`] [string:'q'] [boolean:undefined] [punctuation:;] ");
+		assertTokens("typescript", "let $a: string",
+			"[keyword:let] [keyword:string] ");
+	}
+
+	@Test
+	public void json() {
+		assertTokens("json", "{\"a\": [1, -2.5e3, true, null, \"s\"]}",
+			"[punctuation:{] [property:\"a\"] [punctuation::] [punctuation:[] [number:1] [punctuation:,] [number:-2.5e3] "
+			+ "[punctuation:,] [boolean:true] [punctuation:,] [boolean:null] [punctuation:,] [string:\"s\"] [punctuation:]}] ");
+	}
+
+	@Test
+	public void yaml() {
+		assertTokens("yaml", "---\n# c\nkey: value # com\n- name: \"x\"\n  n: 12\n  t: |\n    line1\n\n    line2\nnext: &a *b !tag",
+			"[punctuation:---] [comment:# c] [property:key] [punctuation::] [comment:# com] [punctuation:-] [property:name] "
+			+ "[punctuation::] [string:\"x\"] [property:n] [punctuation::] [number:12] [property:t] [punctuation::] "
+			+ "[punctuation:|] [string:    line1] [string:    line2] [property:next] [punctuation::] [variable:&a] "
+			+ "[variable:*b] [keyword:!tag] ");
+	}
+
+	@Test
+	public void shell() {
+		assertTokens("bash", "if [ -n \"$X\" ]; then echo ${HOME} $1 a#b # comment\nfi",
+			"[keyword:if] [punctuation:[] [string:\"$X\"] [punctuation:];] [keyword:then] [variable:${HOME}] "
+			+ "[variable:$1] [comment:# comment] [keyword:fi] ");
+	}
+
+	@Test
+	public void python() {
+		assertTokens("python", "def f(x):\n    '''doc\n    more'''\n    return None # c",
+			"[keyword:def] [punctuation:(] [punctuation:)] [string:'''doc] [string:    more'''] [keyword:return] "
+			+ "[boolean:None] [comment:# c] ");
+	}
+
+	@Test
+	public void sql() {
+		assertTokens("sql", "SELECT a, 'it''s' from t WHERE x = 1 -- c",
+			"[keyword:SELECT] [punctuation:,] [string:'it''s'] [keyword:from] [keyword:WHERE] [number:1] [comment:-- c] ");
+	}
+
+	@Test
+	public void css() {
+		assertTokens("css", "@media screen {\n  a:hover, .b > c { color: #fff; margin: 10px -2em !important; }\n}\n/* c */ h1 { font: 'x' }",
+			"[atrule:@media] [punctuation:{] [selector:a:hover, .b > c] [punctuation:{] [property:color] [punctuation::] "
+			+ "[number:#fff] [punctuation:;] [property:margin] [punctuation::] [number:10px] [number:-2em] "
+			+ "[keyword:!important] [punctuation:;] [punctuation:}] [punctuation:}] [comment:/* c */] [selector:h1] "
+			+ "[punctuation:{] [property:font] [punctuation::] [string:'x'] [punctuation:}] ");
+	}
+
+	@Test
+	public void html() {
+		assertTokens("html", "<p class=\"a\" id='b' x=y>text &amp; <!-- c\n --> <br/></p>",
+			"[punctuation:<] [tag:p] [attr-name:class] [punctuation:=] [attr-value:\"a\"] [attr-name:id] [punctuation:=] "
+			+ "[attr-value:'b'] [attr-name:x] [punctuation:=] [attr-value:y] [punctuation:>] [entity:&amp;] "
+			+ "[comment:<!-- c] [comment: -->] [punctuation:<] [tag:br] [punctuation:/></] [tag:p] [punctuation:>] ");
+		assertTokens("xml", "<a\n  b=\"1\"\n/> 1 < 2",
+			"[punctuation:<] [tag:a] [attr-name:b] [punctuation:=] [attr-value:\"1\"] [punctuation:/>] ");
+	}
+
+	@Test
+	public void infoString() {
+		assertTrue(SyntaxHighlighter.isSupported("java"));
+		assertTrue(SyntaxHighlighter.isSupported("Java {.numberLines}"));
+		assertTrue(SyntaxHighlighter.isSupported("yml title=x"));
+		assertFalse(SyntaxHighlighter.isSupported("cobol"));
+		assertFalse(SyntaxHighlighter.isSupported(""));
+	}
+
+	private static void assertTokens(String language, String text, String expected) {
+		StringBuilder buf = new StringBuilder();
+		int[] pos = { 0 };
+		assertTrue(SyntaxHighlighter.highlight(text, language, (length, style) -> {
+			if (style != null) {
+				buf.append('[').append(style).append(':')
+					.append(text.substring(pos[0], pos[0] + length).replace("\n", "\\n")).append("] ");
+			}
+			pos[0] += length;
+		}));
+		assertEquals("length", text.length(), pos[0]);
+		assertEquals(expected, buf.toString());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.syntaxhighlighter;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestTokenCache
+{
+	private static final String HTML = "<p class=\"a\">text &amp; <!-- comment --></p>";
+
+	@Before
+	public void initialize() {
+		TokenCache.clear();
+	}
+
+	@After
+	public void cleanup() {
+		TokenCache.setMaxEntries(TokenCache.DEF_MAX_ENTRIES);
+		TokenCache.setMaxChars(TokenCache.DEF_MAX_CHARS);
+		TokenCache.clear();
+	}
+
+	@Test
+	public void tokens() {
+		String expected = tokens(HTML, "html", false);
+		assertEquals(expected, tokens(HTML, "html", true));
+		assertEquals(expected, tokens(HTML, "html", true));
+		assertEquals(1, TokenCache.getHitCount());
+		assertEquals(1, TokenCache.getMissCount());
+
+		// other language
+		assertEquals(expected, tokens(HTML, "xml", true));
+		assertEquals(2, TokenCache.getMissCount());
+		assertEquals(2, TokenCache.size());
+	}
+
+	@Test
+	public void charSequence() {
+		// same text at another location
+		String text1 = "abc\n" + HTML + "\nxyz";
+		String text2 = "123456\n" + HTML + "\n";
+		tokens(text1.subSequence(4, 4 + HTML.length()), "html", true);
+		tokens(new StringBuilder(text2).subSequence(7, 7 + HTML.length()), "html", true);
+		assertEquals(1, TokenCache.getHitCount());
+		assertEquals(1, TokenCache.getMissCount());
+		assertEquals(HTML.length(), TokenCache.getChars());
+	}
+
+	@Test
+	public void unsupported() {
+		assertFalse(TokenCache.highlight("text", "cobol", (length, style) -> fail()));
+		assertEquals(0, TokenCache.getMissCount());
+		assertEquals(0, TokenCache.size());
+	}
+
+	@Test
+	public void evict() {
+		TokenCache.setMaxEntries(3);
+		for (int i = 0; i < 5; i++)
+			tokens("<p>" + i + "</p>", "html", true);
+		assertEquals(3, TokenCache.size());
+		assertEquals(3 * 8, TokenCache.getChars());
+
+		// least recently used entries were evicted
+		tokens("<p>4</p>", "html", true);
+		tokens("<p>0</p>", "html", true);
+		assertEquals(1, TokenCache.getHitCount());
+
+		TokenCache.setMaxChars(10);
+		assertEquals(1, TokenCache.size());
+
+		// too large for cache
+		tokens(HTML, "html", true);
+		assertEquals(1, TokenCache.size());
+	}
+
+	private static String tokens(CharSequence text, String language, boolean cached) {
+		StringBuilder buf = new StringBuilder();
+		SyntaxHighlighter.HighlightConsumer consumer = (length, style) -> {
+			if (length > 0)
+				buf.append(length).append(':').append(style).append(' ');
+		};
+		if (cached)
+			assertTrue(TokenCache.highlight(text, language, consumer));
+		else
+			assertTrue(SyntaxHighlighter.highlight(text.toString(), language, consumer));
+		return buf.toString();
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.commonmark.testutil.example.Example;
+import org.commonmark.testutil.example.ExampleReader;
+import org.junit.Test;
+import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.options.Options.RendererType;
+
+/**
+ * Checks whether HTML rendered from flexmark-java AST
+ * (see MarkdownProcessors.getFlexmarkCommonmarkHtmlRenderer())
+ * is the same as HTML rendered by commonmark-java.
+ *
+ * Uses the examples of the CommonMark spec and GitHub Flavored Markdown spec.
+ *
+ * As long as there are known differences, the CommonMark preview does not
+ * render the flexmark-java AST (see MarkdownProcessors.canRenderCommonmarkWithFlexmark()).
+ *
+ * @author Karl Tauber
+ */
+public class TestCommonmarkConformance
+{
+	/**
+	 * Spec examples where flexmark-java produces different HTML.
+	 * If empty, MarkdownProcessors.FLEXMARK_CONFORMS_TO_COMMONMARK can be enabled.
+	 */
+	private static final Set<String> KNOWN_DIFFERENCES = Set.of(
+		// CommonMark spec
+		"section \"Entity and numeric character references\" example 4",	// invalid code point
+		"section \"Fenced code blocks\" example 20",		// code span with only spaces
+		"section \"Fenced code blocks\" example 28",		// backticks and tildes in info string
+		"section \"HTML blocks\" example 24",			// <textarea> block
+		"section \"Link reference definitions\" example 4",	// multi-line definition
+		"section \"Link reference definitions\" example 10",
+		"section \"Link reference definitions\" example 24",	// definition followed by setext underline
+		"section \"Link reference definitions\" example 25",
+		"section \"Lists\" example 12",					// item indentation greater than 3
+		"section \"Lists\" example 13",
+		"section \"Code spans\" example 4",				// whitespace stripping in code spans
+		"section \"Code spans\" example 5",
+		"section \"Code spans\" example 7",
+		"section \"Code spans\" example 8",
+		"section \"Code spans\" example 9",
+		"section \"Code spans\" example 10",
+		"section \"Emphasis and strong emphasis\" example 66",	// intraword emphasis with ***
+		"section \"Emphasis and strong emphasis\" example 67",
+		"section \"Links\" example 8",					// destinations in <...>
+		"section \"Links\" example 12",
+		"section \"Links\" example 13",
+		"section \"Links\" example 59",					// Unicode case folding of labels
+		"section \"Hard line breaks\" example 8",		// line break in code span
+
+		// GitHub Flavored Markdown spec
+		"section \"Tables (extension)\" example 3",		// escaped pipe in code span
+		"section \"Tables (extension)\" example 5",		// table ends at paragraph line
+		"section \"Tables (extension)\" example 8"		// empty <tbody>
+	);
+
+	@Test
+	public void conformance() {
+		// rendering CommonMark preview with flexmark-java only if there are no differences
+		assertEquals(KNOWN_DIFFERENCES.isEmpty(), MarkdownProcessors.FLEXMARK_CONFORMS_TO_COMMONMARK);
+		if (!KNOWN_DIFFERENCES.isEmpty()) {
+			Options.setMarkdownExtensions(new String[0]);
+			assertFalse(MarkdownProcessors.canRenderCommonmarkWithFlexmark());
+		}
+	}
+
+	@Test
+	public void commonmarkSpec() {
+		checkSpec("/spec.txt", null, new String[0]);
+	}
+
+	@Test
+	public void tables() {
+		checkSpec("/gfm-spec.txt", "Tables (extension)", new String[] { "gfm-tables" });
+	}
+
+	@Test
+	public void strikethrough() {
+		checkSpec("/gfm-spec.txt", "Strikethrough (extension)", new String[] { "gfm-strikethrough" });
+	}
+
+	@Test
+	public void frontMatter() {
+		Options.setMarkdownExtensions(new String[] { "yaml-front-matter", "gfm-tables", "gfm-strikethrough" });
+		assertTrue(MarkdownProcessors.hasFlexmarkCompatibleCommonmarkExtensions());
+
+		assertConform(
+			"---\n" +
+			"title: Test\n" +
+			"tags: [a, b]\n" +
+			"---\n" +
+			"\n" +
+			"# Heading\n" +
+			"\n" +
+			"Some ~~deleted~~ text.\n" +
+			"\n" +
+			"| a | b |\n" +
+			"|---|:-:|\n" +
+			"| 1 | 2 |\n");
+	}
+
+	@Test
+	public void incompatibleExtensions() {
+		Options.setMarkdownExtensions(new String[] { "gfm-tables", "anchorlink" });
+		assertFalse(MarkdownProcessors.hasFlexmarkCompatibleCommonmarkExtensions());
+
+		// extensions that are not available for commonmark-java are ignored
+		Options.setMarkdownExtensions(new String[] { "gfm-tables", "footnotes" });
+		assertTrue(MarkdownProcessors.hasFlexmarkCompatibleCommonmarkExtensions());
+	}
+
+	private void checkSpec(String resource, String section, String[] extensions) {
+		Options.setMarkdownRenderer(RendererType.CommonMark);
+		Options.setMarkdownExtensions(extensions);
+		assertTrue(MarkdownProcessors.hasFlexmarkCompatibleCommonmarkExtensions());
+
+		List<Example> examples = ExampleReader.readExamples(TestCommonmarkConformance.class.getResource(resource));
+		ArrayList<String> differences = new ArrayList<>();
+		int count = 0;
+		for (Example example : examples) {
+			String name = example.toString();
+			if (section != null && !name.contains("section \"" + section + "\""))
+				continue;
+
+			count++;
+			String source = example.getSource();
+			String name2 = name.substring(name.indexOf("section "));
+			if (!KNOWN_DIFFERENCES.contains(name2) && !toCommonmarkHtml(source).equals(toFlexmarkHtml(source)))
+				differences.add(name2 + "\n" + source + "--- commonmark\n" + toCommonmarkHtml(source) + "--- flexmark\n" + toFlexmarkHtml(source));
+		}
+
+		assertTrue(count > 0);
+		assertTrue(differences.size() + " differences:\n\n" + String.join("\n", differences), differences.isEmpty());
+	}
+
+	private static void assertConform(String markdown) {
+		assertEquals(toCommonmarkHtml(markdown), toFlexmarkHtml(markdown));
+	}
+
+	private static String toCommonmarkHtml(String markdown) {
+		String html = MarkdownProcessors.getCommonmarkHtmlRenderer(null)
+			.render(MarkdownProcessors.getCommonmarkParser().parse(markdown));
+		return normalize(html);
+	}
+
+	private static String toFlexmarkHtml(String markdown) {
+		String html = MarkdownProcessors.getFlexmarkCommonmarkHtmlRenderer(null)
+			.render(MarkdownProcessors.getFlexmarkParser(RendererType.CommonMark).parse(markdown));
+		return normalize(html);
+	}
+
+	/**
+	 * Removes line breaks between tags (flexmark-java renders table rows in one line).
+	 */
+	private static String normalize(String html) {
+		return html.replace(">\n<", "><");
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import org.markdownwriterfx.util.MarkdownCache.Kind;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestMarkdownCache
+{
+	private final Parser parser = Parser.builder().build();
+
+	@Before
+	@After
+	public void clear() {
+		MarkdownCache.clear();
+		MarkdownCache.setMaxMemory(MarkdownCache.DEF_MAX_MEMORY);
+	}
+
+	@Test
+	public void ast() {
+		String text = "# Heading\n\nParagraph\n";
+		assertNull(MarkdownCache.getAST(parser, text));
+		assertEquals(1, MarkdownCache.getMissCount(Kind.AST));
+
+		Document astRoot = parser.parse(text);
+		MarkdownCache.putAST(parser, text, astRoot);
+
+		// equal, but not identical text
+		assertSame(astRoot, MarkdownCache.getAST(parser, new String(text.toCharArray())));
+		assertEquals(1, MarkdownCache.getHitCount(Kind.AST));
+
+		// other text or parser
+		assertNull(MarkdownCache.getAST(parser, text + "x"));
+		assertNull(MarkdownCache.getAST(Parser.builder().build(), text));
+		assertEquals(3, MarkdownCache.getMissCount(Kind.AST));
+	}
+
+	@Test
+	public void values() {
+		String text = "*emphasis*\n";
+		Document astRoot = parser.parse(text);
+		AtomicInteger renderCount = new AtomicInteger();
+
+		// not cached AST
+		assertEquals("html", MarkdownCache.getHtml(astRoot, "key", () -> { renderCount.incrementAndGet(); return "html"; }));
+		assertEquals("html", MarkdownCache.getHtml(astRoot, "key", () -> { renderCount.incrementAndGet(); return "html"; }));
+		assertEquals(2, renderCount.get());
+		assertEquals(0, MarkdownCache.getHitCount(Kind.Html));
+		assertEquals(0, MarkdownCache.getMissCount(Kind.Html));
+
+		// cached AST
+		MarkdownCache.putAST(parser, text, astRoot);
+		renderCount.set(0);
+		assertEquals("html", MarkdownCache.getHtml(astRoot, "key", () -> { renderCount.incrementAndGet(); return "html"; }));
+		assertEquals("html", MarkdownCache.getHtml(astRoot, "key", () -> { renderCount.incrementAndGet(); return "html"; }));
+		assertEquals("html2", MarkdownCache.getHtml(astRoot, "key2", () -> { renderCount.incrementAndGet(); return "html2"; }));
+		assertEquals(2, renderCount.get());
+		assertEquals(1, MarkdownCache.getHitCount(Kind.Html));
+		assertEquals(2, MarkdownCache.getMissCount(Kind.Html));
+
+		// child nodes are not cache keys
+		Node child = astRoot.getFirstChild();
+		MarkdownCache.getHtml(child, "key", () -> { renderCount.incrementAndGet(); return "html"; });
+		assertEquals(3, renderCount.get());
+	}
+
+	@Test
+	public void evict() {
+		MarkdownCache.setMaxMemory(3_000);
+
+		String[] texts = new String[20];
+		Document[] astRoots = new Document[texts.length];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i] = "Paragraph " + i + "\n";
+			astRoots[i] = parser.parse(texts[i]);
+			MarkdownCache.putAST(parser, texts[i], astRoots[i]);
+
+			// access first entry to keep it in cache
+			assertSame(astRoots[0], MarkdownCache.getAST(parser, texts[0]));
+		}
+
+		assertTrue(MarkdownCache.getMemory() <= 3_000);
+		assertTrue(MarkdownCache.size() < texts.length);
+		assertSame(astRoots[0], MarkdownCache.getAST(parser, texts[0]));
+		assertSame(astRoots[texts.length - 1], MarkdownCache.getAST(parser, texts[texts.length - 1]));
+		assertNull(MarkdownCache.getAST(parser, texts[1]));
+
+		// values of evicted entries are not counted
+		MarkdownCache.clear();
+		MarkdownCache.getHtml(astRoots[0], "key", () -> "html");
+		assertEquals(0, MarkdownCache.getMemory());
+	}
+}
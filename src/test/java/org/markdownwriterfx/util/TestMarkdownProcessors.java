@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.markdownwriterfx.options.Options;
+import org.markdownwriterfx.options.Options.RendererType;
+
+/**
+ * @author Karl Tauber
+ */
+public class TestMarkdownProcessors
+{
+	@Test
+	public void reuse() {
+		Options.setMarkdownExtensions(new String[] { "gfm-tables" });
+		MarkdownProcessors.clear();
+
+		int buildCount = MarkdownProcessors.getBuildCount();
+		int reuseCount = MarkdownProcessors.getReuseCount();
+
+		Object parser = MarkdownProcessors.getFlexmarkParser(RendererType.FlexMark);
+		assertSame(parser, MarkdownProcessors.getFlexmarkParser(RendererType.FlexMark));
+		assertNotSame(parser, MarkdownProcessors.getFlexmarkParser(RendererType.CommonMark));
+		assertNotSame(parser, MarkdownProcessors.getFlexmarkParser(null));
+		assertSame(MarkdownProcessors.getCommonmarkParser(), MarkdownProcessors.getCommonmarkParser());
+		assertSame(MarkdownProcessors.getFlexmarkHtmlRenderer(null), MarkdownProcessors.getFlexmarkHtmlRenderer(null));
+
+		assertEquals(buildCount + 5, MarkdownProcessors.getBuildCount());
+		assertEquals(reuseCount + 3, MarkdownProcessors.getReuseCount());
+	}
+
+	@Test
+	public void invalidate() {
+		Options.setMarkdownExtensions(new String[] { "gfm-tables" });
+		Object parser = MarkdownProcessors.getFlexmarkParser(RendererType.FlexMark);
+
+		Options.setMarkdownExtensions(new String[] { "gfm-tables", "gfm-strikethrough" });
+		Object parser2 = MarkdownProcessors.getFlexmarkParser(RendererType.FlexMark);
+		assertNotSame(parser, parser2);
+
+		Options.setMarkdownExtensions(new String[] { "gfm-tables" });
+		assertNotSame(parser, MarkdownProcessors.getFlexmarkParser(RendererType.FlexMark));
+	}
+}
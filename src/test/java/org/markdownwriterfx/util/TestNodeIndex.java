@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2023 Karl Tauber <karl at jformdesigner dot com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.markdownwriterfx.util;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import org.junit.Test;
+import com.vladsch.flexmark.ast.Emphasis;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.Image;
+import com.vladsch.flexmark.ast.ListItem;
+import com.vladsch.flexmark.ast.Paragraph;
+import com.vladsch.flexmark.ast.Text;
+import com.vladsch.flexmark.util.ast.Block;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.NodeVisitor;
+import com.vladsch.flexmark.util.ast.Visitor;
+
+/**
+ * Compares node queries of NodeIndex with queries that visit the whole AST.
+ *
+ * @author Karl Tauber
+ */
+public class TestNodeIndex
+{
+	private static final String TEXT =
+		"# Heading *1*\n" +
+		"\n" +
+		"Paragraph with *emphasis*, **strong *nested***, `code`\n" +
+		"and a [link](http://example.com) and ![image](img.png).\n" +
+		"\n" +
+		"- item 1\n" +
+		"- item **2**\n" +
+		"  - nested item\n" +
+		"    > quote in list\n" +
+		"\n" +
+		"> quote\n" +
+		"> - list in quote\n" +
+		">\n" +
+		"> paragraph in quote\n" +
+		"\n" +
+		"```java\n" +
+		"int i = 0;\n" +
+		"```\n" +
+		"\n" +
+		"| a | *b* |\n" +
+		"|---|-----|\n" +
+		"| 1 | ![x](y.png) |\n" +
+		"\n" +
+		"Text with image ![![inner](a.png)](b.png) in image.\n";
+
+	private static final List<Predicate<Node>> PREDICATES = Arrays.asList(
+		node -> true,
+		node -> node instanceof Block,
+		node -> node instanceof Text,
+		node -> node instanceof Emphasis,
+		node -> node instanceof ListItem,
+		node -> node instanceof Paragraph || node instanceof Heading
+	);
+
+	@Test
+	public void findNodes() {
+		Node root = MarkdownProcessors.getFlexmarkParser(null).parse(TEXT);
+		NodeIndex index = NodeIndex.get(root);
+
+		Random random = new Random(1);
+		for (int i = 0; i < 5000; i++) {
+			int start = random.nextInt(TEXT.length() + 1);
+			int end = random.nextBoolean() ? start : Math.min(start + random.nextInt(50), TEXT.length());
+			Predicate<Node> predicate = PREDICATES.get(random.nextInt(PREDICATES.size()));
+			boolean allowNested = random.nextBoolean();
+			boolean deepest = random.nextBoolean();
+
+			List<Node> expected = visitorFindNodes(root, start, end, predicate, allowNested, deepest);
+			List<Node> actual = index.findNodes(start, end, predicate, allowNested, deepest);
+			assertSameNodes(start + "-" + end, expected, actual);
+		}
+	}
+
+	@Test
+	public void nodesAt() {
+		Node root = MarkdownProcessors.getFlexmarkParser(null).parse(TEXT);
+		NodeIndex index = NodeIndex.get(root);
+
+		for (int offset = 0; offset <= TEXT.length(); offset++) {
+			List<Node> nodes = index.getNodesAt(offset);
+			assertSameNodes(String.valueOf(offset), visitorFindNodes(root, offset, offset, node -> true, true, false), nodes);
+
+			// nodes are nested
+			for (int i = 1; i < nodes.size(); i++)
+				assertSame(nodes.get(i - 1), findAncestor(nodes.get(i), nodes.get(i - 1)));
+		}
+	}
+
+	@Test
+	public void nodesOfType() {
+		Node root = MarkdownProcessors.getFlexmarkParser(null).parse(TEXT);
+		NodeIndex index = NodeIndex.get(root);
+
+		assertSameNodes("all", visitorFindNodes(root, 0, TEXT.length(), node -> node instanceof Block, true, false),
+			index.getNodes(Block.class));
+		assertSameNodes("paragraphs+headings", visitorFindNodes(root, 0, TEXT.length(),
+				node -> node instanceof Paragraph || node instanceof Heading, true, false),
+			index.getNodes(Paragraph.class, Heading.class));
+		assertEquals(4, index.getNodes(Image.class).size());
+
+		Random random = new Random(2);
+		for (int i = 0; i < 1000; i++) {
+			int start = random.nextInt(TEXT.length() + 1);
+			int end = Math.min(start + random.nextInt(80), TEXT.length());
+			assertSameNodes(start + "-" + end,
+				visitorFindNodes(root, start, end, node -> node instanceof Text, true, false),
+				index.getNodes(Text.class, start, end));
+		}
+	}
+
+	@Test
+	public void cached() {
+		Node root = MarkdownProcessors.getFlexmarkParser(null).parse(TEXT);
+		assertSame(NodeIndex.get(root), NodeIndex.get(root));
+		assertSame(root, NodeIndex.get(root).getRoot());
+	}
+
+	@Test
+	public void empty() {
+		Node root = MarkdownProcessors.getFlexmarkParser(null).parse("");
+		NodeIndex index = NodeIndex.get(root);
+		assertEquals(1, index.size());
+		assertTrue(index.getNodesAt(0).isEmpty());
+		assertTrue(index.getNodes(Paragraph.class).isEmpty());
+	}
+
+	private static Node findAncestor(Node node, Node ancestor) {
+		for (Node parent = node.getParent(); parent != null; parent = parent.getParent()) {
+			if (parent == ancestor)
+				return parent;
+		}
+		return null;
+	}
+
+	private static void assertSameNodes(String message, List<? extends Node> expected, List<? extends Node> actual) {
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+			assertSame(message, expected.get(i), actual.get(i));
+	}
+
+	/**
+	 * Same implementation as used in SmartEdit before NodeIndex was introduced.
+	 */
+	private static List<Node> visitorFindNodes(Node root, int start, int end,
+		Predicate<Node> predicate, boolean allowNested, boolean deepest)
+	{
+		ArrayList<Node> nodes = new ArrayList<>();
+		NodeVisitor visitor = new NodeVisitor(Collections.emptyList()) {
+			@Override
+			protected void processNode(Node node, boolean withChildren, BiConsumer<Node, Visitor<Node>> processor) {
+				if (isInNode(start, end, node) && predicate.test(node)) {
+					if (deepest) {
+						int oldNodesSize = nodes.size();
+						visitChildren(node);
+
+						// add only if no other child was added
+						if (nodes.size() == oldNodesSize)
+							nodes.add(node);
+						return;
+					}
+
+					nodes.add(node);
+
+					if (!allowNested)
+						return; // do not visit children
+				}
+
+				visitChildren(node);
+			}
+		};
+		visitor.visit(root);
+		return nodes;
+	}
+
+	private static boolean isInNode(int start, int end, Node node) {
+		if (end == start)
+			end++;
+		return start < node.getEndOffset() && end > node.getStartOffset();
+	}
+}